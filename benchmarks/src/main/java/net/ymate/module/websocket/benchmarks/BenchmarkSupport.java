@@ -0,0 +1,339 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.benchmarks;
+
+import net.ymate.module.websocket.IWebSocket;
+import net.ymate.module.websocket.WSServerListener;
+import net.ymate.module.websocket.impl.DefaultWebSocketConfig;
+import net.ymate.module.websocket.impl.NoOpWSMetrics;
+import net.ymate.module.websocket.support.WSBroadcaster;
+import net.ymate.module.websocket.support.WSDispatcher;
+import net.ymate.module.websocket.support.WSServerEndpointConfigurator;
+import net.ymate.module.websocket.support.WSSessionContext;
+import net.ymate.module.websocket.support.WSSessionRegistry;
+import net.ymate.platform.core.IApplication;
+import net.ymate.platform.core.beans.IBeanFactory;
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.server.Server;
+
+import javax.websocket.*;
+import javax.websocket.server.ServerApplicationConfig;
+import javax.websocket.server.ServerEndpointConfig;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基准测试支撑: 以动态代理替代YMP应用容器, 以嵌入式Tyrus(Grizzly)在回环地址上替代Web容器,
+ * 使基准测试无需启动完整框架即可驱动模块中的真实代码路径
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 下午4:20
+ * @since 2.0.0
+ */
+public final class BenchmarkSupport {
+
+    public static final String PATH = "/bench";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 模块运行环境, 持有会话注册表、分发器、广播器等由模块统一管理的对象
+     */
+    public static final class Environment implements AutoCloseable {
+
+        private final WSSessionRegistry sessionRegistry = new WSSessionRegistry();
+
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(WSDispatcher.newThreadFactory("bench-scheduler-"));
+
+        private final WSDispatcher dispatcher = new WSDispatcher(Runtime.getRuntime().availableProcessors(), 10000);
+
+        private final WSBroadcaster broadcaster;
+
+        private final DefaultWebSocketConfig config = DefaultWebSocketConfig.defaultConfig();
+
+        private final IWebSocket webSocket;
+
+        public Environment(int broadcastMaxPending) {
+            broadcaster = new WSBroadcaster(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), WSDispatcher.newThreadFactory("bench-broadcast-")), 512, broadcastMaxPending);
+            IBeanFactory beanFactory = proxy(IBeanFactory.class, (name, args) -> {
+                if ("getBean".equals(name)) {
+                    return ((Class<?>) args[0]).getDeclaredConstructor().newInstance();
+                }
+                return null;
+            });
+            IApplication application = proxy(IApplication.class, (name, args) -> "getBeanFactory".equals(name) ? beanFactory : null);
+            webSocket = proxy(IWebSocket.class, (name, args) -> {
+                switch (name) {
+                    case "getOwner":
+                        return application;
+                    case "getConfig":
+                        return config;
+                    case "getSessionRegistry":
+                        return sessionRegistry;
+                    case "getScheduler":
+                        return scheduler;
+                    case "getDispatcher":
+                        return dispatcher;
+                    case "getBroadcaster":
+                        return broadcaster;
+                    case "getMetrics":
+                        return NoOpWSMetrics.INSTANCE;
+                    case "isInitialized":
+                        return true;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        public IWebSocket getWebSocket() {
+            return webSocket;
+        }
+
+        public WSSessionRegistry getSessionRegistry() {
+            return sessionRegistry;
+        }
+
+        public WSBroadcaster getBroadcaster() {
+            return broadcaster;
+        }
+
+        public WSServerEndpointConfigurator newServerConfigurator(Class<? extends WSServerListener> listenerClass) {
+            return new WSServerEndpointConfigurator(webSocket, PATH, listenerClass);
+        }
+
+        @Override
+        public void close() {
+            broadcaster.shutdown();
+            dispatcher.shutdown();
+            scheduler.shutdownNow();
+            sessionRegistry.clear();
+        }
+    }
+
+    /**
+     * 回环服务端, 仅允许同时运行一个实例
+     */
+    public static final class LoopbackServer implements AutoCloseable {
+
+        private static volatile ServerEndpointConfig endpointConfig;
+
+        private final Server server;
+
+        private final int port;
+
+        public LoopbackServer(ServerEndpointConfig config) throws Exception {
+            endpointConfig = config;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            server = new Server("127.0.0.1", port, "/", Collections.emptyMap(), Application.class);
+            server.start();
+        }
+
+        public URI getUri() {
+            return URI.create("ws://127.0.0.1:" + port + PATH);
+        }
+
+        @Override
+        public void close() {
+            server.stop();
+            endpointConfig = null;
+        }
+
+        public static class Application implements ServerApplicationConfig {
+
+            @Override
+            public Set<ServerEndpointConfig> getEndpointConfigs(Set<Class<? extends Endpoint>> endpointClasses) {
+                return Collections.singleton(endpointConfig);
+            }
+
+            @Override
+            public Set<Class<?>> getAnnotatedEndpointClasses(Set<Class<?>> scanned) {
+                return Collections.emptySet();
+            }
+        }
+    }
+
+    /**
+     * 丢弃全部消息的服务端监听器
+     */
+    public static class SinkServerListener extends WSServerListener {
+
+        @Override
+        protected void afterConnectionOpened(Session session) {
+        }
+
+        @Override
+        protected void afterConnectionClosed(Session session, CloseReason closeReason) {
+        }
+
+        @Override
+        protected void handleTextMessage(Session session, String message, boolean isLast) {
+        }
+
+        @Override
+        protected void handleBinaryMessage(Session session, ByteBuffer message, boolean isLast) {
+        }
+
+        @Override
+        protected void handlePongMessage(Session session, PongMessage message) {
+        }
+
+        @Override
+        protected void handleError(Session session, Throwable thr) {
+        }
+    }
+
+    /**
+     * 建立指定数量的客户端连接, 客户端丢弃收到的全部消息
+     *
+     * @param uri   服务端地址
+     * @param count 连接数量
+     * @return 返回客户端会话集合
+     * @throws Exception 连接失败时产生的异常
+     */
+    public static List<Session> connectClients(URI uri, int count) throws Exception {
+        ClientManager clientManager = ClientManager.createClient();
+        List<Session> sessions = new ArrayList<>(count);
+        for (int idx = 0; idx < count; idx++) {
+            sessions.add(clientManager.connectToServer(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                    session.addMessageHandler(String.class, message -> {
+                    });
+                    session.addMessageHandler(ByteBuffer.class, message -> {
+                    });
+                }
+            }, ClientEndpointConfig.Builder.create().build(), uri));
+        }
+        return sessions;
+    }
+
+    /**
+     * 等待服务端为指定数量的会话完成注册
+     */
+    public static void awaitSessions(WSSessionRegistry sessionRegistry, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (sessionRegistry.size(PATH) < count) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(String.format("Only %d of %d sessions registered", sessionRegistry.size(PATH), count));
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 自旋等待会话全部异步发送完成
+     */
+    public static void awaitDrained(Collection<WSSessionContext> sessionContexts) {
+        for (WSSessionContext sessionContext : sessionContexts) {
+            while (sessionContext.getPendingSends() > 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    public static void closeQuietly(Collection<Session> sessions) {
+        for (Session session : sessions) {
+            try {
+                session.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 创建不依赖容器的会话替身, 记录注册的消息处理器以便直接调用
+     *
+     * @param handlers 用于保存消息处理器的映射, 以消息类型为键
+     * @return 返回会话替身
+     */
+    public static Session newStandInSession(Map<Class<?>, MessageHandler> handlers) {
+        Map<String, Object> userProperties = new ConcurrentHashMap<>();
+        return proxy(Session.class, (name, args) -> {
+            switch (name) {
+                case "getId":
+                    return "stand-in";
+                case "isOpen":
+                    return true;
+                case "getUserProperties":
+                    return userProperties;
+                case "addMessageHandler":
+                    if (args.length == 2) {
+                        handlers.put((Class<?>) args[0], (MessageHandler) args[1]);
+                    }
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    interface Invocation {
+
+        Object invoke(String name, Object[] args) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T proxy(Class<T> type, Invocation invocation) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName() + "@stand-in";
+                default:
+                    Object result = invocation.invoke(method.getName(), args != null ? args : new Object[0]);
+                    if (result == null && method.getReturnType().isPrimitive()) {
+                        return defaultValue(method.getReturnType());
+                    }
+                    return result;
+            }
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == void.class) {
+            return null;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == double.class) {
+            return 0d;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == char.class) {
+            return (char) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        }
+        return (byte) 0;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.benchmarks;
+
+import net.ymate.module.websocket.support.WSSessionContext;
+import org.openjdk.jmh.annotations.*;
+
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 广播基准: 经WSBroadcaster向N个回环连接广播同一消息并等待全部会话发送完成, 测量单次扇出的平均耗时
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 下午4:20
+ * @since 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({"16", "256", "1024"})
+    public int sessionCount;
+
+    @Param({"256"})
+    public int messageSize;
+
+    private BenchmarkSupport.Environment environment;
+
+    private BenchmarkSupport.LoopbackServer server;
+
+    private List<Session> clients;
+
+    private Collection<Session> targets;
+
+    private Collection<WSSessionContext> sessionContexts;
+
+    private String textMessage;
+
+    @Setup
+    public void setup() throws Exception {
+        // 每次广播后均等待发送完成, 不应出现因积压而被跳过的会话
+        environment = new BenchmarkSupport.Environment(Integer.MAX_VALUE);
+        server = new BenchmarkSupport.LoopbackServer(environment.newServerConfigurator(BenchmarkSupport.SinkServerListener.class));
+        clients = BenchmarkSupport.connectClients(server.getUri(), sessionCount);
+        BenchmarkSupport.awaitSessions(environment.getSessionRegistry(), sessionCount);
+        targets = environment.getSessionRegistry().getSessions(BenchmarkSupport.PATH);
+        sessionContexts = new ArrayList<>(environment.getSessionRegistry().getSessionContexts());
+        char[] chars = new char[messageSize];
+        for (int idx = 0; idx < messageSize; idx++) {
+            chars[idx] = (char) ('a' + idx % 26);
+        }
+        textMessage = new String(chars);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSupport.closeQuietly(clients);
+        server.close();
+        environment.close();
+    }
+
+    @Benchmark
+    public int broadcast() throws Exception {
+        int count = environment.getBroadcaster().broadcast(targets, textMessage);
+        BenchmarkSupport.awaitDrained(sessionContexts);
+        return count;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.benchmarks;
+
+import net.ymate.module.websocket.WSServerListener;
+import net.ymate.module.websocket.support.WSServerEndpointConfigurator;
+import org.openjdk.jmh.annotations.*;
+
+import javax.websocket.CloseReason;
+import javax.websocket.MessageHandler;
+import javax.websocket.PongMessage;
+import javax.websocket.Session;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入站消息分发基准: 通过会话替身直接调用AbstractWSListener注册的消息处理器, 不经过网络,
+ * 分别测量整包模式与分片模式(isPartialEnabled)下文字及二进制消息的分发开销
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 下午4:20
+ * @since 2.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"false", "true"})
+    public boolean partial;
+
+    @Param({"64", "4096"})
+    public int messageSize;
+
+    private BenchmarkSupport.Environment environment;
+
+    private String textMessage;
+
+    private ByteBuffer binaryMessage;
+
+    private MessageHandler textHandler;
+
+    private MessageHandler binaryHandler;
+
+    /**
+     * 分片模式由静态开关决定, 因为监听器实例由模块通过无参构造方法创建
+     */
+    static volatile boolean partialEnabled;
+
+    public static class CountingListener extends WSServerListener {
+
+        long received;
+
+        @Override
+        protected boolean isPartialEnabled() {
+            return partialEnabled;
+        }
+
+        @Override
+        protected void afterConnectionOpened(Session session) {
+        }
+
+        @Override
+        protected void afterConnectionClosed(Session session, CloseReason closeReason) {
+        }
+
+        @Override
+        protected void handleTextMessage(Session session, String message, boolean isLast) {
+            received += message.length();
+        }
+
+        @Override
+        protected void handleBinaryMessage(Session session, ByteBuffer message, boolean isLast) {
+            received += message.remaining();
+        }
+
+        @Override
+        protected void handlePongMessage(Session session, PongMessage message) {
+        }
+
+        @Override
+        protected void handleError(Session session, Throwable thr) {
+        }
+    }
+
+    @Setup
+    public void setup() {
+        partialEnabled = partial;
+        environment = new BenchmarkSupport.Environment(16);
+        WSServerEndpointConfigurator configurator = environment.newServerConfigurator(CountingListener.class);
+        Map<Class<?>, MessageHandler> handlers = new HashMap<>();
+        Session session = BenchmarkSupport.newStandInSession(handlers);
+        new CountingListener().onOpen(session, configurator);
+        textHandler = handlers.get(String.class);
+        binaryHandler = handlers.get(ByteBuffer.class);
+        StringBuilder builder = new StringBuilder(messageSize);
+        for (int idx = 0; idx < messageSize; idx++) {
+            builder.append((char) ('a' + idx % 26));
+        }
+        textMessage = builder.toString();
+        binaryMessage = ByteBuffer.wrap(textMessage.getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void text() {
+        if (partial) {
+            ((MessageHandler.Partial<String>) textHandler).onMessage(textMessage, true);
+        } else {
+            ((MessageHandler.Whole<String>) textHandler).onMessage(textMessage);
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void binary() {
+        if (partial) {
+            ((MessageHandler.Partial<ByteBuffer>) binaryHandler).onMessage(binaryMessage, true);
+        } else {
+            ((MessageHandler.Whole<ByteBuffer>) binaryHandler).onMessage(binaryMessage);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.benchmarks;
+
+import net.ymate.module.websocket.WSHttpSession;
+import net.ymate.module.websocket.support.WSEndpointFactory;
+import net.ymate.module.websocket.support.WSServerEndpointConfigurator;
+import org.openjdk.jmh.annotations.*;
+
+import javax.servlet.http.HttpSession;
+import javax.websocket.HandshakeResponse;
+import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 握手基准: 分别测量WSServerEndpointConfigurator.modifyHandshake(绑定HttpSession)的调用开销,
+ * 端点实例化(经Bean工厂查找与预解析的端点实例工厂)的开销, 以及经回环地址完成一次完整握手(建立并关闭连接)的耗时
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 下午4:20
+ * @since 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandshakeBenchmark {
+
+    private BenchmarkSupport.Environment environment;
+
+    private BenchmarkSupport.LoopbackServer server;
+
+    private WSServerEndpointConfigurator configurator;
+
+    private WSServerEndpointConfigurator beanFactoryConfigurator;
+
+    private HandshakeRequest request;
+
+    private HandshakeResponse response;
+
+    @Setup
+    public void setup() throws Exception {
+        environment = new BenchmarkSupport.Environment(16);
+        configurator = environment.newServerConfigurator(BenchmarkSupport.SinkServerListener.class);
+        configurator.setHandshakeModifier((config, handshakeRequest, handshakeResponse) -> WSHttpSession.bind(config, handshakeRequest));
+        configurator.setEndpointFactory(WSEndpointFactory.create(environment.getWebSocket(), BenchmarkSupport.SinkServerListener.class, false, true));
+        beanFactoryConfigurator = environment.newServerConfigurator(BenchmarkSupport.SinkServerListener.class);
+        server = new BenchmarkSupport.LoopbackServer(configurator);
+        //
+        HttpSession httpSession = BenchmarkSupport.proxy(HttpSession.class, (name, args) -> "getId".equals(name) ? "http-session" : null);
+        Map<String, List<String>> requestHeaders = new HashMap<>();
+        requestHeaders.put("Origin", Collections.singletonList("http://127.0.0.1"));
+        requestHeaders.put("Sec-WebSocket-Protocol", Collections.singletonList("v1.bench"));
+        request = BenchmarkSupport.proxy(HandshakeRequest.class, (name, args) -> {
+            switch (name) {
+                case "getHttpSession":
+                    return httpSession;
+                case "getHeaders":
+                    return requestHeaders;
+                case "getParameterMap":
+                    return Collections.emptyMap();
+                default:
+                    return null;
+            }
+        });
+        Map<String, List<String>> responseHeaders = new HashMap<>();
+        response = BenchmarkSupport.proxy(HandshakeResponse.class, (name, args) -> "getHeaders".equals(name) ? responseHeaders : null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.close();
+        environment.close();
+    }
+
+    @Benchmark
+    public WSServerEndpointConfigurator modifyHandshake() {
+        configurator.modifyHandshake(configurator, request, response);
+        return configurator;
+    }
+
+    @Benchmark
+    public Object endpointInstanceViaFactory() throws Exception {
+        return configurator.getEndpointInstance(BenchmarkSupport.SinkServerListener.class);
+    }
+
+    @Benchmark
+    public Object endpointInstanceViaBeanFactory() throws Exception {
+        return beanFactoryConfigurator.getEndpointInstance(BenchmarkSupport.SinkServerListener.class);
+    }
+
+    @Benchmark
+    public void connect() throws Exception {
+        List<Session> sessions = BenchmarkSupport.connectClients(server.getUri(), 1);
+        BenchmarkSupport.closeQuietly(sessions);
+    }
+}
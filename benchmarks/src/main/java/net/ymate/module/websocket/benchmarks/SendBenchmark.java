@@ -0,0 +1,98 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.benchmarks;
+
+import net.ymate.module.websocket.support.WSSessionContext;
+import org.openjdk.jmh.annotations.*;
+
+import javax.websocket.Session;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单会话发送吞吐基准: 服务端会话经WSSessionContext.send连续异步发送一批消息并等待全部完成,
+ * 消息经回环地址到达丢弃全部消息的客户端
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 下午4:20
+ * @since 2.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendBenchmark {
+
+    private static final int BATCH = 100;
+
+    @Param({"64", "4096"})
+    public int messageSize;
+
+    private BenchmarkSupport.Environment environment;
+
+    private BenchmarkSupport.LoopbackServer server;
+
+    private List<Session> clients;
+
+    private WSSessionContext sessionContext;
+
+    private String textMessage;
+
+    private ByteBuffer binaryMessage;
+
+    @Setup
+    public void setup() throws Exception {
+        environment = new BenchmarkSupport.Environment(16);
+        server = new BenchmarkSupport.LoopbackServer(environment.newServerConfigurator(BenchmarkSupport.SinkServerListener.class));
+        clients = BenchmarkSupport.connectClients(server.getUri(), 1);
+        BenchmarkSupport.awaitSessions(environment.getSessionRegistry(), 1);
+        sessionContext = environment.getSessionRegistry().getSessionContexts().iterator().next();
+        char[] chars = new char[messageSize];
+        for (int idx = 0; idx < messageSize; idx++) {
+            chars[idx] = (char) ('a' + idx % 26);
+        }
+        textMessage = new String(chars);
+        binaryMessage = ByteBuffer.allocateDirect(messageSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSupport.closeQuietly(clients);
+        server.close();
+        environment.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void text() {
+        for (int idx = 0; idx < BATCH; idx++) {
+            sessionContext.send(textMessage);
+        }
+        BenchmarkSupport.awaitDrained(Collections.singleton(sessionContext));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void binary() {
+        for (int idx = 0; idx < BATCH; idx++) {
+            sessionContext.send(binaryMessage.duplicate());
+        }
+        BenchmarkSupport.awaitDrained(Collections.singleton(sessionContext));
+    }
+}
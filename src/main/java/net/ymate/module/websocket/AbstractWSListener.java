@@ -21,12 +21,28 @@
  */
 package net.ymate.module.websocket;
 
+import net.ymate.module.websocket.impl.NoOpWSMetrics;
+import net.ymate.module.websocket.support.WSAttributeSchema;
+import net.ymate.module.websocket.support.WSClientConnectionManager;
+import net.ymate.module.websocket.support.WSCompositeBuffer;
+import net.ymate.module.websocket.support.WSDispatcher;
+import net.ymate.module.websocket.support.WSMessageAggregator;
+import net.ymate.module.websocket.support.WSOutboundQueue;
+import net.ymate.module.websocket.support.WSSerialExecutor;
+import net.ymate.module.websocket.support.WSServerEndpointConfigurator;
+import net.ymate.module.websocket.support.WSSessionContext;
+import net.ymate.module.websocket.support.WSShardGroup;
+import net.ymate.module.websocket.support.WSStreamSender;
+import net.ymate.module.websocket.support.WSWriteBatcher;
 import net.ymate.platform.commons.util.RuntimeUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import javax.websocket.*;
+import javax.websocket.server.ServerEndpointConfig;
+import java.io.*;
 import java.nio.ByteBuffer;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author 刘镇 (suninformation@163.com) on 2021/9/18 7:47 下午
@@ -88,21 +104,457 @@ public abstract class AbstractWSListener extends Endpoint {
      */
     protected abstract void handleError(Session session, Throwable thr) throws Exception;
 
+    /**
+     * 会话因消费过慢(出站队列溢出策略为CLOSE)被驱逐时执行逻辑, 该方法将在会话被关闭前调用
+     *
+     * @param session 会话
+     */
+    protected void handleSlowConsumer(Session session) {
+    }
+
+    /**
+     * 聚合后的二进制消息处理逻辑, 默认实现在消息仅占用一个缓冲块时直接传递其只读视图, 否则复制为连续的堆内缓冲区,
+     * 子类可重写此方法直接使用组合视图以避免复制; 方法返回后缓冲块将被归还, 不得在方法外继续持有该消息或其任何视图
+     *
+     * @param session 会话
+     * @param message 消息内容
+     */
+    protected void handleBinaryMessage(Session session, WSCompositeBuffer message) {
+        handleBinaryMessage(session, message.getBufferCount() == 1 ? message.getBuffer(0) : message.toByteBuffer(), true);
+    }
+
+    /**
+     * 流式二进制消息处理逻辑(仅在isStreamingEnabled返回true时有效), 方法返回后输入流将失效, 须在返回前读取所需的全部内容,
+     * 默认实现读取全部内容后调用handleBinaryMessage
+     *
+     * @param session 会话
+     * @param message 消息输入流
+     * @throws IOException 读取时可能产生的异常
+     */
+    protected void handleBinaryStream(Session session, InputStream message) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[WSStreamSender.DEFAULT_BUFFER_SIZE];
+        int length;
+        while ((length = message.read(buffer)) != -1) {
+            output.write(buffer, 0, length);
+        }
+        handleBinaryMessage(session, ByteBuffer.wrap(output.toByteArray()), true);
+    }
+
+    /**
+     * 流式文字消息处理逻辑(仅在isStreamingEnabled返回true时有效), 方法返回后字符流将失效, 须在返回前读取所需的全部内容,
+     * 默认实现读取全部内容后调用handleTextMessage
+     *
+     * @param session 会话
+     * @param message 消息字符流
+     * @throws IOException 读取时可能产生的异常
+     */
+    protected void handleTextStream(Session session, Reader message) throws IOException {
+        StringWriter writer = new StringWriter();
+        char[] buffer = new char[WSStreamSender.DEFAULT_BUFFER_SIZE];
+        int length;
+        while ((length = message.read(buffer)) != -1) {
+            writer.write(buffer, 0, length);
+        }
+        handleTextMessage(session, writer.toString(), true);
+    }
+
     protected boolean isPartialEnabled() {
         return false;
     }
 
+    /**
+     * 是否以流的方式接收消息, 开启后消息将交由handleBinaryStream及handleTextStream处理, 内存占用与消息大小无关,
+     * 优先于isAggregationEnabled及isPartialEnabled; 由于流由容器I/O线程持续填充, 流式处理方法始终在容器线程中执行, 不受分发模式影响
+     *
+     * @return 返回true表示开启
+     */
+    protected boolean isStreamingEnabled() {
+        return false;
+    }
+
+    /**
+     * 是否由模块聚合分片消息, 开启后将以分片方式接收并聚合至缓冲池中的直接内存缓冲块, 优先于isPartialEnabled
+     *
+     * @return 返回true表示开启
+     */
+    protected boolean isAggregationEnabled() {
+        return false;
+    }
+
+    /**
+     * 会话属性结构定义, 返回非空时每个会话在开启时将从模块的属性存储中分配一条记录, 并在会话关闭时释放,
+     * 可通过WSAttributes.get(session)进行访问, 用于替代以Session.getUserProperties()保存的会话状态
+     *
+     * @return 默认返回null表示不分配
+     */
+    protected WSAttributeSchema getAttributeSchema() {
+        return null;
+    }
+
+    /**
+     * 将会话注册到所属模块的会话注册表中
+     *
+     * @param session 会话
+     * @param config  端点配置
+     * @return 返回会话上下文对象, 若无法确定所属模块则返回null
+     */
+    protected WSSessionContext doRegisterSession(Session session, EndpointConfig config) {
+        WSHttpSessionSnapshot.transfer(session, config);
+        IWSEndpointSettings endpointSettings = null;
+        String path = null;
+        if (config instanceof ServerEndpointConfig) {
+            ServerEndpointConfig serverEndpointConfig = (ServerEndpointConfig) config;
+            if (serverEndpointConfig.getConfigurator() instanceof WSServerEndpointConfigurator) {
+                endpointSettings = (WSServerEndpointConfigurator) serverEndpointConfig.getConfigurator();
+                path = serverEndpointConfig.getPath();
+            }
+        } else if (config != null) {
+            WSClientConnectionManager clientConnectionManager = (WSClientConnectionManager) config.getUserProperties().get(WSClientConnectionManager.class.getName());
+            if (clientConnectionManager != null) {
+                endpointSettings = clientConnectionManager;
+                path = clientConnectionManager.getUri().toString();
+            }
+        }
+        IWebSocket owner = endpointSettings != null ? endpointSettings.getOwner() : null;
+        if (owner != null && owner.getSessionRegistry() != null) {
+            WSSessionContext sessionContext = owner.getSessionRegistry().register(endpointSettings, path, session, config);
+            if (config instanceof ServerEndpointConfig && owner.getAdmissionController() != null) {
+                // 会话已计入注册表, 释放握手准入时预留的名额
+                owner.getAdmissionController().release(path);
+            }
+            WSAttributeSchema attributeSchema = getAttributeSchema();
+            if (attributeSchema != null && sessionContext.getAttributes() == null) {
+                sessionContext.setAttributes(owner.getAttributeStore(attributeSchema).allocate());
+            }
+            if (endpointSettings.isBatching()) {
+                sessionContext.setWriteBatcher(new WSWriteBatcher(session, owner.getScheduler(), owner.getIoExecutor(), endpointSettings.getBatchingMaxDelay(), endpointSettings.getBatchingMaxBytes(), endpointSettings.getBatchingStats()));
+            }
+            IWebSocketConfig webSocketConfig = owner.getConfig();
+            if (webSocketConfig.getOutboundQueueMaxMessages() > 0 || endpointSettings.isConflating()) {
+                int maxMessages = webSocketConfig.getOutboundQueueMaxMessages() > 0 ? webSocketConfig.getOutboundQueueMaxMessages() : WSOutboundQueue.DEFAULT_CONFLATING_MAX_MESSAGES;
+                WSOutboundQueue outboundQueue = new WSOutboundQueue(session, maxMessages, webSocketConfig.getOutboundQueueMaxBytes(), webSocketConfig.getOutboundQueueOverflowPolicy(), this::handleSlowConsumer, endpointSettings.isConflating());
+                outboundQueue.setWriteBatcher(sessionContext.getWriteBatcher());
+                outboundQueue.setMetrics(sessionContext.getMetrics(), path);
+                outboundQueue.setPerMessageDeflate(endpointSettings.getPerMessageDeflate());
+                sessionContext.setOutboundQueue(outboundQueue);
+            }
+            if (owner.getHeartbeat() != null) {
+                owner.getHeartbeat().add(sessionContext);
+            }
+            return sessionContext;
+        }
+        return null;
+    }
+
+    /**
+     * 将会话从所属模块的会话注册表中移除
+     *
+     * @param session 会话
+     */
+    protected void doUnregisterSession(Session session) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        if (sessionContext != null) {
+            if (sessionContext.getOwner().getHeartbeat() != null) {
+                sessionContext.getOwner().getHeartbeat().remove(sessionContext);
+            }
+            WSDispatcher dispatcher = sessionContext.getOwner().getDispatcher();
+            if (dispatcher != null && dispatcher.getShardGroup() != null) {
+                dispatcher.getShardGroup().release(sessionContext);
+            }
+            // 须先从会话注册表中移除再取消订阅, 使并发的订阅操作在复查时能够发现会话已注销并自行回滚, 避免残留索引
+            if (sessionContext.getOwner().getSessionRegistry() != null) {
+                sessionContext.getOwner().getSessionRegistry().unregister(session);
+            }
+            if (sessionContext.getOwner().getTopicRegistry() != null) {
+                sessionContext.getOwner().getTopicRegistry().unsubscribeAll(session);
+            }
+        }
+    }
+
+    /**
+     * 注册经由串行执行器分发的消息处理器, 二进制消息将被复制以避免容器复用缓冲区
+     *
+     * @param session  会话
+     * @param executor 会话串行执行器
+     */
+    protected void doAddDispatchedMessageHandlers(final Session session, final WSSerialExecutor executor) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        IWSMetrics metrics = sessionContext != null ? sessionContext.getMetrics() : NoOpWSMetrics.INSTANCE;
+        String path = sessionContext != null ? sessionContext.getPath() : null;
+        if (isPartialEnabled()) {
+            session.addMessageHandler(String.class, (message, isLast) -> doExecute(session, executor, () -> doDispatch(session, () -> doHandleText(session, metrics, path, message, isLast))));
+            session.addMessageHandler(ByteBuffer.class, (message, isLast) -> {
+                ByteBuffer copied = doCopyBuffer(message);
+                doExecute(session, executor, () -> doDispatch(session, () -> doHandleBinary(session, metrics, path, copied, isLast)));
+            });
+        } else {
+            session.addMessageHandler(String.class, message -> doExecute(session, executor, () -> doDispatch(session, () -> doHandleText(session, metrics, path, message, true))));
+            session.addMessageHandler(ByteBuffer.class, message -> {
+                ByteBuffer copied = doCopyBuffer(message);
+                doExecute(session, executor, () -> doDispatch(session, () -> doHandleBinary(session, metrics, path, copied, true)));
+            });
+        }
+        doAddDispatchedPongHandler(session, executor);
+    }
+
+    private void doAddDispatchedPongHandler(final Session session, final WSSerialExecutor executor) {
+        session.addMessageHandler(PongMessage.class, message -> {
+            doHeartbeat(session, message);
+            ByteBuffer copied = doCopyBuffer(message.getApplicationData());
+            PongMessage pongMessage = () -> copied;
+            doExecute(session, executor, () -> doDispatch(session, () -> handlePongMessage(session, pongMessage)));
+        });
+    }
+
+    /**
+     * 注册聚合分片消息的处理器, 消息聚合在容器I/O线程中完成, 完整消息按分发模式交由处理方法执行
+     *
+     * @param session    会话
+     * @param aggregator 会话分片消息聚合器
+     * @param executor   会话串行执行器, 为null表示在容器I/O线程中直接执行
+     */
+    protected void doAddAggregatedMessageHandlers(final Session session, final WSMessageAggregator aggregator, final WSSerialExecutor executor) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        IWSMetrics metrics = sessionContext != null ? sessionContext.getMetrics() : NoOpWSMetrics.INSTANCE;
+        String path = sessionContext != null ? sessionContext.getPath() : null;
+        session.addMessageHandler(String.class, (message, isLast) -> {
+            if (!aggregator.appendText(message)) {
+                doCloseTooBig(session);
+            } else if (isLast) {
+                String text = aggregator.completeText();
+                if (executor != null) {
+                    doExecute(session, executor, () -> doDispatch(session, () -> doHandleText(session, metrics, path, text, true)));
+                } else {
+                    doHandleText(session, metrics, path, text, true);
+                }
+            }
+        });
+        session.addMessageHandler(ByteBuffer.class, (message, isLast) -> {
+            if (!aggregator.appendBinary(message)) {
+                doCloseTooBig(session);
+            } else if (isLast) {
+                WSCompositeBuffer compositeBuffer = aggregator.completeBinary();
+                if (executor != null) {
+                    if (!doExecute(session, executor, () -> doDispatch(session, () -> doHandleComposite(session, metrics, path, compositeBuffer)))) {
+                        compositeBuffer.release();
+                    }
+                } else {
+                    doHandleComposite(session, metrics, path, compositeBuffer);
+                }
+            }
+        });
+    }
+
+    /**
+     * 注册流式消息处理器
+     *
+     * @param session 会话
+     */
+    protected void doAddStreamingMessageHandlers(final Session session) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        IWSMetrics metrics = sessionContext != null ? sessionContext.getMetrics() : NoOpWSMetrics.INSTANCE;
+        String path = sessionContext != null ? sessionContext.getPath() : null;
+        session.addMessageHandler(InputStream.class, message -> {
+            CountingInputStream input = new CountingInputStream(message);
+            long start = System.nanoTime();
+            try {
+                handleBinaryStream(session, input);
+            } catch (IOException e) {
+                onError(session, e);
+            } finally {
+                if (metrics.isEnabled()) {
+                    metrics.messageReceived(path, input.count);
+                    metrics.handlerLatency(path, System.nanoTime() - start);
+                }
+            }
+        });
+        session.addMessageHandler(Reader.class, message -> {
+            CountingReader reader = new CountingReader(message);
+            long start = System.nanoTime();
+            try {
+                handleTextStream(session, reader);
+            } catch (IOException e) {
+                onError(session, e);
+            } finally {
+                if (metrics.isEnabled()) {
+                    metrics.messageReceived(path, reader.count);
+                    metrics.handlerLatency(path, System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    private void doHandleComposite(Session session, IWSMetrics metrics, String path, WSCompositeBuffer message) {
+        try {
+            if (!metrics.isEnabled()) {
+                handleBinaryMessage(session, message);
+                return;
+            }
+            metrics.messageReceived(path, message.size());
+            long start = System.nanoTime();
+            try {
+                handleBinaryMessage(session, message);
+            } finally {
+                metrics.handlerLatency(path, System.nanoTime() - start);
+            }
+        } finally {
+            message.release();
+        }
+    }
+
+    /**
+     * 将任务提交至会话串行执行器, 队列已满且等待超时后以TRY_AGAIN_LATER关闭会话
+     *
+     * @param session  会话
+     * @param executor 会话串行执行器
+     * @param task     任务
+     * @return 若任务被拒绝则返回false
+     */
+    private boolean doExecute(Session session, WSSerialExecutor executor, Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn(String.format("Closing session %s: inbound queue is full", session.getId()));
+            }
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "INBOUND_QUEUE_FULL"));
+            } catch (IOException ex) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Failed to close session %s", session.getId()), RuntimeUtils.unwrapThrow(ex));
+                }
+            }
+            return false;
+        }
+    }
+
+    private void doCloseTooBig(Session session) {
+        if (LOG.isWarnEnabled()) {
+            LOG.warn(String.format("Closing session %s: aggregated message exceeds the maximum size", session.getId()));
+        }
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.TOO_BIG, "MESSAGE_TOO_BIG"));
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Failed to close session %s", session.getId()), RuntimeUtils.unwrapThrow(e));
+            }
+        }
+    }
+
+    /**
+     * 调用文字消息处理逻辑, 开启指标采集时记录消息大小及处理耗时
+     */
+    private void doHandleText(Session session, IWSMetrics metrics, String path, String message, boolean isLast) {
+        if (!metrics.isEnabled()) {
+            handleTextMessage(session, message, isLast);
+            return;
+        }
+        metrics.messageReceived(path, message.length());
+        long start = System.nanoTime();
+        try {
+            handleTextMessage(session, message, isLast);
+        } finally {
+            metrics.handlerLatency(path, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 调用二进制消息处理逻辑, 开启指标采集时记录消息大小及处理耗时
+     */
+    private void doHandleBinary(Session session, IWSMetrics metrics, String path, ByteBuffer message, boolean isLast) {
+        if (!metrics.isEnabled()) {
+            handleBinaryMessage(session, message, isLast);
+            return;
+        }
+        metrics.messageReceived(path, message.remaining());
+        long start = System.nanoTime();
+        try {
+            handleBinaryMessage(session, message, isLast);
+        } finally {
+            metrics.handlerLatency(path, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 在容器I/O线程中处理心跳Pong消息, 以保证RTT测量不受分发排队时间影响
+     */
+    private void doHeartbeat(Session session, PongMessage message) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        if (sessionContext != null && sessionContext.getOwner().getHeartbeat() != null) {
+            sessionContext.getOwner().getHeartbeat().onPong(session, message);
+        }
+    }
+
+    private void doDispatch(Session session, Runnable handler) {
+        try {
+            handler.run();
+        } catch (Throwable e) {
+            onError(session, e);
+        }
+    }
+
+    private static ByteBuffer doCopyBuffer(ByteBuffer source) {
+        ByteBuffer copied = ByteBuffer.allocate(source.remaining());
+        copied.put(source.duplicate());
+        copied.flip();
+        return copied;
+    }
+
     @Override
     public void onOpen(final Session session, EndpointConfig config) {
-        if (isPartialEnabled()) {
-            session.addMessageHandler(String.class, (message, isLast) -> handleTextMessage(session, message, isLast));
-            session.addMessageHandler(ByteBuffer.class, (message, isLast) -> handleBinaryMessage(session, message, isLast));
+        WSSessionContext sessionContext = doRegisterSession(session, config);
+        WSSerialExecutor inboundExecutor = null;
+        if (sessionContext != null && sessionContext.getEndpointSettings().getDispatchMode() == WSDispatcher.Mode.SHARDED) {
+            String shardKey = WSShardGroup.resolveKey(session, sessionContext.getOwner().getConfig().getShardKeyParam());
+            inboundExecutor = sessionContext.getOwner().getDispatcher().createShardedExecutor(sessionContext, shardKey);
+            sessionContext.setInboundExecutor(inboundExecutor);
+        } else if (sessionContext != null && sessionContext.getEndpointSettings().getDispatchMode() != WSDispatcher.Mode.DIRECT) {
+            inboundExecutor = sessionContext.getOwner().getDispatcher().createSerialExecutor(sessionContext.getEndpointSettings().getDispatchMode());
+            sessionContext.setInboundExecutor(inboundExecutor);
+        }
+        //
+        IWSMetrics metrics = sessionContext != null ? sessionContext.getMetrics() : NoOpWSMetrics.INSTANCE;
+        String path = sessionContext != null ? sessionContext.getPath() : null;
+        // 与doClose中的sessionClosed保持相同的记录条件, 保证活跃会话计数成对增减
+        if (sessionContext != null) {
+            metrics.sessionOpened(path);
+        }
+        //
+        WSMessageAggregator aggregator = null;
+        boolean streaming = isStreamingEnabled();
+        if (!streaming && sessionContext != null && isAggregationEnabled() && sessionContext.getOwner().getBufferPool() != null) {
+            aggregator = new WSMessageAggregator(sessionContext.getOwner().getBufferPool(), sessionContext.getOwner().getConfig().getAggregationMaxSize());
+            sessionContext.setMessageAggregator(aggregator);
+        }
+        //
+        if (streaming) {
+            doAddStreamingMessageHandlers(session);
+            if (inboundExecutor != null) {
+                doAddDispatchedPongHandler(session, inboundExecutor);
+            }
+        } else if (aggregator != null) {
+            doAddAggregatedMessageHandlers(session, aggregator, inboundExecutor);
+            if (inboundExecutor != null) {
+                doAddDispatchedPongHandler(session, inboundExecutor);
+            }
+        } else if (inboundExecutor != null) {
+            doAddDispatchedMessageHandlers(session, inboundExecutor);
+        } else if (isPartialEnabled()) {
+            session.addMessageHandler(String.class, (message, isLast) -> doHandleText(session, metrics, path, message, isLast));
+            session.addMessageHandler(ByteBuffer.class, (message, isLast) -> doHandleBinary(session, metrics, path, message, isLast));
         } else {
-            session.addMessageHandler(String.class, message -> handleTextMessage(session, message, true));
-            session.addMessageHandler(ByteBuffer.class, message -> handleBinaryMessage(session, message, true));
+            session.addMessageHandler(String.class, message -> doHandleText(session, metrics, path, message, true));
+            session.addMessageHandler(ByteBuffer.class, message -> doHandleBinary(session, metrics, path, message, true));
         }
         //
-        session.addMessageHandler(PongMessage.class, message -> handlePongMessage(session, message));
+        if (inboundExecutor == null) {
+            session.addMessageHandler(PongMessage.class, message -> {
+                doHeartbeat(session, message);
+                handlePongMessage(session, message);
+            });
+        }
         //
         try {
             afterConnectionOpened(session);
@@ -113,17 +565,45 @@ public abstract class AbstractWSListener extends Endpoint {
 
     @Override
     public void onClose(Session session, CloseReason closeReason) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        WSSerialExecutor inboundExecutor = sessionContext != null ? sessionContext.getInboundExecutor() : null;
+        if (inboundExecutor != null) {
+            // 保证关闭逻辑在该会话全部已接收消息处理完成后执行
+            try {
+                inboundExecutor.executeUnbounded(() -> doClose(session, closeReason));
+                return;
+            } catch (RejectedExecutionException ignored) {
+            }
+        }
+        doClose(session, closeReason);
+    }
+
+    private void doClose(Session session, CloseReason closeReason) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
         try {
             afterConnectionClosed(session, closeReason);
         } catch (Throwable e) {
             if (LOG.isErrorEnabled()) {
                 LOG.error(String.format("Unhandled error for %s", session), RuntimeUtils.unwrapThrow(e));
             }
+        } finally {
+            doUnregisterSession(session);
+            if (sessionContext != null) {
+                sessionContext.getMetrics().sessionClosed(sessionContext.getPath(), closeReason != null ? closeReason.getCloseCode().getCode() : CloseReason.CloseCodes.NO_STATUS_CODE.getCode());
+            }
+            if (sessionContext != null && sessionContext.getEndpointSettings() instanceof WSClientConnectionManager) {
+                ((WSClientConnectionManager) sessionContext.getEndpointSettings()).afterSessionClosed(session, closeReason);
+            }
         }
     }
 
     @Override
     public void onError(Session session, Throwable thr) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        if (sessionContext != null) {
+            sessionContext.getMetrics().sessionError(sessionContext.getPath());
+        }
+        // 会话资源统一由onClose释放(容器在因错误关闭会话后总会回调onClose), 避免排队中的任务及关闭逻辑访问已销毁的会话上下文
         try {
             handleError(session, thr);
         } catch (Throwable e) {
@@ -142,4 +622,78 @@ public abstract class AbstractWSListener extends Endpoint {
             }
         }
     }
+
+    /**
+     * 统计已读取字节数的输入流
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int length = super.read(b, off, len);
+            if (length > 0) {
+                count += length;
+            }
+            return length;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * 统计已读取字符数的字符流
+     */
+    private static final class CountingReader extends FilterReader {
+
+        private long count;
+
+        CountingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int length = super.read(cbuf, off, len);
+            if (length > 0) {
+                count += length;
+            }
+            return length;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket;
+
+/**
+ * 集群消息传输接口, 负责在同一通道内的全部节点之间发布已序列化的消息批次,
+ * 每个批次仅被发布一次, 由各节点通过本地会话注册表完成投递; 实现类须保证线程安全
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/17 下午2:00
+ * @since 2.0.0
+ */
+public interface IWSClusterTransport {
+
+    /**
+     * 启动传输并订阅指定通道
+     *
+     * @param channel  通道名称
+     * @param receiver 消息批次接收器
+     * @throws Exception 可能产生的异常
+     */
+    void start(String channel, Receiver receiver) throws Exception;
+
+    /**
+     * 向通道发布消息批次(发布者自身是否会收到该批次由实现决定, 调用方须自行忽略本节点发出的批次)
+     *
+     * @param batch 已序列化的消息批次
+     * @throws Exception 可能产生的异常
+     */
+    void publish(byte[] batch) throws Exception;
+
+    /**
+     * 停止传输并取消订阅
+     */
+    void stop();
+
+    /**
+     * 消息批次接收器
+     */
+    interface Receiver {
+
+        /**
+         * 收到消息批次
+         *
+         * @param batch 已序列化的消息批次
+         */
+        void onReceive(byte[] batch);
+    }
+}
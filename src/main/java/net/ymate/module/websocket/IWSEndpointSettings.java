@@ -0,0 +1,93 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket;
+
+import net.ymate.module.websocket.support.WSCodecTable;
+import net.ymate.module.websocket.support.WSDispatcher;
+import net.ymate.module.websocket.support.WSPerMessageDeflate;
+import net.ymate.module.websocket.support.WSWriteBatcher;
+
+/**
+ * 端点运行参数, 由服务端点配置及客户端连接管理器共同实现
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/11 上午9:52
+ * @since 2.0.0
+ */
+public interface IWSEndpointSettings {
+
+    /**
+     * 获取所属模块
+     *
+     * @return 返回所属模块实例
+     */
+    IWebSocket getOwner();
+
+    /**
+     * 是否开启出站消息批量写
+     *
+     * @return 返回true表示开启
+     */
+    boolean isBatching();
+
+    /**
+     * 是否开启出站消息按键合并模式
+     *
+     * @return 返回true表示开启
+     */
+    boolean isConflating();
+
+    /**
+     * 批量写最大延迟时间, 单位: 微秒
+     *
+     * @return 返回批量写最大延迟时间微秒值
+     */
+    long getBatchingMaxDelay();
+
+    /**
+     * 批量写最大累计字节数
+     *
+     * @return 返回批量写最大累计字节数
+     */
+    long getBatchingMaxBytes();
+
+    /**
+     * 获取当前端点的批量写统计
+     *
+     * @return 返回批量写统计对象
+     */
+    WSWriteBatcher.Stats getBatchingStats();
+
+    /**
+     * 入站消息分发模式
+     *
+     * @return 返回入站消息分发模式
+     */
+    WSDispatcher.Mode getDispatchMode();
+
+    /**
+     * 获取当前端点的编解码表, 首次调用时解析已声明的编码器及解码器
+     *
+     * @return 返回编解码表对象
+     */
+    WSCodecTable getCodecTable();
+
+    /**
+     * 获取permessage-deflate压缩扩展配置及压缩开销统计
+     *
+     * @return 若未开启压缩扩展协商则返回null
+     */
+    WSPerMessageDeflate getPerMessageDeflate();
+}
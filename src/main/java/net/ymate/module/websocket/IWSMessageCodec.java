@@ -0,0 +1,61 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket;
+
+import javax.websocket.DecodeException;
+import javax.websocket.EncodeException;
+
+/**
+ * 消息编解码器接口, 每种线格式对应一个WebSocket子协议, 客户端可通过子协议协商选择所需的格式;
+ * 编解码对象模型为: null、Boolean、Number、String、byte[]、List(Collection或数组)及Map, 实现类须保证线程安全
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 下午3:20
+ * @since 2.0.0
+ */
+public interface IWSMessageCodec {
+
+    /**
+     * 获取线格式对应的子协议名称
+     *
+     * @return 返回子协议名称
+     */
+    String getSubprotocol();
+
+    /**
+     * 是否以二进制帧传输
+     *
+     * @return 返回true表示二进制帧, 否则为文本帧
+     */
+    boolean isBinary();
+
+    /**
+     * 对消息进行编码
+     *
+     * @param value 消息对象
+     * @return 二进制格式返回ByteBuffer, 文本格式返回String
+     * @throws EncodeException 消息对象包含不支持的类型时将产生此异常
+     */
+    Object encode(Object value) throws EncodeException;
+
+    /**
+     * 对消息进行解码
+     *
+     * @param frame 消息内容(String或ByteBuffer)
+     * @return 返回解码后的消息对象
+     * @throws DecodeException 消息格式错误时将产生此异常
+     */
+    Object decode(Object frame) throws DecodeException;
+}
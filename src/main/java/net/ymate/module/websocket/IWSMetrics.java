@@ -0,0 +1,123 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket;
+
+/**
+ * 监控指标采集接口, 按服务端点路径或客户端URI统计会话、消息、字节数及处理耗时,
+ * 实现类的各方法将在容器I/O线程或分发线程中被频繁调用, 须保证线程安全且尽量避免内存分配
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 上午9:30
+ * @since 2.0.0
+ */
+public interface IWSMetrics {
+
+    /**
+     * 是否开启指标采集, 返回false时调用方将跳过大小计算及耗时测量
+     *
+     * @return 返回true表示开启
+     */
+    boolean isEnabled();
+
+    /**
+     * 会话开启
+     *
+     * @param path 端点路径或客户端URI
+     */
+    void sessionOpened(String path);
+
+    /**
+     * 会话关闭
+     *
+     * @param path      端点路径或客户端URI
+     * @param closeCode 关闭代码
+     */
+    void sessionClosed(String path, int closeCode);
+
+    /**
+     * 会话发生异常
+     *
+     * @param path 端点路径或客户端URI
+     */
+    void sessionError(String path);
+
+    /**
+     * 收到入站消息
+     *
+     * @param path  端点路径或客户端URI
+     * @param bytes 消息大小(文本消息按字符数计算)
+     */
+    void messageReceived(String path, long bytes);
+
+    /**
+     * 发送出站消息
+     *
+     * @param path  端点路径或客户端URI
+     * @param bytes 消息大小(文本消息按字符数计算)
+     */
+    void messageSent(String path, long bytes);
+
+    /**
+     * 记录入站消息处理耗时
+     *
+     * @param path  端点路径或客户端URI
+     * @param nanos 处理耗时, 单位: 纳秒
+     */
+    void handlerLatency(String path, long nanos);
+
+    /**
+     * 记录心跳往返时延(RTT)
+     *
+     * @param path  端点路径或客户端URI
+     * @param nanos 往返时延, 单位: 纳秒
+     */
+    void heartbeatRtt(String path, long nanos);
+
+    /**
+     * 客户端连接成功
+     *
+     * @param uri 客户端URI
+     */
+    void clientConnected(String uri);
+
+    /**
+     * 客户端连接失败
+     *
+     * @param uri 客户端URI
+     */
+    void clientConnectFailed(String uri);
+
+    /**
+     * 会话被分配至分片工作者
+     *
+     * @param shard 分片工作者索引
+     */
+    void shardSessionOpened(int shard);
+
+    /**
+     * 会话与分片工作者解除绑定
+     *
+     * @param shard 分片工作者索引
+     */
+    void shardSessionClosed(int shard);
+
+    /**
+     * 分片工作者开始执行任务
+     *
+     * @param shard     分片工作者索引
+     * @param waitNanos 任务提交至开始执行的等待耗时, 单位: 纳秒
+     */
+    void shardTaskExecuted(int shard, long waitNanos);
+}
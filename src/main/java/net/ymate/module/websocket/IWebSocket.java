@@ -15,14 +15,29 @@
  */
 package net.ymate.module.websocket;
 
+import net.ymate.module.websocket.support.WSAdmissionController;
+import net.ymate.module.websocket.support.WSAttributeSchema;
+import net.ymate.module.websocket.support.WSAttributeStore;
+import net.ymate.module.websocket.support.WSBroadcaster;
+import net.ymate.module.websocket.support.WSBufferPool;
 import net.ymate.module.websocket.support.WSClientConnectionManager;
+import net.ymate.module.websocket.support.WSClusterBridge;
+import net.ymate.module.websocket.support.WSDispatcher;
+import net.ymate.module.websocket.support.WSHeartbeat;
 import net.ymate.module.websocket.support.WSServerEndpointConfigurator;
+import net.ymate.module.websocket.support.WSSessionRegistry;
+import net.ymate.module.websocket.support.WSTopicRegistry;
 import net.ymate.platform.core.IApplication;
 import net.ymate.platform.core.beans.annotation.Ignored;
 import net.ymate.platform.core.support.IDestroyable;
 import net.ymate.platform.core.support.IInitialization;
 
 import javax.servlet.ServletContext;
+import javax.websocket.EncodeException;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * @author 刘镇 (suninformation@163.com) on 2017/07/12 上午 11:37
@@ -47,6 +62,189 @@ public interface IWebSocket extends IInitialization<IApplication>, IDestroyable
      */
     IWebSocketConfig getConfig();
 
+    /**
+     * 获取会话注册表
+     *
+     * @return 返回会话注册表对象
+     */
+    WSSessionRegistry getSessionRegistry();
+
+    /**
+     * 获取模块内部共享的调度线程池
+     *
+     * @return 返回调度线程池对象
+     */
+    ScheduledExecutorService getScheduler();
+
+    /**
+     * 获取用于执行可能阻塞的网络写操作(如批量写刷新)的线程池, 避免其占用共享调度线程
+     *
+     * @return 返回线程池对象
+     */
+    ExecutorService getIoExecutor();
+
+    /**
+     * 获取入站消息分发器
+     *
+     * @return 返回入站消息分发器对象
+     */
+    WSDispatcher getDispatcher();
+
+    /**
+     * 获取消息广播器
+     *
+     * @return 返回消息广播器对象
+     */
+    WSBroadcaster getBroadcaster();
+
+    /**
+     * 获取心跳调度器
+     *
+     * @return 返回心跳调度器对象, 若未开启心跳则返回null
+     */
+    WSHeartbeat getHeartbeat();
+
+    /**
+     * 获取监控指标采集器
+     *
+     * @return 返回监控指标采集器对象, 未开启指标采集时返回空实现
+     */
+    IWSMetrics getMetrics();
+
+    /**
+     * 获取分片消息聚合缓冲池
+     *
+     * @return 返回缓冲池对象
+     */
+    WSBufferPool getBufferPool();
+
+    /**
+     * 获取握手准入控制器
+     *
+     * @return 返回准入控制器对象
+     */
+    WSAdmissionController getAdmissionController();
+
+    /**
+     * 获取集群广播桥接
+     *
+     * @return 返回集群广播桥接对象, 若未配置集群消息传输则返回null
+     */
+    WSClusterBridge getClusterBridge();
+
+    /**
+     * 获取主题订阅注册表
+     *
+     * @return 返回主题订阅注册表对象
+     */
+    WSTopicRegistry getTopicRegistry();
+
+    /**
+     * 获取指定属性结构定义对应的会话属性存储, 若不存在则创建
+     *
+     * @param schema 属性结构定义
+     * @return 返回会话属性存储对象
+     */
+    WSAttributeStore getAttributeStore(WSAttributeSchema schema);
+
+    /**
+     * 向指定会话发送消息, 消息由会话所属端点的编解码表编码, 若已启用出站队列则消息将进入队列等待发送
+     *
+     * @param session 会话
+     * @param payload 消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 若消息被丢弃则返回false
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    boolean send(Session session, Object payload) throws EncodeException, IOException;
+
+    /**
+     * 向指定会话发送携带键的消息, 若会话所属端点已开启按键合并模式, 则该键尚未发送的消息将被替换为当前消息
+     *
+     * @param session 会话
+     * @param key     消息键
+     * @param payload 消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 若消息被丢弃则返回false
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    boolean send(Session session, String key, Object payload) throws EncodeException, IOException;
+
+    /**
+     * 向指定端点路径(或客户端URI)下的全部会话广播消息, 消息仅被编码一次
+     *
+     * @param path    端点路径或客户端URI
+     * @param payload 消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 返回本次广播的目标会话数量
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    int broadcast(String path, Object payload) throws EncodeException, IOException;
+
+    /**
+     * 向与指定自定义键(如用户ID、租户等)绑定的全部会话广播消息, 消息仅被编码一次
+     *
+     * @param group   自定义键
+     * @param payload 消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 返回本次广播的目标会话数量
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    int broadcastGroup(String group, Object payload) throws EncodeException, IOException;
+
+    /**
+     * 向集群内全部节点中指定端点路径(或客户端URI)下的会话广播消息, 未配置集群消息传输时等同于broadcast方法,
+     * 对象类型的消息由该端点的编解码表编码一次后再发布
+     *
+     * @param path    端点路径或客户端URI
+     * @param payload 消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 返回本节点的目标会话数量
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    int publish(String path, Object payload) throws EncodeException, IOException;
+
+    /**
+     * 向集群内全部节点中与指定自定义键绑定的会话广播消息, 未配置集群消息传输时等同于broadcastGroup方法,
+     * 对象类型的消息由本节点任一目标会话所属端点的编解码表编码一次后再发布
+     *
+     * @param group   自定义键
+     * @param payload 消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 返回本节点的目标会话数量
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    int publishGroup(String group, Object payload) throws EncodeException, IOException;
+
+    /**
+     * 订阅主题, 会话关闭时将自动取消其全部订阅
+     *
+     * @param session 会话
+     * @param topic   主题, 以'/'分隔层级, 支持'+'及'#'通配符
+     * @return 若会话未注册或已订阅该主题则返回false
+     */
+    boolean subscribe(Session session, String topic);
+
+    /**
+     * 取消订阅主题
+     *
+     * @param session 会话
+     * @param topic   订阅时使用的主题
+     * @return 若会话未订阅该主题则返回false
+     */
+    boolean unsubscribe(Session session, String topic);
+
+    /**
+     * 向集群内全部节点中订阅指定主题的会话广播消息, 未配置集群消息传输时仅向本节点订阅会话广播
+     *
+     * @param topic   主题, 不可包含通配符
+     * @param payload 消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 返回本节点的目标会话数量
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    int publishTopic(String topic, Object payload) throws EncodeException, IOException;
+
     /**
      * 注册服务端点监听器
      *
@@ -15,6 +15,8 @@
  */
 package net.ymate.module.websocket;
 
+import net.ymate.module.websocket.support.WSDispatcher;
+import net.ymate.module.websocket.support.WSOutboundQueue;
 import net.ymate.platform.core.beans.annotation.Ignored;
 import net.ymate.platform.core.support.IInitialization;
 
@@ -35,6 +37,96 @@ public interface IWebSocketConfig extends IInitialization<IWebSocket> {
 
     String DEFAULT_MAX_BINARY_MESSAGE_BUFFER_SIZE = "default_max_binary_message_buffer_size";
 
+    String BROADCAST_THREAD_COUNT = "broadcast_thread_count";
+
+    String BROADCAST_CHUNK_SIZE = "broadcast_chunk_size";
+
+    String BROADCAST_MAX_PENDING = "broadcast_max_pending";
+
+    String OUTBOUND_QUEUE_MAX_MESSAGES = "outbound_queue_max_messages";
+
+    String OUTBOUND_QUEUE_MAX_BYTES = "outbound_queue_max_bytes";
+
+    String OUTBOUND_QUEUE_OVERFLOW_POLICY = "outbound_queue_overflow_policy";
+
+    String BATCHING_ENABLED = "batching_enabled";
+
+    String BATCHING_MAX_DELAY = "batching_max_delay";
+
+    String BATCHING_MAX_BYTES = "batching_max_bytes";
+
+    String DISPATCH_POOL_SIZE = "dispatch_pool_size";
+
+    String DISPATCH_QUEUE_CAPACITY = "dispatch_queue_capacity";
+
+    String CLIENT_EXECUTOR_MODE = "client_executor_mode";
+
+    String CLIENT_EXECUTOR_POOL_SIZE = "client_executor_pool_size";
+
+    String HEARTBEAT_INTERVAL = "heartbeat_interval";
+
+    String HEARTBEAT_MAX_MISSED = "heartbeat_max_missed";
+
+    String HEARTBEAT_WHEEL_SIZE = "heartbeat_wheel_size";
+
+    String METRICS_ENABLED = "metrics_enabled";
+
+    String METRICS_CLASS = "metrics_class";
+
+    String AGGREGATION_SLAB_SIZE = "aggregation_slab_size";
+
+    String AGGREGATION_POOL_MAX_SLABS = "aggregation_pool_max_slabs";
+
+    String AGGREGATION_MAX_SIZE = "aggregation_max_size";
+
+    String DEFLATE_ENABLED = "deflate_enabled";
+
+    String DEFLATE_LEVEL = "deflate_level";
+
+    String DEFLATE_SERVER_MAX_WINDOW_BITS = "deflate_server_max_window_bits";
+
+    String DEFLATE_SERVER_NO_CONTEXT_TAKEOVER = "deflate_server_no_context_takeover";
+
+    String DEFLATE_CLIENT_NO_CONTEXT_TAKEOVER = "deflate_client_no_context_takeover";
+
+    String DEFLATE_MIN_SIZE = "deflate_min_size";
+
+    String DEFLATE_SAMPLE_RATE = "deflate_sample_rate";
+
+    String ADMISSION_HANDSHAKE_RATE = "admission_handshake_rate";
+
+    String ADMISSION_HANDSHAKE_BURST = "admission_handshake_burst";
+
+    String ADMISSION_ADDRESS_RATE = "admission_address_rate";
+
+    String ADMISSION_ADDRESS_BURST = "admission_address_burst";
+
+    String ADMISSION_ADDRESS_MAX_ENTRIES = "admission_address_max_entries";
+
+    String ADMISSION_TRUST_FORWARDED = "admission_trust_forwarded";
+
+    String ADMISSION_MAX_SESSIONS = "admission_max_sessions";
+
+    String CLUSTER_TRANSPORT_CLASS = "cluster_transport_class";
+
+    String CLUSTER_CHANNEL = "cluster_channel";
+
+    String CLUSTER_BATCH_DELAY = "cluster_batch_delay";
+
+    String CLUSTER_BATCH_MAX_BYTES = "cluster_batch_max_bytes";
+
+    String SHARD_COUNT = "shard_count";
+
+    String SHARD_KEY_PARAM = "shard_key_param";
+
+    String ATTRIBUTE_OFF_HEAP = "attribute_off_heap";
+
+    String INBOUND_QUEUE_CAPACITY = "inbound_queue_capacity";
+
+    String INBOUND_QUEUE_TIMEOUT = "inbound_queue_timeout";
+
+    String ADMISSION_TRUSTED_HOPS = "admission_trusted_hops";
+
     /**
      * 模块是否已启用, 默认值: true
      *
@@ -69,4 +161,319 @@ public interface IWebSocketConfig extends IInitialization<IWebSocket> {
      * @return 返回二进制消息默认最大缓冲区大小
      */
     int getDefaultMaxBinaryMessageBufferSize();
-}
\ No newline at end of file
+
+    /**
+     * 广播消息分发线程数量, 默认值: 0 (即CPU核心数)
+     *
+     * @return 返回广播消息分发线程数量
+     */
+    int getBroadcastThreadCount();
+
+    /**
+     * 广播消息分片大小(即每个分发任务负责发送的会话数量), 默认值: 512
+     *
+     * @return 返回广播消息分片大小
+     */
+    int getBroadcastChunkSize();
+
+    /**
+     * 单个会话允许的最大未完成异步发送数量, 超出时该会话将跳过本次广播, 默认值: 16
+     *
+     * @return 返回单个会话允许的最大未完成异步发送数量
+     */
+    int getBroadcastMaxPending();
+
+    /**
+     * 会话出站队列最大积压消息数量, 默认值: 0 (即不启用出站队列)
+     *
+     * @return 返回会话出站队列最大积压消息数量
+     */
+    int getOutboundQueueMaxMessages();
+
+    /**
+     * 会话出站队列最大积压字节数, 默认值: 0 (即不限制)
+     *
+     * @return 返回会话出站队列最大积压字节数
+     */
+    long getOutboundQueueMaxBytes();
+
+    /**
+     * 会话出站队列溢出策略, 可选值: DROP_OLDEST|DROP_NEWEST|COALESCE_BY_KEY|CLOSE, 默认值: DROP_OLDEST
+     *
+     * @return 返回会话出站队列溢出策略
+     */
+    WSOutboundQueue.OverflowPolicy getOutboundQueueOverflowPolicy();
+
+    /**
+     * 是否开启出站消息批量写, 默认值: false
+     *
+     * @return 返回true表示开启
+     */
+    boolean isBatchingEnabled();
+
+    /**
+     * 批量写最大延迟时间, 单位: 微秒, 默认值: 1000
+     *
+     * @return 返回批量写最大延迟时间微秒值
+     */
+    long getBatchingMaxDelay();
+
+    /**
+     * 批量写最大累计字节数, 达到后立即刷新, 默认值: 8192
+     *
+     * @return 返回批量写最大累计字节数
+     */
+    long getBatchingMaxBytes();
+
+    /**
+     * 入站消息分发线程池大小, 默认值: 0 (即CPU核心数*2)
+     *
+     * @return 返回入站消息分发线程池大小
+     */
+    int getDispatchPoolSize();
+
+    /**
+     * 入站消息分发线程池任务队列容量, 队列已满时由容器I/O线程直接执行, 默认值: 10000
+     *
+     * @return 返回入站消息分发线程池任务队列容量
+     */
+    int getDispatchQueueCapacity();
+
+    /**
+     * 客户端连接任务共享执行器类型, 可选值: VIRTUAL|POOL, 其中VIRTUAL需JDK21+, 否则自动退化为POOL, 默认值: VIRTUAL
+     *
+     * @return 返回客户端连接任务共享执行器类型
+     */
+    WSDispatcher.Mode getClientExecutorMode();
+
+    /**
+     * 客户端连接任务共享线程池大小(仅在POOL模式下有效), 默认值: 2
+     *
+     * @return 返回客户端连接任务共享线程池大小
+     */
+    int getClientExecutorPoolSize();
+
+    /**
+     * 心跳(Ping)发送间隔, 单位: 毫秒, 默认值: 0 (即不发送心跳)
+     *
+     * @return 返回心跳发送间隔
+     */
+    long getHeartbeatInterval();
+
+    /**
+     * 允许连续未收到Pong响应的最大次数, 超过后将关闭会话, 默认值: 3
+     *
+     * @return 返回允许连续未收到Pong响应的最大次数
+     */
+    int getHeartbeatMaxMissed();
+
+    /**
+     * 心跳时间轮槽位数量, 会话将均匀分布于各槽位以平摊Ping发送压力, 默认值: 64
+     *
+     * @return 返回心跳时间轮槽位数量
+     */
+    int getHeartbeatWheelSize();
+
+    /**
+     * 是否开启监控指标采集, 默认值: false
+     *
+     * @return 返回true表示开启
+     */
+    boolean isMetricsEnabled();
+
+    /**
+     * 自定义监控指标采集接口实现类(IWSMetrics), 默认值: 空(即使用DefaultWSMetrics)
+     *
+     * @return 返回自定义监控指标采集接口实现类名称
+     */
+    String getMetricsClass();
+
+    /**
+     * 分片消息聚合使用的直接内存缓冲块大小, 单位: 字节, 默认值: 65536
+     *
+     * @return 返回分片消息聚合缓冲块大小
+     */
+    int getAggregationSlabSize();
+
+    /**
+     * 缓冲池最多保留的空闲缓冲块数量, 超出部分将直接释放, 默认值: 256
+     *
+     * @return 返回缓冲池最多保留的空闲缓冲块数量
+     */
+    int getAggregationPoolMaxSlabs();
+
+    /**
+     * 单条聚合消息允许的最大长度, 超出时将以TOO_BIG关闭会话, 单位: 字节, 默认值: 16777216
+     *
+     * @return 返回单条聚合消息允许的最大长度
+     */
+    int getAggregationMaxSize();
+
+    /**
+     * 是否开启permessage-deflate压缩扩展协商, 默认值: false
+     *
+     * @return 返回true表示开启
+     */
+    boolean isDeflateEnabled();
+
+    /**
+     * 压缩级别(0-9), 用于支持该参数的容器及压缩开销采样, 默认值: 6
+     *
+     * @return 返回压缩级别
+     */
+    int getDeflateLevel();
+
+    /**
+     * 服务端压缩滑动窗口大小(server_max_window_bits, 8-15), 服务端仅在容器已安装的扩展声明支持该参数时附加, 默认值: 15
+     *
+     * @return 返回服务端压缩滑动窗口大小
+     */
+    int getDeflateServerMaxWindowBits();
+
+    /**
+     * 服务端是否在每条消息后重置压缩上下文(server_no_context_takeover), 可降低每个会话的内存占用, 服务端仅在容器已安装的扩展声明支持该参数时附加, 默认值: false
+     *
+     * @return 返回true表示重置
+     */
+    boolean isDeflateServerNoContextTakeover();
+
+    /**
+     * 是否要求客户端在每条消息后重置压缩上下文(client_no_context_takeover), 服务端仅在容器已安装的扩展声明支持该参数时附加, 默认值: false
+     *
+     * @return 返回true表示要求重置
+     */
+    boolean isDeflateClientNoContextTakeover();
+
+    /**
+     * 压缩的最小消息大小, 小于此值的消息视为不压缩, 单位: 字节, 默认值: 256
+     *
+     * @return 返回压缩的最小消息大小
+     */
+    int getDeflateMinSize();
+
+    /**
+     * 压缩开销采样频率, 每N条出站消息采样一条以统计压缩率及CPU耗时, 默认值: 100 (0表示不采样)
+     *
+     * @return 返回压缩开销采样频率
+     */
+    int getDeflateSampleRate();
+
+    /**
+     * 全局每秒允许的新握手数量, 超出时以429响应拒绝, 默认值: 0 (即不限制)
+     *
+     * @return 返回全局每秒允许的新握手数量
+     */
+    int getAdmissionHandshakeRate();
+
+    /**
+     * 全局握手突发容量, 默认值: 0 (即与每秒允许的握手数量相同)
+     *
+     * @return 返回全局握手突发容量
+     */
+    int getAdmissionHandshakeBurst();
+
+    /**
+     * 单个客户端地址每秒允许的新握手数量, 超出时以429响应拒绝, 默认值: 0 (即不限制)
+     *
+     * @return 返回单个客户端地址每秒允许的新握手数量
+     */
+    int getAdmissionAddressRate();
+
+    /**
+     * 单个客户端地址的握手突发容量, 默认值: 0 (即与每秒允许的握手数量相同)
+     *
+     * @return 返回单个客户端地址的握手突发容量
+     */
+    int getAdmissionAddressBurst();
+
+    /**
+     * 按客户端地址限流时最多跟踪的地址数量, 已满且无过期条目可回收时新地址的握手将被拒绝, 默认值: 65536
+     *
+     * @return 返回最多跟踪的客户端地址数量
+     */
+    int getAdmissionAddressMaxEntries();
+
+    /**
+     * 是否信任X-Forwarded-For请求头中的客户端地址(仅在部署于可信反向代理之后时开启), 默认值: false
+     *
+     * @return 返回true表示信任
+     */
+    boolean isAdmissionTrustForwarded();
+
+    /**
+     * 每个服务端点路径允许的最大并发会话数量, 超出时以503响应拒绝, 可被@WSServer(maxSessions)覆盖, 默认值: 0 (即不限制)
+     *
+     * @return 返回每个服务端点路径允许的最大并发会话数量
+     */
+    int getAdmissionMaxSessions();
+
+    /**
+     * 集群消息传输接口实现类(IWSClusterTransport), 默认值: 空(即不开启集群广播桥接)
+     *
+     * @return 返回集群消息传输接口实现类名称
+     */
+    String getClusterTransportClass();
+
+    /**
+     * 集群消息通道名称, 同一通道内的节点相互转发广播消息, 默认值: ymp.websocket
+     *
+     * @return 返回集群消息通道名称
+     */
+    String getClusterChannel();
+
+    /**
+     * 集群消息批量发布的最大延迟时间, 单位: 毫秒, 默认值: 5
+     *
+     * @return 返回集群消息批量发布的最大延迟时间
+     */
+    long getClusterBatchDelay();
+
+    /**
+     * 集群消息单个批次的最大累计字节数, 达到后立即发布, 默认值: 65536
+     *
+     * @return 返回集群消息单个批次的最大累计字节数
+     */
+    int getClusterBatchMaxBytes();
+
+    /**
+     * 分发模式为SHARDED时的单线程工作者数量, 默认值: 0(即CPU核心数)
+     *
+     * @return 返回分片工作者数量
+     */
+    int getShardCount();
+
+    /**
+     * 分发模式为SHARDED时用于计算会话分片的路径参数或请求参数名称(如用户ID), 默认值: 空(即按会话ID计算)
+     *
+     * @return 返回分片键参数名称
+     */
+    String getShardKeyParam();
+
+    /**
+     * 会话属性存储是否使用直接内存(堆外), 默认值: true
+     *
+     * @return 返回true表示使用直接内存
+     */
+    boolean isAttributeOffHeap();
+
+    /**
+     * 单个会话入站消息串行队列容量, 队列已满时容器I/O线程将等待队列空闲(背压), 小于等于0表示不限制, 默认值: 1024
+     *
+     * @return 返回单个会话入站消息串行队列容量
+     */
+    int getInboundQueueCapacity();
+
+    /**
+     * 单个会话入站消息串行队列已满时容器I/O线程的最大等待时间, 超时后以1013(TRY_AGAIN_LATER)关闭会话, 单位: 毫秒, 默认值: 1000
+     *
+     * @return 返回入站消息串行队列已满时的最大等待时间
+     */
+    long getInboundQueueTimeout();
+
+    /**
+     * 信任X-Forwarded-For时受信任的反向代理层数, 客户端地址取自该请求头从右往左第N个条目(各代理依次追加, 最左侧条目可被客户端伪造), 默认值: 1
+     *
+     * @return 返回受信任的反向代理层数
+     */
+    int getAdmissionTrustedHops();
+}
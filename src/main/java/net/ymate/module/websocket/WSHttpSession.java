@@ -22,6 +22,9 @@ import javax.websocket.server.HandshakeRequest;
 import javax.websocket.server.ServerEndpointConfig;
 
 /**
+ * 注意: 该方式将完整的HttpSession对象保存在端点配置属性中并在连接期间一直持有, 若仅需读取少量属性,
+ * 建议使用WSServer.httpSessionAttributes或WSHttpSessionSnapshot代替
+ *
  * @author 刘镇 (suninformation@163.com) on 2017/7/18 下午2:56
  * @since 1.0
  */
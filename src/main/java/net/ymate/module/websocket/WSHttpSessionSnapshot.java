@@ -0,0 +1,182 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.servlet.http.HttpSession;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerEndpointConfig;
+import java.security.Principal;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * HttpSession快照: 于握手阶段仅复制已声明的属性(如用户ID、角色等)形成不可变对象, 并在会话开启时移入WebSocket会话属性中,
+ * 使WebSocket连接不再持有完整的HttpSession引用; 握手至会话开启期间, 快照以本次握手对应的端点配置对象(容器为每次握手创建的副本)为键暂存,
+ * 而非写入端点配置的共享属性, 从而避免并发握手之间相互覆盖; 属性值按引用复制, 应为不可变的小对象
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 下午5:20
+ * @since 2.0.0
+ */
+public final class WSHttpSessionSnapshot {
+
+    private static final Log LOG = LogFactory.getLog(WSHttpSessionSnapshot.class);
+
+    public static final String KEY = WSHttpSessionSnapshot.class.getName();
+
+    /**
+     * 以握手对应的端点配置对象为键暂存快照, 采用弱引用键, 握手失败而未开启的会话其快照随端点配置对象一并回收
+     */
+    private static final Map<EndpointConfig, WSHttpSessionSnapshot> PENDING = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final AtomicBoolean SHARED_CONFIG_WARNED = new AtomicBoolean();
+
+    private final String id;
+
+    private final String principalName;
+
+    private final Map<String, Object> attributes;
+
+    private WSHttpSessionSnapshot(String id, String principalName, Map<String, Object> attributes) {
+        this.id = id;
+        this.principalName = principalName;
+        this.attributes = attributes;
+    }
+
+    /**
+     * 根据握手请求创建快照
+     *
+     * @param request        握手请求
+     * @param attributeNames 需要复制的HttpSession属性名称集合
+     * @return 若请求中不存在HttpSession则返回null
+     */
+    public static WSHttpSessionSnapshot create(HandshakeRequest request, String... attributeNames) {
+        HttpSession httpSession = (HttpSession) request.getHttpSession();
+        if (httpSession == null) {
+            return null;
+        }
+        Map<String, Object> attributes;
+        if (attributeNames == null || attributeNames.length == 0) {
+            attributes = Collections.emptyMap();
+        } else {
+            attributes = new HashMap<>(attributeNames.length * 2);
+            try {
+                for (String name : attributeNames) {
+                    Object value = httpSession.getAttribute(name);
+                    if (value != null) {
+                        attributes.put(name, value);
+                    }
+                }
+            } catch (IllegalStateException e) {
+                // HttpSession已失效
+                return null;
+            }
+            attributes = attributes.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(attributes);
+        }
+        Principal principal = request.getUserPrincipal();
+        return new WSHttpSessionSnapshot(httpSession.getId(), principal != null ? principal.getName() : null, attributes);
+    }
+
+    /**
+     * 根据握手请求创建快照并以本次握手对应的端点配置对象为键暂存, 待会话开启时由AbstractWSListener移入会话属性;
+     * 若容器未为本次握手提供独立的端点配置副本(即传入的是全部连接共享的端点配置), 快照无法可靠地关联至对应会话, 将不予暂存
+     *
+     * @param config         本次握手对应的端点配置
+     * @param request        握手请求
+     * @param attributeNames 需要复制的HttpSession属性名称集合
+     * @return 若请求中不存在HttpSession则返回null
+     */
+    public static WSHttpSessionSnapshot bind(ServerEndpointConfig config, HandshakeRequest request, String... attributeNames) {
+        WSHttpSessionSnapshot snapshot = create(request, attributeNames);
+        if (snapshot != null) {
+            if (isShared(config)) {
+                if (SHARED_CONFIG_WARNED.compareAndSet(false, true) && LOG.isWarnEnabled()) {
+                    LOG.warn(String.format("The container does not provide a per-handshake endpoint config for %s, HttpSession snapshots are disabled.", config.getPath()));
+                }
+                return snapshot;
+            }
+            PENDING.put(config, snapshot);
+        }
+        return snapshot;
+    }
+
+    private static boolean isShared(ServerEndpointConfig config) {
+        ServerEndpointConfig.Configurator configurator = config.getConfigurator();
+        if (configurator == config) {
+            return true;
+        }
+        return configurator instanceof ServerEndpointConfig && ((ServerEndpointConfig) configurator).getUserProperties() == config.getUserProperties();
+    }
+
+    /**
+     * 将握手阶段暂存的快照移入会话属性
+     *
+     * @param session 会话
+     * @param config  会话开启时容器传入的端点配置(与握手时为同一对象)
+     * @return 若不存在快照则返回null
+     */
+    public static WSHttpSessionSnapshot transfer(Session session, EndpointConfig config) {
+        WSHttpSessionSnapshot snapshot = config != null ? PENDING.remove(config) : null;
+        if (snapshot != null) {
+            session.getUserProperties().put(KEY, snapshot);
+            return snapshot;
+        }
+        return null;
+    }
+
+    /**
+     * @param session 会话
+     * @return 返回会话对应的快照, 若不存在则返回null
+     */
+    public static WSHttpSessionSnapshot get(Session session) {
+        return (WSHttpSessionSnapshot) session.getUserProperties().get(KEY);
+    }
+
+    /**
+     * @return 返回HttpSession的ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return 返回握手请求中的认证用户名称, 若未认证则返回null
+     */
+    public String getPrincipalName() {
+        return principalName;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(String name) {
+        return (T) attributes.get(name);
+    }
+
+    /**
+     * @return 返回已复制的全部属性(只读)
+     */
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WSHttpSessionSnapshot{id='%s', principalName='%s', attributes=%s}", id, principalName, attributes.keySet());
+    }
+}
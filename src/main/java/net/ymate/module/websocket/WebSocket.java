@@ -19,11 +19,32 @@ import net.ymate.module.websocket.annotation.WSClient;
 import net.ymate.module.websocket.annotation.WSServer;
 import net.ymate.module.websocket.handle.WSClientHandler;
 import net.ymate.module.websocket.handle.WSServerHandler;
+import net.ymate.module.websocket.impl.DefaultWSMetrics;
 import net.ymate.module.websocket.impl.DefaultWebSocketConfig;
+import net.ymate.module.websocket.impl.NoOpWSMetrics;
+import net.ymate.module.websocket.support.WSAdmissionController;
+import net.ymate.module.websocket.support.WSAdmissionFilter;
+import net.ymate.module.websocket.support.WSAttributeSchema;
+import net.ymate.module.websocket.support.WSAttributeStore;
+import net.ymate.module.websocket.support.WSBroadcaster;
+import net.ymate.module.websocket.support.WSBufferPool;
 import net.ymate.module.websocket.support.WSClientConnectionManager;
+import net.ymate.module.websocket.support.WSClusterBridge;
+import net.ymate.module.websocket.support.WSDispatcher;
+import net.ymate.module.websocket.support.WSEndpointFactory;
+import net.ymate.module.websocket.support.WSHeartbeat;
+import net.ymate.module.websocket.support.WSMessageCodecs;
+import net.ymate.module.websocket.support.WSOriginMatcher;
+import net.ymate.module.websocket.support.WSPerMessageDeflate;
+import net.ymate.module.websocket.support.WSReconnectPolicy;
 import net.ymate.module.websocket.support.WSServerEndpointConfigurator;
+import net.ymate.module.websocket.support.WSSessionContext;
+import net.ymate.module.websocket.support.WSSessionRegistry;
+import net.ymate.module.websocket.support.WSShardGroup;
+import net.ymate.module.websocket.support.WSTopicRegistry;
 import net.ymate.platform.commons.util.ClassUtils;
 import net.ymate.platform.commons.util.RuntimeUtils;
+import net.ymate.platform.commons.util.ThreadUtils;
 import net.ymate.platform.core.*;
 import net.ymate.platform.core.beans.BeanMeta;
 import net.ymate.platform.core.beans.IBeanLoadFactory;
@@ -38,14 +59,29 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterRegistration;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.websocket.ClientEndpointConfig;
+import javax.websocket.EncodeException;
+import javax.websocket.Session;
 import javax.websocket.server.ServerContainer;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author 刘镇 (suninformation@163.com) on 2017/07/12 上午 11:37
@@ -69,6 +105,32 @@ public final class WebSocket implements IModule, IWebSocket {
 
     private ServerContainer serverContainer;
 
+    private WSSessionRegistry sessionRegistry;
+
+    private WSBroadcaster broadcaster;
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService ioExecutor;
+
+    private WSDispatcher dispatcher;
+
+    private WSHeartbeat heartbeat;
+
+    private IWSMetrics metrics = NoOpWSMetrics.INSTANCE;
+
+    private WSBufferPool bufferPool;
+
+    private WSAdmissionController admissionController;
+
+    private WSClusterBridge clusterBridge;
+
+    private WSTopicRegistry topicRegistry;
+
+    private final Map<WSAttributeSchema, WSAttributeStore> attributeStores = new ConcurrentHashMap<>();
+
+    private ExecutorService clientExecutor;
+
     public static IWebSocket get() {
         IWebSocket inst = instance;
         if (inst == null) {
@@ -131,6 +193,38 @@ public final class WebSocket implements IModule, IWebSocket {
                 config.initialize(this);
             }
             if (config.isEnabled()) {
+                if (config.isMetricsEnabled()) {
+                    if (StringUtils.isNotBlank(config.getMetricsClass())) {
+                        metrics = ClassUtils.impl(config.getMetricsClass(), IWSMetrics.class, getClass());
+                    }
+                    if (metrics == null || metrics == NoOpWSMetrics.INSTANCE) {
+                        metrics = new DefaultWSMetrics();
+                    }
+                }
+                sessionRegistry = new WSSessionRegistry();
+                bufferPool = new WSBufferPool(config.getAggregationSlabSize(), config.getAggregationPoolMaxSlabs());
+                scheduler = ThreadUtils.newScheduledThreadPool(1);
+                ioExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), WSDispatcher.newThreadFactory("ws-io-"));
+                admissionController = new WSAdmissionController(config, sessionRegistry);
+                if (admissionController.isAddressLimited()) {
+                    scheduler.scheduleWithFixedDelay(admissionController::evictIdle, 1, 1, TimeUnit.SECONDS);
+                }
+                dispatcher = new WSDispatcher(config.getDispatchPoolSize(), config.getDispatchQueueCapacity(), new WSShardGroup(config.getShardCount(), config.getDispatchQueueCapacity(), config.getInboundQueueTimeout(), metrics), config.getInboundQueueCapacity(), config.getInboundQueueTimeout());
+                broadcaster = new WSBroadcaster(ThreadUtils.newFixedThreadPool(config.getBroadcastThreadCount()), config.getBroadcastChunkSize(), config.getBroadcastMaxPending());
+                topicRegistry = new WSTopicRegistry(sessionRegistry, broadcaster);
+                if (config.getHeartbeatInterval() > 0) {
+                    heartbeat = new WSHeartbeat(scheduler, dispatcher.getExecutor(WSDispatcher.Mode.POOL), ioExecutor, config.getHeartbeatInterval(), config.getHeartbeatMaxMissed(), config.getHeartbeatWheelSize());
+                }
+                if (StringUtils.isNotBlank(config.getClusterTransportClass())) {
+                    IWSClusterTransport clusterTransport = ClassUtils.impl(config.getClusterTransportClass(), IWSClusterTransport.class, getClass());
+                    if (clusterTransport == null) {
+                        throw new IllegalArgumentException(String.format("Invalid cluster transport class: %s", config.getClusterTransportClass()));
+                    }
+                    // 使用独立的调度线程, 避免传输层阻塞影响心跳时间轮
+                    clusterBridge = new WSClusterBridge(this, clusterTransport, Executors.newSingleThreadScheduledExecutor(WSDispatcher.newThreadFactory("ws-cluster-")), config.getClusterBatchDelay(), config.getClusterBatchMaxBytes());
+                    clusterBridge.start(config.getClusterChannel());
+                }
+                //
                 owner.getEvents().registerListener(Events.MODE.NORMAL, WebEvent.class, (IEventListener<WebEvent>) context -> {
                     if (context.getEventName() == WebEvent.EVENT.SERVLET_CONTEXT_INITIALIZED) {
                         registerServerEndpoints(((ServletContextEvent) context.getEventSource()).getServletContext());
@@ -156,8 +250,56 @@ public final class WebSocket implements IModule, IWebSocket {
             if (config.isEnabled()) {
                 for (WSClientConnectionManager clientConnectionManager : clientConnectionManagers) {
                     clientConnectionManager.stop();
+                    clientConnectionManager.getCodecTable().destroy();
+                }
+                for (WSServerEndpointConfigurator serverEndpointConfigurator : serverEndpointConfigurators) {
+                    serverEndpointConfigurator.getCodecTable().destroy();
                 }
                 serverContainer = null;
+                //
+                if (clusterBridge != null) {
+                    clusterBridge.stop();
+                    clusterBridge = null;
+                }
+                if (broadcaster != null) {
+                    broadcaster.shutdown();
+                    broadcaster = null;
+                }
+                if (heartbeat != null) {
+                    heartbeat.shutdown();
+                    heartbeat = null;
+                }
+                if (scheduler != null) {
+                    scheduler.shutdown();
+                    scheduler = null;
+                }
+                if (ioExecutor != null) {
+                    ioExecutor.shutdown();
+                    ioExecutor = null;
+                }
+                if (dispatcher != null) {
+                    dispatcher.shutdown();
+                    dispatcher = null;
+                }
+                if (clientExecutor != null) {
+                    clientExecutor.shutdown();
+                    clientExecutor = null;
+                }
+                attributeStores.clear();
+                if (topicRegistry != null) {
+                    topicRegistry.clear();
+                    topicRegistry = null;
+                }
+                if (sessionRegistry != null) {
+                    sessionRegistry.clear();
+                    sessionRegistry = null;
+                }
+                if (bufferPool != null) {
+                    bufferPool.clear();
+                    bufferPool = null;
+                }
+                admissionController = null;
+                metrics = NoOpWSMetrics.INSTANCE;
             }
             //
             config = null;
@@ -175,6 +317,192 @@ public final class WebSocket implements IModule, IWebSocket {
         return config;
     }
 
+    @Override
+    public WSSessionRegistry getSessionRegistry() {
+        return sessionRegistry;
+    }
+
+    @Override
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    @Override
+    public ExecutorService getIoExecutor() {
+        return ioExecutor;
+    }
+
+    @Override
+    public WSDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    public WSBroadcaster getBroadcaster() {
+        return broadcaster;
+    }
+
+    @Override
+    public WSHeartbeat getHeartbeat() {
+        return heartbeat;
+    }
+
+    @Override
+    public IWSMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public WSBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    @Override
+    public WSAdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    @Override
+    public WSClusterBridge getClusterBridge() {
+        return clusterBridge;
+    }
+
+    @Override
+    public WSTopicRegistry getTopicRegistry() {
+        return topicRegistry;
+    }
+
+    @Override
+    public WSAttributeStore getAttributeStore(WSAttributeSchema schema) {
+        return attributeStores.computeIfAbsent(schema, k -> new WSAttributeStore(k, config.isAttributeOffHeap()));
+    }
+
+    @Override
+    public boolean send(Session session, Object payload) throws EncodeException, IOException {
+        return send(session, null, payload);
+    }
+
+    @Override
+    public boolean send(Session session, String key, Object payload) throws EncodeException, IOException {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        if (sessionContext == null) {
+            // 未注册的会话交由容器使用端点已声明的编码器处理
+            session.getBasicRemote().sendObject(payload);
+            return true;
+        }
+        return sessionContext.sendObject(key, payload);
+    }
+
+    @Override
+    public int broadcast(String path, Object payload) throws EncodeException, IOException {
+        return broadcaster.broadcast(sessionRegistry.getSessions(path), payload);
+    }
+
+    @Override
+    public int broadcastGroup(String group, Object payload) throws EncodeException, IOException {
+        return broadcaster.broadcast(sessionRegistry.getSessionsByKey(group), payload);
+    }
+
+    @Override
+    public int publish(String path, Object payload) throws EncodeException, IOException {
+        if (clusterBridge == null) {
+            return broadcast(path, payload);
+        }
+        return doPublishCluster(WSClusterBridge.TargetType.PATH, path, sessionRegistry.getSessions(path), path, payload);
+    }
+
+    @Override
+    public int publishGroup(String group, Object payload) throws EncodeException, IOException {
+        if (clusterBridge == null) {
+            return broadcastGroup(group, payload);
+        }
+        return doPublishCluster(WSClusterBridge.TargetType.GROUP, group, sessionRegistry.getSessionsByKey(group), null, payload);
+    }
+
+    @Override
+    public boolean subscribe(Session session, String topic) {
+        return topicRegistry.subscribe(session, topic);
+    }
+
+    @Override
+    public boolean unsubscribe(Session session, String topic) {
+        return topicRegistry.unsubscribe(session, topic);
+    }
+
+    @Override
+    public int publishTopic(String topic, Object payload) throws EncodeException, IOException {
+        if (clusterBridge == null) {
+            return topicRegistry.publish(topic, payload);
+        }
+        return doPublishCluster(WSClusterBridge.TargetType.TOPIC, topic, topicRegistry.getSubscribers(topic), null, payload);
+    }
+
+    /**
+     * 集群消息需在发布前完成编码: 默认帧优先使用指定路径对应端点的编解码表, 其次使用本节点任一目标会话所属端点的编解码表,
+     * 同时按已注册的每一种消息编解码器各编码一次, 供其它节点上已协商对应子协议的会话使用
+     */
+    private int doPublishCluster(WSClusterBridge.TargetType targetType, String target, Collection<Session> sessions, String path, Object payload) throws EncodeException, IOException {
+        if (payload instanceof String) {
+            return clusterBridge.publish(targetType, target, payload);
+        } else if (payload instanceof ByteBuffer) {
+            return clusterBridge.publish(targetType, target, ((ByteBuffer) payload).asReadOnlyBuffer());
+        } else if (payload instanceof byte[]) {
+            return clusterBridge.publish(targetType, target, ByteBuffer.wrap((byte[]) payload).asReadOnlyBuffer());
+        }
+        Map<String, Object> codecFrames = new HashMap<>(4);
+        for (IWSMessageCodec messageCodec : WSMessageCodecs.getAll()) {
+            try {
+                codecFrames.put(messageCodec.getSubprotocol(), messageCodec.encode(payload));
+            } catch (EncodeException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Message codec '%s' does not support payload type %s", messageCodec.getSubprotocol(), payload.getClass().getName()));
+                }
+            }
+        }
+        Object frame = null;
+        try {
+            frame = doEncodeClusterFrame(sessions, path, payload);
+        } catch (EncodeException e) {
+            if (codecFrames.isEmpty()) {
+                throw e;
+            }
+        }
+        return clusterBridge.publish(targetType, target, frame, codecFrames.isEmpty() ? null : codecFrames);
+    }
+
+    private Object doEncodeClusterFrame(Collection<Session> sessions, String path, Object payload) throws EncodeException, IOException {
+        IWSEndpointSettings endpointSettings = null;
+        if (path != null) {
+            for (WSServerEndpointConfigurator serverEndpointConfigurator : serverEndpointConfigurators) {
+                if (path.equals(serverEndpointConfigurator.getPath())) {
+                    endpointSettings = serverEndpointConfigurator;
+                    break;
+                }
+            }
+            if (endpointSettings == null) {
+                for (WSClientConnectionManager clientConnectionManager : clientConnectionManagers) {
+                    if (path.equals(clientConnectionManager.getUri().toString())) {
+                        endpointSettings = clientConnectionManager;
+                        break;
+                    }
+                }
+            }
+        }
+        if (endpointSettings == null) {
+            for (Session session : sessions) {
+                WSSessionContext sessionContext = WSSessionContext.get(session);
+                if (sessionContext != null) {
+                    endpointSettings = sessionContext.getEndpointSettings();
+                    break;
+                }
+            }
+        }
+        if (endpointSettings == null) {
+            throw new EncodeException(payload, "No endpoint available to encode cluster message");
+        }
+        return endpointSettings.getCodecTable().encode(payload);
+    }
+
     @Override
     public void registerServer(Class<? extends WSServerListener> targetClass) throws Exception {
         WSServer serverAnn = targetClass.getAnnotation(WSServer.class);
@@ -184,13 +512,27 @@ public final class WebSocket implements IModule, IWebSocket {
         WSServerEndpointConfigurator serverEndpointConfigurator = serverAnn.configurator().getConstructor(IWebSocket.class, String.class, Class.class).newInstance(this, serverAnn.value(), targetClass);
         serverEndpointConfigurator.setEncoders(Arrays.asList(serverAnn.encoders()));
         serverEndpointConfigurator.setDecoders(Arrays.asList(serverAnn.decoders()));
-        serverEndpointConfigurator.setSubprotocols(Arrays.asList(serverAnn.subprotocols()));
+        serverEndpointConfigurator.setSubprotocols(WSMessageCodecs.resolveSubprotocols(serverAnn.subprotocols(), serverAnn.encoders()));
+        serverEndpointConfigurator.setBatching(serverAnn.batching() || config.isBatchingEnabled());
+        serverEndpointConfigurator.setConflating(serverAnn.conflate());
+        serverEndpointConfigurator.setBatchingMaxDelay(serverAnn.batchingMaxDelay() > 0 ? serverAnn.batchingMaxDelay() : config.getBatchingMaxDelay());
+        serverEndpointConfigurator.setBatchingMaxBytes(serverAnn.batchingMaxBytes() > 0 ? serverAnn.batchingMaxBytes() : config.getBatchingMaxBytes());
+        serverEndpointConfigurator.setDispatchMode(serverAnn.dispatchMode());
+        serverEndpointConfigurator.setDirectInstantiation(serverAnn.directInstantiation());
+        serverEndpointConfigurator.setHttpSessionAttributes(serverAnn.httpSessionAttributes());
+        serverEndpointConfigurator.setMaxSessions(serverAnn.maxSessions() > 0 ? serverAnn.maxSessions() : config.getAdmissionMaxSessions());
+        if (serverAnn.deflate() || config.isDeflateEnabled()) {
+            serverEndpointConfigurator.setPerMessageDeflate(new WSPerMessageDeflate(config));
+        }
         if (!serverAnn.extensible().equals(IWSExtensible.class)) {
             IWSExtensible extensible = ClassUtils.impl(serverAnn.extensible(), IWSExtensible.class);
             if (extensible != null) {
                 serverEndpointConfigurator.setExtensions(extensible.getExtensions());
             }
         }
+        if (serverAnn.allowedOrigins().length > 0) {
+            serverEndpointConfigurator.setOriginMatcher(WSOriginMatcher.compile(serverAnn.allowMissingOrigin(), serverAnn.allowedOrigins()));
+        }
         if (!serverAnn.handshakeModifier().equals(IWSHandshakeModifier.class)) {
             IWSHandshakeModifier handshakeModifier = ClassUtils.impl(serverAnn.handshakeModifier(), IWSHandshakeModifier.class);
             if (handshakeModifier != null) {
@@ -206,10 +548,12 @@ public final class WebSocket implements IModule, IWebSocket {
             BeanMeta beanMeta = BeanMeta.create(serverEndpointConfigurator.getEndpointClass());
             beanMeta.setInterfaceIgnored(true);
             owner.getBeanFactory().registerBean(beanMeta);
+            serverEndpointConfigurator.setEndpointFactory(WSEndpointFactory.create(this, serverEndpointConfigurator.getEndpointClass(), beanMeta.isSingleton(), serverEndpointConfigurator.isDirectInstantiation()));
             //
             if (owner.isDevEnv() && LOG.isDebugEnabled()) {
                 LOG.debug(String.format("--> [WSServer]: %s : %s", serverEndpointConfigurator.getPath(), serverEndpointConfigurator.getEndpointClass().getName()));
             }
+            serverEndpointConfigurator.getCodecTable();
             serverEndpointConfigurators.add(serverEndpointConfigurator);
         }
     }
@@ -225,7 +569,7 @@ public final class WebSocket implements IModule, IWebSocket {
         WSClientConnectionManager clientConnectionManager = new WSClientConnectionManager(this, uri, targetClass);
         clientConnectionManager.setEncoders(Arrays.asList(clientAnn.encoders()));
         clientConnectionManager.setDecoders(Arrays.asList(clientAnn.decoders()));
-        clientConnectionManager.setPreferredSubprotocols(clientAnn.subprotocols());
+        clientConnectionManager.setPreferredSubprotocols(WSMessageCodecs.resolveSubprotocols(clientAnn.subprotocols(), clientAnn.encoders()).toArray(new String[0]));
         if (!clientAnn.configurator().equals(ClientEndpointConfig.Configurator.class)) {
             ClientEndpointConfig.Configurator configurator = ClassUtils.impl(clientAnn.configurator(), ClientEndpointConfig.Configurator.class);
             if (configurator != null) {
@@ -239,6 +583,19 @@ public final class WebSocket implements IModule, IWebSocket {
             }
         }
         clientConnectionManager.setAutoStartup(clientAnn.autoStartup());
+        clientConnectionManager.setBatching(clientAnn.batching() || config.isBatchingEnabled());
+        clientConnectionManager.setConflating(clientAnn.conflate());
+        clientConnectionManager.setBatchingMaxDelay(clientAnn.batchingMaxDelay() > 0 ? clientAnn.batchingMaxDelay() : config.getBatchingMaxDelay());
+        clientConnectionManager.setBatchingMaxBytes(clientAnn.batchingMaxBytes() > 0 ? clientAnn.batchingMaxBytes() : config.getBatchingMaxBytes());
+        clientConnectionManager.setDispatchMode(clientAnn.dispatchMode());
+        if (clientAnn.deflate() || config.isDeflateEnabled()) {
+            clientConnectionManager.setPerMessageDeflate(new WSPerMessageDeflate(config));
+        }
+        clientConnectionManager.setPoolSize(clientAnn.poolSize());
+        clientConnectionManager.setLoadBalance(clientAnn.loadBalance());
+        if (clientAnn.reconnect()) {
+            clientConnectionManager.setReconnectPolicy(new WSReconnectPolicy(clientAnn.reconnectInitialDelay(), clientAnn.reconnectMaxDelay(), clientAnn.reconnectMaxAttempts(), clientAnn.reconnectCircuitOpenTime(), clientAnn.reconnectMinStableTime()));
+        }
         //
         registerClient(clientConnectionManager);
     }
@@ -249,6 +606,8 @@ public final class WebSocket implements IModule, IWebSocket {
             if (owner.isDevEnv() && LOG.isDebugEnabled()) {
                 LOG.debug(String.format("--> [WSClient]: %s : %s", clientConnectionManager.getUri(), clientConnectionManager.getEndpointClass().getName()));
             }
+            clientConnectionManager.setExecutorService(doInitClientExecutorIfNeed());
+            clientConnectionManager.getCodecTable();
             clientConnectionManagers.add(clientConnectionManager);
         }
     }
@@ -283,6 +642,7 @@ public final class WebSocket implements IModule, IWebSocket {
     @Override
     public void registerServerEndpoints(ServletContext servletContext) {
         if (doInitServerContainerIfNeed(servletContext) != null) {
+            doRegisterAdmissionFilter(servletContext);
             try {
                 for (WSServerEndpointConfigurator serverEndpointConfigurator : serverEndpointConfigurators) {
                     serverContainer.addEndpoint(serverEndpointConfigurator);
@@ -295,6 +655,49 @@ public final class WebSocket implements IModule, IWebSocket {
         }
     }
 
+    /**
+     * 若已配置握手速率或会话数量限制, 则注册准入过滤器, 使其先于容器的协议升级处理执行
+     *
+     * @param servletContext Servlet上下文
+     */
+    private void doRegisterAdmissionFilter(ServletContext servletContext) {
+        boolean required = admissionController.isRateLimited();
+        for (WSServerEndpointConfigurator serverEndpointConfigurator : serverEndpointConfigurators) {
+            required = required || serverEndpointConfigurator.getMaxSessions() > 0;
+        }
+        if (!required || serverEndpointConfigurators.isEmpty()) {
+            return;
+        }
+        try {
+            FilterRegistration.Dynamic registration = servletContext.addFilter(WSAdmissionFilter.class.getName(), new WSAdmissionFilter(admissionController, serverEndpointConfigurators));
+            if (registration != null) {
+                registration.setAsyncSupported(true);
+                registration.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*");
+            }
+        } catch (IllegalStateException | UnsupportedOperationException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("Unable to register WSAdmissionFilter, handshake admission control is disabled.", RuntimeUtils.unwrapThrow(e));
+            }
+        }
+    }
+
+    /**
+     * 创建全部客户端连接管理器共享的执行器, 优先使用虚拟线程, 当前JDK不支持时退化为小型共享线程池
+     *
+     * @return 返回执行器对象
+     */
+    private synchronized ExecutorService doInitClientExecutorIfNeed() {
+        if (clientExecutor == null) {
+            if (config.getClientExecutorMode() == WSDispatcher.Mode.VIRTUAL) {
+                clientExecutor = WSDispatcher.newVirtualThreadPerTaskExecutor();
+            }
+            if (clientExecutor == null) {
+                clientExecutor = Executors.newFixedThreadPool(config.getClientExecutorPoolSize(), WSDispatcher.newThreadFactory("ws-client-"));
+            }
+        }
+        return clientExecutor;
+    }
+
     @Override
     public void registerClientEndpoints() {
         for (WSClientConnectionManager clientConnectionManager : clientConnectionManagers) {
@@ -16,6 +16,8 @@
 package net.ymate.module.websocket.annotation;
 
 import net.ymate.module.websocket.IWSExtensible;
+import net.ymate.module.websocket.support.WSClientConnectionManager;
+import net.ymate.module.websocket.support.WSDispatcher;
 
 import javax.websocket.ClientEndpointConfig;
 import javax.websocket.Decoder;
@@ -44,4 +46,74 @@ public @interface WSClient {
     Class<? extends ClientEndpointConfig.Configurator> configurator() default ClientEndpointConfig.Configurator.class;
 
     Class<? extends IWSExtensible> extensible() default IWSExtensible.class;
+
+    /**
+     * @return 是否开启出站消息批量写, 若模块全局已开启则始终开启
+     */
+    boolean batching() default false;
+
+    /**
+     * @return 是否开启permessage-deflate压缩扩展协商, 若模块全局已开启则始终开启
+     */
+    boolean deflate() default false;
+
+    /**
+     * @return 是否开启出站消息按键合并模式, 相同键的未发送消息仅保留最新值(开启后将始终启用出站队列)
+     */
+    boolean conflate() default false;
+
+    /**
+     * @return 批量写最大延迟时间, 单位: 微秒, 默认值: 0 (即使用模块全局配置)
+     */
+    long batchingMaxDelay() default 0;
+
+    /**
+     * @return 批量写最大累计字节数, 默认值: 0 (即使用模块全局配置)
+     */
+    long batchingMaxBytes() default 0;
+
+    /**
+     * @return 入站消息分发模式, 默认值: DIRECT (即在容器I/O线程中直接执行)
+     */
+    WSDispatcher.Mode dispatchMode() default WSDispatcher.Mode.DIRECT;
+
+    /**
+     * @return 是否在连接失败或连接断开后自动重连, 默认值: false
+     */
+    boolean reconnect() default false;
+
+    /**
+     * @return 初始重连延迟, 单位: 毫秒, 默认值: 1000
+     */
+    long reconnectInitialDelay() default 1000;
+
+    /**
+     * @return 最大重连延迟, 单位: 毫秒, 默认值: 60000
+     */
+    long reconnectMaxDelay() default 60000;
+
+    /**
+     * @return 熔断前允许的最大连续重连次数, 小于等于0表示不限制, 默认值: 10
+     */
+    int reconnectMaxAttempts() default 10;
+
+    /**
+     * @return 熔断持续时间, 单位: 毫秒, 小于等于0表示达到最大重连次数后放弃重连, 默认值: 300000
+     */
+    long reconnectCircuitOpenTime() default 300000;
+
+    /**
+     * @return 连接成功后需保持的最短时间, 达到后断开才会重置连续失败次数及熔断状态, 单位: 毫秒, 默认值: 10000
+     */
+    long reconnectMinStableTime() default 10000;
+
+    /**
+     * @return 连接池大小, 即针对同一URI建立的会话数量, 默认值: 1
+     */
+    int poolSize() default 1;
+
+    /**
+     * @return 连接池负载均衡策略, 默认值: ROUND_ROBIN
+     */
+    WSClientConnectionManager.LoadBalance loadBalance() default WSClientConnectionManager.LoadBalance.ROUND_ROBIN;
 }
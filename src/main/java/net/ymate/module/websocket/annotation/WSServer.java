@@ -17,6 +17,7 @@ package net.ymate.module.websocket.annotation;
 
 import net.ymate.module.websocket.IWSExtensible;
 import net.ymate.module.websocket.IWSHandshakeModifier;
+import net.ymate.module.websocket.support.WSDispatcher;
 import net.ymate.module.websocket.support.WSServerEndpointConfigurator;
 
 import javax.websocket.Decoder;
@@ -45,4 +46,59 @@ public @interface WSServer {
     Class<? extends IWSExtensible> extensible() default IWSExtensible.class;
 
     Class<? extends IWSHandshakeModifier> handshakeModifier() default IWSHandshakeModifier.class;
+
+    /**
+     * @return 握手来源(Origin)白名单, 支持*、https://example.com及https://*.example.com等格式, 默认值: 空(即不限制)
+     */
+    String[] allowedOrigins() default {};
+
+    /**
+     * @return 启用来源白名单时是否允许未携带Origin头的请求(如非浏览器客户端), 默认值: true
+     */
+    boolean allowMissingOrigin() default true;
+
+    /**
+     * @return 当前端点允许的最大并发会话数量, 超出时握手将以503响应拒绝, 默认值: 0 (即使用模块全局配置)
+     */
+    int maxSessions() default 0;
+
+    /**
+     * @return 握手时以快照方式复制的HttpSession属性名称集合, 快照将作为会话属性保存而不再持有HttpSession引用, 默认值: 空(即不创建快照)
+     */
+    String[] httpSessionAttributes() default {};
+
+    /**
+     * @return 是否开启出站消息批量写, 若模块全局已开启则始终开启
+     */
+    boolean batching() default false;
+
+    /**
+     * @return 是否开启permessage-deflate压缩扩展协商, 若模块全局已开启则始终开启
+     */
+    boolean deflate() default false;
+
+    /**
+     * @return 是否开启出站消息按键合并模式, 相同键的未发送消息仅保留最新值(开启后将始终启用出站队列)
+     */
+    boolean conflate() default false;
+
+    /**
+     * @return 批量写最大延迟时间, 单位: 微秒, 默认值: 0 (即使用模块全局配置)
+     */
+    long batchingMaxDelay() default 0;
+
+    /**
+     * @return 批量写最大累计字节数, 默认值: 0 (即使用模块全局配置)
+     */
+    long batchingMaxBytes() default 0;
+
+    /**
+     * @return 入站消息分发模式, 默认值: DIRECT (即在容器I/O线程中直接执行)
+     */
+    WSDispatcher.Mode dispatchMode() default WSDispatcher.Mode.DIRECT;
+
+    /**
+     * @return 是否绕过Bean工厂直接通过构造方法创建原型端点实例(将不再执行依赖注入、拦截器及Bean初始化处理, 仅适用于无任何依赖的端点), 默认值: false
+     */
+    boolean directInstantiation() default false;
 }
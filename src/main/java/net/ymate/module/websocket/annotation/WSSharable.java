@@ -0,0 +1,31 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 声明编码器或解码器是线程安全的, 编解码表将在全部线程间共享同一实例, 否则每次使用时从有界空闲池中借出实例, 该注解可被子类继承
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 上午10:06
+ * @since 2.0.0
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+public @interface WSSharable {
+}
@@ -15,6 +15,11 @@
  */
 package net.ymate.module.websocket.annotation;
 
+import net.ymate.module.websocket.IWSClusterTransport;
+import net.ymate.module.websocket.IWSMetrics;
+import net.ymate.module.websocket.support.WSDispatcher;
+import net.ymate.module.websocket.support.WSOutboundQueue;
+
 import java.lang.annotation.*;
 
 /**
@@ -50,4 +55,229 @@ public @interface WebSocketConf {
      * @return 二进制消息默认最大缓冲区大小, 默认值: 0
      */
     int defaultMaxBinaryMessageBufferSize() default 0;
+
+    /**
+     * @return 广播消息分发线程数量, 默认值: 0 (即CPU核心数)
+     */
+    int broadcastThreadCount() default 0;
+
+    /**
+     * @return 广播消息分片大小(即每个分发任务负责发送的会话数量), 默认值: 512
+     */
+    int broadcastChunkSize() default 512;
+
+    /**
+     * @return 单个会话允许的最大未完成异步发送数量, 超出时该会话将跳过本次广播, 默认值: 16
+     */
+    int broadcastMaxPending() default 16;
+
+    /**
+     * @return 会话出站队列最大积压消息数量, 默认值: 0 (即不启用出站队列)
+     */
+    int outboundQueueMaxMessages() default 0;
+
+    /**
+     * @return 会话出站队列最大积压字节数, 默认值: 0 (即不限制)
+     */
+    long outboundQueueMaxBytes() default 0;
+
+    /**
+     * @return 会话出站队列溢出策略, 可选值: DROP_OLDEST|DROP_NEWEST|COALESCE_BY_KEY|CLOSE, 默认值: DROP_OLDEST
+     */
+    WSOutboundQueue.OverflowPolicy outboundQueueOverflowPolicy() default WSOutboundQueue.OverflowPolicy.DROP_OLDEST;
+
+    /**
+     * @return 是否开启出站消息批量写, 默认值: false
+     */
+    boolean batchingEnabled() default false;
+
+    /**
+     * @return 批量写最大延迟时间, 单位: 微秒, 默认值: 1000
+     */
+    long batchingMaxDelay() default 1000;
+
+    /**
+     * @return 批量写最大累计字节数, 达到后立即刷新, 默认值: 8192
+     */
+    long batchingMaxBytes() default 8192;
+
+    /**
+     * @return 入站消息分发线程池大小, 默认值: 0 (即CPU核心数*2)
+     */
+    int dispatchPoolSize() default 0;
+
+    /**
+     * @return 入站消息分发线程池任务队列容量, 队列已满时由容器I/O线程直接执行, 默认值: 10000
+     */
+    int dispatchQueueCapacity() default 10000;
+
+    /**
+     * @return 客户端连接任务共享执行器类型, 可选值: VIRTUAL|POOL, 其中VIRTUAL需JDK21+, 否则自动退化为POOL, 默认值: VIRTUAL
+     */
+    WSDispatcher.Mode clientExecutorMode() default WSDispatcher.Mode.VIRTUAL;
+
+    /**
+     * @return 客户端连接任务共享线程池大小(仅在POOL模式下有效), 默认值: 2
+     */
+    int clientExecutorPoolSize() default 2;
+
+    /**
+     * @return 心跳(Ping)发送间隔, 单位: 毫秒, 默认值: 0 (即不发送心跳)
+     */
+    long heartbeatInterval() default 0;
+
+    /**
+     * @return 允许连续未收到Pong响应的最大次数, 超过后将关闭会话, 默认值: 3
+     */
+    int heartbeatMaxMissed() default 3;
+
+    /**
+     * @return 心跳时间轮槽位数量, 会话将均匀分布于各槽位以平摊Ping发送压力, 默认值: 64
+     */
+    int heartbeatWheelSize() default 64;
+
+    /**
+     * @return 是否开启监控指标采集, 默认值: false
+     */
+    boolean metricsEnabled() default false;
+
+    /**
+     * @return 自定义监控指标采集接口实现类(IWSMetrics), 默认值: 空(即使用DefaultWSMetrics)
+     */
+    Class<? extends IWSMetrics> metricsClass() default IWSMetrics.class;
+
+    /**
+     * @return 分片消息聚合使用的直接内存缓冲块大小, 单位: 字节, 默认值: 65536
+     */
+    int aggregationSlabSize() default 65536;
+
+    /**
+     * @return 缓冲池最多保留的空闲缓冲块数量, 超出部分将直接释放, 默认值: 256
+     */
+    int aggregationPoolMaxSlabs() default 256;
+
+    /**
+     * @return 单条聚合消息允许的最大长度, 超出时将以TOO_BIG关闭会话, 单位: 字节, 默认值: 16777216
+     */
+    int aggregationMaxSize() default 16777216;
+
+    /**
+     * @return 是否开启permessage-deflate压缩扩展协商, 默认值: false
+     */
+    boolean deflateEnabled() default false;
+
+    /**
+     * @return 压缩级别(0-9), 用于支持该参数的容器及压缩开销采样, 默认值: 6
+     */
+    int deflateLevel() default 6;
+
+    /**
+     * @return 服务端压缩滑动窗口大小(server_max_window_bits, 8-15), 服务端仅在容器已安装的扩展声明支持该参数时附加, 默认值: 15
+     */
+    int deflateServerMaxWindowBits() default 15;
+
+    /**
+     * @return 服务端是否在每条消息后重置压缩上下文(server_no_context_takeover), 可降低每个会话的内存占用, 服务端仅在容器已安装的扩展声明支持该参数时附加, 默认值: false
+     */
+    boolean deflateServerNoContextTakeover() default false;
+
+    /**
+     * @return 是否要求客户端在每条消息后重置压缩上下文(client_no_context_takeover), 服务端仅在容器已安装的扩展声明支持该参数时附加, 默认值: false
+     */
+    boolean deflateClientNoContextTakeover() default false;
+
+    /**
+     * @return 压缩的最小消息大小, 小于此值的消息视为不压缩, 单位: 字节, 默认值: 256
+     */
+    int deflateMinSize() default 256;
+
+    /**
+     * @return 压缩开销采样频率, 每N条出站消息采样一条以统计压缩率及CPU耗时, 默认值: 100 (0表示不采样)
+     */
+    int deflateSampleRate() default 100;
+
+    /**
+     * @return 全局每秒允许的新握手数量, 超出时以429响应拒绝, 默认值: 0 (即不限制)
+     */
+    int admissionHandshakeRate() default 0;
+
+    /**
+     * @return 全局握手突发容量, 默认值: 0 (即与每秒允许的握手数量相同)
+     */
+    int admissionHandshakeBurst() default 0;
+
+    /**
+     * @return 单个客户端地址每秒允许的新握手数量, 超出时以429响应拒绝, 默认值: 0 (即不限制)
+     */
+    int admissionAddressRate() default 0;
+
+    /**
+     * @return 单个客户端地址的握手突发容量, 默认值: 0 (即与每秒允许的握手数量相同)
+     */
+    int admissionAddressBurst() default 0;
+
+    /**
+     * @return 按客户端地址限流时最多跟踪的地址数量, 已满且无过期条目可回收时新地址的握手将被拒绝, 默认值: 65536
+     */
+    int admissionAddressMaxEntries() default 65536;
+
+    /**
+     * @return 是否信任X-Forwarded-For请求头中的客户端地址(仅在部署于可信反向代理之后时开启), 默认值: false
+     */
+    boolean admissionTrustForwarded() default false;
+
+    /**
+     * @return 每个服务端点路径允许的最大并发会话数量, 超出时以503响应拒绝, 可被@WSServer(maxSessions)覆盖, 默认值: 0 (即不限制)
+     */
+    int admissionMaxSessions() default 0;
+
+    /**
+     * @return 集群消息传输接口实现类(IWSClusterTransport), 默认值: 空(即不开启集群广播桥接)
+     */
+    Class<? extends IWSClusterTransport> clusterTransportClass() default IWSClusterTransport.class;
+
+    /**
+     * @return 集群消息通道名称, 同一通道内的节点相互转发广播消息, 默认值: ymp.websocket
+     */
+    String clusterChannel() default "ymp.websocket";
+
+    /**
+     * @return 集群消息批量发布的最大延迟时间, 单位: 毫秒, 默认值: 5
+     */
+    long clusterBatchDelay() default 5;
+
+    /**
+     * @return 集群消息单个批次的最大累计字节数, 达到后立即发布, 默认值: 65536
+     */
+    int clusterBatchMaxBytes() default 65536;
+
+    /**
+     * @return 分发模式为SHARDED时的单线程工作者数量, 默认值: 0(即CPU核心数)
+     */
+    int shardCount() default 0;
+
+    /**
+     * @return 分发模式为SHARDED时用于计算会话分片的路径参数或请求参数名称(如用户ID), 默认值: 空(即按会话ID计算)
+     */
+    String shardKeyParam() default "";
+
+    /**
+     * @return 会话属性存储是否使用直接内存(堆外), 默认值: true
+     */
+    boolean attributeOffHeap() default true;
+
+    /**
+     * @return 单个会话入站消息串行队列容量, 队列已满时容器I/O线程将等待队列空闲(背压), 小于等于0表示不限制, 默认值: 1024
+     */
+    int inboundQueueCapacity() default 1024;
+
+    /**
+     * @return 单个会话入站消息串行队列已满时容器I/O线程的最大等待时间, 超时后以1013(TRY_AGAIN_LATER)关闭会话, 单位: 毫秒, 默认值: 1000
+     */
+    long inboundQueueTimeout() default 1000;
+
+    /**
+     * @return 信任X-Forwarded-For时受信任的反向代理层数, 客户端地址取自该请求头从右往左第N个条目(各代理依次追加, 最左侧条目可被客户端伪造), 默认值: 1
+     */
+    int admissionTrustedHops() default 1;
 }
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.impl;
+
+import net.ymate.module.websocket.IWSMetrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于LongAdder的监控指标采集实现, 各端点指标对象在首次使用时创建, 此后的记录过程不产生内存分配
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 上午9:30
+ * @since 2.0.0
+ */
+public class DefaultWSMetrics implements IWSMetrics {
+
+    /**
+     * 标准关闭代码(1000~1015)以外的代码统一计入最后一个槽位
+     */
+    private static final int CLOSE_CODE_BASE = 1000;
+
+    private static final int CLOSE_CODE_SLOTS = 17;
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final Map<Integer, Shard> shards = new ConcurrentHashMap<>();
+
+    /**
+     * 延迟直方图: 第0个桶记录小于1微秒的样本, 第i个桶记录[2^(i-1), 2^i)微秒的样本, 最后一个桶记录其余全部样本
+     */
+    public static class Histogram {
+
+        private static final int BUCKETS = 32;
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder sum = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        public Histogram() {
+            for (int idx = 0; idx < BUCKETS; idx++) {
+                buckets[idx] = new LongAdder();
+            }
+        }
+
+        public void record(long nanos) {
+            long micros = nanos / 1000;
+            int idx = micros <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets[idx].increment();
+            count.increment();
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return 返回平均耗时, 单位: 纳秒
+         */
+        public long getMean() {
+            long c = count.sum();
+            return c == 0 ? 0 : sum.sum() / c;
+        }
+
+        /**
+         * @return 返回最大耗时, 单位: 纳秒
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * 估算百分位值
+         *
+         * @param percentile 百分位(0~1)
+         * @return 返回样本所在桶的上界, 单位: 纳秒
+         */
+        public long getPercentile(double percentile) {
+            long[] snapshot = getBuckets();
+            long total = 0;
+            for (long value : snapshot) {
+                total += value;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(total * percentile);
+            long accumulated = 0;
+            for (int idx = 0; idx < snapshot.length; idx++) {
+                accumulated += snapshot[idx];
+                if (accumulated >= threshold) {
+                    return idx == snapshot.length - 1 ? getMax() : (1L << idx) * 1000;
+                }
+            }
+            return getMax();
+        }
+
+        public long[] getBuckets() {
+            long[] snapshot = new long[BUCKETS];
+            for (int idx = 0; idx < BUCKETS; idx++) {
+                snapshot[idx] = buckets[idx].sum();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 单个端点路径或客户端URI的指标集合
+     */
+    public static class Endpoint {
+
+        private final String path;
+
+        private final LongAdder activeSessions = new LongAdder();
+
+        private final LongAdder openedSessions = new LongAdder();
+
+        private final LongAdder[] closedSessions = new LongAdder[CLOSE_CODE_SLOTS];
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder receivedMessages = new LongAdder();
+
+        private final LongAdder receivedBytes = new LongAdder();
+
+        private final LongAdder sentMessages = new LongAdder();
+
+        private final LongAdder sentBytes = new LongAdder();
+
+        private final LongAdder connects = new LongAdder();
+
+        private final LongAdder connectFailures = new LongAdder();
+
+        private final Histogram handlerLatency = new Histogram();
+
+        private final Histogram heartbeatRtt = new Histogram();
+
+        public Endpoint(String path) {
+            this.path = path;
+            for (int idx = 0; idx < CLOSE_CODE_SLOTS; idx++) {
+                closedSessions[idx] = new LongAdder();
+            }
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getActiveSessions() {
+            return activeSessions.sum();
+        }
+
+        public long getOpenedSessions() {
+            return openedSessions.sum();
+        }
+
+        /**
+         * @param closeCode 关闭代码
+         * @return 返回以指定代码关闭的会话数量, 非标准代码合并统计
+         */
+        public long getClosedSessions(int closeCode) {
+            return closedSessions[slot(closeCode)].sum();
+        }
+
+        public long getClosedSessions() {
+            long total = 0;
+            for (LongAdder adder : closedSessions) {
+                total += adder.sum();
+            }
+            return total;
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getReceivedMessages() {
+            return receivedMessages.sum();
+        }
+
+        public long getReceivedBytes() {
+            return receivedBytes.sum();
+        }
+
+        public long getSentMessages() {
+            return sentMessages.sum();
+        }
+
+        public long getSentBytes() {
+            return sentBytes.sum();
+        }
+
+        public long getConnects() {
+            return connects.sum();
+        }
+
+        public long getConnectFailures() {
+            return connectFailures.sum();
+        }
+
+        public Histogram getHandlerLatency() {
+            return handlerLatency;
+        }
+
+        public Histogram getHeartbeatRtt() {
+            return heartbeatRtt;
+        }
+
+        private static int slot(int closeCode) {
+            int idx = closeCode - CLOSE_CODE_BASE;
+            return idx >= 0 && idx < CLOSE_CODE_SLOTS - 1 ? idx : CLOSE_CODE_SLOTS - 1;
+        }
+    }
+
+    /**
+     * 单个分片工作者的指标集合
+     */
+    public static class Shard {
+
+        private final int index;
+
+        private final LongAdder activeSessions = new LongAdder();
+
+        private final LongAdder executedTasks = new LongAdder();
+
+        private final Histogram waitLatency = new Histogram();
+
+        public Shard(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getActiveSessions() {
+            return activeSessions.sum();
+        }
+
+        public long getExecutedTasks() {
+            return executedTasks.sum();
+        }
+
+        /**
+         * @return 返回任务提交至开始执行的等待耗时分布
+         */
+        public Histogram getWaitLatency() {
+            return waitLatency;
+        }
+    }
+
+    private Shard shard(int index) {
+        Shard shard = shards.get(index);
+        if (shard == null) {
+            shard = shards.computeIfAbsent(index, Shard::new);
+        }
+        return shard;
+    }
+
+    private Endpoint endpoint(String path) {
+        String key = path != null ? path : "";
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(key, Endpoint::new);
+        }
+        return endpoint;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void sessionOpened(String path) {
+        Endpoint endpoint = endpoint(path);
+        endpoint.openedSessions.increment();
+        endpoint.activeSessions.increment();
+    }
+
+    @Override
+    public void sessionClosed(String path, int closeCode) {
+        Endpoint endpoint = endpoint(path);
+        endpoint.closedSessions[Endpoint.slot(closeCode)].increment();
+        endpoint.activeSessions.decrement();
+    }
+
+    @Override
+    public void sessionError(String path) {
+        endpoint(path).errors.increment();
+    }
+
+    @Override
+    public void messageReceived(String path, long bytes) {
+        Endpoint endpoint = endpoint(path);
+        endpoint.receivedMessages.increment();
+        endpoint.receivedBytes.add(bytes);
+    }
+
+    @Override
+    public void messageSent(String path, long bytes) {
+        Endpoint endpoint = endpoint(path);
+        endpoint.sentMessages.increment();
+        endpoint.sentBytes.add(bytes);
+    }
+
+    @Override
+    public void handlerLatency(String path, long nanos) {
+        endpoint(path).handlerLatency.record(nanos);
+    }
+
+    @Override
+    public void heartbeatRtt(String path, long nanos) {
+        endpoint(path).heartbeatRtt.record(nanos);
+    }
+
+    @Override
+    public void clientConnected(String uri) {
+        endpoint(uri).connects.increment();
+    }
+
+    @Override
+    public void clientConnectFailed(String uri) {
+        endpoint(uri).connectFailures.increment();
+    }
+
+    @Override
+    public void shardSessionOpened(int shard) {
+        shard(shard).activeSessions.increment();
+    }
+
+    @Override
+    public void shardSessionClosed(int shard) {
+        shard(shard).activeSessions.decrement();
+    }
+
+    @Override
+    public void shardTaskExecuted(int shard, long waitNanos) {
+        Shard target = shard(shard);
+        target.executedTasks.increment();
+        target.waitLatency.record(waitNanos);
+    }
+
+    /**
+     * @param path 端点路径或客户端URI
+     * @return 返回指定端点的指标集合, 若不存在则返回null
+     */
+    public Endpoint getEndpoint(String path) {
+        return endpoints.get(path);
+    }
+
+    /**
+     * @return 返回全部端点的指标集合(只读)
+     */
+    public Map<String, Endpoint> getEndpoints() {
+        return Collections.unmodifiableMap(endpoints);
+    }
+
+    /**
+     * @return 返回全部分片工作者的指标集合(只读)
+     */
+    public Map<Integer, Shard> getShards() {
+        return Collections.unmodifiableMap(shards);
+    }
+}
@@ -15,11 +15,16 @@
  */
 package net.ymate.module.websocket.impl;
 
+import net.ymate.module.websocket.IWSClusterTransport;
+import net.ymate.module.websocket.IWSMetrics;
 import net.ymate.module.websocket.IWebSocket;
 import net.ymate.module.websocket.IWebSocketConfig;
 import net.ymate.module.websocket.annotation.WebSocketConf;
+import net.ymate.module.websocket.support.WSDispatcher;
+import net.ymate.module.websocket.support.WSOutboundQueue;
 import net.ymate.platform.core.configuration.IConfigReader;
 import net.ymate.platform.core.module.IModuleConfigurer;
+import org.apache.commons.lang3.StringUtils;
 
 /**
  * @author 刘镇 (suninformation@163.com) on 2017/07/12 上午 11:37
@@ -37,6 +42,96 @@ public final class DefaultWebSocketConfig implements IWebSocketConfig {
 
     private int defaultMaxBinaryMessageBufferSize;
 
+    private int broadcastThreadCount;
+
+    private int broadcastChunkSize = 512;
+
+    private int broadcastMaxPending = 16;
+
+    private int outboundQueueMaxMessages;
+
+    private long outboundQueueMaxBytes;
+
+    private WSOutboundQueue.OverflowPolicy outboundQueueOverflowPolicy = WSOutboundQueue.OverflowPolicy.DROP_OLDEST;
+
+    private boolean batchingEnabled;
+
+    private long batchingMaxDelay = 1000;
+
+    private long batchingMaxBytes = 8192;
+
+    private int dispatchPoolSize;
+
+    private int dispatchQueueCapacity = 10000;
+
+    private WSDispatcher.Mode clientExecutorMode = WSDispatcher.Mode.VIRTUAL;
+
+    private int clientExecutorPoolSize = 2;
+
+    private long heartbeatInterval;
+
+    private int heartbeatMaxMissed = 3;
+
+    private int heartbeatWheelSize = 64;
+
+    private boolean metricsEnabled;
+
+    private String metricsClass;
+
+    private int aggregationSlabSize = 65536;
+
+    private int aggregationPoolMaxSlabs = 256;
+
+    private int aggregationMaxSize = 16777216;
+
+    private boolean deflateEnabled;
+
+    private int deflateLevel = 6;
+
+    private int deflateServerMaxWindowBits = 15;
+
+    private boolean deflateServerNoContextTakeover;
+
+    private boolean deflateClientNoContextTakeover;
+
+    private int deflateMinSize = 256;
+
+    private int deflateSampleRate = 100;
+
+    private int admissionHandshakeRate;
+
+    private int admissionHandshakeBurst;
+
+    private int admissionAddressRate;
+
+    private int admissionAddressBurst;
+
+    private int admissionAddressMaxEntries = 65536;
+
+    private boolean admissionTrustForwarded;
+
+    private int admissionMaxSessions;
+
+    private String clusterTransportClass;
+
+    private String clusterChannel = "ymp.websocket";
+
+    private long clusterBatchDelay = 5;
+
+    private int clusterBatchMaxBytes = 65536;
+
+    private int shardCount;
+
+    private String shardKeyParam;
+
+    private boolean attributeOffHeap = true;
+
+    private int inboundQueueCapacity = 1024;
+
+    private long inboundQueueTimeout = 1000;
+
+    private int admissionTrustedHops = 1;
+
     private boolean initialized;
 
     public static DefaultWebSocketConfig defaultConfig() {
@@ -68,13 +163,114 @@ public final class DefaultWebSocketConfig implements IWebSocketConfig {
         defaultMaxSessionIdleTimeout = configReader.getLong(DEFAULT_MAX_SESSION_IDLE_TIMEOUT, confAnn != null ? confAnn.defaultMaxSessionIdleTimeout() : 0);
         defaultMaxTextMessageBufferSize = configReader.getInt(DEFAULT_MAX_TEXT_MESSAGE_BUFFER_SIZE, confAnn != null ? confAnn.defaultMaxTextMessageBufferSize() : 0);
         defaultMaxBinaryMessageBufferSize = configReader.getInt(DEFAULT_MAX_BINARY_MESSAGE_BUFFER_SIZE, confAnn != null ? confAnn.defaultMaxBinaryMessageBufferSize() : 0);
+        broadcastThreadCount = configReader.getInt(BROADCAST_THREAD_COUNT, confAnn != null ? confAnn.broadcastThreadCount() : 0);
+        broadcastChunkSize = configReader.getInt(BROADCAST_CHUNK_SIZE, confAnn != null ? confAnn.broadcastChunkSize() : 512);
+        broadcastMaxPending = configReader.getInt(BROADCAST_MAX_PENDING, confAnn != null ? confAnn.broadcastMaxPending() : 16);
+        outboundQueueMaxMessages = configReader.getInt(OUTBOUND_QUEUE_MAX_MESSAGES, confAnn != null ? confAnn.outboundQueueMaxMessages() : 0);
+        outboundQueueMaxBytes = configReader.getLong(OUTBOUND_QUEUE_MAX_BYTES, confAnn != null ? confAnn.outboundQueueMaxBytes() : 0);
+        batchingEnabled = configReader.getBoolean(BATCHING_ENABLED, confAnn != null ? confAnn.batchingEnabled() : false);
+        batchingMaxDelay = configReader.getLong(BATCHING_MAX_DELAY, confAnn != null ? confAnn.batchingMaxDelay() : 1000);
+        batchingMaxBytes = configReader.getLong(BATCHING_MAX_BYTES, confAnn != null ? confAnn.batchingMaxBytes() : 8192);
+        dispatchPoolSize = configReader.getInt(DISPATCH_POOL_SIZE, confAnn != null ? confAnn.dispatchPoolSize() : 0);
+        dispatchQueueCapacity = configReader.getInt(DISPATCH_QUEUE_CAPACITY, confAnn != null ? confAnn.dispatchQueueCapacity() : 10000);
+        clientExecutorPoolSize = configReader.getInt(CLIENT_EXECUTOR_POOL_SIZE, confAnn != null ? confAnn.clientExecutorPoolSize() : 2);
+        clientExecutorMode = WSDispatcher.Mode.valueOf(StringUtils.upperCase(configReader.getString(CLIENT_EXECUTOR_MODE, confAnn != null ? confAnn.clientExecutorMode().name() : WSDispatcher.Mode.VIRTUAL.name())));
+        outboundQueueOverflowPolicy = WSOutboundQueue.OverflowPolicy.valueOf(StringUtils.upperCase(configReader.getString(OUTBOUND_QUEUE_OVERFLOW_POLICY, confAnn != null ? confAnn.outboundQueueOverflowPolicy().name() : WSOutboundQueue.OverflowPolicy.DROP_OLDEST.name())));
+        heartbeatInterval = configReader.getLong(HEARTBEAT_INTERVAL, confAnn != null ? confAnn.heartbeatInterval() : 0);
+        heartbeatMaxMissed = configReader.getInt(HEARTBEAT_MAX_MISSED, confAnn != null ? confAnn.heartbeatMaxMissed() : 3);
+        heartbeatWheelSize = configReader.getInt(HEARTBEAT_WHEEL_SIZE, confAnn != null ? confAnn.heartbeatWheelSize() : 64);
+        metricsEnabled = configReader.getBoolean(METRICS_ENABLED, confAnn != null ? confAnn.metricsEnabled() : false);
+        metricsClass = configReader.getString(METRICS_CLASS, confAnn != null && !IWSMetrics.class.equals(confAnn.metricsClass()) ? confAnn.metricsClass().getName() : null);
+        aggregationSlabSize = configReader.getInt(AGGREGATION_SLAB_SIZE, confAnn != null ? confAnn.aggregationSlabSize() : 65536);
+        aggregationPoolMaxSlabs = configReader.getInt(AGGREGATION_POOL_MAX_SLABS, confAnn != null ? confAnn.aggregationPoolMaxSlabs() : 256);
+        aggregationMaxSize = configReader.getInt(AGGREGATION_MAX_SIZE, confAnn != null ? confAnn.aggregationMaxSize() : 16777216);
+        deflateEnabled = configReader.getBoolean(DEFLATE_ENABLED, confAnn != null ? confAnn.deflateEnabled() : false);
+        deflateLevel = configReader.getInt(DEFLATE_LEVEL, confAnn != null ? confAnn.deflateLevel() : 6);
+        deflateServerMaxWindowBits = configReader.getInt(DEFLATE_SERVER_MAX_WINDOW_BITS, confAnn != null ? confAnn.deflateServerMaxWindowBits() : 15);
+        deflateServerNoContextTakeover = configReader.getBoolean(DEFLATE_SERVER_NO_CONTEXT_TAKEOVER, confAnn != null ? confAnn.deflateServerNoContextTakeover() : false);
+        deflateClientNoContextTakeover = configReader.getBoolean(DEFLATE_CLIENT_NO_CONTEXT_TAKEOVER, confAnn != null ? confAnn.deflateClientNoContextTakeover() : false);
+        deflateMinSize = configReader.getInt(DEFLATE_MIN_SIZE, confAnn != null ? confAnn.deflateMinSize() : 256);
+        deflateSampleRate = configReader.getInt(DEFLATE_SAMPLE_RATE, confAnn != null ? confAnn.deflateSampleRate() : 100);
+        admissionHandshakeRate = configReader.getInt(ADMISSION_HANDSHAKE_RATE, confAnn != null ? confAnn.admissionHandshakeRate() : 0);
+        admissionHandshakeBurst = configReader.getInt(ADMISSION_HANDSHAKE_BURST, confAnn != null ? confAnn.admissionHandshakeBurst() : 0);
+        admissionAddressRate = configReader.getInt(ADMISSION_ADDRESS_RATE, confAnn != null ? confAnn.admissionAddressRate() : 0);
+        admissionAddressBurst = configReader.getInt(ADMISSION_ADDRESS_BURST, confAnn != null ? confAnn.admissionAddressBurst() : 0);
+        admissionAddressMaxEntries = configReader.getInt(ADMISSION_ADDRESS_MAX_ENTRIES, confAnn != null ? confAnn.admissionAddressMaxEntries() : 65536);
+        admissionTrustForwarded = configReader.getBoolean(ADMISSION_TRUST_FORWARDED, confAnn != null ? confAnn.admissionTrustForwarded() : false);
+        admissionMaxSessions = configReader.getInt(ADMISSION_MAX_SESSIONS, confAnn != null ? confAnn.admissionMaxSessions() : 0);
+        clusterTransportClass = configReader.getString(CLUSTER_TRANSPORT_CLASS, confAnn != null && !IWSClusterTransport.class.equals(confAnn.clusterTransportClass()) ? confAnn.clusterTransportClass().getName() : null);
+        clusterChannel = configReader.getString(CLUSTER_CHANNEL, confAnn != null ? confAnn.clusterChannel() : "ymp.websocket");
+        clusterBatchDelay = configReader.getLong(CLUSTER_BATCH_DELAY, confAnn != null ? confAnn.clusterBatchDelay() : 5);
+        clusterBatchMaxBytes = configReader.getInt(CLUSTER_BATCH_MAX_BYTES, confAnn != null ? confAnn.clusterBatchMaxBytes() : 65536);
+        shardCount = configReader.getInt(SHARD_COUNT, confAnn != null ? confAnn.shardCount() : 0);
+        shardKeyParam = configReader.getString(SHARD_KEY_PARAM, confAnn != null ? confAnn.shardKeyParam() : null);
+        attributeOffHeap = configReader.getBoolean(ATTRIBUTE_OFF_HEAP, confAnn != null ? confAnn.attributeOffHeap() : true);
+        inboundQueueCapacity = configReader.getInt(INBOUND_QUEUE_CAPACITY, confAnn != null ? confAnn.inboundQueueCapacity() : 1024);
+        inboundQueueTimeout = configReader.getLong(INBOUND_QUEUE_TIMEOUT, confAnn != null ? confAnn.inboundQueueTimeout() : 1000);
+        admissionTrustedHops = configReader.getInt(ADMISSION_TRUSTED_HOPS, confAnn != null ? confAnn.admissionTrustedHops() : 1);
     }
 
     @Override
     public void initialize(IWebSocket owner) throws Exception {
         if (!initialized) {
             if (enabled) {
-                // Do Nothing
+                if (broadcastThreadCount <= 0) {
+                    broadcastThreadCount = Runtime.getRuntime().availableProcessors();
+                }
+                if (broadcastChunkSize <= 0) {
+                    broadcastChunkSize = 512;
+                }
+                if (broadcastMaxPending <= 0) {
+                    broadcastMaxPending = 16;
+                }
+                if (dispatchPoolSize <= 0) {
+                    dispatchPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+                }
+                if (clientExecutorPoolSize <= 0) {
+                    clientExecutorPoolSize = 2;
+                }
+                if (heartbeatMaxMissed <= 0) {
+                    heartbeatMaxMissed = 3;
+                }
+                if (heartbeatWheelSize <= 0) {
+                    heartbeatWheelSize = 64;
+                }
+                if (aggregationSlabSize <= 0) {
+                    aggregationSlabSize = 65536;
+                }
+                if (aggregationPoolMaxSlabs < 0) {
+                    aggregationPoolMaxSlabs = 256;
+                }
+                if (aggregationMaxSize <= 0) {
+                    aggregationMaxSize = 16777216;
+                }
+                if (deflateLevel < 0 || deflateLevel > 9) {
+                    deflateLevel = 6;
+                }
+                if (deflateServerMaxWindowBits < 8 || deflateServerMaxWindowBits > 15) {
+                    deflateServerMaxWindowBits = 15;
+                }
+                if (deflateMinSize < 0) {
+                    deflateMinSize = 256;
+                }
+                if (deflateSampleRate < 0) {
+                    deflateSampleRate = 100;
+                }
+                if (admissionAddressMaxEntries <= 0) {
+                    admissionAddressMaxEntries = 65536;
+                }
+                if (StringUtils.isBlank(clusterChannel)) {
+                    clusterChannel = "ymp.websocket";
+                }
+                if (clusterBatchDelay <= 0) {
+                    clusterBatchDelay = 5;
+                }
+                if (clusterBatchMaxBytes <= 0) {
+                    clusterBatchMaxBytes = 65536;
+                }
+                if (shardCount <= 0) {
+                    shardCount = Runtime.getRuntime().availableProcessors();
+                }
             }
             initialized = true;
         }
@@ -140,6 +336,501 @@ public final class DefaultWebSocketConfig implements IWebSocketConfig {
         }
     }
 
+    @Override
+    public int getBroadcastThreadCount() {
+        return broadcastThreadCount;
+    }
+
+    public void setBroadcastThreadCount(int broadcastThreadCount) {
+        if (!initialized) {
+            this.broadcastThreadCount = broadcastThreadCount;
+        }
+    }
+
+    @Override
+    public int getBroadcastChunkSize() {
+        return broadcastChunkSize;
+    }
+
+    public void setBroadcastChunkSize(int broadcastChunkSize) {
+        if (!initialized) {
+            this.broadcastChunkSize = broadcastChunkSize;
+        }
+    }
+
+    @Override
+    public int getBroadcastMaxPending() {
+        return broadcastMaxPending;
+    }
+
+    public void setBroadcastMaxPending(int broadcastMaxPending) {
+        if (!initialized) {
+            this.broadcastMaxPending = broadcastMaxPending;
+        }
+    }
+
+    @Override
+    public int getOutboundQueueMaxMessages() {
+        return outboundQueueMaxMessages;
+    }
+
+    public void setOutboundQueueMaxMessages(int outboundQueueMaxMessages) {
+        if (!initialized) {
+            this.outboundQueueMaxMessages = outboundQueueMaxMessages;
+        }
+    }
+
+    @Override
+    public long getOutboundQueueMaxBytes() {
+        return outboundQueueMaxBytes;
+    }
+
+    public void setOutboundQueueMaxBytes(long outboundQueueMaxBytes) {
+        if (!initialized) {
+            this.outboundQueueMaxBytes = outboundQueueMaxBytes;
+        }
+    }
+
+    @Override
+    public WSOutboundQueue.OverflowPolicy getOutboundQueueOverflowPolicy() {
+        return outboundQueueOverflowPolicy;
+    }
+
+    public void setOutboundQueueOverflowPolicy(WSOutboundQueue.OverflowPolicy outboundQueueOverflowPolicy) {
+        if (!initialized) {
+            this.outboundQueueOverflowPolicy = outboundQueueOverflowPolicy;
+        }
+    }
+
+    @Override
+    public boolean isBatchingEnabled() {
+        return batchingEnabled;
+    }
+
+    public void setBatchingEnabled(boolean batchingEnabled) {
+        if (!initialized) {
+            this.batchingEnabled = batchingEnabled;
+        }
+    }
+
+    @Override
+    public long getBatchingMaxDelay() {
+        return batchingMaxDelay;
+    }
+
+    public void setBatchingMaxDelay(long batchingMaxDelay) {
+        if (!initialized) {
+            this.batchingMaxDelay = batchingMaxDelay;
+        }
+    }
+
+    @Override
+    public long getBatchingMaxBytes() {
+        return batchingMaxBytes;
+    }
+
+    public void setBatchingMaxBytes(long batchingMaxBytes) {
+        if (!initialized) {
+            this.batchingMaxBytes = batchingMaxBytes;
+        }
+    }
+
+    @Override
+    public int getDispatchPoolSize() {
+        return dispatchPoolSize;
+    }
+
+    public void setDispatchPoolSize(int dispatchPoolSize) {
+        if (!initialized) {
+            this.dispatchPoolSize = dispatchPoolSize;
+        }
+    }
+
+    @Override
+    public int getDispatchQueueCapacity() {
+        return dispatchQueueCapacity;
+    }
+
+    public void setDispatchQueueCapacity(int dispatchQueueCapacity) {
+        if (!initialized) {
+            this.dispatchQueueCapacity = dispatchQueueCapacity;
+        }
+    }
+
+    @Override
+    public WSDispatcher.Mode getClientExecutorMode() {
+        return clientExecutorMode;
+    }
+
+    public void setClientExecutorMode(WSDispatcher.Mode clientExecutorMode) {
+        if (!initialized) {
+            this.clientExecutorMode = clientExecutorMode;
+        }
+    }
+
+    @Override
+    public int getClientExecutorPoolSize() {
+        return clientExecutorPoolSize;
+    }
+
+    public void setClientExecutorPoolSize(int clientExecutorPoolSize) {
+        if (!initialized) {
+            this.clientExecutorPoolSize = clientExecutorPoolSize;
+        }
+    }
+
+    @Override
+    public long getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(long heartbeatInterval) {
+        if (!initialized) {
+            this.heartbeatInterval = heartbeatInterval;
+        }
+    }
+
+    @Override
+    public int getHeartbeatMaxMissed() {
+        return heartbeatMaxMissed;
+    }
+
+    public void setHeartbeatMaxMissed(int heartbeatMaxMissed) {
+        if (!initialized) {
+            this.heartbeatMaxMissed = heartbeatMaxMissed;
+        }
+    }
+
+    @Override
+    public int getHeartbeatWheelSize() {
+        return heartbeatWheelSize;
+    }
+
+    public void setHeartbeatWheelSize(int heartbeatWheelSize) {
+        if (!initialized) {
+            this.heartbeatWheelSize = heartbeatWheelSize;
+        }
+    }
+
+    @Override
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        if (!initialized) {
+            this.metricsEnabled = metricsEnabled;
+        }
+    }
+
+    @Override
+    public String getMetricsClass() {
+        return metricsClass;
+    }
+
+    public void setMetricsClass(String metricsClass) {
+        if (!initialized) {
+            this.metricsClass = metricsClass;
+        }
+    }
+
+    @Override
+    public int getAggregationSlabSize() {
+        return aggregationSlabSize;
+    }
+
+    public void setAggregationSlabSize(int aggregationSlabSize) {
+        if (!initialized) {
+            this.aggregationSlabSize = aggregationSlabSize;
+        }
+    }
+
+    @Override
+    public int getAggregationPoolMaxSlabs() {
+        return aggregationPoolMaxSlabs;
+    }
+
+    public void setAggregationPoolMaxSlabs(int aggregationPoolMaxSlabs) {
+        if (!initialized) {
+            this.aggregationPoolMaxSlabs = aggregationPoolMaxSlabs;
+        }
+    }
+
+    @Override
+    public int getAggregationMaxSize() {
+        return aggregationMaxSize;
+    }
+
+    public void setAggregationMaxSize(int aggregationMaxSize) {
+        if (!initialized) {
+            this.aggregationMaxSize = aggregationMaxSize;
+        }
+    }
+
+    @Override
+    public boolean isDeflateEnabled() {
+        return deflateEnabled;
+    }
+
+    public void setDeflateEnabled(boolean deflateEnabled) {
+        if (!initialized) {
+            this.deflateEnabled = deflateEnabled;
+        }
+    }
+
+    @Override
+    public int getDeflateLevel() {
+        return deflateLevel;
+    }
+
+    public void setDeflateLevel(int deflateLevel) {
+        if (!initialized) {
+            this.deflateLevel = deflateLevel;
+        }
+    }
+
+    @Override
+    public int getDeflateServerMaxWindowBits() {
+        return deflateServerMaxWindowBits;
+    }
+
+    public void setDeflateServerMaxWindowBits(int deflateServerMaxWindowBits) {
+        if (!initialized) {
+            this.deflateServerMaxWindowBits = deflateServerMaxWindowBits;
+        }
+    }
+
+    @Override
+    public boolean isDeflateServerNoContextTakeover() {
+        return deflateServerNoContextTakeover;
+    }
+
+    public void setDeflateServerNoContextTakeover(boolean deflateServerNoContextTakeover) {
+        if (!initialized) {
+            this.deflateServerNoContextTakeover = deflateServerNoContextTakeover;
+        }
+    }
+
+    @Override
+    public boolean isDeflateClientNoContextTakeover() {
+        return deflateClientNoContextTakeover;
+    }
+
+    public void setDeflateClientNoContextTakeover(boolean deflateClientNoContextTakeover) {
+        if (!initialized) {
+            this.deflateClientNoContextTakeover = deflateClientNoContextTakeover;
+        }
+    }
+
+    @Override
+    public int getDeflateMinSize() {
+        return deflateMinSize;
+    }
+
+    public void setDeflateMinSize(int deflateMinSize) {
+        if (!initialized) {
+            this.deflateMinSize = deflateMinSize;
+        }
+    }
+
+    @Override
+    public int getDeflateSampleRate() {
+        return deflateSampleRate;
+    }
+
+    public void setDeflateSampleRate(int deflateSampleRate) {
+        if (!initialized) {
+            this.deflateSampleRate = deflateSampleRate;
+        }
+    }
+
+    @Override
+    public int getAdmissionHandshakeRate() {
+        return admissionHandshakeRate;
+    }
+
+    public void setAdmissionHandshakeRate(int admissionHandshakeRate) {
+        if (!initialized) {
+            this.admissionHandshakeRate = admissionHandshakeRate;
+        }
+    }
+
+    @Override
+    public int getAdmissionHandshakeBurst() {
+        return admissionHandshakeBurst;
+    }
+
+    public void setAdmissionHandshakeBurst(int admissionHandshakeBurst) {
+        if (!initialized) {
+            this.admissionHandshakeBurst = admissionHandshakeBurst;
+        }
+    }
+
+    @Override
+    public int getAdmissionAddressRate() {
+        return admissionAddressRate;
+    }
+
+    public void setAdmissionAddressRate(int admissionAddressRate) {
+        if (!initialized) {
+            this.admissionAddressRate = admissionAddressRate;
+        }
+    }
+
+    @Override
+    public int getAdmissionAddressBurst() {
+        return admissionAddressBurst;
+    }
+
+    public void setAdmissionAddressBurst(int admissionAddressBurst) {
+        if (!initialized) {
+            this.admissionAddressBurst = admissionAddressBurst;
+        }
+    }
+
+    @Override
+    public int getAdmissionAddressMaxEntries() {
+        return admissionAddressMaxEntries;
+    }
+
+    public void setAdmissionAddressMaxEntries(int admissionAddressMaxEntries) {
+        if (!initialized) {
+            this.admissionAddressMaxEntries = admissionAddressMaxEntries;
+        }
+    }
+
+    @Override
+    public boolean isAdmissionTrustForwarded() {
+        return admissionTrustForwarded;
+    }
+
+    public void setAdmissionTrustForwarded(boolean admissionTrustForwarded) {
+        if (!initialized) {
+            this.admissionTrustForwarded = admissionTrustForwarded;
+        }
+    }
+
+    @Override
+    public int getAdmissionMaxSessions() {
+        return admissionMaxSessions;
+    }
+
+    public void setAdmissionMaxSessions(int admissionMaxSessions) {
+        if (!initialized) {
+            this.admissionMaxSessions = admissionMaxSessions;
+        }
+    }
+
+    @Override
+    public String getClusterTransportClass() {
+        return clusterTransportClass;
+    }
+
+    public void setClusterTransportClass(String clusterTransportClass) {
+        if (!initialized) {
+            this.clusterTransportClass = clusterTransportClass;
+        }
+    }
+
+    @Override
+    public String getClusterChannel() {
+        return clusterChannel;
+    }
+
+    public void setClusterChannel(String clusterChannel) {
+        if (!initialized) {
+            this.clusterChannel = clusterChannel;
+        }
+    }
+
+    @Override
+    public long getClusterBatchDelay() {
+        return clusterBatchDelay;
+    }
+
+    public void setClusterBatchDelay(long clusterBatchDelay) {
+        if (!initialized) {
+            this.clusterBatchDelay = clusterBatchDelay;
+        }
+    }
+
+    @Override
+    public int getClusterBatchMaxBytes() {
+        return clusterBatchMaxBytes;
+    }
+
+    public void setClusterBatchMaxBytes(int clusterBatchMaxBytes) {
+        if (!initialized) {
+            this.clusterBatchMaxBytes = clusterBatchMaxBytes;
+        }
+    }
+
+    @Override
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setShardCount(int shardCount) {
+        if (!initialized) {
+            this.shardCount = shardCount;
+        }
+    }
+
+    @Override
+    public String getShardKeyParam() {
+        return shardKeyParam;
+    }
+
+    public void setShardKeyParam(String shardKeyParam) {
+        if (!initialized) {
+            this.shardKeyParam = shardKeyParam;
+        }
+    }
+
+    @Override
+    public boolean isAttributeOffHeap() {
+        return attributeOffHeap;
+    }
+
+    public void setAttributeOffHeap(boolean attributeOffHeap) {
+        if (!initialized) {
+            this.attributeOffHeap = attributeOffHeap;
+        }
+    }
+
+    @Override
+    public int getInboundQueueCapacity() {
+        return inboundQueueCapacity;
+    }
+
+    public void setInboundQueueCapacity(int inboundQueueCapacity) {
+        if (!initialized) {
+            this.inboundQueueCapacity = inboundQueueCapacity;
+        }
+    }
+
+    @Override
+    public long getInboundQueueTimeout() {
+        return inboundQueueTimeout;
+    }
+
+    public void setInboundQueueTimeout(long inboundQueueTimeout) {
+        if (!initialized) {
+            this.inboundQueueTimeout = inboundQueueTimeout;
+        }
+    }
+
+    @Override
+    public int getAdmissionTrustedHops() {
+        return admissionTrustedHops;
+    }
+
+    public void setAdmissionTrustedHops(int admissionTrustedHops) {
+        if (!initialized) {
+            this.admissionTrustedHops = admissionTrustedHops;
+        }
+    }
+
     public static final class Builder {
 
         private final DefaultWebSocketConfig config = new DefaultWebSocketConfig();
@@ -172,6 +863,231 @@ public final class DefaultWebSocketConfig implements IWebSocketConfig {
             return this;
         }
 
+        public Builder broadcastThreadCount(int broadcastThreadCount) {
+            config.setBroadcastThreadCount(broadcastThreadCount);
+            return this;
+        }
+
+        public Builder broadcastChunkSize(int broadcastChunkSize) {
+            config.setBroadcastChunkSize(broadcastChunkSize);
+            return this;
+        }
+
+        public Builder broadcastMaxPending(int broadcastMaxPending) {
+            config.setBroadcastMaxPending(broadcastMaxPending);
+            return this;
+        }
+
+        public Builder outboundQueueMaxMessages(int outboundQueueMaxMessages) {
+            config.setOutboundQueueMaxMessages(outboundQueueMaxMessages);
+            return this;
+        }
+
+        public Builder outboundQueueMaxBytes(long outboundQueueMaxBytes) {
+            config.setOutboundQueueMaxBytes(outboundQueueMaxBytes);
+            return this;
+        }
+
+        public Builder outboundQueueOverflowPolicy(WSOutboundQueue.OverflowPolicy outboundQueueOverflowPolicy) {
+            config.setOutboundQueueOverflowPolicy(outboundQueueOverflowPolicy);
+            return this;
+        }
+
+        public Builder batchingEnabled(boolean batchingEnabled) {
+            config.setBatchingEnabled(batchingEnabled);
+            return this;
+        }
+
+        public Builder batchingMaxDelay(long batchingMaxDelay) {
+            config.setBatchingMaxDelay(batchingMaxDelay);
+            return this;
+        }
+
+        public Builder batchingMaxBytes(long batchingMaxBytes) {
+            config.setBatchingMaxBytes(batchingMaxBytes);
+            return this;
+        }
+
+        public Builder dispatchPoolSize(int dispatchPoolSize) {
+            config.setDispatchPoolSize(dispatchPoolSize);
+            return this;
+        }
+
+        public Builder dispatchQueueCapacity(int dispatchQueueCapacity) {
+            config.setDispatchQueueCapacity(dispatchQueueCapacity);
+            return this;
+        }
+
+        public Builder clientExecutorMode(WSDispatcher.Mode clientExecutorMode) {
+            config.setClientExecutorMode(clientExecutorMode);
+            return this;
+        }
+
+        public Builder clientExecutorPoolSize(int clientExecutorPoolSize) {
+            config.setClientExecutorPoolSize(clientExecutorPoolSize);
+            return this;
+        }
+
+        public Builder heartbeatInterval(long heartbeatInterval) {
+            config.setHeartbeatInterval(heartbeatInterval);
+            return this;
+        }
+
+        public Builder heartbeatMaxMissed(int heartbeatMaxMissed) {
+            config.setHeartbeatMaxMissed(heartbeatMaxMissed);
+            return this;
+        }
+
+        public Builder heartbeatWheelSize(int heartbeatWheelSize) {
+            config.setHeartbeatWheelSize(heartbeatWheelSize);
+            return this;
+        }
+
+        public Builder metricsEnabled(boolean metricsEnabled) {
+            config.setMetricsEnabled(metricsEnabled);
+            return this;
+        }
+
+        public Builder metricsClass(String metricsClass) {
+            config.setMetricsClass(metricsClass);
+            return this;
+        }
+
+        public Builder aggregationSlabSize(int aggregationSlabSize) {
+            config.setAggregationSlabSize(aggregationSlabSize);
+            return this;
+        }
+
+        public Builder aggregationPoolMaxSlabs(int aggregationPoolMaxSlabs) {
+            config.setAggregationPoolMaxSlabs(aggregationPoolMaxSlabs);
+            return this;
+        }
+
+        public Builder aggregationMaxSize(int aggregationMaxSize) {
+            config.setAggregationMaxSize(aggregationMaxSize);
+            return this;
+        }
+
+        public Builder deflateEnabled(boolean deflateEnabled) {
+            config.setDeflateEnabled(deflateEnabled);
+            return this;
+        }
+
+        public Builder deflateLevel(int deflateLevel) {
+            config.setDeflateLevel(deflateLevel);
+            return this;
+        }
+
+        public Builder deflateServerMaxWindowBits(int deflateServerMaxWindowBits) {
+            config.setDeflateServerMaxWindowBits(deflateServerMaxWindowBits);
+            return this;
+        }
+
+        public Builder deflateServerNoContextTakeover(boolean deflateServerNoContextTakeover) {
+            config.setDeflateServerNoContextTakeover(deflateServerNoContextTakeover);
+            return this;
+        }
+
+        public Builder deflateClientNoContextTakeover(boolean deflateClientNoContextTakeover) {
+            config.setDeflateClientNoContextTakeover(deflateClientNoContextTakeover);
+            return this;
+        }
+
+        public Builder deflateMinSize(int deflateMinSize) {
+            config.setDeflateMinSize(deflateMinSize);
+            return this;
+        }
+
+        public Builder deflateSampleRate(int deflateSampleRate) {
+            config.setDeflateSampleRate(deflateSampleRate);
+            return this;
+        }
+
+        public Builder admissionHandshakeRate(int admissionHandshakeRate) {
+            config.setAdmissionHandshakeRate(admissionHandshakeRate);
+            return this;
+        }
+
+        public Builder admissionHandshakeBurst(int admissionHandshakeBurst) {
+            config.setAdmissionHandshakeBurst(admissionHandshakeBurst);
+            return this;
+        }
+
+        public Builder admissionAddressRate(int admissionAddressRate) {
+            config.setAdmissionAddressRate(admissionAddressRate);
+            return this;
+        }
+
+        public Builder admissionAddressBurst(int admissionAddressBurst) {
+            config.setAdmissionAddressBurst(admissionAddressBurst);
+            return this;
+        }
+
+        public Builder admissionAddressMaxEntries(int admissionAddressMaxEntries) {
+            config.setAdmissionAddressMaxEntries(admissionAddressMaxEntries);
+            return this;
+        }
+
+        public Builder admissionTrustForwarded(boolean admissionTrustForwarded) {
+            config.setAdmissionTrustForwarded(admissionTrustForwarded);
+            return this;
+        }
+
+        public Builder admissionMaxSessions(int admissionMaxSessions) {
+            config.setAdmissionMaxSessions(admissionMaxSessions);
+            return this;
+        }
+
+        public Builder clusterTransportClass(String clusterTransportClass) {
+            config.setClusterTransportClass(clusterTransportClass);
+            return this;
+        }
+
+        public Builder clusterChannel(String clusterChannel) {
+            config.setClusterChannel(clusterChannel);
+            return this;
+        }
+
+        public Builder clusterBatchDelay(long clusterBatchDelay) {
+            config.setClusterBatchDelay(clusterBatchDelay);
+            return this;
+        }
+
+        public Builder clusterBatchMaxBytes(int clusterBatchMaxBytes) {
+            config.setClusterBatchMaxBytes(clusterBatchMaxBytes);
+            return this;
+        }
+
+        public Builder shardCount(int shardCount) {
+            config.setShardCount(shardCount);
+            return this;
+        }
+
+        public Builder shardKeyParam(String shardKeyParam) {
+            config.setShardKeyParam(shardKeyParam);
+            return this;
+        }
+
+        public Builder attributeOffHeap(boolean attributeOffHeap) {
+            config.setAttributeOffHeap(attributeOffHeap);
+            return this;
+        }
+
+        public Builder inboundQueueCapacity(int inboundQueueCapacity) {
+            config.setInboundQueueCapacity(inboundQueueCapacity);
+            return this;
+        }
+
+        public Builder inboundQueueTimeout(long inboundQueueTimeout) {
+            config.setInboundQueueTimeout(inboundQueueTimeout);
+            return this;
+        }
+
+        public Builder admissionTrustedHops(int admissionTrustedHops) {
+            config.setAdmissionTrustedHops(admissionTrustedHops);
+            return this;
+        }
+
         public DefaultWebSocketConfig build() {
             return config;
         }
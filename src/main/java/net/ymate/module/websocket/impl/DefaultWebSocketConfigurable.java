@@ -15,8 +15,12 @@
  */
 package net.ymate.module.websocket.impl;
 
+import net.ymate.module.websocket.IWSClusterTransport;
+import net.ymate.module.websocket.IWSMetrics;
 import net.ymate.module.websocket.IWebSocket;
 import net.ymate.module.websocket.IWebSocketConfig;
+import net.ymate.module.websocket.support.WSDispatcher;
+import net.ymate.module.websocket.support.WSOutboundQueue;
 import net.ymate.platform.core.module.IModuleConfigurer;
 import net.ymate.platform.core.module.impl.DefaultModuleConfigurable;
 
@@ -66,6 +70,231 @@ public final class DefaultWebSocketConfigurable extends DefaultModuleConfigurabl
             return this;
         }
 
+        public Builder broadcastThreadCount(int broadcastThreadCount) {
+            configurable.addConfig(IWebSocketConfig.BROADCAST_THREAD_COUNT, String.valueOf(broadcastThreadCount));
+            return this;
+        }
+
+        public Builder broadcastChunkSize(int broadcastChunkSize) {
+            configurable.addConfig(IWebSocketConfig.BROADCAST_CHUNK_SIZE, String.valueOf(broadcastChunkSize));
+            return this;
+        }
+
+        public Builder broadcastMaxPending(int broadcastMaxPending) {
+            configurable.addConfig(IWebSocketConfig.BROADCAST_MAX_PENDING, String.valueOf(broadcastMaxPending));
+            return this;
+        }
+
+        public Builder outboundQueueMaxMessages(int outboundQueueMaxMessages) {
+            configurable.addConfig(IWebSocketConfig.OUTBOUND_QUEUE_MAX_MESSAGES, String.valueOf(outboundQueueMaxMessages));
+            return this;
+        }
+
+        public Builder outboundQueueMaxBytes(long outboundQueueMaxBytes) {
+            configurable.addConfig(IWebSocketConfig.OUTBOUND_QUEUE_MAX_BYTES, String.valueOf(outboundQueueMaxBytes));
+            return this;
+        }
+
+        public Builder outboundQueueOverflowPolicy(WSOutboundQueue.OverflowPolicy outboundQueueOverflowPolicy) {
+            configurable.addConfig(IWebSocketConfig.OUTBOUND_QUEUE_OVERFLOW_POLICY, outboundQueueOverflowPolicy.name());
+            return this;
+        }
+
+        public Builder batchingEnabled(boolean batchingEnabled) {
+            configurable.addConfig(IWebSocketConfig.BATCHING_ENABLED, String.valueOf(batchingEnabled));
+            return this;
+        }
+
+        public Builder batchingMaxDelay(long batchingMaxDelay) {
+            configurable.addConfig(IWebSocketConfig.BATCHING_MAX_DELAY, String.valueOf(batchingMaxDelay));
+            return this;
+        }
+
+        public Builder batchingMaxBytes(long batchingMaxBytes) {
+            configurable.addConfig(IWebSocketConfig.BATCHING_MAX_BYTES, String.valueOf(batchingMaxBytes));
+            return this;
+        }
+
+        public Builder dispatchPoolSize(int dispatchPoolSize) {
+            configurable.addConfig(IWebSocketConfig.DISPATCH_POOL_SIZE, String.valueOf(dispatchPoolSize));
+            return this;
+        }
+
+        public Builder dispatchQueueCapacity(int dispatchQueueCapacity) {
+            configurable.addConfig(IWebSocketConfig.DISPATCH_QUEUE_CAPACITY, String.valueOf(dispatchQueueCapacity));
+            return this;
+        }
+
+        public Builder clientExecutorMode(WSDispatcher.Mode clientExecutorMode) {
+            configurable.addConfig(IWebSocketConfig.CLIENT_EXECUTOR_MODE, clientExecutorMode.name());
+            return this;
+        }
+
+        public Builder clientExecutorPoolSize(int clientExecutorPoolSize) {
+            configurable.addConfig(IWebSocketConfig.CLIENT_EXECUTOR_POOL_SIZE, String.valueOf(clientExecutorPoolSize));
+            return this;
+        }
+
+        public Builder heartbeatInterval(long heartbeatInterval) {
+            configurable.addConfig(IWebSocketConfig.HEARTBEAT_INTERVAL, String.valueOf(heartbeatInterval));
+            return this;
+        }
+
+        public Builder heartbeatMaxMissed(int heartbeatMaxMissed) {
+            configurable.addConfig(IWebSocketConfig.HEARTBEAT_MAX_MISSED, String.valueOf(heartbeatMaxMissed));
+            return this;
+        }
+
+        public Builder heartbeatWheelSize(int heartbeatWheelSize) {
+            configurable.addConfig(IWebSocketConfig.HEARTBEAT_WHEEL_SIZE, String.valueOf(heartbeatWheelSize));
+            return this;
+        }
+
+        public Builder metricsEnabled(boolean metricsEnabled) {
+            configurable.addConfig(IWebSocketConfig.METRICS_ENABLED, String.valueOf(metricsEnabled));
+            return this;
+        }
+
+        public Builder metricsClass(Class<? extends IWSMetrics> metricsClass) {
+            configurable.addConfig(IWebSocketConfig.METRICS_CLASS, metricsClass.getName());
+            return this;
+        }
+
+        public Builder aggregationSlabSize(int aggregationSlabSize) {
+            configurable.addConfig(IWebSocketConfig.AGGREGATION_SLAB_SIZE, String.valueOf(aggregationSlabSize));
+            return this;
+        }
+
+        public Builder aggregationPoolMaxSlabs(int aggregationPoolMaxSlabs) {
+            configurable.addConfig(IWebSocketConfig.AGGREGATION_POOL_MAX_SLABS, String.valueOf(aggregationPoolMaxSlabs));
+            return this;
+        }
+
+        public Builder aggregationMaxSize(int aggregationMaxSize) {
+            configurable.addConfig(IWebSocketConfig.AGGREGATION_MAX_SIZE, String.valueOf(aggregationMaxSize));
+            return this;
+        }
+
+        public Builder deflateEnabled(boolean deflateEnabled) {
+            configurable.addConfig(IWebSocketConfig.DEFLATE_ENABLED, String.valueOf(deflateEnabled));
+            return this;
+        }
+
+        public Builder deflateLevel(int deflateLevel) {
+            configurable.addConfig(IWebSocketConfig.DEFLATE_LEVEL, String.valueOf(deflateLevel));
+            return this;
+        }
+
+        public Builder deflateServerMaxWindowBits(int deflateServerMaxWindowBits) {
+            configurable.addConfig(IWebSocketConfig.DEFLATE_SERVER_MAX_WINDOW_BITS, String.valueOf(deflateServerMaxWindowBits));
+            return this;
+        }
+
+        public Builder deflateServerNoContextTakeover(boolean deflateServerNoContextTakeover) {
+            configurable.addConfig(IWebSocketConfig.DEFLATE_SERVER_NO_CONTEXT_TAKEOVER, String.valueOf(deflateServerNoContextTakeover));
+            return this;
+        }
+
+        public Builder deflateClientNoContextTakeover(boolean deflateClientNoContextTakeover) {
+            configurable.addConfig(IWebSocketConfig.DEFLATE_CLIENT_NO_CONTEXT_TAKEOVER, String.valueOf(deflateClientNoContextTakeover));
+            return this;
+        }
+
+        public Builder deflateMinSize(int deflateMinSize) {
+            configurable.addConfig(IWebSocketConfig.DEFLATE_MIN_SIZE, String.valueOf(deflateMinSize));
+            return this;
+        }
+
+        public Builder deflateSampleRate(int deflateSampleRate) {
+            configurable.addConfig(IWebSocketConfig.DEFLATE_SAMPLE_RATE, String.valueOf(deflateSampleRate));
+            return this;
+        }
+
+        public Builder admissionHandshakeRate(int admissionHandshakeRate) {
+            configurable.addConfig(IWebSocketConfig.ADMISSION_HANDSHAKE_RATE, String.valueOf(admissionHandshakeRate));
+            return this;
+        }
+
+        public Builder admissionHandshakeBurst(int admissionHandshakeBurst) {
+            configurable.addConfig(IWebSocketConfig.ADMISSION_HANDSHAKE_BURST, String.valueOf(admissionHandshakeBurst));
+            return this;
+        }
+
+        public Builder admissionAddressRate(int admissionAddressRate) {
+            configurable.addConfig(IWebSocketConfig.ADMISSION_ADDRESS_RATE, String.valueOf(admissionAddressRate));
+            return this;
+        }
+
+        public Builder admissionAddressBurst(int admissionAddressBurst) {
+            configurable.addConfig(IWebSocketConfig.ADMISSION_ADDRESS_BURST, String.valueOf(admissionAddressBurst));
+            return this;
+        }
+
+        public Builder admissionAddressMaxEntries(int admissionAddressMaxEntries) {
+            configurable.addConfig(IWebSocketConfig.ADMISSION_ADDRESS_MAX_ENTRIES, String.valueOf(admissionAddressMaxEntries));
+            return this;
+        }
+
+        public Builder admissionTrustForwarded(boolean admissionTrustForwarded) {
+            configurable.addConfig(IWebSocketConfig.ADMISSION_TRUST_FORWARDED, String.valueOf(admissionTrustForwarded));
+            return this;
+        }
+
+        public Builder admissionMaxSessions(int admissionMaxSessions) {
+            configurable.addConfig(IWebSocketConfig.ADMISSION_MAX_SESSIONS, String.valueOf(admissionMaxSessions));
+            return this;
+        }
+
+        public Builder clusterTransportClass(Class<? extends IWSClusterTransport> clusterTransportClass) {
+            configurable.addConfig(IWebSocketConfig.CLUSTER_TRANSPORT_CLASS, clusterTransportClass.getName());
+            return this;
+        }
+
+        public Builder clusterChannel(String clusterChannel) {
+            configurable.addConfig(IWebSocketConfig.CLUSTER_CHANNEL, clusterChannel);
+            return this;
+        }
+
+        public Builder clusterBatchDelay(long clusterBatchDelay) {
+            configurable.addConfig(IWebSocketConfig.CLUSTER_BATCH_DELAY, String.valueOf(clusterBatchDelay));
+            return this;
+        }
+
+        public Builder clusterBatchMaxBytes(int clusterBatchMaxBytes) {
+            configurable.addConfig(IWebSocketConfig.CLUSTER_BATCH_MAX_BYTES, String.valueOf(clusterBatchMaxBytes));
+            return this;
+        }
+
+        public Builder shardCount(int shardCount) {
+            configurable.addConfig(IWebSocketConfig.SHARD_COUNT, String.valueOf(shardCount));
+            return this;
+        }
+
+        public Builder shardKeyParam(String shardKeyParam) {
+            configurable.addConfig(IWebSocketConfig.SHARD_KEY_PARAM, shardKeyParam);
+            return this;
+        }
+
+        public Builder attributeOffHeap(boolean attributeOffHeap) {
+            configurable.addConfig(IWebSocketConfig.ATTRIBUTE_OFF_HEAP, String.valueOf(attributeOffHeap));
+            return this;
+        }
+
+        public Builder inboundQueueCapacity(int inboundQueueCapacity) {
+            configurable.addConfig(IWebSocketConfig.INBOUND_QUEUE_CAPACITY, String.valueOf(inboundQueueCapacity));
+            return this;
+        }
+
+        public Builder inboundQueueTimeout(long inboundQueueTimeout) {
+            configurable.addConfig(IWebSocketConfig.INBOUND_QUEUE_TIMEOUT, String.valueOf(inboundQueueTimeout));
+            return this;
+        }
+
+        public Builder admissionTrustedHops(int admissionTrustedHops) {
+            configurable.addConfig(IWebSocketConfig.ADMISSION_TRUSTED_HOPS, String.valueOf(admissionTrustedHops));
+            return this;
+        }
+
         public IModuleConfigurer build() {
             return configurable.toModuleConfigurer();
         }
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.impl;
+
+import net.ymate.module.websocket.IWSMessageCodec;
+import net.ymate.module.websocket.support.WSMessageCodecs;
+
+import javax.websocket.DecodeException;
+import javax.websocket.EncodeException;
+import java.lang.reflect.Array;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * JSON文本编解码器(子协议: json), 直接对编解码对象模型进行序列化及解析, 不依赖反射;
+ * 编码时写入线程本地的StringBuilder, byte[]及ByteBuffer将被编码为Base64字符串
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 下午4:40
+ * @since 2.0.0
+ */
+public final class JsonWSMessageCodec implements IWSMessageCodec {
+
+    public static final String SUBPROTOCOL = "json";
+
+    public static final JsonWSMessageCodec INSTANCE = new JsonWSMessageCodec();
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final int MAX_DEPTH = 512;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<StringBuilder> SCRATCH = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+
+    private JsonWSMessageCodec() {
+    }
+
+    @Override
+    public String getSubprotocol() {
+        return SUBPROTOCOL;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return false;
+    }
+
+    @Override
+    public Object encode(Object value) throws EncodeException {
+        StringBuilder builder = SCRATCH.get();
+        builder.setLength(0);
+        try {
+            doWrite(builder, value);
+            return builder.toString();
+        } finally {
+            if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+                SCRATCH.set(new StringBuilder(INITIAL_CAPACITY));
+            }
+        }
+    }
+
+    @Override
+    public Object decode(Object frame) throws DecodeException {
+        String text;
+        if (frame instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) frame).duplicate();
+            text = StandardCharsets.UTF_8.decode(buffer).toString();
+        } else {
+            text = String.valueOf(frame);
+        }
+        Parser parser = new Parser(text);
+        try {
+            Object value = parser.readValue(0);
+            parser.skipWhitespace();
+            if (parser.position < text.length()) {
+                throw parser.error("Unexpected trailing characters");
+            }
+            return value;
+        } catch (IndexOutOfBoundsException e) {
+            throw new DecodeException(text, "Unexpected end of JSON input", e);
+        }
+    }
+
+    private void doWrite(StringBuilder builder, Object value) throws EncodeException {
+        if (value == null) {
+            builder.append("null");
+        } else if (value instanceof CharSequence || value instanceof Character) {
+            doWriteString(builder, value.toString());
+        } else if (value instanceof Boolean) {
+            builder.append(((Boolean) value).booleanValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                builder.append("null");
+            } else {
+                builder.append(value);
+            }
+        } else if (value instanceof Number) {
+            builder.append(value);
+        } else if (value instanceof Enum) {
+            doWriteString(builder, ((Enum<?>) value).name());
+        } else if (value instanceof byte[]) {
+            builder.append('"').append(Base64.getEncoder().encodeToString((byte[]) value)).append('"');
+        } else if (value instanceof ByteBuffer) {
+            ByteBuffer source = ((ByteBuffer) value).duplicate();
+            builder.append('"').append(StandardCharsets.ISO_8859_1.decode(Base64.getEncoder().encode(source))).append('"');
+        } else if (value instanceof Map) {
+            builder.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    builder.append(',');
+                }
+                first = false;
+                doWriteString(builder, String.valueOf(entry.getKey()));
+                builder.append(':');
+                doWrite(builder, entry.getValue());
+            }
+            builder.append('}');
+        } else if (value instanceof Collection) {
+            builder.append('[');
+            boolean first = true;
+            for (Object item : (Collection<?>) value) {
+                if (!first) {
+                    builder.append(',');
+                }
+                first = false;
+                doWrite(builder, item);
+            }
+            builder.append(']');
+        } else if (value.getClass().isArray()) {
+            builder.append('[');
+            int length = Array.getLength(value);
+            for (int idx = 0; idx < length; idx++) {
+                if (idx > 0) {
+                    builder.append(',');
+                }
+                doWrite(builder, Array.get(value, idx));
+            }
+            builder.append(']');
+        } else {
+            throw new EncodeException(value, String.format("Unsupported JSON type [%s]", value.getClass().getName()));
+        }
+    }
+
+    private static void doWriteString(StringBuilder builder, String value) {
+        builder.append('"');
+        int start = 0;
+        int length = value.length();
+        for (int idx = 0; idx < length; idx++) {
+            char c = value.charAt(idx);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            builder.append(value, start, idx);
+            start = idx + 1;
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\b':
+                    builder.append("\\b");
+                    break;
+                case '\f':
+                    builder.append("\\f");
+                    break;
+                default:
+                    builder.append("\\u").append(HEX[c >> 12 & 0xf]).append(HEX[c >> 8 & 0xf]).append(HEX[c >> 4 & 0xf]).append(HEX[c & 0xf]);
+            }
+        }
+        builder.append(value, start, length).append('"');
+    }
+
+    /**
+     * 递归下降解析器, 对象解析为LinkedHashMap, 数组解析为ArrayList, 整数按范围解析为Integer、Long或BigInteger
+     */
+    private static final class Parser {
+
+        private final String text;
+
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        DecodeException error(String message) {
+            return new DecodeException(text, String.format("%s at position %d", message, position));
+        }
+
+        void skipWhitespace() {
+            while (position < text.length()) {
+                char c = text.charAt(position);
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                    break;
+                }
+                position++;
+            }
+        }
+
+        Object readValue(int depth) throws DecodeException {
+            if (depth > MAX_DEPTH) {
+                throw error("JSON nesting too deep");
+            }
+            skipWhitespace();
+            char c = text.charAt(position);
+            switch (c) {
+                case '{':
+                    return readObject(depth);
+                case '[':
+                    return readArray(depth);
+                case '"':
+                    return readString();
+                case 't':
+                    return readLiteral("true", Boolean.TRUE);
+                case 'f':
+                    return readLiteral("false", Boolean.FALSE);
+                case 'n':
+                    return readLiteral("null", null);
+                default:
+                    if (c == '-' || c >= '0' && c <= '9') {
+                        return readNumber();
+                    }
+                    throw error(String.format("Unexpected character '%s'", c));
+            }
+        }
+
+        Object readLiteral(String literal, Object value) throws DecodeException {
+            if (!text.startsWith(literal, position)) {
+                throw error("Invalid literal");
+            }
+            position += literal.length();
+            return value;
+        }
+
+        Map<String, Object> readObject(int depth) throws DecodeException {
+            Map<String, Object> map = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (text.charAt(position) == '}') {
+                position++;
+                return map;
+            }
+            while (true) {
+                skipWhitespace();
+                if (text.charAt(position) != '"') {
+                    throw error("Expected string key");
+                }
+                String key = readString();
+                skipWhitespace();
+                if (text.charAt(position++) != ':') {
+                    throw error("Expected ':'");
+                }
+                map.put(key, readValue(depth + 1));
+                skipWhitespace();
+                char c = text.charAt(position++);
+                if (c == '}') {
+                    return map;
+                } else if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        List<Object> readArray(int depth) throws DecodeException {
+            List<Object> list = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (text.charAt(position) == ']') {
+                position++;
+                return list;
+            }
+            while (true) {
+                list.add(readValue(depth + 1));
+                skipWhitespace();
+                char c = text.charAt(position++);
+                if (c == ']') {
+                    return list;
+                } else if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        String readString() throws DecodeException {
+            int start = ++position;
+            StringBuilder builder = null;
+            while (true) {
+                char c = text.charAt(position);
+                if (c == '"') {
+                    String value = builder == null ? text.substring(start, position) : builder.append(text, start, position).toString();
+                    position++;
+                    return value;
+                } else if (c == '\\') {
+                    if (builder == null) {
+                        builder = new StringBuilder(position - start + 16);
+                    }
+                    builder.append(text, start, position);
+                    char escaped = text.charAt(position + 1);
+                    position += 2;
+                    switch (escaped) {
+                        case '"':
+                        case '\\':
+                        case '/':
+                            builder.append(escaped);
+                            break;
+                        case 'n':
+                            builder.append('\n');
+                            break;
+                        case 'r':
+                            builder.append('\r');
+                            break;
+                        case 't':
+                            builder.append('\t');
+                            break;
+                        case 'b':
+                            builder.append('\b');
+                            break;
+                        case 'f':
+                            builder.append('\f');
+                            break;
+                        case 'u':
+                            try {
+                                builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                            } catch (NumberFormatException e) {
+                                throw error("Invalid unicode escape");
+                            }
+                            position += 4;
+                            break;
+                        default:
+                            throw error("Invalid escape character");
+                    }
+                    start = position;
+                } else if (c < 0x20) {
+                    throw error("Unescaped control character");
+                } else {
+                    position++;
+                }
+            }
+        }
+
+        Number readNumber() throws DecodeException {
+            int start = position;
+            boolean decimal = false;
+            while (position < text.length()) {
+                char c = text.charAt(position);
+                if (c >= '0' && c <= '9' || c == '-' || c == '+') {
+                    position++;
+                } else if (c == '.' || c == 'e' || c == 'E') {
+                    decimal = true;
+                    position++;
+                } else {
+                    break;
+                }
+            }
+            String number = text.substring(start, position);
+            try {
+                if (decimal) {
+                    return Double.parseDouble(number);
+                }
+                if (number.length() < 10) {
+                    return Integer.parseInt(number);
+                } else if (number.length() < 19) {
+                    long value = Long.parseLong(number);
+                    return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (Number) (int) value : (Number) value;
+                }
+                BigInteger value = new BigInteger(number);
+                return value.bitLength() < 64 ? (Number) value.longValue() : value;
+            } catch (NumberFormatException e) {
+                throw error("Invalid number");
+            }
+        }
+    }
+
+    public static class Encoder extends WSMessageCodecs.TextEncoder {
+
+        public Encoder() {
+            super(INSTANCE);
+        }
+    }
+
+    public static class Decoder extends WSMessageCodecs.TextDecoder {
+
+        public Decoder() {
+            super(INSTANCE);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.impl;
+
+import net.ymate.module.websocket.IWSClusterTransport;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * 进程内回环集群传输(参考实现), 同一JVM中订阅同一通道的全部实例相互可见, 适用于测试及单机多模块实例场景,
+ * 消息批次在发布者线程中同步投递给各订阅者(包括发布者自身)
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/17 下午2:10
+ * @since 2.0.0
+ */
+public class LoopbackWSClusterTransport implements IWSClusterTransport {
+
+    private static final Map<String, Set<Receiver>> CHANNELS = new ConcurrentHashMap<>();
+
+    private volatile String channel;
+
+    private volatile Receiver receiver;
+
+    @Override
+    public void start(String channel, Receiver receiver) {
+        this.channel = channel;
+        this.receiver = receiver;
+        CHANNELS.computeIfAbsent(channel, key -> new CopyOnWriteArraySet<>()).add(receiver);
+    }
+
+    @Override
+    public void publish(byte[] batch) {
+        String current = channel;
+        Set<Receiver> receivers = current != null ? CHANNELS.get(current) : null;
+        if (receivers != null) {
+            for (Receiver subscriber : receivers) {
+                subscriber.onReceive(batch);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        String current = channel;
+        Receiver currentReceiver = receiver;
+        if (current != null && currentReceiver != null) {
+            CHANNELS.computeIfPresent(current, (key, receivers) -> {
+                receivers.remove(currentReceiver);
+                return receivers.isEmpty() ? null : receivers;
+            });
+        }
+        channel = null;
+        receiver = null;
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.impl;
+
+import net.ymate.module.websocket.IWSMessageCodec;
+import net.ymate.module.websocket.support.WSMessageCodecs;
+
+import javax.websocket.DecodeException;
+import javax.websocket.EncodeException;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * MessagePack二进制编解码器(子协议: msgpack), 支持nil、bool、int、float、str、bin、array及map类型(不支持ext类型),
+ * 编码时写入线程本地的可扩展缓冲区, 仅在输出时按实际大小复制一次
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 下午4:05
+ * @since 2.0.0
+ */
+public final class MsgPackWSMessageCodec implements IWSMessageCodec {
+
+    public static final String SUBPROTOCOL = "msgpack";
+
+    public static final MsgPackWSMessageCodec INSTANCE = new MsgPackWSMessageCodec();
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * 超过此容量的线程本地缓冲区在使用后将被丢弃, 避免偶发的大消息长期占用内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> SCRATCH = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_CAPACITY));
+
+    private MsgPackWSMessageCodec() {
+    }
+
+    @Override
+    public String getSubprotocol() {
+        return SUBPROTOCOL;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return true;
+    }
+
+    @Override
+    public Object encode(Object value) throws EncodeException {
+        ByteBuffer buffer = SCRATCH.get();
+        buffer.clear();
+        try {
+            buffer = doWrite(buffer, value);
+            buffer.flip();
+            ByteBuffer result = ByteBuffer.allocate(buffer.remaining());
+            result.put(buffer).flip();
+            return result;
+        } finally {
+            SCRATCH.set(buffer.capacity() > MAX_RETAINED_CAPACITY ? ByteBuffer.allocate(INITIAL_CAPACITY) : buffer);
+        }
+    }
+
+    @Override
+    public Object decode(Object frame) throws DecodeException {
+        ByteBuffer buffer = frame instanceof ByteBuffer ? ((ByteBuffer) frame).duplicate() : ByteBuffer.wrap(String.valueOf(frame).getBytes(StandardCharsets.UTF_8));
+        try {
+            Object value = doRead(buffer);
+            if (buffer.hasRemaining()) {
+                throw new DecodeException(buffer, "Unexpected trailing bytes");
+            }
+            return value;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new DecodeException(buffer, "Truncated or malformed msgpack data", e);
+        }
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buffer, int size) {
+        if (buffer.remaining() >= size) {
+            return buffer;
+        }
+        int capacity = Math.max(buffer.capacity() << 1, buffer.position() + size);
+        ByteBuffer newBuffer = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        return newBuffer.put(buffer);
+    }
+
+    private ByteBuffer doWrite(ByteBuffer buffer, Object value) throws EncodeException {
+        if (value == null) {
+            return ensure(buffer, 1).put((byte) 0xc0);
+        } else if (value instanceof Boolean) {
+            return ensure(buffer, 1).put((byte) ((Boolean) value ? 0xc3 : 0xc2));
+        } else if (value instanceof Float) {
+            return ensure(buffer, 5).put((byte) 0xca).putFloat((Float) value);
+        } else if (value instanceof Double || value instanceof BigDecimal) {
+            return ensure(buffer, 9).put((byte) 0xcb).putDouble(((Number) value).doubleValue());
+        } else if (value instanceof BigInteger) {
+            if (((BigInteger) value).bitLength() > 64 || ((BigInteger) value).signum() < 0 && ((BigInteger) value).bitLength() > 63) {
+                throw new EncodeException(value, "Integer out of msgpack range");
+            }
+            if (((BigInteger) value).bitLength() == 64) {
+                return ensure(buffer, 9).put((byte) 0xcf).putLong(((BigInteger) value).longValue());
+            }
+            return doWriteLong(buffer, ((BigInteger) value).longValue());
+        } else if (value instanceof Number) {
+            return doWriteLong(buffer, ((Number) value).longValue());
+        } else if (value instanceof CharSequence || value instanceof Character || value instanceof Enum) {
+            String str = value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+            return doWriteRaw(buffer, str.getBytes(StandardCharsets.UTF_8), 0xa0, 0xd9, 0xda, 0xdb);
+        } else if (value instanceof byte[]) {
+            return doWriteRaw(buffer, (byte[]) value, -1, 0xc4, 0xc5, 0xc6);
+        } else if (value instanceof ByteBuffer) {
+            ByteBuffer source = ((ByteBuffer) value).duplicate();
+            byte[] bytes = new byte[source.remaining()];
+            source.get(bytes);
+            return doWriteRaw(buffer, bytes, -1, 0xc4, 0xc5, 0xc6);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            buffer = doWriteHeader(buffer, map.size(), 0x80, 0xde, 0xdf);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                buffer = doWrite(buffer, entry.getKey());
+                buffer = doWrite(buffer, entry.getValue());
+            }
+            return buffer;
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            buffer = doWriteHeader(buffer, collection.size(), 0x90, 0xdc, 0xdd);
+            for (Object item : collection) {
+                buffer = doWrite(buffer, item);
+            }
+            return buffer;
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            buffer = doWriteHeader(buffer, length, 0x90, 0xdc, 0xdd);
+            for (int idx = 0; idx < length; idx++) {
+                buffer = doWrite(buffer, Array.get(value, idx));
+            }
+            return buffer;
+        }
+        throw new EncodeException(value, String.format("Unsupported msgpack type [%s]", value.getClass().getName()));
+    }
+
+    private static ByteBuffer doWriteLong(ByteBuffer buffer, long value) {
+        if (value >= -32 && value <= 127) {
+            return ensure(buffer, 1).put((byte) value);
+        } else if (value >= 0) {
+            if (value <= 0xff) {
+                return ensure(buffer, 2).put((byte) 0xcc).put((byte) value);
+            } else if (value <= 0xffff) {
+                return ensure(buffer, 3).put((byte) 0xcd).putShort((short) value);
+            } else if (value <= 0xffffffffL) {
+                return ensure(buffer, 5).put((byte) 0xce).putInt((int) value);
+            }
+            return ensure(buffer, 9).put((byte) 0xcf).putLong(value);
+        } else if (value >= Byte.MIN_VALUE) {
+            return ensure(buffer, 2).put((byte) 0xd0).put((byte) value);
+        } else if (value >= Short.MIN_VALUE) {
+            return ensure(buffer, 3).put((byte) 0xd1).putShort((short) value);
+        } else if (value >= Integer.MIN_VALUE) {
+            return ensure(buffer, 5).put((byte) 0xd2).putInt((int) value);
+        }
+        return ensure(buffer, 9).put((byte) 0xd3).putLong(value);
+    }
+
+    private static ByteBuffer doWriteRaw(ByteBuffer buffer, byte[] bytes, int fixPrefix, int prefix8, int prefix16, int prefix32) {
+        int length = bytes.length;
+        if (fixPrefix >= 0 && length < 32) {
+            buffer = ensure(buffer, 1 + length).put((byte) (fixPrefix | length));
+        } else if (length <= 0xff) {
+            buffer = ensure(buffer, 2 + length).put((byte) prefix8).put((byte) length);
+        } else if (length <= 0xffff) {
+            buffer = ensure(buffer, 3 + length).put((byte) prefix16).putShort((short) length);
+        } else {
+            buffer = ensure(buffer, 5 + length).put((byte) prefix32).putInt(length);
+        }
+        return buffer.put(bytes);
+    }
+
+    private static ByteBuffer doWriteHeader(ByteBuffer buffer, int size, int fixPrefix, int prefix16, int prefix32) {
+        if (size < 16) {
+            return ensure(buffer, 1).put((byte) (fixPrefix | size));
+        } else if (size <= 0xffff) {
+            return ensure(buffer, 3).put((byte) prefix16).putShort((short) size);
+        }
+        return ensure(buffer, 5).put((byte) prefix32).putInt(size);
+    }
+
+    private Object doRead(ByteBuffer buffer) throws DecodeException {
+        int type = buffer.get() & 0xff;
+        if (type <= 0x7f) {
+            return type;
+        } else if (type >= 0xe0) {
+            return (int) (byte) type;
+        } else if ((type & 0xe0) == 0xa0) {
+            return doReadString(buffer, type & 0x1f);
+        } else if ((type & 0xf0) == 0x90) {
+            return doReadArray(buffer, type & 0x0f);
+        } else if ((type & 0xf0) == 0x80) {
+            return doReadMap(buffer, type & 0x0f);
+        }
+        switch (type) {
+            case 0xc0:
+                return null;
+            case 0xc2:
+                return Boolean.FALSE;
+            case 0xc3:
+                return Boolean.TRUE;
+            case 0xc4:
+                return doReadBytes(buffer, buffer.get() & 0xff);
+            case 0xc5:
+                return doReadBytes(buffer, buffer.getShort() & 0xffff);
+            case 0xc6:
+                return doReadBytes(buffer, doReadLength(buffer));
+            case 0xca:
+                return buffer.getFloat();
+            case 0xcb:
+                return buffer.getDouble();
+            case 0xcc:
+                return buffer.get() & 0xff;
+            case 0xcd:
+                return buffer.getShort() & 0xffff;
+            case 0xce:
+                return doNarrow(buffer.getInt() & 0xffffffffL);
+            case 0xcf:
+                long value = buffer.getLong();
+                return value >= 0 ? value : new BigInteger(Long.toUnsignedString(value));
+            case 0xd0:
+                return (int) buffer.get();
+            case 0xd1:
+                return (int) buffer.getShort();
+            case 0xd2:
+                return buffer.getInt();
+            case 0xd3:
+                return doNarrow(buffer.getLong());
+            case 0xd9:
+                return doReadString(buffer, buffer.get() & 0xff);
+            case 0xda:
+                return doReadString(buffer, buffer.getShort() & 0xffff);
+            case 0xdb:
+                return doReadString(buffer, doReadLength(buffer));
+            case 0xdc:
+                return doReadArray(buffer, buffer.getShort() & 0xffff);
+            case 0xdd:
+                return doReadArray(buffer, doReadLength(buffer));
+            case 0xde:
+                return doReadMap(buffer, buffer.getShort() & 0xffff);
+            case 0xdf:
+                return doReadMap(buffer, doReadLength(buffer));
+            default:
+                throw new DecodeException(buffer, String.format("Unsupported msgpack type 0x%02x", type));
+        }
+    }
+
+    private static Object doNarrow(long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    private static int doReadLength(ByteBuffer buffer) throws DecodeException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new DecodeException(buffer, "Invalid msgpack length");
+        }
+        return length;
+    }
+
+    private static byte[] doReadBytes(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static String doReadString(ByteBuffer buffer, int length) {
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        return new String(doReadBytes(buffer, length), StandardCharsets.UTF_8);
+    }
+
+    private List<Object> doReadArray(ByteBuffer buffer, int size) throws DecodeException {
+        // 每个元素至少占用1字节, 据此校验长度避免恶意数据导致过量分配
+        if (size > buffer.remaining()) {
+            throw new DecodeException(buffer, "Invalid msgpack array size");
+        }
+        List<Object> list = new ArrayList<>(size);
+        for (int idx = 0; idx < size; idx++) {
+            list.add(doRead(buffer));
+        }
+        return list;
+    }
+
+    private Map<Object, Object> doReadMap(ByteBuffer buffer, int size) throws DecodeException {
+        if (size > buffer.remaining() / 2) {
+            throw new DecodeException(buffer, "Invalid msgpack map size");
+        }
+        Map<Object, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+        for (int idx = 0; idx < size; idx++) {
+            Object key = doRead(buffer);
+            map.put(key, doRead(buffer));
+        }
+        return map;
+    }
+
+    public static class Encoder extends WSMessageCodecs.BinaryEncoder {
+
+        public Encoder() {
+            super(INSTANCE);
+        }
+    }
+
+    public static class Decoder extends WSMessageCodecs.BinaryDecoder {
+
+        public Decoder() {
+            super(INSTANCE);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.impl;
+
+import net.ymate.module.websocket.IWSMetrics;
+
+/**
+ * 空监控指标采集实现(默认), 所有方法均为空操作, 调用点可被JIT内联消除
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 上午9:30
+ * @since 2.0.0
+ */
+public final class NoOpWSMetrics implements IWSMetrics {
+
+    public static final NoOpWSMetrics INSTANCE = new NoOpWSMetrics();
+
+    private NoOpWSMetrics() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void sessionOpened(String path) {
+    }
+
+    @Override
+    public void sessionClosed(String path, int closeCode) {
+    }
+
+    @Override
+    public void sessionError(String path) {
+    }
+
+    @Override
+    public void messageReceived(String path, long bytes) {
+    }
+
+    @Override
+    public void messageSent(String path, long bytes) {
+    }
+
+    @Override
+    public void handlerLatency(String path, long nanos) {
+    }
+
+    @Override
+    public void heartbeatRtt(String path, long nanos) {
+    }
+
+    @Override
+    public void clientConnected(String uri) {
+    }
+
+    @Override
+    public void clientConnectFailed(String uri) {
+    }
+
+    @Override
+    public void shardSessionOpened(int shard) {
+    }
+
+    @Override
+    public void shardSessionClosed(int shard) {
+    }
+
+    @Override
+    public void shardTaskExecuted(int shard, long waitNanos) {
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWebSocketConfig;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 握手准入控制器: 全局及按客户端地址的握手速率限制, 以及按端点路径的最大并发会话数量限制;
+ * 速率限制采用GCRA(通用信元速率算法)实现的令牌桶, 每个桶仅由一个AtomicLong表示(理论到达时间), 单次判定为一次CAS操作,
+ * 按地址的桶在空闲(桶已满)后即可回收, 地址映射的大小受限; 映射已满时的即时回收按最小间隔限流, 避免每个新地址都触发全量扫描;
+ * 会话数量限制在准入时为端点预留名额(已注册会话数与握手中的预留数之和不超过上限), 会话开启并注册后或升级失败时释放
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/16 下午4:30
+ * @since 2.0.0
+ */
+public class WSAdmissionController {
+
+    /**
+     * 准入
+     */
+    public static final int ADMITTED = 0;
+
+    /**
+     * 速率超限
+     */
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * 会话数量已达上限
+     */
+    public static final int SERVICE_UNAVAILABLE = 503;
+
+    private final WSSessionRegistry sessionRegistry;
+
+    private final Bucket globalBucket;
+
+    private final long addressInterval;
+
+    private final long addressTolerance;
+
+    private final int maxAddressEntries;
+
+    /**
+     * 映射已满时两次即时回收之间的最小间隔, 单位: 纳秒
+     */
+    private static final long EVICT_MIN_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final boolean trustForwarded;
+
+    private final int trustedHops;
+
+    /**
+     * 预留名额的最长保留时间, 超时仍未释放的预留视为握手已失败并被清除, 单位: 纳秒
+     */
+    private static final long RESERVATION_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+
+    private final AtomicLong lastEvictTime = new AtomicLong(System.nanoTime() - EVICT_MIN_INTERVAL);
+
+    private final Map<String, AtomicLong> addressBuckets = new ConcurrentHashMap<>();
+
+    private final LongAdder admittedCount = new LongAdder();
+
+    private final LongAdder rateLimitedCount = new LongAdder();
+
+    private final LongAdder addressLimitedCount = new LongAdder();
+
+    private final LongAdder capacityLimitedCount = new LongAdder();
+
+    public WSAdmissionController(IWebSocketConfig config, WSSessionRegistry sessionRegistry) {
+        this.sessionRegistry = sessionRegistry;
+        this.globalBucket = config.getAdmissionHandshakeRate() > 0 ? new Bucket(config.getAdmissionHandshakeRate(), config.getAdmissionHandshakeBurst()) : null;
+        if (config.getAdmissionAddressRate() > 0) {
+            this.addressInterval = TimeUnit.SECONDS.toNanos(1) / config.getAdmissionAddressRate();
+            this.addressTolerance = addressInterval * Math.max(1, config.getAdmissionAddressBurst() > 0 ? config.getAdmissionAddressBurst() : config.getAdmissionAddressRate());
+        } else {
+            this.addressInterval = 0;
+            this.addressTolerance = 0;
+        }
+        this.maxAddressEntries = config.getAdmissionAddressMaxEntries();
+        this.trustForwarded = config.isAdmissionTrustForwarded();
+        this.trustedHops = Math.max(1, config.getAdmissionTrustedHops());
+    }
+
+    /**
+     * @return 返回是否存在全局或按地址的速率限制
+     */
+    public boolean isRateLimited() {
+        return globalBucket != null || addressInterval > 0;
+    }
+
+    /**
+     * @return 返回是否开启按客户端地址的速率限制
+     */
+    public boolean isAddressLimited() {
+        return addressInterval > 0;
+    }
+
+    public boolean isTrustForwarded() {
+        return trustForwarded;
+    }
+
+    /**
+     * @return 返回受信任的反向代理层数
+     */
+    public int getTrustedHops() {
+        return trustedHops;
+    }
+
+    /**
+     * 握手准入判定, 依次检查端点会话数量、客户端地址速率及全局速率;
+     * 端点限制了会话数量且准入成功时将为其预留一个名额, 须在会话注册后或升级失败时调用release释放
+     *
+     * @param path          端点路径
+     * @param maxSessions   端点最大并发会话数量, 小于等于0表示不限制
+     * @param remoteAddress 客户端地址
+     * @return 返回ADMITTED、TOO_MANY_REQUESTS或SERVICE_UNAVAILABLE
+     */
+    public int admit(String path, int maxSessions, String remoteAddress) {
+        long now = System.nanoTime();
+        Reservation reservation = null;
+        if (maxSessions > 0 && sessionRegistry != null) {
+            reservation = reservations.computeIfAbsent(path, key -> new Reservation());
+            if (!reservation.tryReserve(sessionRegistry.size(path), maxSessions, now)) {
+                capacityLimitedCount.increment();
+                return SERVICE_UNAVAILABLE;
+            }
+        }
+        int status = ADMITTED;
+        if (addressInterval > 0 && remoteAddress != null && !doAcquireAddress(remoteAddress, now)) {
+            addressLimitedCount.increment();
+            status = TOO_MANY_REQUESTS;
+        } else if (globalBucket != null && !globalBucket.tryAcquire(now)) {
+            rateLimitedCount.increment();
+            status = TOO_MANY_REQUESTS;
+        }
+        if (status != ADMITTED) {
+            if (reservation != null) {
+                reservation.release();
+            }
+            return status;
+        }
+        admittedCount.increment();
+        return ADMITTED;
+    }
+
+    /**
+     * 释放端点的一个预留名额, 若端点不存在预留则忽略
+     *
+     * @param path 端点路径
+     */
+    public void release(String path) {
+        Reservation reservation = path != null ? reservations.get(path) : null;
+        if (reservation != null) {
+            reservation.release();
+        }
+    }
+
+    /**
+     * @param path 端点路径
+     * @return 返回端点当前握手中的预留名额数量
+     */
+    public int getReservedCount(String path) {
+        Reservation reservation = reservations.get(path);
+        return reservation != null ? reservation.count.get() : 0;
+    }
+
+    private boolean doAcquireAddress(String remoteAddress, long now) {
+        AtomicLong bucket = addressBuckets.get(remoteAddress);
+        if (bucket == null) {
+            if (addressBuckets.size() >= maxAddressEntries) {
+                doTryEvict(now);
+                if (addressBuckets.size() >= maxAddressEntries) {
+                    // 无可回收条目, 拒绝新地址以保证映射大小受限
+                    return false;
+                }
+            }
+            bucket = addressBuckets.computeIfAbsent(remoteAddress, key -> new AtomicLong(now));
+        }
+        return tryAcquire(bucket, now, addressInterval, addressTolerance);
+    }
+
+    /**
+     * 距上一次即时回收已超过最小间隔时执行回收, 同一时刻仅有一个线程执行
+     *
+     * @param now 当前时间, 单位: 纳秒
+     */
+    private void doTryEvict(long now) {
+        long last = lastEvictTime.get();
+        if (now - last >= EVICT_MIN_INTERVAL && lastEvictTime.compareAndSet(last, now)) {
+            evictIdle();
+        }
+    }
+
+    /**
+     * 回收已空闲(理论到达时间已过, 即桶已满)的地址条目
+     *
+     * @return 返回回收的条目数量
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int count = 0;
+        for (Iterator<AtomicLong> it = addressBuckets.values().iterator(); it.hasNext(); ) {
+            if (it.next().get() - now <= 0) {
+                it.remove();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean tryAcquire(AtomicLong tat, long now, long interval, long tolerance) {
+        while (true) {
+            long current = tat.get();
+            long base = current - now > 0 ? current : now;
+            long next = base + interval;
+            if (next - now > tolerance) {
+                return false;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    public int getTrackedAddresses() {
+        return addressBuckets.size();
+    }
+
+    public long getAdmittedCount() {
+        return admittedCount.sum();
+    }
+
+    /**
+     * @return 返回因全局速率超限而被拒绝的握手数量
+     */
+    public long getRateLimitedCount() {
+        return rateLimitedCount.sum();
+    }
+
+    /**
+     * @return 返回因客户端地址速率超限(或地址映射已满)而被拒绝的握手数量
+     */
+    public long getAddressLimitedCount() {
+        return addressLimitedCount.sum();
+    }
+
+    /**
+     * @return 返回因端点会话数量已达上限而被拒绝的握手数量
+     */
+    public long getCapacityLimitedCount() {
+        return capacityLimitedCount.sum();
+    }
+
+    /**
+     * 端点会话名额预留计数
+     */
+    private static final class Reservation {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private volatile long lastReserveTime;
+
+        boolean tryReserve(int registered, int maxSessions, long now) {
+            // 最近一次预留已超时而仍有未释放的名额, 说明这些握手已失败且未能释放(如容器未回调), 清除以免永久占用名额
+            if (count.get() > 0 && now - lastReserveTime > RESERVATION_TIMEOUT) {
+                count.set(0);
+            }
+            while (true) {
+                int current = count.get();
+                if (registered + current >= maxSessions) {
+                    return false;
+                }
+                if (count.compareAndSet(current, current + 1)) {
+                    lastReserveTime = now;
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            int current;
+            do {
+                current = count.get();
+                if (current <= 0) {
+                    return;
+                }
+            } while (!count.compareAndSet(current, current - 1));
+        }
+    }
+
+    private static final class Bucket {
+
+        private final AtomicLong tat;
+
+        private final long interval;
+
+        private final long tolerance;
+
+        Bucket(int rate, int burst) {
+            this.interval = TimeUnit.SECONDS.toNanos(1) / rate;
+            this.tolerance = interval * Math.max(1, burst > 0 ? burst : rate);
+            this.tat = new AtomicLong(System.nanoTime());
+        }
+
+        boolean tryAcquire(long now) {
+            return WSAdmissionController.tryAcquire(tat, now, interval, tolerance);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 握手准入过滤器: 在容器执行WebSocket协议升级之前完成准入判定, 被拒绝的请求直接以429或503响应,
+ * 不会创建端点实例; 非升级请求仅检查一次请求头即放行
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/16 下午5:05
+ * @since 2.0.0
+ */
+public class WSAdmissionFilter implements Filter {
+
+    private static final String RETRY_AFTER = "1";
+
+    private final WSAdmissionController admissionController;
+
+    private final Map<String, WSServerEndpointConfigurator> exactPaths = new HashMap<>();
+
+    private final List<Template> templates = new ArrayList<>();
+
+    public WSAdmissionFilter(WSAdmissionController admissionController, List<WSServerEndpointConfigurator> serverEndpointConfigurators) {
+        this.admissionController = admissionController;
+        for (WSServerEndpointConfigurator configurator : serverEndpointConfigurators) {
+            if (configurator.getPath().indexOf('{') >= 0) {
+                templates.add(new Template(configurator));
+            } else {
+                exactPaths.put(configurator.getPath(), configurator);
+            }
+        }
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (request instanceof HttpServletRequest && "websocket".equalsIgnoreCase(((HttpServletRequest) request).getHeader("Upgrade"))) {
+            HttpServletRequest httpRequest = (HttpServletRequest) request;
+            WSServerEndpointConfigurator configurator = doMatch(httpRequest.getRequestURI().substring(httpRequest.getContextPath().length()));
+            if (configurator != null) {
+                int status = admissionController.admit(configurator.getPath(), configurator.getMaxSessions(), doGetRemoteAddress(httpRequest));
+                if (status != WSAdmissionController.ADMITTED) {
+                    HttpServletResponse httpResponse = (HttpServletResponse) response;
+                    httpResponse.setHeader("Retry-After", RETRY_AFTER);
+                    httpResponse.setContentLength(0);
+                    httpResponse.setStatus(status);
+                    return;
+                }
+                // 升级成功时预留名额由会话开启并注册后释放, 否则在此释放
+                boolean upgraded = false;
+                try {
+                    chain.doFilter(request, response);
+                    upgraded = ((HttpServletResponse) response).getStatus() == HttpServletResponse.SC_SWITCHING_PROTOCOLS;
+                } finally {
+                    if (!upgraded) {
+                        admissionController.release(configurator.getPath());
+                    }
+                }
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * 获取客户端地址: 信任X-Forwarded-For时, 由于各代理依次在末尾追加其所见的对端地址, 最左侧条目可被客户端任意伪造,
+     * 因此取从右往左第N个条目(N为受信任的代理层数), 条目数量不足N时取最左侧条目
+     */
+    private String doGetRemoteAddress(HttpServletRequest request) {
+        if (admissionController.isTrustForwarded()) {
+            List<String> hops = new ArrayList<>();
+            Enumeration<String> headers = request.getHeaders("X-Forwarded-For");
+            while (headers != null && headers.hasMoreElements()) {
+                for (String hop : StringUtils.split(headers.nextElement(), ',')) {
+                    if (StringUtils.isNotBlank(hop)) {
+                        hops.add(hop.trim());
+                    }
+                }
+            }
+            if (!hops.isEmpty()) {
+                return hops.get(Math.max(0, hops.size() - admissionController.getTrustedHops()));
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private WSServerEndpointConfigurator doMatch(String path) {
+        WSServerEndpointConfigurator configurator = exactPaths.get(path);
+        if (configurator == null) {
+            for (Template template : templates) {
+                if (template.matches(path)) {
+                    return template.configurator;
+                }
+            }
+        }
+        return configurator;
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * 路径模板(如: /chat/{room}), 按路径段逐一比较, 变量段匹配任意非空内容
+     */
+    private static final class Template {
+
+        private final WSServerEndpointConfigurator configurator;
+
+        private final String[] segments;
+
+        Template(WSServerEndpointConfigurator configurator) {
+            this.configurator = configurator;
+            this.segments = StringUtils.split(configurator.getPath(), '/');
+        }
+
+        boolean matches(String path) {
+            int offset = 0;
+            int length = path.length();
+            for (String segment : segments) {
+                while (offset < length && path.charAt(offset) == '/') {
+                    offset++;
+                }
+                if (offset >= length) {
+                    return false;
+                }
+                int end = path.indexOf('/', offset);
+                if (end < 0) {
+                    end = length;
+                }
+                boolean variable = segment.startsWith("{") && segment.endsWith("}");
+                if (!variable && (end - offset != segment.length() || !path.regionMatches(offset, segment, 0, segment.length()))) {
+                    return false;
+                }
+                offset = end;
+            }
+            while (offset < length && path.charAt(offset) == '/') {
+                offset++;
+            }
+            return offset >= length;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import org.apache.commons.lang.NullArgumentException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+
+/**
+ * 会话属性结构定义: 属性集合及类型在构建后固定, 每个属性以整型ID标识并预先计算其在记录中的字节偏移量,
+ * 属性按类型宽度降序排列以保证自然对齐, 记录长度按8字节对齐
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 下午3:05
+ * @since 2.0.0
+ */
+public final class WSAttributeSchema {
+
+    /**
+     * 属性类型
+     */
+    public enum Type {
+
+        BOOLEAN(1), INT(4), FLOAT(4), LONG(8), DOUBLE(8);
+
+        private final int size;
+
+        Type(int size) {
+            this.size = size;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * 属性定义
+     */
+    public static final class Attribute {
+
+        private final WSAttributeSchema schema;
+
+        private final String name;
+
+        private final int id;
+
+        private final Type type;
+
+        private final int offset;
+
+        private Attribute(WSAttributeSchema schema, String name, int id, Type type, int offset) {
+            this.schema = schema;
+            this.name = name;
+            this.id = id;
+            this.type = type;
+            this.offset = offset;
+        }
+
+        public WSAttributeSchema getSchema() {
+            return schema;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+    }
+
+    private final Attribute[] attributes;
+
+    private final Map<String, Attribute> names;
+
+    private final int recordSize;
+
+    private WSAttributeSchema(LinkedHashMap<String, Type> definitions) {
+        List<Map.Entry<String, Type>> entries = new ArrayList<>(definitions.entrySet());
+        List<Map.Entry<String, Type>> ordered = new ArrayList<>(entries);
+        ordered.sort((o1, o2) -> Integer.compare(o2.getValue().size, o1.getValue().size));
+        int[] offsets = new int[entries.size()];
+        int offset = 0;
+        for (Map.Entry<String, Type> entry : ordered) {
+            offsets[entries.indexOf(entry)] = offset;
+            offset += entry.getValue().size;
+        }
+        this.recordSize = (offset + 7) & ~7;
+        this.attributes = new Attribute[entries.size()];
+        Map<String, Attribute> nameMap = new HashMap<>(entries.size() * 2);
+        for (int idx = 0; idx < entries.size(); idx++) {
+            Map.Entry<String, Type> entry = entries.get(idx);
+            attributes[idx] = new Attribute(this, entry.getKey(), idx, entry.getValue(), offsets[idx]);
+            nameMap.put(entry.getKey(), attributes[idx]);
+        }
+        this.names = Collections.unmodifiableMap(nameMap);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param id 属性ID(即声明顺序)
+     * @return 返回属性定义
+     */
+    public Attribute getAttribute(int id) {
+        return attributes[id];
+    }
+
+    /**
+     * @param name 属性名称
+     * @return 返回属性定义, 若不存在则返回null
+     */
+    public Attribute getAttribute(String name) {
+        return names.get(name);
+    }
+
+    public int size() {
+        return attributes.length;
+    }
+
+    /**
+     * @return 返回单条记录占用的字节数
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    public static final class Builder {
+
+        private final LinkedHashMap<String, Type> definitions = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder add(String name, Type type) {
+            if (StringUtils.isBlank(name)) {
+                throw new NullArgumentException("name");
+            }
+            if (type == null) {
+                throw new NullArgumentException("type");
+            }
+            if (definitions.putIfAbsent(name, type) != null) {
+                throw new IllegalArgumentException(String.format("Duplicate attribute: %s", name));
+            }
+            return this;
+        }
+
+        public WSAttributeSchema build() {
+            if (definitions.isEmpty()) {
+                throw new IllegalStateException("At least one attribute must be defined");
+            }
+            return new WSAttributeSchema(definitions);
+        }
+    }
+}
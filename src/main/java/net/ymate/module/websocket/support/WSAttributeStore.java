@@ -0,0 +1,123 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 会话属性存储: 按属性结构定义的记录长度将记录连续排列在若干大块缓冲区(可为直接内存)中, 记录以槽位索引寻址,
+ * 释放的槽位被清零后放回空闲栈以供复用, 每个会话在堆上仅保留一个轻量的访问句柄
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 下午3:05
+ * @since 2.0.0
+ */
+public class WSAttributeStore {
+
+    /**
+     * 单个缓冲块的目标大小
+     */
+    private static final int SLAB_BYTES = 1 << 20;
+
+    private final WSAttributeSchema schema;
+
+    private final boolean direct;
+
+    private final int slabRecords;
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+
+    private int[] freeSlots = new int[64];
+
+    private int freeCount;
+
+    private int nextSlot;
+
+    private int allocatedCount;
+
+    /**
+     * @param schema 属性结构定义
+     * @param direct 是否使用直接内存(堆外)
+     */
+    public WSAttributeStore(WSAttributeSchema schema, boolean direct) {
+        this.schema = schema;
+        this.direct = direct;
+        this.slabRecords = Math.max(1, SLAB_BYTES / schema.getRecordSize());
+    }
+
+    /**
+     * 分配一条已清零的记录
+     *
+     * @return 返回记录访问句柄
+     */
+    public synchronized WSAttributes allocate() {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = nextSlot++;
+            if (slot / slabRecords >= slabs.size()) {
+                int capacity = slabRecords * schema.getRecordSize();
+                slabs.add((direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity)).order(ByteOrder.nativeOrder()));
+            }
+        }
+        allocatedCount++;
+        return new WSAttributes(this, slabs.get(slot / slabRecords), (slot % slabRecords) * schema.getRecordSize(), slot);
+    }
+
+    /**
+     * 清零并回收记录
+     *
+     * @param attributes 记录访问句柄
+     */
+    synchronized void release(WSAttributes attributes) {
+        ByteBuffer slab = attributes.getSlab();
+        int base = attributes.getBase();
+        for (int offset = 0; offset < schema.getRecordSize(); offset += 8) {
+            slab.putLong(base + offset, 0L);
+        }
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = attributes.getSlot();
+        allocatedCount--;
+    }
+
+    public WSAttributeSchema getSchema() {
+        return schema;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @return 返回当前已分配的记录数量
+     */
+    public synchronized int getAllocatedCount() {
+        return allocatedCount;
+    }
+
+    /**
+     * @return 返回全部缓冲块占用的字节数
+     */
+    public synchronized long getReservedBytes() {
+        return (long) slabs.size() * slabRecords * schema.getRecordSize();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import javax.websocket.Session;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 会话属性访问句柄: 提供按属性定义的类型化读写, 数据位于所属存储的缓冲块中;
+ * 与会话其它状态一致, 同一会话的属性访问应在其消息处理线程中进行, 句柄被释放后任何访问都将抛出IllegalStateException;
+ * 每次访问均登记为进行中, 释放时先拒绝新的访问并等待进行中的访问结束后才将记录归还存储, 因此与关闭流程并发的访问不会写入已被复用的记录
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 下午3:05
+ * @since 2.0.0
+ */
+public final class WSAttributes {
+
+    private final WSAttributeStore store;
+
+    private final ByteBuffer slab;
+
+    private final int base;
+
+    private final int slot;
+
+    /**
+     * 已释放标记, 叠加在进行中访问计数之上使其为负数
+     */
+    private static final int RELEASED = Integer.MIN_VALUE / 2;
+
+    /**
+     * 进行中的访问数量, 释放后为负数
+     */
+    private final AtomicInteger state = new AtomicInteger();
+
+    WSAttributes(WSAttributeStore store, ByteBuffer slab, int base, int slot) {
+        this.store = store;
+        this.slab = slab;
+        this.base = base;
+        this.slot = slot;
+    }
+
+    /**
+     * @param session 会话
+     * @return 返回会话的属性访问句柄, 若会话未注册或其端点未声明属性结构则返回null
+     */
+    public static WSAttributes get(Session session) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        return sessionContext != null ? sessionContext.getAttributes() : null;
+    }
+
+    /**
+     * 登记一次进行中的访问, 须与doExit成对调用
+     *
+     * @return 返回属性在缓冲块中的偏移量
+     */
+    private int doEnter(WSAttributeSchema.Attribute attribute, WSAttributeSchema.Type type) {
+        if (attribute.getSchema() != store.getSchema() || attribute.getType() != type) {
+            throw new IllegalArgumentException(String.format("Attribute %s is not a %s attribute of this schema", attribute.getName(), type));
+        }
+        if (state.incrementAndGet() <= 0) {
+            state.decrementAndGet();
+            throw new IllegalStateException("Attributes have been released");
+        }
+        return base + attribute.getOffset();
+    }
+
+    private void doExit() {
+        state.decrementAndGet();
+    }
+
+    public boolean getBoolean(WSAttributeSchema.Attribute attribute) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.BOOLEAN);
+        try {
+            return slab.get(offset) != 0;
+        } finally {
+            doExit();
+        }
+    }
+
+    public void setBoolean(WSAttributeSchema.Attribute attribute, boolean value) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.BOOLEAN);
+        try {
+            slab.put(offset, (byte) (value ? 1 : 0));
+        } finally {
+            doExit();
+        }
+    }
+
+    public int getInt(WSAttributeSchema.Attribute attribute) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.INT);
+        try {
+            return slab.getInt(offset);
+        } finally {
+            doExit();
+        }
+    }
+
+    public void setInt(WSAttributeSchema.Attribute attribute, int value) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.INT);
+        try {
+            slab.putInt(offset, value);
+        } finally {
+            doExit();
+        }
+    }
+
+    public int addInt(WSAttributeSchema.Attribute attribute, int delta) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.INT);
+        try {
+            int value = slab.getInt(offset) + delta;
+            slab.putInt(offset, value);
+            return value;
+        } finally {
+            doExit();
+        }
+    }
+
+    public float getFloat(WSAttributeSchema.Attribute attribute) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.FLOAT);
+        try {
+            return slab.getFloat(offset);
+        } finally {
+            doExit();
+        }
+    }
+
+    public void setFloat(WSAttributeSchema.Attribute attribute, float value) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.FLOAT);
+        try {
+            slab.putFloat(offset, value);
+        } finally {
+            doExit();
+        }
+    }
+
+    public long getLong(WSAttributeSchema.Attribute attribute) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.LONG);
+        try {
+            return slab.getLong(offset);
+        } finally {
+            doExit();
+        }
+    }
+
+    public void setLong(WSAttributeSchema.Attribute attribute, long value) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.LONG);
+        try {
+            slab.putLong(offset, value);
+        } finally {
+            doExit();
+        }
+    }
+
+    public long addLong(WSAttributeSchema.Attribute attribute, long delta) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.LONG);
+        try {
+            long value = slab.getLong(offset) + delta;
+            slab.putLong(offset, value);
+            return value;
+        } finally {
+            doExit();
+        }
+    }
+
+    public double getDouble(WSAttributeSchema.Attribute attribute) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.DOUBLE);
+        try {
+            return slab.getDouble(offset);
+        } finally {
+            doExit();
+        }
+    }
+
+    public void setDouble(WSAttributeSchema.Attribute attribute, double value) {
+        int offset = doEnter(attribute, WSAttributeSchema.Type.DOUBLE);
+        try {
+            slab.putDouble(offset, value);
+        } finally {
+            doExit();
+        }
+    }
+
+    public WSAttributeSchema getSchema() {
+        return store.getSchema();
+    }
+
+    public boolean isReleased() {
+        return state.get() < 0;
+    }
+
+    /**
+     * 释放记录: 拒绝新的访问并等待进行中的访问结束后归还至所属存储, 重复调用无副作用
+     */
+    public void release() {
+        int current;
+        do {
+            current = state.get();
+            if (current < 0) {
+                return;
+            }
+        } while (!state.compareAndSet(current, current + RELEASED));
+        // 单次访问仅为一次缓冲区读写, 等待时间极短
+        while (state.get() != RELEASED) {
+            Thread.yield();
+        }
+        store.release(this);
+    }
+
+    ByteBuffer getSlab() {
+        return slab;
+    }
+
+    int getBase() {
+        return base;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+}
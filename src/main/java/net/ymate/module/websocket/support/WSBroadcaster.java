@@ -0,0 +1,221 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSMessageCodec;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.websocket.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 消息广播器: 负载按线格式(会话已协商的消息编解码器, 否则为端点编解码表)仅被编码一次, 同一线格式的接收者共享同一只读帧, 并按分片并行分发;
+ * 未完成异步发送数量已达上限的慢速会话将被跳过(若已启用出站队列则进入队列), 不会阻塞本次分发
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/09 上午10:26
+ * @since 2.0.0
+ */
+public class WSBroadcaster {
+
+    private static final Log LOG = LogFactory.getLog(WSBroadcaster.class);
+
+    private final ExecutorService executorService;
+
+    private final int chunkSize;
+
+    private final int maxPending;
+
+    private final LongAdder sentCount = new LongAdder();
+
+    private final LongAdder skippedCount = new LongAdder();
+
+    public WSBroadcaster(ExecutorService executorService, int chunkSize, int maxPending) {
+        this.executorService = executorService;
+        this.chunkSize = chunkSize;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * 向指定的会话集合广播消息
+     *
+     * @param sessions 会话集合
+     * @param payload  消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 返回本次广播的目标会话数量
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    public int broadcast(Collection<Session> sessions, Object payload) throws EncodeException, IOException {
+        return broadcast(sessions, null, payload);
+    }
+
+    /**
+     * 向指定的会话集合广播消息
+     *
+     * @param sessions 会话集合
+     * @param key      消息键, 用于出站队列按键合并, 可以为null
+     * @param payload  消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 返回本次广播的目标会话数量
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    public int broadcast(Collection<Session> sessions, String key, Object payload) throws EncodeException, IOException {
+        if (sessions == null || sessions.isEmpty() || payload == null) {
+            return 0;
+        }
+        Session[] targets = sessions.toArray(new Session[0]);
+        Object frame = doPrepareFrame(payload);
+        if (frame != null) {
+            return doDispatch(targets, key, sessionContext -> frame);
+        }
+        // 按线格式编码: 已协商消息编解码器的会话按编解码器共享编码结果, 其余会话按端点路径(编解码表)共享编码结果
+        Map<Object, Object> frames = new HashMap<>(4);
+        for (Session session : targets) {
+            WSSessionContext sessionContext = WSSessionContext.get(session);
+            if (sessionContext != null) {
+                IWSMessageCodec messageCodec = sessionContext.getMessageCodec();
+                Object frameKey = doGetFrameKey(sessionContext);
+                if (!frames.containsKey(frameKey)) {
+                    frames.put(frameKey, messageCodec != null ? messageCodec.encode(payload) : sessionContext.getEndpointSettings().getCodecTable().encode(payload));
+                }
+            }
+        }
+        return doDispatch(targets, key, sessionContext -> frames.get(doGetFrameKey(sessionContext)));
+    }
+
+    /**
+     * 向指定的会话集合广播已编码的消息(如集群中其它节点发布的消息)
+     *
+     * @param sessions    会话集合
+     * @param key         消息键, 用于出站队列按键合并, 可以为null
+     * @param frame       供未协商消息编解码器的会话使用的消息内容(String或ByteBuffer), 可以为null
+     * @param codecFrames 按子协议名称索引的各线格式消息内容, 为null时全部会话均使用frame
+     * @return 返回本次广播的目标会话数量
+     */
+    public int broadcastEncoded(Collection<Session> sessions, String key, Object frame, Map<String, Object> codecFrames) {
+        if (sessions == null || sessions.isEmpty() || (frame == null && codecFrames == null)) {
+            return 0;
+        }
+        return doDispatch(sessions.toArray(new Session[0]), key, sessionContext -> {
+            IWSMessageCodec messageCodec = sessionContext.getMessageCodec();
+            if (codecFrames != null && messageCodec != null) {
+                return codecFrames.get(messageCodec.getSubprotocol());
+            }
+            return frame;
+        });
+    }
+
+    private static Object doGetFrameKey(WSSessionContext sessionContext) {
+        IWSMessageCodec messageCodec = sessionContext.getMessageCodec();
+        return messageCodec != null ? messageCodec : sessionContext.getPath();
+    }
+
+    private int doDispatch(Session[] targets, String key, Function<WSSessionContext, Object> frameResolver) {
+        if (targets.length <= chunkSize) {
+            doSend(targets, 0, targets.length, key, frameResolver);
+        } else {
+            for (int from = 0; from < targets.length; from += chunkSize) {
+                final int start = from;
+                final int end = Math.min(from + chunkSize, targets.length);
+                executorService.execute(() -> doSend(targets, start, end, key, frameResolver));
+            }
+        }
+        return targets.length;
+    }
+
+    private void doSend(Session[] targets, int from, int to, String key, Function<WSSessionContext, Object> frameResolver) {
+        for (int idx = from; idx < to; idx++) {
+            Session session = targets[idx];
+            WSSessionContext sessionContext = WSSessionContext.get(session);
+            if (sessionContext == null || !session.isOpen()) {
+                continue;
+            }
+            Object current = frameResolver.apply(sessionContext);
+            if (current == null) {
+                continue;
+            }
+            WSOutboundQueue outboundQueue = sessionContext.getOutboundQueue();
+            if (outboundQueue != null) {
+                // 由出站队列负责限流, 积压超限时按其溢出策略处理
+                if (outboundQueue.offer(key, current instanceof ByteBuffer ? ((ByteBuffer) current).duplicate() : current)) {
+                    sentCount.increment();
+                } else {
+                    skippedCount.increment();
+                }
+                continue;
+            }
+            if (!sessionContext.tryAcquireSend(maxPending)) {
+                skippedCount.increment();
+                continue;
+            }
+            try {
+                sessionContext.beforeSend();
+                if (current instanceof String) {
+                    session.getAsyncRemote().sendText((String) current, sessionContext.getSendHandler());
+                } else {
+                    session.getAsyncRemote().sendBinary(((ByteBuffer) current).duplicate(), sessionContext.getSendHandler());
+                }
+                sessionContext.afterSend(current);
+                sentCount.increment();
+            } catch (Throwable e) {
+                sessionContext.getSendHandler().onResult(new SendResult(e));
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Failed to broadcast message to %s", session), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param payload 消息内容
+     * @return 若消息内容需要由编码器处理则返回null
+     */
+    private Object doPrepareFrame(Object payload) {
+        if (payload instanceof String) {
+            return payload;
+        } else if (payload instanceof ByteBuffer) {
+            return ((ByteBuffer) payload).asReadOnlyBuffer();
+        } else if (payload instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) payload).asReadOnlyBuffer();
+        }
+        return null;
+    }
+
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    /**
+     * @return 返回已成功提交的发送次数
+     */
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    /**
+     * @return 返回因会话未完成发送数量已达上限而被跳过的次数
+     */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+}
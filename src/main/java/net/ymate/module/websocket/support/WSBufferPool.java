@@ -0,0 +1,113 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 定长直接内存缓冲块池, 用于分片消息聚合, 空闲缓冲块数量超过上限时归还的缓冲块将被直接丢弃
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/16 上午10:05
+ * @since 2.0.0
+ */
+public class WSBufferPool {
+
+    private final int slabSize;
+
+    private final int maxPooled;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> slabs = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    private final LongAdder allocatedCount = new LongAdder();
+
+    private final LongAdder reusedCount = new LongAdder();
+
+    /**
+     * @param slabSize  缓冲块大小, 单位: 字节
+     * @param maxPooled 最多保留的空闲缓冲块数量
+     */
+    public WSBufferPool(int slabSize, int maxPooled) {
+        this.slabSize = Math.max(1024, slabSize);
+        this.maxPooled = Math.max(0, maxPooled);
+    }
+
+    /**
+     * @return 返回一个已清空的缓冲块, 池中无空闲缓冲块时新分配
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer slab = slabs.poll();
+        if (slab != null) {
+            pooled.decrementAndGet();
+            reusedCount.increment();
+            slab.clear();
+            return slab;
+        }
+        allocatedCount.increment();
+        return ByteBuffer.allocateDirect(slabSize);
+    }
+
+    /**
+     * 归还缓冲块, 调用者此后不得再访问该缓冲块及其任何视图
+     *
+     * @param slab 缓冲块
+     */
+    public void release(ByteBuffer slab) {
+        if (slab == null || !slab.isDirect() || slab.capacity() != slabSize) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        slabs.offer(slab);
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    /**
+     * @return 返回当前空闲缓冲块数量
+     */
+    public int getPooledCount() {
+        return pooled.get();
+    }
+
+    /**
+     * @return 返回累计新分配的缓冲块数量
+     */
+    public long getAllocatedCount() {
+        return allocatedCount.sum();
+    }
+
+    /**
+     * @return 返回累计复用的缓冲块数量
+     */
+    public long getReusedCount() {
+        return reusedCount.sum();
+    }
+
+    public void clear() {
+        while (slabs.poll() != null) {
+            pooled.decrementAndGet();
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package net.ymate.module.websocket.support;
 
+import net.ymate.module.websocket.IWSEndpointSettings;
 import net.ymate.module.websocket.IWebSocket;
 import net.ymate.module.websocket.WSClientListener;
 import net.ymate.platform.commons.util.RuntimeUtils;
@@ -24,24 +25,162 @@ import org.apache.commons.logging.LogFactory;
 
 import javax.websocket.*;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author 刘镇 (suninformation@163.com) on 2017/7/19 上午11:15
  * @since 1.0
  */
-public class WSClientConnectionManager {
+public class WSClientConnectionManager implements IWSEndpointSettings {
 
     private static final Log LOG = LogFactory.getLog(WSClientConnectionManager.class);
 
+    /**
+     * 连接池负载均衡策略
+     */
+    public enum LoadBalance {
+
+        /**
+         * 轮询
+         */
+        ROUND_ROBIN,
+
+        /**
+         * 选择待发送字节数最少的连接
+         */
+        LEAST_PENDING_BYTES
+    }
+
+    /**
+     * 连接池成员, 每个成员维护独立的会话、重连策略及健康状态
+     */
+    public static final class Member {
+
+        private final int index;
+
+        private final WSReconnectPolicy reconnectPolicy;
+
+        private volatile Session session;
+
+        private volatile boolean abandoned;
+
+        private volatile long connectedTime;
+
+        private volatile long lastFailureTime;
+
+        private final AtomicLong pendingBytes = new AtomicLong();
+
+        private final LongAdder connectCount = new LongAdder();
+
+        private final LongAdder failureCount = new LongAdder();
+
+        private final LongAdder sentMessages = new LongAdder();
+
+        private final LongAdder sentBytes = new LongAdder();
+
+        private final LongAdder failedSends = new LongAdder();
+
+        Member(int index, WSReconnectPolicy reconnectPolicy) {
+            this.index = index;
+            this.reconnectPolicy = reconnectPolicy;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        public boolean isConnected() {
+            Session current = session;
+            return current != null && current.isOpen();
+        }
+
+        /**
+         * @return 返回是否已放弃重连
+         */
+        public boolean isAbandoned() {
+            return abandoned;
+        }
+
+        /**
+         * @return 返回最近一次连接成功的时间(毫秒), 未连接时返回0
+         */
+        public long getConnectedTime() {
+            return connectedTime;
+        }
+
+        /**
+         * @return 返回最近一次连接失败的时间(毫秒)
+         */
+        public long getLastFailureTime() {
+            return lastFailureTime;
+        }
+
+        /**
+         * @return 返回已提交但尚未完成发送的字节数(包括出站队列中的字节数)
+         */
+        public long getPendingBytes() {
+            Session current = session;
+            WSSessionContext sessionContext = current != null ? WSSessionContext.get(current) : null;
+            WSOutboundQueue outboundQueue = sessionContext != null ? sessionContext.getOutboundQueue() : null;
+            return pendingBytes.get() + (outboundQueue != null ? outboundQueue.getQueuedBytes() : 0);
+        }
+
+        public long getConnectCount() {
+            return connectCount.sum();
+        }
+
+        public long getFailureCount() {
+            return failureCount.sum();
+        }
+
+        public long getSentMessages() {
+            return sentMessages.sum();
+        }
+
+        public long getSentBytes() {
+            return sentBytes.sum();
+        }
+
+        public long getFailedSends() {
+            return failedSends.sum();
+        }
+
+        /**
+         * @return 返回重连熔断状态, 未配置重连策略时返回null
+         */
+        public WSReconnectPolicy.State getReconnectState() {
+            return reconnectPolicy != null ? reconnectPolicy.getState() : null;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Member[index=%d, connected=%s, pendingBytes=%d, connects=%d, failures=%d, sent=%d, reconnectState=%s]",
+                    index, isConnected(), getPendingBytes(), getConnectCount(), getFailureCount(), getSentMessages(), getReconnectState());
+        }
+    }
+
     private final IWebSocket owner;
 
     private final URI uri;
 
     private final Class<? extends WSClientListener> endpointClass;
 
+    private final WSEndpointFactory<? extends WSClientListener> endpointFactory;
+
     private boolean autoStartup;
 
     private boolean running = false;
@@ -52,14 +191,49 @@ public class WSClientConnectionManager {
 
     private final ClientEndpointConfig.Builder configBuilder = ClientEndpointConfig.Builder.create();
 
+    private volatile WSCodecTable codecTable;
+
+    private List<Extension> extensions = Collections.emptyList();
+
+    private WSPerMessageDeflate perMessageDeflate;
+
     private ExecutorService executorService;
 
-    private volatile Session session;
+    private boolean sharedExecutor;
+
+    private boolean batching;
+
+    private boolean conflating;
+
+    private long batchingMaxDelay;
+
+    private long batchingMaxBytes;
+
+    private final WSWriteBatcher.Stats batchingStats = new WSWriteBatcher.Stats();
+
+    private WSDispatcher.Mode dispatchMode = WSDispatcher.Mode.DIRECT;
+
+    private WSReconnectPolicy reconnectPolicy;
+
+    private int poolSize = 1;
+
+    private LoadBalance loadBalance = LoadBalance.ROUND_ROBIN;
+
+    private volatile Member[] members = new Member[0];
+
+    private final AtomicInteger roundRobin = new AtomicInteger();
 
     public WSClientConnectionManager(IWebSocket owner, URI uri, Class<? extends WSClientListener> endpointClass) {
         this.owner = owner;
         this.uri = uri;
         this.endpointClass = endpointClass;
+        // 客户端端点以单例方式注册, 仅在首次连接时解析一次
+        this.endpointFactory = WSEndpointFactory.create(owner, endpointClass, true);
+    }
+
+    @Override
+    public IWebSocket getOwner() {
+        return owner;
     }
 
     public URI getUri() {
@@ -75,7 +249,32 @@ public class WSClientConnectionManager {
     }
 
     public void setExtensions(List<Extension> extensions) {
-        configBuilder.extensions(extensions);
+        this.extensions = extensions != null ? extensions : Collections.emptyList();
+        doUpdateExtensions();
+    }
+
+    @Override
+    public WSPerMessageDeflate getPerMessageDeflate() {
+        return perMessageDeflate;
+    }
+
+    /**
+     * 设置压缩扩展配置, 客户端将在握手时发起permessage-deflate请求
+     *
+     * @param perMessageDeflate 压缩扩展配置
+     */
+    public void setPerMessageDeflate(WSPerMessageDeflate perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+        doUpdateExtensions();
+    }
+
+    private void doUpdateExtensions() {
+        List<Extension> current = new ArrayList<>(extensions);
+        if (perMessageDeflate != null) {
+            current.removeIf(extension -> WSPerMessageDeflate.EXTENSION_NAME.equals(extension.getName()));
+            current.add(perMessageDeflate.toOffer());
+        }
+        configBuilder.extensions(current);
     }
 
     public void setEncoders(List<Class<? extends Encoder>> encoders) {
@@ -94,6 +293,18 @@ public class WSClientConnectionManager {
         socketContainer = webSocketContainer;
     }
 
+    /**
+     * 设置共享执行器, 共享执行器的生命周期由调用者负责, 连接管理器停止时不会将其关闭
+     *
+     * @param executorService 执行器
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        synchronized (locker) {
+            this.executorService = executorService;
+            this.sharedExecutor = executorService != null;
+        }
+    }
+
     public WebSocketContainer getWebSocketContainer() {
         return socketContainer;
     }
@@ -113,36 +324,59 @@ public class WSClientConnectionManager {
     protected void doStart() {
         synchronized (locker) {
             this.running = true;
+            Member[] newMembers = new Member[poolSize];
+            for (int idx = 0; idx < poolSize; idx++) {
+                newMembers[idx] = new Member(idx, doCreateMemberReconnectPolicy());
+            }
+            members = newMembers;
             openConnection();
         }
     }
 
+    /**
+     * 为连接池成员创建独立的重连策略, 当连接池大小大于1且未配置重连策略时,
+     * 采用默认策略(不限次数)逐个替换失效成员, 避免单个成员失效导致整个连接池停止
+     *
+     * @return 返回重连策略对象, 可能为null
+     */
+    private WSReconnectPolicy doCreateMemberReconnectPolicy() {
+        if (reconnectPolicy != null) {
+            if (poolSize == 1) {
+                return reconnectPolicy;
+            }
+            return new WSReconnectPolicy(reconnectPolicy.getInitialDelay(), reconnectPolicy.getMaxDelay(), reconnectPolicy.getMaxAttempts(), reconnectPolicy.getCircuitOpenTime(), reconnectPolicy.getMinStableTime());
+        }
+        return poolSize > 1 ? new WSReconnectPolicy(1000, 60000, 0, 0) : null;
+    }
+
     public final void stop() {
         synchronized (locker) {
             if (isRunning()) {
                 if (LOG.isInfoEnabled()) {
                     LOG.info(String.format("Stopping WSClient connection for %s", uri));
                 }
+                // 须在关闭会话之前清除运行状态, 避免会话关闭回调据此安排重连
+                this.running = false;
                 try {
                     doStop();
                 } catch (Throwable ex) {
                     if (LOG.isErrorEnabled()) {
                         LOG.error(String.format("Failed to stop WSClient connection for %s", uri), RuntimeUtils.unwrapThrow(ex));
                     }
-                } finally {
-                    this.running = false;
                 }
             }
-            try {
-                if (executorService != null) {
-                    executorService.shutdown();
-                }
-            } catch (Throwable ex) {
-                if (LOG.isErrorEnabled()) {
-                    LOG.error(String.format("Failed to shutdown WSClient connection for %s", uri), RuntimeUtils.unwrapThrow(ex));
+            if (!sharedExecutor) {
+                try {
+                    if (executorService != null) {
+                        executorService.shutdown();
+                    }
+                } catch (Throwable ex) {
+                    if (LOG.isErrorEnabled()) {
+                        LOG.error(String.format("Failed to shutdown WSClient connection for %s", uri), RuntimeUtils.unwrapThrow(ex));
+                    }
+                } finally {
+                    executorService = null;
                 }
-            } finally {
-                executorService = null;
             }
         }
     }
@@ -160,6 +394,123 @@ public class WSClientConnectionManager {
         }
     }
 
+    @Override
+    public boolean isBatching() {
+        return batching;
+    }
+
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    @Override
+    public boolean isConflating() {
+        return conflating;
+    }
+
+    public void setConflating(boolean conflating) {
+        this.conflating = conflating;
+    }
+
+    @Override
+    public long getBatchingMaxDelay() {
+        return batchingMaxDelay;
+    }
+
+    public void setBatchingMaxDelay(long batchingMaxDelay) {
+        this.batchingMaxDelay = batchingMaxDelay;
+    }
+
+    @Override
+    public long getBatchingMaxBytes() {
+        return batchingMaxBytes;
+    }
+
+    public void setBatchingMaxBytes(long batchingMaxBytes) {
+        this.batchingMaxBytes = batchingMaxBytes;
+    }
+
+    @Override
+    public WSWriteBatcher.Stats getBatchingStats() {
+        return batchingStats;
+    }
+
+    @Override
+    public WSDispatcher.Mode getDispatchMode() {
+        return dispatchMode;
+    }
+
+    @Override
+    public WSCodecTable getCodecTable() {
+        WSCodecTable table = codecTable;
+        if (table == null) {
+            synchronized (this) {
+                table = codecTable;
+                if (table == null) {
+                    codecTable = table = new WSCodecTable(configBuilder.build());
+                }
+            }
+        }
+        return table;
+    }
+
+    public void setDispatchMode(WSDispatcher.Mode dispatchMode) {
+        this.dispatchMode = dispatchMode;
+    }
+
+    public WSReconnectPolicy getReconnectPolicy() {
+        return reconnectPolicy;
+    }
+
+    /**
+     * 设置重连策略
+     *
+     * @param reconnectPolicy 重连策略, 为null表示不自动重连
+     */
+    public void setReconnectPolicy(WSReconnectPolicy reconnectPolicy) {
+        this.reconnectPolicy = reconnectPolicy;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * 设置连接池大小, 仅在启动前设置有效
+     *
+     * @param poolSize 连接数量, 小于1时按1处理
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = Math.max(1, poolSize);
+    }
+
+    public LoadBalance getLoadBalance() {
+        return loadBalance;
+    }
+
+    public void setLoadBalance(LoadBalance loadBalance) {
+        this.loadBalance = loadBalance != null ? loadBalance : LoadBalance.ROUND_ROBIN;
+    }
+
+    /**
+     * @return 返回连接池全部成员(只读)
+     */
+    public List<Member> getMembers() {
+        return Collections.unmodifiableList(Arrays.asList(members));
+    }
+
+    /**
+     * @return 返回首个已连接成员的会话, 若无可用连接则返回null
+     */
+    public Session getSession() {
+        for (Member member : members) {
+            if (member.isConnected()) {
+                return member.session;
+            }
+        }
+        return null;
+    }
+
     public boolean isAutoStartup() {
         return autoStartup;
     }
@@ -175,38 +526,262 @@ public class WSClientConnectionManager {
     }
 
     protected void openConnection() {
+        for (Member member : members) {
+            if (!member.isConnected()) {
+                openConnection(member);
+            }
+        }
+    }
+
+    protected void openConnection(Member member) {
         if (executorService == null) {
             executorService = ThreadUtils.newSingleThreadExecutor();
         }
         executorService.execute(() -> {
             try {
                 if (LOG.isInfoEnabled()) {
-                    LOG.info(String.format("Connecting to WSClient at %s", uri));
+                    LOG.info(String.format("Connecting to WSClient at %s (member %d)", uri, member.index));
                 }
                 if (socketContainer == null) {
                     socketContainer = ContainerProvider.getWebSocketContainer();
                 }
-                session = socketContainer.connectToServer(owner.getOwner().getBeanFactory().getBean(endpointClass), configBuilder.build(), uri);
+                ClientEndpointConfig clientEndpointConfig = configBuilder.build();
+                clientEndpointConfig.getUserProperties().put(WSClientConnectionManager.class.getName(), this);
+                Session session = socketContainer.connectToServer(endpointFactory.getInstance(), clientEndpointConfig, uri);
+                synchronized (locker) {
+                    // 会话在握手期间或刚完成时即被关闭, 此时afterSessionClosed无法匹配到该成员, 须在此安排重连
+                    if (!session.isOpen()) {
+                        if (LOG.isWarnEnabled()) {
+                            LOG.warn(String.format("WSClient connection for %s (member %d) closed right after handshake", uri, member.index));
+                        }
+                        member.lastFailureTime = System.currentTimeMillis();
+                        member.failureCount.increment();
+                        if (!doScheduleReconnect(member)) {
+                            doAbandon(member);
+                        }
+                        return;
+                    }
+                    if (member.reconnectPolicy != null) {
+                        member.reconnectPolicy.onConnected();
+                    }
+                    member.session = session;
+                    member.connectedTime = System.currentTimeMillis();
+                }
+                member.connectCount.increment();
+                owner.getMetrics().clientConnected(uri.toString());
             } catch (Throwable ex) {
+                member.lastFailureTime = System.currentTimeMillis();
+                member.failureCount.increment();
+                owner.getMetrics().clientConnectFailed(uri.toString());
                 if (LOG.isErrorEnabled()) {
-                    LOG.error(String.format("Failed to connect to WSClient at %s", uri), RuntimeUtils.unwrapThrow(ex));
+                    LOG.error(String.format("Failed to connect to WSClient at %s (member %d)", uri, member.index), RuntimeUtils.unwrapThrow(ex));
+                }
+                if (!doScheduleReconnect(member)) {
+                    doAbandon(member);
                 }
-                stop();
             }
         });
     }
 
-    protected void closeConnection() throws Exception {
+    /**
+     * 放弃指定成员, 当全部成员均已放弃时停止连接管理器
+     *
+     * @param member 连接池成员
+     */
+    private void doAbandon(Member member) {
+        synchronized (locker) {
+            member.abandoned = true;
+            for (Member m : members) {
+                if (!m.abandoned) {
+                    return;
+                }
+            }
+            stop();
+        }
+    }
+
+    /**
+     * 按成员的重连策略安排下一次连接
+     *
+     * @param member 连接池成员
+     * @return 若未配置重连策略、已停止运行或已放弃重连则返回false
+     */
+    protected boolean doScheduleReconnect(Member member) {
+        WSReconnectPolicy policy = member.reconnectPolicy;
+        if (policy == null || !isRunning() || owner.getScheduler() == null) {
+            return false;
+        }
+        long delay = policy.nextDelay();
+        if (delay < 0) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn(String.format("Giving up reconnecting to WSClient at %s (member %d) after %d attempts", uri, member.index, policy.getAttempts() - 1));
+            }
+            return false;
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("Reconnecting to WSClient at %s (member %d) in %d ms (attempt %d, state %s)", uri, member.index, delay, policy.getAttempts(), policy.getState()));
+        }
         try {
-            if (isConnected()) {
-                session.close();
+            owner.getScheduler().schedule(() -> {
+                synchronized (locker) {
+                    // 仅当该成员仍属于当前连接池时才重连, 避免在重启后重连已被替换的旧成员
+                    if (isRunning() && !member.isConnected() && doContains(member)) {
+                        openConnection(member);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private boolean doContains(Member member) {
+        Member[] current = members;
+        return member.index < current.length && current[member.index] == member;
+    }
+
+    /**
+     * 会话关闭后执行逻辑, 若仍处于运行状态且配置了重连策略则单独替换该会话所属的成员
+     *
+     * @param closedSession 已关闭的会话
+     * @param closeReason   关闭原因
+     */
+    public void afterSessionClosed(Session closedSession, CloseReason closeReason) {
+        synchronized (locker) {
+            for (Member member : members) {
+                Session current = member.session;
+                if (current == null || !current.getId().equals(closedSession.getId())) {
+                    continue;
+                }
+                member.session = null;
+                member.connectedTime = 0;
+                member.pendingBytes.set(0);
+                if (isRunning() && member.reconnectPolicy != null) {
+                    if (LOG.isInfoEnabled()) {
+                        LOG.info(String.format("WSClient connection for %s (member %d) closed: %s", uri, member.index, closeReason));
+                    }
+                    if (!doScheduleReconnect(member)) {
+                        doAbandon(member);
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * 按负载均衡策略选择一个已连接的成员
+     *
+     * @return 若无可用成员则返回null
+     */
+    public Member selectMember() {
+        Member[] current = members;
+        int size = current.length;
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            return current[0].isConnected() ? current[0] : null;
+        }
+        if (loadBalance == LoadBalance.LEAST_PENDING_BYTES) {
+            Member selected = null;
+            long minPending = Long.MAX_VALUE;
+            for (Member member : current) {
+                if (member.isConnected()) {
+                    long pending = member.getPendingBytes();
+                    if (pending < minPending) {
+                        minPending = pending;
+                        selected = member;
+                    }
+                }
+            }
+            return selected;
+        }
+        int start = (roundRobin.getAndIncrement() & Integer.MAX_VALUE) % size;
+        for (int offset = 0; offset < size; offset++) {
+            Member member = current[(start + offset) % size];
+            if (member.isConnected()) {
+                return member;
             }
-        } finally {
-            session = null;
+        }
+        return null;
+    }
+
+    /**
+     * 通过负载均衡选择的连接异步发送消息
+     *
+     * @param frame 消息内容(String或ByteBuffer)
+     * @return 若无可用连接或消息被出站队列丢弃则返回false
+     */
+    public boolean send(Object frame) {
+        Member member = selectMember();
+        Session current = member != null ? member.session : null;
+        if (current == null) {
+            return false;
+        }
+        long size = WSOutboundQueue.sizeOf(frame);
+        WSSessionContext sessionContext = WSSessionContext.get(current);
+        if (sessionContext != null && sessionContext.getOutboundQueue() != null) {
+            // 出站队列已负责字节数统计, 此处无需再跟踪
+            if (!sessionContext.send(frame)) {
+                return false;
+            }
+        } else {
+            member.pendingBytes.addAndGet(size);
+            SendHandler handler = result -> {
+                member.pendingBytes.addAndGet(-size);
+                if (!result.isOK()) {
+                    member.failedSends.increment();
+                }
+            };
+            try {
+                if (sessionContext != null) {
+                    sessionContext.beforeSend();
+                }
+                if (frame instanceof ByteBuffer) {
+                    current.getAsyncRemote().sendBinary((ByteBuffer) frame, handler);
+                } else {
+                    current.getAsyncRemote().sendText(String.valueOf(frame), handler);
+                }
+            } catch (RuntimeException e) {
+                handler.onResult(new SendResult(e));
+                throw e;
+            }
+            if (sessionContext != null) {
+                sessionContext.afterSend(frame);
+            }
+        }
+        member.sentMessages.increment();
+        member.sentBytes.add(size);
+        return true;
+    }
+
+    protected void closeConnection() throws Exception {
+        Exception exception = null;
+        for (Member member : members) {
+            Session current = member.session;
+            try {
+                if (current != null && current.isOpen()) {
+                    current.close();
+                }
+            } catch (Exception e) {
+                exception = e;
+            } finally {
+                member.session = null;
+            }
+        }
+        if (exception != null) {
+            throw exception;
         }
     }
 
     protected boolean isConnected() {
-        return (session != null && session.isOpen());
+        for (Member member : members) {
+            if (member.isConnected()) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSClusterTransport;
+import net.ymate.module.websocket.IWebSocket;
+import net.ymate.platform.commons.util.RuntimeUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.websocket.Session;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 集群广播桥接: 面向端点路径、自定义键(用户ID、分组等)或订阅主题的广播消息先投递给本节点会话,
+ * 同时按批次合并、仅序列化一次后经传输接口发布, 其它节点收到批次后通过本地会话注册表完成投递,
+ * 跨节点的发布次数与节点数量相关, 而与会话数量无关; 每条消息携带各线格式(消息编解码器)的编码结果,
+ * 以便接收节点按会话已协商的子协议投递
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/17 下午2:30
+ * @since 2.0.0
+ */
+public class WSClusterBridge implements IWSClusterTransport.Receiver {
+
+    private static final Log LOG = LogFactory.getLog(WSClusterBridge.class);
+
+    private static final int MAGIC = 0x57534231;
+
+    private static final byte FRAME_TEXT = 0;
+
+    private static final byte FRAME_BINARY = 1;
+
+    /**
+     * 广播目标类型
+     */
+    public enum TargetType {
+
+        /**
+         * 端点路径或客户端URI
+         */
+        PATH,
+
+        /**
+         * 自定义键
+         */
+        GROUP,
+
+        /**
+         * 订阅主题
+         */
+        TOPIC
+    }
+
+    private final IWebSocket owner;
+
+    private final IWSClusterTransport transport;
+
+    private final ScheduledExecutorService executor;
+
+    private final long batchDelay;
+
+    private final int batchMaxBytes;
+
+    private final UUID nodeId = UUID.randomUUID();
+
+    private final Object locker = new Object();
+
+    private List<Entry> pending = new ArrayList<>();
+
+    private long pendingBytes;
+
+    private boolean flushScheduled;
+
+    private final LongAdder publishedMessages = new LongAdder();
+
+    private final LongAdder publishedBatches = new LongAdder();
+
+    private final LongAdder receivedMessages = new LongAdder();
+
+    private final LongAdder receivedBatches = new LongAdder();
+
+    private final LongAdder failedBatches = new LongAdder();
+
+    /**
+     * @param owner         所属模块
+     * @param transport     集群消息传输
+     * @param executor      批量发布调度器
+     * @param batchDelay    批量发布最大延迟时间, 单位: 毫秒
+     * @param batchMaxBytes 单个批次最大累计字节数
+     */
+    public WSClusterBridge(IWebSocket owner, IWSClusterTransport transport, ScheduledExecutorService executor, long batchDelay, int batchMaxBytes) {
+        this.owner = owner;
+        this.transport = transport;
+        this.executor = executor;
+        this.batchDelay = batchDelay;
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    public void start(String channel) throws Exception {
+        transport.start(channel, this);
+    }
+
+    /**
+     * 发布广播消息: 立即投递给本节点会话, 并加入待发布批次
+     *
+     * @param targetType 广播目标类型
+     * @param target     端点路径、自定义键或主题
+     * @param frame      消息内容(String或ByteBuffer)
+     * @return 返回本节点的目标会话数量
+     */
+    public int publish(TargetType targetType, String target, Object frame) {
+        return publish(targetType, target, frame, null);
+    }
+
+    /**
+     * 发布广播消息: 立即投递给本节点会话, 并加入待发布批次
+     *
+     * @param targetType  广播目标类型
+     * @param target      端点路径、自定义键或主题
+     * @param frame       供未协商消息编解码器的会话使用的消息内容(String或ByteBuffer), 可以为null
+     * @param codecFrames 按子协议名称索引的各线格式消息内容, 可以为null
+     * @return 返回本节点的目标会话数量
+     */
+    public int publish(TargetType targetType, String target, Object frame, Map<String, Object> codecFrames) {
+        if (frame == null && (codecFrames == null || codecFrames.isEmpty())) {
+            throw new IllegalArgumentException("frame");
+        }
+        int count = doDeliver(targetType, target, frame, codecFrames);
+        Entry entry = new Entry(targetType, target, frame, codecFrames);
+        boolean flushNow = false;
+        boolean schedule = false;
+        synchronized (locker) {
+            pending.add(entry);
+            pendingBytes += entry.size();
+            if (pendingBytes >= batchMaxBytes) {
+                flushNow = true;
+            } else if (!flushScheduled) {
+                flushScheduled = schedule = true;
+            }
+        }
+        if (flushNow) {
+            executor.execute(this::flush);
+        } else if (schedule) {
+            executor.schedule(this::flush, batchDelay, TimeUnit.MILLISECONDS);
+        }
+        publishedMessages.increment();
+        return count;
+    }
+
+    /**
+     * 将待发布的消息序列化为一个批次并发布
+     */
+    public void flush() {
+        List<Entry> entries;
+        synchronized (locker) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            entries = pending;
+            pending = new ArrayList<>();
+            pendingBytes = 0;
+        }
+        try {
+            transport.publish(doSerialize(entries));
+            publishedBatches.increment();
+        } catch (Throwable e) {
+            failedBatches.increment();
+            if (LOG.isWarnEnabled()) {
+                LOG.warn(String.format("Failed to publish cluster batch of %d messages", entries.size()), RuntimeUtils.unwrapThrow(e));
+            }
+        }
+    }
+
+    @Override
+    public void onReceive(byte[] batch) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(batch))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Unknown cluster batch format");
+            }
+            if (input.readLong() == nodeId.getMostSignificantBits() & input.readLong() == nodeId.getLeastSignificantBits()) {
+                // 本节点发出的批次已在发布时完成投递
+                return;
+            }
+            receivedBatches.increment();
+            int count = input.readInt();
+            for (int idx = 0; idx < count; idx++) {
+                TargetType targetType = TargetType.values()[input.readByte()];
+                String target = input.readUTF();
+                Object frame = null;
+                Map<String, Object> codecFrames = null;
+                int frameCount = input.readInt();
+                for (int frameIdx = 0; frameIdx < frameCount; frameIdx++) {
+                    // 子协议名称为空表示默认帧
+                    String subprotocol = input.readUTF();
+                    Object current = doReadFrame(input);
+                    if (subprotocol.isEmpty()) {
+                        frame = current;
+                    } else {
+                        if (codecFrames == null) {
+                            codecFrames = new HashMap<>(4);
+                        }
+                        codecFrames.put(subprotocol, current);
+                    }
+                }
+                doDeliver(targetType, target, frame, codecFrames);
+                receivedMessages.increment();
+            }
+        } catch (Throwable e) {
+            failedBatches.increment();
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("Failed to deliver cluster batch", RuntimeUtils.unwrapThrow(e));
+            }
+        }
+    }
+
+    private int doDeliver(TargetType targetType, String target, Object frame, Map<String, Object> codecFrames) {
+        WSSessionRegistry sessionRegistry = owner.getSessionRegistry();
+        WSBroadcaster broadcaster = owner.getBroadcaster();
+        WSTopicRegistry topicRegistry = owner.getTopicRegistry();
+        if (sessionRegistry == null || broadcaster == null || topicRegistry == null) {
+            return 0;
+        }
+        Collection<Session> sessions;
+        switch (targetType) {
+            case PATH:
+                sessions = sessionRegistry.getSessions(target);
+                break;
+            case GROUP:
+                sessions = sessionRegistry.getSessionsByKey(target);
+                break;
+            default:
+                sessions = topicRegistry.getSubscribers(target);
+        }
+        if (sessions.isEmpty()) {
+            return 0;
+        }
+        return broadcaster.broadcastEncoded(sessions, targetType == TargetType.TOPIC ? target : null, frame, codecFrames);
+    }
+
+    private static Object doReadFrame(DataInputStream input) throws IOException {
+        byte frameType = input.readByte();
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return frameType == FRAME_TEXT ? new String(bytes, StandardCharsets.UTF_8) : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    private static void doWriteFrame(DataOutputStream output, String subprotocol, Object frame) throws IOException {
+        output.writeUTF(subprotocol);
+        if (frame instanceof String) {
+            byte[] bytes = ((String) frame).getBytes(StandardCharsets.UTF_8);
+            output.writeByte(FRAME_TEXT);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else {
+            ByteBuffer buffer = ((ByteBuffer) frame).duplicate();
+            output.writeByte(FRAME_BINARY);
+            output.writeInt(buffer.remaining());
+            if (buffer.hasArray()) {
+                output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                output.write(bytes);
+            }
+        }
+    }
+
+    private byte[] doSerialize(List<Entry> entries) throws IOException {
+        long size = 0;
+        for (Entry entry : entries) {
+            size += entry.size();
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8, size + 32));
+        try (DataOutputStream output = new DataOutputStream(outputStream)) {
+            output.writeInt(MAGIC);
+            output.writeLong(nodeId.getMostSignificantBits());
+            output.writeLong(nodeId.getLeastSignificantBits());
+            output.writeInt(entries.size());
+            for (Entry entry : entries) {
+                output.writeByte(entry.targetType.ordinal());
+                output.writeUTF(entry.target);
+                output.writeInt((entry.frame != null ? 1 : 0) + (entry.codecFrames != null ? entry.codecFrames.size() : 0));
+                if (entry.frame != null) {
+                    doWriteFrame(output, "", entry.frame);
+                }
+                if (entry.codecFrames != null) {
+                    for (Map.Entry<String, Object> codecFrame : entry.codecFrames.entrySet()) {
+                        doWriteFrame(output, codecFrame.getKey(), codecFrame.getValue());
+                    }
+                }
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    public void stop() {
+        flush();
+        transport.stop();
+        executor.shutdown();
+    }
+
+    public String getNodeId() {
+        return nodeId.toString();
+    }
+
+    public IWSClusterTransport getTransport() {
+        return transport;
+    }
+
+    public long getPublishedMessages() {
+        return publishedMessages.sum();
+    }
+
+    public long getPublishedBatches() {
+        return publishedBatches.sum();
+    }
+
+    public long getReceivedMessages() {
+        return receivedMessages.sum();
+    }
+
+    public long getReceivedBatches() {
+        return receivedBatches.sum();
+    }
+
+    /**
+     * @return 返回发布或投递失败的批次数量
+     */
+    public long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    private static final class Entry {
+
+        private final TargetType targetType;
+
+        private final String target;
+
+        private final Object frame;
+
+        private final Map<String, Object> codecFrames;
+
+        Entry(TargetType targetType, String target, Object frame, Map<String, Object> codecFrames) {
+            this.targetType = targetType;
+            this.target = target;
+            this.frame = frame;
+            this.codecFrames = codecFrames;
+        }
+
+        long size() {
+            // 帧内容按UTF-8字节数计算, 目标及子协议名称按字符数估算, 用于批次大小控制
+            long size = target.length() + 7;
+            if (frame != null) {
+                size += 7 + WSOutboundQueue.sizeOf(frame);
+            }
+            if (codecFrames != null) {
+                for (Map.Entry<String, Object> codecFrame : codecFrames.entrySet()) {
+                    size += codecFrame.getKey().length() + 7 + WSOutboundQueue.sizeOf(codecFrame.getValue());
+                }
+            }
+            return size;
+        }
+    }
+}
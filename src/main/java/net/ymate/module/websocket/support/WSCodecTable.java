@@ -0,0 +1,389 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.annotation.WSSharable;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.websocket.*;
+import java.io.*;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 编解码表: 在端点注册时一次性解析已声明的编码器及解码器, 按消息类型建立分发表并缓存编解码器实例,
+ * 标注了@WSSharable的编解码器在全部线程间共享同一实例, 其余则在使用时从有界空闲池中借出、用后归还(空闲池已满时直接销毁),
+ * 实例数量与并发使用量相关而与线程数量无关, 发送或解码时通常不再产生反射及实例化开销
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 上午10:12
+ * @since 2.0.0
+ */
+public class WSCodecTable {
+
+    private static final Log LOG = LogFactory.getLog(WSCodecTable.class);
+
+    private static final Entry<Encoder> NONE = new Entry<>(null, null, Object.class);
+
+    private final List<Entry<Encoder>> encoders = new ArrayList<>();
+
+    private final List<Entry<Decoder>> decoders = new ArrayList<>();
+
+    /**
+     * 消息类型与编码器的对应关系, 包括经继承关系匹配的子类型及未匹配的类型(NONE)
+     */
+    private final Map<Class<?>, Entry<Encoder>> encoderCache = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, List<Entry<Decoder>>> decoderCache = new ConcurrentHashMap<>();
+
+    public WSCodecTable(EndpointConfig endpointConfig) {
+        for (Class<? extends Encoder> encoderClass : endpointConfig.getEncoders()) {
+            Class<?> payloadType = resolvePayloadType(encoderClass, Encoder.class);
+            if (payloadType != null) {
+                Entry<Encoder> entry = new Entry<>(encoderClass, endpointConfig, payloadType);
+                encoders.add(entry);
+                encoderCache.putIfAbsent(payloadType, entry);
+            } else if (LOG.isWarnEnabled()) {
+                LOG.warn(String.format("Unable to resolve payload type of encoder %s", encoderClass.getName()));
+            }
+        }
+        for (Class<? extends Decoder> decoderClass : endpointConfig.getDecoders()) {
+            Class<?> payloadType = resolvePayloadType(decoderClass, Decoder.class);
+            if (payloadType != null) {
+                decoders.add(new Entry<>(decoderClass, endpointConfig, payloadType));
+            } else if (LOG.isWarnEnabled()) {
+                LOG.warn(String.format("Unable to resolve payload type of decoder %s", decoderClass.getName()));
+            }
+        }
+    }
+
+    /**
+     * 对消息进行编码, String、ByteBuffer及byte[]类型的消息将直接使用
+     *
+     * @param payload 消息内容
+     * @return 返回String或只读ByteBuffer
+     * @throws EncodeException 未找到匹配的编码器或编码失败时将产生此异常
+     * @throws IOException     编码过程中可能产生的I/O异常
+     */
+    @SuppressWarnings("unchecked")
+    public Object encode(Object payload) throws EncodeException, IOException {
+        if (payload instanceof String) {
+            return payload;
+        } else if (payload instanceof ByteBuffer) {
+            return ((ByteBuffer) payload).asReadOnlyBuffer();
+        } else if (payload instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) payload).asReadOnlyBuffer();
+        }
+        Entry<Encoder> entry = getEncoder(payload.getClass());
+        if (entry == null) {
+            throw new EncodeException(payload, String.format("No encoder specified for object of class [%s]", payload.getClass().getName()));
+        }
+        Encoder encoder;
+        try {
+            encoder = entry.borrow();
+        } catch (IllegalStateException e) {
+            throw new EncodeException(payload, e.getMessage(), e.getCause());
+        }
+        try {
+            if (encoder instanceof Encoder.Text) {
+                return ((Encoder.Text<Object>) encoder).encode(payload);
+            } else if (encoder instanceof Encoder.Binary) {
+                return ((Encoder.Binary<Object>) encoder).encode(payload).asReadOnlyBuffer();
+            } else if (encoder instanceof Encoder.TextStream) {
+                StringWriter writer = new StringWriter();
+                ((Encoder.TextStream<Object>) encoder).encode(payload, writer);
+                return writer.toString();
+            } else if (encoder instanceof Encoder.BinaryStream) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                ((Encoder.BinaryStream<Object>) encoder).encode(payload, outputStream);
+                return ByteBuffer.wrap(outputStream.toByteArray()).asReadOnlyBuffer();
+            }
+        } finally {
+            entry.release(encoder);
+        }
+        throw new EncodeException(payload, String.format("Unsupported encoder %s", encoder.getClass().getName()));
+    }
+
+    /**
+     * 使用与目标类型匹配的解码器对消息进行解码
+     *
+     * @param type  目标类型
+     * @param frame 消息内容(String或ByteBuffer)
+     * @param <T>   目标类型
+     * @return 若无解码器接受该消息则返回null
+     * @throws DecodeException 解码失败时将产生此异常
+     * @throws IOException     解码过程中可能产生的I/O异常
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T decode(Class<T> type, Object frame) throws DecodeException, IOException {
+        for (Entry<Decoder> entry : getDecoders(type)) {
+            Decoder decoder;
+            try {
+                decoder = entry.borrow();
+            } catch (IllegalStateException e) {
+                if (frame instanceof ByteBuffer) {
+                    throw new DecodeException((ByteBuffer) frame, e.getMessage(), e.getCause());
+                }
+                throw new DecodeException(String.valueOf(frame), e.getMessage(), e.getCause());
+            }
+            try {
+                if (frame instanceof String) {
+                    String text = (String) frame;
+                    if (decoder instanceof Decoder.Text && ((Decoder.Text<T>) decoder).willDecode(text)) {
+                        return ((Decoder.Text<T>) decoder).decode(text);
+                    } else if (decoder instanceof Decoder.TextStream) {
+                        return ((Decoder.TextStream<T>) decoder).decode(new StringReader(text));
+                    }
+                } else if (frame instanceof ByteBuffer) {
+                    ByteBuffer buffer = (ByteBuffer) frame;
+                    if (decoder instanceof Decoder.Binary && ((Decoder.Binary<T>) decoder).willDecode(buffer.duplicate())) {
+                        return ((Decoder.Binary<T>) decoder).decode(buffer.duplicate());
+                    } else if (decoder instanceof Decoder.BinaryStream) {
+                        ByteBuffer source = buffer.duplicate();
+                        byte[] bytes = new byte[source.remaining()];
+                        source.get(bytes);
+                        return ((Decoder.BinaryStream<T>) decoder).decode(new ByteArrayInputStream(bytes));
+                    }
+                }
+            } finally {
+                entry.release(decoder);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param payloadType 消息类型
+     * @return 返回是否存在可处理指定消息类型的编码器
+     */
+    public boolean canEncode(Class<?> payloadType) {
+        return getEncoder(payloadType) != null;
+    }
+
+    private Entry<Encoder> getEncoder(Class<?> payloadType) {
+        Entry<Encoder> entry = encoderCache.get(payloadType);
+        if (entry == null) {
+            entry = NONE;
+            for (Entry<Encoder> current : encoders) {
+                if (current.payloadType.isAssignableFrom(payloadType)) {
+                    entry = current;
+                    break;
+                }
+            }
+            encoderCache.put(payloadType, entry);
+        }
+        return entry != NONE ? entry : null;
+    }
+
+    private List<Entry<Decoder>> getDecoders(Class<?> type) {
+        return decoderCache.computeIfAbsent(type, key -> {
+            List<Entry<Decoder>> matched = new ArrayList<>();
+            for (Entry<Decoder> current : decoders) {
+                if (key.isAssignableFrom(current.payloadType)) {
+                    matched.add(current);
+                }
+            }
+            return matched;
+        });
+    }
+
+    /**
+     * 销毁已创建的全部编解码器实例
+     */
+    public void destroy() {
+        encoders.forEach(Entry::destroy);
+        decoders.forEach(Entry::destroy);
+        encoderCache.clear();
+        decoderCache.clear();
+    }
+
+    /**
+     * 解析编码器或解码器所处理的消息类型
+     *
+     * @param codecClass 编码器或解码器类型
+     * @param rootClass  Encoder.class或Decoder.class
+     * @return 若无法解析则返回null
+     */
+    public static Class<?> resolvePayloadType(Class<?> codecClass, Class<?> rootClass) {
+        Class<?> current = codecClass;
+        while (current != null && !Object.class.equals(current)) {
+            for (Type type : current.getGenericInterfaces()) {
+                if (type instanceof ParameterizedType) {
+                    ParameterizedType parameterizedType = (ParameterizedType) type;
+                    Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+                    if (rootClass.isAssignableFrom(rawType) && parameterizedType.getActualTypeArguments().length == 1) {
+                        Type argType = parameterizedType.getActualTypeArguments()[0];
+                        if (argType instanceof Class) {
+                            return (Class<?>) argType;
+                        } else if (argType instanceof ParameterizedType) {
+                            return (Class<?>) ((ParameterizedType) argType).getRawType();
+                        }
+                        return Object.class;
+                    }
+                }
+            }
+            Type superType = current.getGenericSuperclass();
+            if (superType instanceof ParameterizedType && rootClass.isAssignableFrom((Class<?>) ((ParameterizedType) superType).getRawType())) {
+                Type argType = ((ParameterizedType) superType).getActualTypeArguments()[0];
+                if (argType instanceof Class) {
+                    return (Class<?>) argType;
+                }
+            }
+            current = current.getSuperclass();
+        }
+        return null;
+    }
+
+    /**
+     * 编解码器实例持有者
+     *
+     * @param <T> Encoder或Decoder
+     */
+    private static final class Entry<T> {
+
+        /**
+         * 非共享编解码器空闲池的最大实例数量
+         */
+        private static final int MAX_IDLE = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+        private final Class<? extends T> codecClass;
+
+        private final EndpointConfig endpointConfig;
+
+        private final Class<?> payloadType;
+
+        private final boolean sharable;
+
+        private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        private volatile T shared;
+
+        private volatile boolean destroyed;
+
+        Entry(Class<? extends T> codecClass, EndpointConfig endpointConfig, Class<?> payloadType) {
+            this.codecClass = codecClass;
+            this.endpointConfig = endpointConfig;
+            this.payloadType = payloadType;
+            this.sharable = codecClass != null && codecClass.isAnnotationPresent(WSSharable.class);
+        }
+
+        /**
+         * 借出编解码器实例, 非共享实例使用完毕后须通过release归还
+         *
+         * @return 返回编解码器实例
+         */
+        T borrow() {
+            if (!sharable) {
+                T instance = idle.poll();
+                if (instance != null) {
+                    idleCount.decrementAndGet();
+                    return instance;
+                }
+                return create();
+            }
+            T instance = shared;
+            if (instance == null) {
+                synchronized (this) {
+                    instance = shared;
+                    if (instance == null) {
+                        shared = instance = create();
+                    }
+                }
+            }
+            return instance;
+        }
+
+        private T create() {
+            T instance;
+            try {
+                instance = codecClass.getDeclaredConstructor().newInstance();
+            } catch (Exception e) {
+                throw new IllegalStateException(String.format("Unable to create codec %s", codecClass.getName()), e);
+            }
+            if (instance instanceof Encoder) {
+                ((Encoder) instance).init(endpointConfig);
+            } else if (instance instanceof Decoder) {
+                ((Decoder) instance).init(endpointConfig);
+            }
+            return instance;
+        }
+
+        /**
+         * 归还借出的编解码器实例, 空闲池已满或已销毁时直接销毁该实例
+         *
+         * @param instance 编解码器实例
+         */
+        void release(T instance) {
+            if (sharable || instance == null) {
+                return;
+            }
+            if (!destroyed && idleCount.incrementAndGet() <= MAX_IDLE) {
+                idle.offer(instance);
+                if (destroyed) {
+                    doDrain();
+                }
+            } else {
+                idleCount.decrementAndGet();
+                doDestroy(instance);
+            }
+        }
+
+        private void doDrain() {
+            T instance;
+            while ((instance = idle.poll()) != null) {
+                idleCount.decrementAndGet();
+                doDestroy(instance);
+            }
+        }
+
+        private void doDestroy(T instance) {
+            try {
+                if (instance instanceof Encoder) {
+                    ((Encoder) instance).destroy();
+                } else if (instance instanceof Decoder) {
+                    ((Decoder) instance).destroy();
+                }
+            } catch (Exception e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Failed to destroy codec %s", codecClass.getName()), e);
+                }
+            }
+        }
+
+        void destroy() {
+            destroyed = true;
+            doDrain();
+            T instance;
+            synchronized (this) {
+                instance = shared;
+                shared = null;
+            }
+            if (instance != null) {
+                doDestroy(instance);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 由若干缓冲块组成的只读消息视图, 除最后一块外每个缓冲块均已写满;
+ * 视图及其导出的任何缓冲区仅在消息处理方法执行期间有效, 方法返回后缓冲块将被归还至缓冲池
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/16 上午10:05
+ * @since 2.0.0
+ */
+public class WSCompositeBuffer {
+
+    private final WSBufferPool bufferPool;
+
+    private final ByteBuffer[] slabs;
+
+    private final int count;
+
+    private final int size;
+
+    private final int slabSize;
+
+    private boolean released;
+
+    WSCompositeBuffer(WSBufferPool bufferPool, ByteBuffer[] slabs, int count, int size) {
+        this.bufferPool = bufferPool;
+        this.slabs = slabs;
+        this.count = count;
+        this.size = size;
+        this.slabSize = bufferPool.getSlabSize();
+    }
+
+    /**
+     * @return 返回消息总长度
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 返回缓冲块数量
+     */
+    public int getBufferCount() {
+        return count;
+    }
+
+    /**
+     * @param index 缓冲块索引
+     * @return 返回指定缓冲块的只读视图(position为0, limit为有效数据长度)
+     */
+    public ByteBuffer getBuffer(int index) {
+        checkReleased();
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        ByteBuffer view = slabs[index].asReadOnlyBuffer();
+        view.flip();
+        return view;
+    }
+
+    /**
+     * @return 返回全部缓冲块的只读视图, 可直接用于GatheringByteChannel批量写出
+     */
+    public ByteBuffer[] getBuffers() {
+        ByteBuffer[] views = new ByteBuffer[count];
+        for (int idx = 0; idx < count; idx++) {
+            views[idx] = getBuffer(idx);
+        }
+        return views;
+    }
+
+    /**
+     * @param index 字节索引
+     * @return 返回指定位置的字节
+     */
+    public byte get(int index) {
+        checkReleased();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return slabs[index / slabSize].get(index % slabSize);
+    }
+
+    /**
+     * 将消息内容写出到通道
+     *
+     * @param channel 目标通道
+     * @throws IOException 写出时可能产生的异常
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        for (int idx = 0; idx < count; idx++) {
+            ByteBuffer view = getBuffer(idx);
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+    }
+
+    /**
+     * @return 返回按顺序读取全部缓冲块的输入流
+     */
+    public InputStream newInputStream() {
+        checkReleased();
+        return new InputStream() {
+
+            private int index;
+
+            private ByteBuffer current = count > 0 ? getBuffer(0) : null;
+
+            private boolean advance() {
+                while (current != null && !current.hasRemaining()) {
+                    current = ++index < count ? getBuffer(index) : null;
+                }
+                return current != null;
+            }
+
+            @Override
+            public int read() {
+                return advance() ? current.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!advance()) {
+                    return -1;
+                }
+                int length = Math.min(len, current.remaining());
+                current.get(b, off, length);
+                return length;
+            }
+
+            @Override
+            public int available() {
+                return current != null ? current.remaining() : 0;
+            }
+        };
+    }
+
+    /**
+     * 将消息内容复制到新分配的堆内缓冲区
+     *
+     * @return 返回已翻转的缓冲区
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer copied = ByteBuffer.allocate(size);
+        for (int idx = 0; idx < count; idx++) {
+            copied.put(getBuffer(idx));
+        }
+        copied.flip();
+        return copied;
+    }
+
+    /**
+     * 将缓冲块归还至缓冲池, 重复调用将被忽略
+     */
+    public void release() {
+        if (!released) {
+            released = true;
+            for (int idx = 0; idx < count; idx++) {
+                bufferPool.release(slabs[idx]);
+                slabs[idx] = null;
+            }
+        }
+    }
+
+    private void checkReleased() {
+        if (released) {
+            throw new IllegalStateException("Buffer already released");
+        }
+    }
+}
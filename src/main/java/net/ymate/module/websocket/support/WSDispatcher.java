@@ -0,0 +1,255 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 入站消息分发器: 按端点声明的分发模式提供执行器, 使消息处理逻辑脱离容器I/O线程
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/12 下午4:05
+ * @since 2.0.0
+ */
+public class WSDispatcher {
+
+    private static final Log LOG = LogFactory.getLog(WSDispatcher.class);
+
+    /**
+     * 分发模式
+     */
+    public enum Mode {
+
+        /**
+         * 直接在容器I/O线程中执行
+         */
+        DIRECT,
+
+        /**
+         * 有界线程池, 队列已满时由调用线程执行(形成背压)
+         */
+        POOL,
+
+        /**
+         * 每个消息一个虚拟线程(需JDK21+, 否则退化为POOL)
+         */
+        VIRTUAL,
+
+        /**
+         * 工作窃取线程池(ForkJoinPool, FIFO模式)
+         */
+        FORK_JOIN,
+
+        /**
+         * 会话固定分配至分片执行组中的某个单线程工作者, 仅适用于会话入站消息分发, 其它场景退化为POOL
+         */
+        SHARDED
+    }
+
+    private final int poolSize;
+
+    private final int queueCapacity;
+
+    private final WSShardGroup shardGroup;
+
+    private final int sessionQueueCapacity;
+
+    private final long sessionQueueTimeout;
+
+    private volatile ExecutorService poolExecutor;
+
+    private volatile ExecutorService virtualExecutor;
+
+    private volatile ExecutorService forkJoinExecutor;
+
+    private boolean virtualUnsupported;
+
+    /**
+     * @param poolSize      线程池大小
+     * @param queueCapacity 有界线程池任务队列容量
+     */
+    public WSDispatcher(int poolSize, int queueCapacity) {
+        this(poolSize, queueCapacity, null);
+    }
+
+    /**
+     * @param poolSize      线程池大小
+     * @param queueCapacity 有界线程池任务队列容量
+     * @param shardGroup    会话分片执行组, 可以为null
+     */
+    public WSDispatcher(int poolSize, int queueCapacity, WSShardGroup shardGroup) {
+        this(poolSize, queueCapacity, shardGroup, 0, 0);
+    }
+
+    /**
+     * @param poolSize             线程池大小
+     * @param queueCapacity        有界线程池任务队列容量
+     * @param shardGroup           会话分片执行组, 可以为null
+     * @param sessionQueueCapacity 单个会话串行执行器尚未执行的任务数量上限, 小于等于0表示不限制
+     * @param sessionQueueTimeout  单个会话串行执行器队列已满时提交线程的最大等待时间, 单位: 毫秒
+     */
+    public WSDispatcher(int poolSize, int queueCapacity, WSShardGroup shardGroup, int sessionQueueCapacity, long sessionQueueTimeout) {
+        this.poolSize = poolSize;
+        this.queueCapacity = queueCapacity;
+        this.shardGroup = shardGroup;
+        this.sessionQueueCapacity = sessionQueueCapacity;
+        this.sessionQueueTimeout = sessionQueueTimeout;
+    }
+
+    /**
+     * 尝试创建虚拟线程执行器
+     *
+     * @return 若当前JDK不支持虚拟线程则返回null
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 创建具有名称前缀的守护线程工厂
+     *
+     * @param prefix 线程名称前缀
+     * @return 返回线程工厂对象
+     */
+    public static ThreadFactory newThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 获取指定分发模式对应的执行器
+     *
+     * @param mode 分发模式
+     * @return 若为DIRECT模式则返回null
+     */
+    public Executor getExecutor(Mode mode) {
+        if (mode == null) {
+            return null;
+        }
+        switch (mode) {
+            case POOL:
+            case SHARDED:
+                return doGetPoolExecutor();
+            case VIRTUAL:
+                return doGetVirtualExecutor();
+            case FORK_JOIN:
+                return doGetForkJoinExecutor();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 为会话创建保证顺序执行的串行执行器
+     *
+     * @param mode 分发模式
+     * @return 若为DIRECT模式则返回null
+     */
+    public WSSerialExecutor createSerialExecutor(Mode mode) {
+        Executor executor = getExecutor(mode);
+        return executor != null ? new WSSerialExecutor(executor, sessionQueueCapacity, sessionQueueTimeout) : null;
+    }
+
+    /**
+     * 为会话创建在其所分配的单线程工作者中顺序执行的串行执行器
+     *
+     * @param sessionContext 会话上下文
+     * @param shardKey       分片键
+     * @return 若未配置分片执行组则退化为POOL模式
+     */
+    public WSSerialExecutor createShardedExecutor(WSSessionContext sessionContext, String shardKey) {
+        if (shardGroup == null) {
+            return createSerialExecutor(Mode.POOL);
+        }
+        return new WSSerialExecutor(shardGroup.assign(sessionContext, shardKey), sessionQueueCapacity, sessionQueueTimeout);
+    }
+
+    /**
+     * @return 返回会话分片执行组, 可能为null
+     */
+    public WSShardGroup getShardGroup() {
+        return shardGroup;
+    }
+
+    private ExecutorService doGetPoolExecutor() {
+        if (poolExecutor == null) {
+            synchronized (this) {
+                if (poolExecutor == null) {
+                    BlockingQueue<Runnable> workQueue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new LinkedBlockingQueue<>();
+                    poolExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, workQueue, newThreadFactory("ws-dispatch-"), new ThreadPoolExecutor.CallerRunsPolicy());
+                }
+            }
+        }
+        return poolExecutor;
+    }
+
+    private ExecutorService doGetVirtualExecutor() {
+        if (virtualExecutor == null) {
+            synchronized (this) {
+                if (virtualExecutor == null && !virtualUnsupported) {
+                    virtualExecutor = newVirtualThreadPerTaskExecutor();
+                    if (virtualExecutor == null) {
+                        virtualUnsupported = true;
+                        if (LOG.isWarnEnabled()) {
+                            LOG.warn("Virtual threads are not supported by the current JVM, falling back to dispatch mode POOL.");
+                        }
+                    }
+                }
+            }
+        }
+        return virtualExecutor != null ? virtualExecutor : doGetPoolExecutor();
+    }
+
+    private ExecutorService doGetForkJoinExecutor() {
+        if (forkJoinExecutor == null) {
+            synchronized (this) {
+                if (forkJoinExecutor == null) {
+                    forkJoinExecutor = new ForkJoinPool(poolSize, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+                }
+            }
+        }
+        return forkJoinExecutor;
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            for (ExecutorService executorService : new ExecutorService[]{poolExecutor, virtualExecutor, forkJoinExecutor}) {
+                if (executorService != null) {
+                    executorService.shutdown();
+                }
+            }
+            poolExecutor = null;
+            virtualExecutor = null;
+            forkJoinExecutor = null;
+            if (shardGroup != null) {
+                shardGroup.shutdown();
+            }
+        }
+    }
+}
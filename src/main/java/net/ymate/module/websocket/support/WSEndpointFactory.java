@@ -0,0 +1,226 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.AbstractWSListener;
+import net.ymate.module.websocket.IWebSocket;
+import net.ymate.module.websocket.annotation.WSClient;
+import net.ymate.module.websocket.annotation.WSServer;
+import net.ymate.platform.commons.util.RuntimeUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * 端点实例工厂, 在端点注册时一次性确定实例化方式, 避免每次握手或连接都经由Bean工厂查找:
+ * 单例端点仅解析一次并缓存; 显式声明直接创建(@WSServer(directInstantiation = true))且未声明任何注入点或拦截注解的原型端点
+ * 使用预先解析的构造方法句柄直接创建; 其余端点仍交由Bean工厂处理, 以保证拦截器、依赖注入及Bean初始化等原有语义不被绕过;
+ * 由于框架的依赖注入与AOP代理未作为公开接口提供, 此处不会为原型端点预先生成注入器, 其每次创建仍需经由Bean工厂
+ *
+ * @param <T> 端点类型
+ * @author 刘镇 (suninformation@163.com) on 2021/10/17 上午9:40
+ * @since 2.0.0
+ */
+public abstract class WSEndpointFactory<T> {
+
+    /**
+     * 创建端点实例工厂
+     *
+     * @param owner         所属模块
+     * @param endpointClass 端点类型
+     * @param singleton     端点是否为单例
+     * @param <T>           端点类型
+     * @return 返回端点实例工厂
+     */
+    public static <T> WSEndpointFactory<T> create(IWebSocket owner, Class<T> endpointClass, boolean singleton) {
+        return create(owner, endpointClass, singleton, false);
+    }
+
+    /**
+     * 创建端点实例工厂
+     *
+     * @param owner         所属模块
+     * @param endpointClass 端点类型
+     * @param singleton     端点是否为单例
+     * @param direct        是否允许绕过Bean工厂直接创建原型端点实例
+     * @param <T>           端点类型
+     * @return 返回端点实例工厂
+     */
+    public static <T> WSEndpointFactory<T> create(IWebSocket owner, Class<T> endpointClass, boolean singleton, boolean direct) {
+        if (singleton) {
+            return new Singleton<>(owner, endpointClass);
+        }
+        if (direct) {
+            MethodHandle constructor = doResolveConstructor(endpointClass);
+            if (constructor != null) {
+                return new Direct<>(endpointClass, constructor);
+            }
+        }
+        return new BeanFactory<>(owner, endpointClass);
+    }
+
+    /**
+     * @param endpointClass 端点类型
+     * @return 若端点可直接构造则返回构造方法句柄, 否则返回null
+     */
+    private static MethodHandle doResolveConstructor(Class<?> endpointClass) {
+        if (Modifier.isAbstract(endpointClass.getModifiers()) || doHasInjectionPoints(endpointClass)) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = endpointClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 检查端点类型(直至AbstractWSListener)在类、字段及方法上是否声明了运行时注解(@WSServer及@WSClient除外),
+     * 存在时即使显式声明了直接创建, 仍视为需要Bean工厂进行依赖注入或拦截处理
+     *
+     * @param endpointClass 端点类型
+     * @return 返回是否存在注入点
+     */
+    private static boolean doHasInjectionPoints(Class<?> endpointClass) {
+        for (Class<?> current = endpointClass; current != null && !AbstractWSListener.class.equals(current) && !Object.class.equals(current); current = current.getSuperclass()) {
+            for (Annotation annotation : current.getDeclaredAnnotations()) {
+                if (!(annotation instanceof WSServer) && !(annotation instanceof WSClient)) {
+                    return true;
+                }
+            }
+            for (Field field : current.getDeclaredFields()) {
+                if (field.getDeclaredAnnotations().length > 0) {
+                    return true;
+                }
+            }
+            for (Method method : current.getDeclaredMethods()) {
+                if (method.getDeclaredAnnotations().length > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private final Class<T> endpointClass;
+
+    protected WSEndpointFactory(Class<T> endpointClass) {
+        this.endpointClass = endpointClass;
+    }
+
+    public Class<T> getEndpointClass() {
+        return endpointClass;
+    }
+
+    /**
+     * 获取端点实例
+     *
+     * @return 返回端点实例
+     * @throws InstantiationException 无法创建实例时将产生此异常
+     */
+    public abstract T getInstance() throws InstantiationException;
+
+    /**
+     * @return 返回是否绕过Bean工厂直接创建实例
+     */
+    public boolean isDirect() {
+        return false;
+    }
+
+    private static final class Singleton<T> extends WSEndpointFactory<T> {
+
+        private final IWebSocket owner;
+
+        private volatile T instance;
+
+        Singleton(IWebSocket owner, Class<T> endpointClass) {
+            super(endpointClass);
+            this.owner = owner;
+        }
+
+        @Override
+        public T getInstance() throws InstantiationException {
+            T current = instance;
+            if (current == null) {
+                synchronized (this) {
+                    current = instance;
+                    if (current == null) {
+                        current = owner.getOwner().getBeanFactory().getBean(getEndpointClass());
+                        if (current == null) {
+                            throw new InstantiationException(String.format("Unable to resolve endpoint %s", getEndpointClass().getName()));
+                        }
+                        instance = current;
+                    }
+                }
+            }
+            return current;
+        }
+    }
+
+    private static final class Direct<T> extends WSEndpointFactory<T> {
+
+        private final MethodHandle constructor;
+
+        Direct(Class<T> endpointClass, MethodHandle constructor) {
+            super(endpointClass);
+            this.constructor = constructor;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T getInstance() throws InstantiationException {
+            try {
+                return (T) constructor.invokeExact();
+            } catch (Throwable e) {
+                InstantiationException exception = new InstantiationException(String.format("Unable to create endpoint %s", getEndpointClass().getName()));
+                exception.initCause(RuntimeUtils.unwrapThrow(e));
+                throw exception;
+            }
+        }
+
+        @Override
+        public boolean isDirect() {
+            return true;
+        }
+    }
+
+    private static final class BeanFactory<T> extends WSEndpointFactory<T> {
+
+        private final IWebSocket owner;
+
+        BeanFactory(IWebSocket owner, Class<T> endpointClass) {
+            super(endpointClass);
+            this.owner = owner;
+        }
+
+        @Override
+        public T getInstance() throws InstantiationException {
+            T instance = owner.getOwner().getBeanFactory().getBean(getEndpointClass());
+            if (instance == null) {
+                throw new InstantiationException(String.format("Unable to resolve endpoint %s", getEndpointClass().getName()));
+            }
+            return instance;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.platform.commons.util.RuntimeUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.websocket.CloseReason;
+import javax.websocket.PongMessage;
+import javax.websocket.Session;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 心跳调度器: 基于时间轮, 由单个周期任务驱动, 会话被均匀分配到各槽位, 每次仅处理一个槽位,
+ * 从而将Ping发送平摊到整个心跳周期内; Ping负载为8字节的System.nanoTime()时间戳, 收到Pong后据此计算往返时延(RTT)
+ * 并上报至监控指标采集器, 连续未收到Pong响应的次数达到上限时关闭会话;
+ * sendPing可能阻塞, 因此由独立的执行器发送, 且同一会话上一次Ping尚未写出时跳过本次发送, 时间轮线程不参与任何网络写操作
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/14 下午2:10
+ * @since 2.0.0
+ */
+public class WSHeartbeat implements Runnable {
+
+    private static final Log LOG = LogFactory.getLog(WSHeartbeat.class);
+
+    private static final int PAYLOAD_SIZE = 8;
+
+    private final Set<WSSessionContext>[] wheel;
+
+    private final int maxMissed;
+
+    private final Executor closeExecutor;
+
+    private final Executor pingExecutor;
+
+    private final Set<WSSessionContext> pinging = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledFuture<?> future;
+
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+    private final LongAdder pingCount = new LongAdder();
+
+    private final LongAdder pongCount = new LongAdder();
+
+    private final LongAdder timeoutCount = new LongAdder();
+
+    private final LongAdder skippedCount = new LongAdder();
+
+    private int tick;
+
+    /**
+     * @param scheduler     驱动时间轮的调度器
+     * @param closeExecutor 关闭超时会话的执行器, 避免阻塞时间轮
+     * @param pingExecutor  发送Ping的执行器, 避免阻塞时间轮
+     * @param interval      心跳间隔, 单位: 毫秒
+     * @param maxMissed     允许连续未收到Pong响应的最大次数
+     * @param wheelSize     时间轮槽位数量
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public WSHeartbeat(ScheduledExecutorService scheduler, Executor closeExecutor, Executor pingExecutor, long interval, int maxMissed, int wheelSize) {
+        // 保证每个槽位的时间跨度至少为1毫秒
+        int size = (int) Math.max(1, Math.min(wheelSize, interval));
+        this.wheel = new Set[size];
+        for (int idx = 0; idx < size; idx++) {
+            wheel[idx] = ConcurrentHashMap.newKeySet();
+        }
+        this.maxMissed = Math.max(1, maxMissed);
+        this.closeExecutor = closeExecutor;
+        this.pingExecutor = pingExecutor;
+        long tickInterval = Math.max(1, interval / size);
+        this.future = scheduler.scheduleAtFixedRate(this, tickInterval, tickInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 将会话加入时间轮
+     *
+     * @param sessionContext 会话上下文
+     */
+    public void add(WSSessionContext sessionContext) {
+        int slot = (nextSlot.getAndIncrement() & Integer.MAX_VALUE) % wheel.length;
+        sessionContext.setHeartbeatSlot(slot);
+        wheel[slot].add(sessionContext);
+    }
+
+    /**
+     * 将会话移出时间轮
+     *
+     * @param sessionContext 会话上下文
+     */
+    public void remove(WSSessionContext sessionContext) {
+        int slot = sessionContext.getHeartbeatSlot();
+        if (slot >= 0 && slot < wheel.length) {
+            wheel[slot].remove(sessionContext);
+        }
+        pinging.remove(sessionContext);
+    }
+
+    @Override
+    public void run() {
+        Set<WSSessionContext> bucket = wheel[tick];
+        tick = (tick + 1) % wheel.length;
+        for (WSSessionContext sessionContext : bucket) {
+            try {
+                doCheck(bucket, sessionContext);
+            } catch (Throwable e) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn(String.format("Heartbeat check failed for session %s", sessionContext.getId()), RuntimeUtils.unwrapThrow(e));
+                }
+            }
+        }
+    }
+
+    private void doCheck(Set<WSSessionContext> bucket, WSSessionContext sessionContext) throws Exception {
+        Session session = sessionContext.getSession();
+        if (!session.isOpen()) {
+            bucket.remove(sessionContext);
+            return;
+        }
+        if (sessionContext.isAwaitingPong() && sessionContext.incrementMissedPongs() >= maxMissed) {
+            bucket.remove(sessionContext);
+            timeoutCount.increment();
+            if (LOG.isInfoEnabled()) {
+                LOG.info(String.format("Closing session %s after %d missed pongs", session.getId(), maxMissed));
+            }
+            closeExecutor.execute(() -> {
+                try {
+                    session.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "PING_TIMEOUT"));
+                } catch (Exception e) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(String.format("Failed to close session %s", session.getId()), RuntimeUtils.unwrapThrow(e));
+                    }
+                }
+            });
+            return;
+        }
+        if (!pinging.add(sessionContext)) {
+            // 上一次Ping仍阻塞在写操作中, 本周期计为未响应
+            skippedCount.increment();
+            return;
+        }
+        sessionContext.setAwaitingPong(true);
+        try {
+            pingExecutor.execute(() -> doPing(sessionContext));
+        } catch (RuntimeException e) {
+            pinging.remove(sessionContext);
+            throw e;
+        }
+    }
+
+    private void doPing(WSSessionContext sessionContext) {
+        Session session = sessionContext.getSession();
+        try {
+            if (session.isOpen()) {
+                ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_SIZE);
+                payload.putLong(0, System.nanoTime());
+                session.getAsyncRemote().sendPing(payload);
+                pingCount.increment();
+            }
+        } catch (Throwable e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Failed to send ping to session %s", sessionContext.getId()), RuntimeUtils.unwrapThrow(e));
+            }
+        } finally {
+            pinging.remove(sessionContext);
+        }
+    }
+
+    /**
+     * 处理Pong消息, 若负载为本调度器发出的时间戳则更新会话RTT并重置未响应计数
+     *
+     * @param session 会话
+     * @param message Pong消息
+     * @return 若Pong消息由心跳Ping触发则返回true
+     */
+    public boolean onPong(Session session, PongMessage message) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        ByteBuffer payload = message.getApplicationData();
+        if (sessionContext == null || payload == null || payload.remaining() != PAYLOAD_SIZE) {
+            return false;
+        }
+        long rtt = System.nanoTime() - payload.getLong(payload.position());
+        if (rtt < 0) {
+            return false;
+        }
+        sessionContext.recordRtt(rtt);
+        sessionContext.getMetrics().heartbeatRtt(sessionContext.getPath(), rtt);
+        pongCount.increment();
+        return true;
+    }
+
+    /**
+     * @return 返回当前参与心跳的会话数量
+     */
+    public int size() {
+        int size = 0;
+        for (Set<WSSessionContext> bucket : wheel) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    public long getPingCount() {
+        return pingCount.sum();
+    }
+
+    public long getPongCount() {
+        return pongCount.sum();
+    }
+
+    /**
+     * @return 返回因连续未收到Pong响应而被关闭的会话数量
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * @return 返回因上一次Ping仍未写出而跳过发送的次数
+     */
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    public void shutdown() {
+        future.cancel(false);
+        pinging.clear();
+        for (Set<WSSessionContext> bucket : wheel) {
+            bucket.clear();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 会话级分片消息聚合器: 二进制分片被依次写入缓冲池中的直接内存缓冲块, 完成后以只读组合视图交付,
+ * 文字分片则聚合至可复用的StringBuilder; 容器保证同一会话的分片按顺序串行到达
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/16 上午10:05
+ * @since 2.0.0
+ */
+public class WSMessageAggregator {
+
+    /**
+     * 文字聚合缓冲区超过此容量时在消息完成后丢弃, 避免长期占用大块内存
+     */
+    private static final int MAX_RETAINED_TEXT_CAPACITY = 64 * 1024;
+
+    private final WSBufferPool bufferPool;
+
+    private final int maxSize;
+
+    private ByteBuffer[] slabs = new ByteBuffer[4];
+
+    private int count;
+
+    private long size;
+
+    private StringBuilder text = new StringBuilder();
+
+    public WSMessageAggregator(WSBufferPool bufferPool, int maxSize) {
+        this.bufferPool = bufferPool;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 追加二进制分片
+     *
+     * @param fragment 分片内容(不会修改其position)
+     * @return 若聚合后长度超出上限则丢弃已聚合内容并返回false
+     */
+    public synchronized boolean appendBinary(ByteBuffer fragment) {
+        int remaining = fragment.remaining();
+        if (size + remaining > maxSize) {
+            doReleaseSlabs();
+            return false;
+        }
+        ByteBuffer source = fragment.duplicate();
+        while (source.hasRemaining()) {
+            if (count == 0 || !slabs[count - 1].hasRemaining()) {
+                if (count == slabs.length) {
+                    slabs = Arrays.copyOf(slabs, count << 1);
+                }
+                slabs[count++] = bufferPool.acquire();
+            }
+            ByteBuffer slab = slabs[count - 1];
+            if (source.remaining() <= slab.remaining()) {
+                slab.put(source);
+            } else {
+                int limit = source.limit();
+                source.limit(source.position() + slab.remaining());
+                slab.put(source);
+                source.limit(limit);
+            }
+        }
+        size += remaining;
+        return true;
+    }
+
+    /**
+     * 完成当前二进制消息的聚合
+     *
+     * @return 返回组合视图, 调用者须在使用完毕后调用其release方法归还缓冲块
+     */
+    public synchronized WSCompositeBuffer completeBinary() {
+        WSCompositeBuffer compositeBuffer = new WSCompositeBuffer(bufferPool, slabs, count, (int) size);
+        slabs = new ByteBuffer[Math.max(4, count)];
+        count = 0;
+        size = 0;
+        return compositeBuffer;
+    }
+
+    /**
+     * 追加文字分片
+     *
+     * @param fragment 分片内容
+     * @return 若聚合后长度(字符数)超出上限则丢弃已聚合内容并返回false
+     */
+    public synchronized boolean appendText(String fragment) {
+        if ((long) text.length() + fragment.length() > maxSize) {
+            doResetText();
+            return false;
+        }
+        text.append(fragment);
+        return true;
+    }
+
+    /**
+     * 完成当前文字消息的聚合
+     *
+     * @return 返回完整的文字消息
+     */
+    public synchronized String completeText() {
+        String message = text.toString();
+        doResetText();
+        return message;
+    }
+
+    /**
+     * 释放尚未完成聚合的全部内容
+     */
+    public synchronized void release() {
+        doReleaseSlabs();
+        doResetText();
+    }
+
+    private void doReleaseSlabs() {
+        for (int idx = 0; idx < count; idx++) {
+            bufferPool.release(slabs[idx]);
+            slabs[idx] = null;
+        }
+        count = 0;
+        size = 0;
+    }
+
+    private void doResetText() {
+        if (text.capacity() > MAX_RETAINED_TEXT_CAPACITY) {
+            text = new StringBuilder();
+        } else {
+            text.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSMessageCodec;
+import net.ymate.module.websocket.annotation.WSSharable;
+import net.ymate.module.websocket.impl.JsonWSMessageCodec;
+import net.ymate.module.websocket.impl.MsgPackWSMessageCodec;
+
+import javax.websocket.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 消息编解码器注册表, 按子协议名称管理编解码器, 内置json及msgpack两种格式;
+ * 同时提供可直接声明在@WSServer/@WSClient的encoders及decoders中的编解码器适配基类
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/15 下午3:36
+ * @since 2.0.0
+ */
+public final class WSMessageCodecs {
+
+    private static final Map<String, IWSMessageCodec> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(JsonWSMessageCodec.INSTANCE);
+        register(MsgPackWSMessageCodec.INSTANCE);
+    }
+
+    /**
+     * 注册消息编解码器, 已存在的同名编解码器将被替换
+     *
+     * @param codec 消息编解码器
+     */
+    public static void register(IWSMessageCodec codec) {
+        CODECS.put(codec.getSubprotocol(), codec);
+    }
+
+    /**
+     * @param subprotocol 子协议名称
+     * @return 若不存在则返回null
+     */
+    public static IWSMessageCodec get(String subprotocol) {
+        if (subprotocol == null || subprotocol.isEmpty()) {
+            return null;
+        }
+        return CODECS.get(subprotocol);
+    }
+
+    /**
+     * @return 返回已注册的全部消息编解码器(只读)
+     */
+    public static Collection<IWSMessageCodec> getAll() {
+        return Collections.unmodifiableCollection(CODECS.values());
+    }
+
+    /**
+     * @param session 会话
+     * @return 返回与会话已协商子协议对应的编解码器, 若不存在则返回null
+     */
+    public static IWSMessageCodec get(Session session) {
+        return get(session.getNegotiatedSubprotocol());
+    }
+
+    /**
+     * 合并已声明的子协议与编码器适配类所对应的子协议
+     *
+     * @param subprotocols 已声明的子协议(优先)
+     * @param encoders     编码器类型集合
+     * @return 返回合并后的子协议列表
+     */
+    public static List<String> resolveSubprotocols(String[] subprotocols, Class<? extends Encoder>[] encoders) {
+        Set<String> result = new LinkedHashSet<>(Arrays.asList(subprotocols));
+        for (Class<? extends Encoder> encoderClass : encoders) {
+            if (Provider.class.isAssignableFrom(encoderClass)) {
+                try {
+                    result.add(((Provider) encoderClass.getDeclaredConstructor().newInstance()).getCodec().getSubprotocol());
+                } catch (Exception e) {
+                    throw new IllegalArgumentException(String.format("Unable to create encoder %s", encoderClass.getName()), e);
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    private WSMessageCodecs() {
+    }
+
+    /**
+     * 编解码器提供者, 编码器适配类通过此接口声明其对应的子协议
+     */
+    public interface Provider {
+
+        /**
+         * @return 返回消息编解码器
+         */
+        IWSMessageCodec getCodec();
+    }
+
+    private abstract static class AbstractCodec implements Provider {
+
+        private final IWSMessageCodec codec;
+
+        AbstractCodec(IWSMessageCodec codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public IWSMessageCodec getCodec() {
+            return codec;
+        }
+
+        public void init(EndpointConfig config) {
+        }
+
+        public void destroy() {
+        }
+    }
+
+    /**
+     * 二进制格式编码器适配基类
+     */
+    @WSSharable
+    public abstract static class BinaryEncoder extends AbstractCodec implements Encoder.Binary<Object> {
+
+        protected BinaryEncoder(IWSMessageCodec codec) {
+            super(codec);
+        }
+
+        @Override
+        public ByteBuffer encode(Object object) throws EncodeException {
+            return (ByteBuffer) getCodec().encode(object);
+        }
+    }
+
+    /**
+     * 文本格式编码器适配基类
+     */
+    @WSSharable
+    public abstract static class TextEncoder extends AbstractCodec implements Encoder.Text<Object> {
+
+        protected TextEncoder(IWSMessageCodec codec) {
+            super(codec);
+        }
+
+        @Override
+        public String encode(Object object) throws EncodeException {
+            return (String) getCodec().encode(object);
+        }
+    }
+
+    /**
+     * 二进制格式解码器适配基类
+     */
+    @WSSharable
+    public abstract static class BinaryDecoder extends AbstractCodec implements Decoder.Binary<Object> {
+
+        protected BinaryDecoder(IWSMessageCodec codec) {
+            super(codec);
+        }
+
+        @Override
+        public Object decode(ByteBuffer bytes) throws DecodeException {
+            return getCodec().decode(bytes);
+        }
+
+        @Override
+        public boolean willDecode(ByteBuffer bytes) {
+            return bytes != null;
+        }
+    }
+
+    /**
+     * 文本格式解码器适配基类
+     */
+    @WSSharable
+    public abstract static class TextDecoder extends AbstractCodec implements Decoder.Text<Object> {
+
+        protected TextDecoder(IWSMessageCodec codec) {
+            super(codec);
+        }
+
+        @Override
+        public Object decode(String s) throws DecodeException {
+            return getCodec().decode(s);
+        }
+
+        @Override
+        public boolean willDecode(String s) {
+            return s != null;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 握手来源(Origin)白名单匹配器, 在端点注册时将规则编译为哈希集合, 并缓存最近的匹配结果;
+ * 支持的规则格式: *(允许全部)、https://example.com、https://*.example.com、*.example.com(任意协议)及http://localhost:8080,
+ * 未指定端口时仅匹配协议默认端口; 未携带Origin头的请求(非浏览器客户端)是否允许由allowMissing决定
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/16 下午2:15
+ * @since 2.0.0
+ */
+public class WSOriginMatcher {
+
+    private static final String ANY_SCHEME = "*";
+
+    private static final int MAX_CACHE_SIZE = 4096;
+
+    private final boolean allowAll;
+
+    private final boolean allowMissing;
+
+    /**
+     * 精确匹配规则, 格式为: scheme://host[:port]
+     */
+    private final Set<String> exacts = new HashSet<>();
+
+    /**
+     * 子域名通配规则, 格式为: scheme://*.domain[:port]
+     */
+    private final Set<String> wildcards = new HashSet<>();
+
+    private final Map<String, Boolean> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 编译来源白名单规则
+     *
+     * @param allowMissing 是否允许未携带Origin头的请求
+     * @param patterns     规则集合
+     * @return 返回匹配器对象
+     */
+    public static WSOriginMatcher compile(boolean allowMissing, String... patterns) {
+        return new WSOriginMatcher(allowMissing, patterns);
+    }
+
+    private WSOriginMatcher(boolean allowMissing, String[] patterns) {
+        this.allowMissing = allowMissing;
+        boolean all = false;
+        for (String pattern : patterns) {
+            String value = pattern == null ? "" : pattern.trim().toLowerCase(Locale.ROOT);
+            if (value.isEmpty()) {
+                continue;
+            }
+            if (ANY_SCHEME.equals(value)) {
+                all = true;
+                continue;
+            }
+            Origin origin = Origin.parse(value.contains("://") ? value : ANY_SCHEME + "://" + value);
+            if (origin == null) {
+                throw new IllegalArgumentException(String.format("Invalid origin pattern: %s", pattern));
+            }
+            if (origin.host.startsWith("*.")) {
+                wildcards.add(origin.key(origin.host.substring(1)));
+            } else {
+                exacts.add(origin.key(origin.host));
+            }
+        }
+        this.allowAll = all;
+    }
+
+    /**
+     * @param origin 握手请求的Origin头
+     * @return 返回是否允许该来源
+     */
+    public boolean matches(String origin) {
+        if (origin == null || origin.isEmpty()) {
+            return allowMissing || allowAll;
+        }
+        if (allowAll) {
+            return true;
+        }
+        Boolean result = cache.get(origin);
+        if (result == null) {
+            result = doMatch(origin);
+            if (cache.size() >= MAX_CACHE_SIZE) {
+                // 避免大量不同来源撑大缓存, 超限时整体清空
+                cache.clear();
+            }
+            cache.put(origin, result);
+        }
+        return result;
+    }
+
+    private boolean doMatch(String value) {
+        Origin origin = Origin.parse(value.toLowerCase(Locale.ROOT));
+        if (origin == null) {
+            return false;
+        }
+        if (exacts.contains(origin.key(origin.host)) || exacts.contains(origin.anySchemeKey(origin.host))) {
+            return true;
+        }
+        if (!wildcards.isEmpty()) {
+            String host = origin.host;
+            for (int idx = host.indexOf('.'); idx >= 0; idx = host.indexOf('.', idx + 1)) {
+                String suffix = host.substring(idx);
+                if (wildcards.contains(origin.key(suffix)) || wildcards.contains(origin.anySchemeKey(suffix))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public Set<String> getExacts() {
+        return Collections.unmodifiableSet(exacts);
+    }
+
+    public Set<String> getWildcards() {
+        return Collections.unmodifiableSet(wildcards);
+    }
+
+    private static final class Origin {
+
+        private final String scheme;
+
+        private final String host;
+
+        private final String port;
+
+        private Origin(String scheme, String host, String port) {
+            this.scheme = scheme;
+            this.host = host;
+            this.port = port;
+        }
+
+        static Origin parse(String value) {
+            int schemeEnd = value.indexOf("://");
+            if (schemeEnd <= 0) {
+                return null;
+            }
+            String scheme = value.substring(0, schemeEnd);
+            int hostStart = schemeEnd + 3;
+            int hostEnd = value.indexOf('/', hostStart);
+            String hostPort = hostEnd < 0 ? value.substring(hostStart) : value.substring(hostStart, hostEnd);
+            String host = hostPort;
+            String port = null;
+            int portIdx = hostPort.lastIndexOf(':');
+            // 排除IPv6地址中的冒号
+            if (portIdx > 0 && portIdx > hostPort.lastIndexOf(']')) {
+                host = hostPort.substring(0, portIdx);
+                port = hostPort.substring(portIdx + 1);
+            }
+            if (host.isEmpty()) {
+                return null;
+            }
+            if (port != null && port.equals(defaultPort(scheme))) {
+                port = null;
+            }
+            return new Origin(scheme, host, port);
+        }
+
+        private static String defaultPort(String scheme) {
+            switch (scheme) {
+                case "http":
+                case "ws":
+                    return "80";
+                case "https":
+                case "wss":
+                    return "443";
+                default:
+                    return null;
+            }
+        }
+
+        String key(String hostPart) {
+            return doKey(scheme, hostPart);
+        }
+
+        String anySchemeKey(String hostPart) {
+            return doKey(ANY_SCHEME, hostPart);
+        }
+
+        private String doKey(String currentScheme, String hostPart) {
+            StringBuilder builder = new StringBuilder(currentScheme.length() + hostPart.length() + 10).append(currentScheme).append("://").append(hostPart);
+            if (port != null) {
+                builder.append(':').append(port);
+            }
+            return builder.toString();
+        }
+    }
+}
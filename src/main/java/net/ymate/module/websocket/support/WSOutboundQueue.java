@@ -0,0 +1,564 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSMetrics;
+import net.ymate.module.websocket.impl.NoOpWSMetrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 会话出站消息队列: 封装RemoteEndpoint.Async, 保证同一时刻仅存在一个未完成的异步发送,
+ * 积压消息受最大数量及最大字节数限制, 超出时按溢出策略处理;
+ * 开启合并模式后, 携带键的新消息将直接替换队列中相同键的未发送消息(保留其原有位置), 使每个键至多积压一条最新消息,
+ * 由于同一时刻仅存在一个未完成的发送, 队列将以会话的实际发送速率排出, 消费缓慢的会话仅会收到各键的最新值
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/10 下午2:40
+ * @since 2.0.0
+ */
+public class WSOutboundQueue implements SendHandler {
+
+    private static final Log LOG = LogFactory.getLog(WSOutboundQueue.class);
+
+    /**
+     * 合并模式下未配置最大积压消息数量时的默认值
+     */
+    public static final int DEFAULT_CONFLATING_MAX_MESSAGES = 1024;
+
+    /**
+     * 队列溢出策略
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * 丢弃最早的消息
+         */
+        DROP_OLDEST,
+
+        /**
+         * 丢弃最新的消息
+         */
+        DROP_NEWEST,
+
+        /**
+         * 按键合并, 新消息替换队列中相同键的消息, 若无相同键则丢弃最早的消息
+         */
+        COALESCE_BY_KEY,
+
+        /**
+         * 以1008(VIOLATED_POLICY)关闭会话
+         */
+        CLOSE
+    }
+
+    private static final class Entry {
+
+        final String key;
+
+        Object frame;
+
+        long size;
+
+        Entry(String key, Object frame, long size) {
+            this.key = key;
+            this.frame = frame;
+            this.size = size;
+        }
+    }
+
+    private final Session session;
+
+    private final int maxMessages;
+
+    private final long maxBytes;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Consumer<Session> evictionCallback;
+
+    private volatile WSWriteBatcher writeBatcher;
+
+    private volatile IWSMetrics metrics = NoOpWSMetrics.INSTANCE;
+
+    private volatile String metricsPath;
+
+    private volatile WSPerMessageDeflate perMessageDeflate;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    private final Map<String, Entry> conflatingEntries;
+
+    private long queuedBytes;
+
+    private boolean sending;
+
+    private boolean sendInProgress;
+
+    private boolean completedInline;
+
+    private boolean closed;
+
+    /**
+     * 等待独占发送(如流式发送)的线程数量, 大于0时暂停启动新的异步发送
+     */
+    private int exclusiveWaiters;
+
+    private long droppedCount;
+
+    private long failedCount;
+
+    private long conflatedCount;
+
+    /**
+     * @param session          会话
+     * @param maxMessages      最大积压消息数量
+     * @param maxBytes         最大积压字节数(文本消息按UTF-8编码后的长度计算, 单条即超出上限的消息将被拒绝, CLOSE策略下驱逐会话), 小于等于0表示不限制
+     * @param overflowPolicy   溢出策略
+     * @param evictionCallback 会话因消费过慢被驱逐时的回调, 可以为null
+     */
+    public WSOutboundQueue(Session session, int maxMessages, long maxBytes, OverflowPolicy overflowPolicy, Consumer<Session> evictionCallback) {
+        this(session, maxMessages, maxBytes, overflowPolicy, evictionCallback, false);
+    }
+
+    /**
+     * @param session          会话
+     * @param maxMessages      最大积压消息数量
+     * @param maxBytes         最大积压字节数(文本消息按UTF-8编码后的长度计算, 单条即超出上限的消息将被拒绝, CLOSE策略下驱逐会话), 小于等于0表示不限制
+     * @param overflowPolicy   溢出策略
+     * @param evictionCallback 会话因消费过慢被驱逐时的回调, 可以为null
+     * @param conflating       是否开启按键合并模式
+     */
+    public WSOutboundQueue(Session session, int maxMessages, long maxBytes, OverflowPolicy overflowPolicy, Consumer<Session> evictionCallback, boolean conflating) {
+        this.session = session;
+        this.conflatingEntries = conflating ? new HashMap<>() : null;
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.DROP_OLDEST;
+        this.evictionCallback = evictionCallback;
+    }
+
+    /**
+     * 将消息加入队列
+     *
+     * @param frame 消息内容(String或ByteBuffer)
+     * @return 若消息被丢弃或会话已被驱逐则返回false
+     */
+    public boolean offer(Object frame) {
+        return offer(null, frame);
+    }
+
+    /**
+     * 将消息加入队列
+     *
+     * @param key   消息键, 用于合并模式及COALESCE_BY_KEY策略, 可以为null
+     * @param frame 消息内容(String或ByteBuffer)
+     * @return 若消息被丢弃或会话已被驱逐则返回false
+     */
+    public boolean offer(String key, Object frame) {
+        if (!(frame instanceof String) && !(frame instanceof ByteBuffer)) {
+            throw new IllegalArgumentException("Unsupported frame type: " + (frame == null ? null : frame.getClass().getName()));
+        }
+        long size = sizeOf(frame);
+        boolean evict = false;
+        synchronized (entries) {
+            if (closed) {
+                return false;
+            }
+            if (maxBytes > 0 && size > maxBytes) {
+                // 单条消息即超出字节上限, 无论丢弃多少积压消息都无法容纳: CLOSE策略驱逐会话, 其余策略拒绝该消息
+                if (overflowPolicy == OverflowPolicy.CLOSE) {
+                    closed = true;
+                    evict = true;
+                } else {
+                    droppedCount++;
+                    return false;
+                }
+            } else if (conflatingEntries != null && key != null) {
+                Entry pending = conflatingEntries.get(key);
+                if (pending != null) {
+                    conflatedCount++;
+                    if (!isBytesOverflow(size - pending.size)) {
+                        doReplace(pending, frame, size);
+                        return true;
+                    }
+                    // 替换后将超出字节上限, 移除被替换的消息后按溢出策略处理新消息
+                    doRemove(pending);
+                }
+            }
+            if (!evict && isOverflow(1, size)) {
+                switch (overflowPolicy) {
+                    case DROP_NEWEST:
+                        droppedCount++;
+                        return false;
+                    case COALESCE_BY_KEY:
+                        if (key != null && doReplace(key, frame, size)) {
+                            return true;
+                        }
+                        doDropOldest(size);
+                        break;
+                    case CLOSE:
+                        closed = true;
+                        evict = true;
+                        break;
+                    default:
+                        doDropOldest(size);
+                }
+            }
+            if (!evict) {
+                Entry entry = new Entry(key, frame, size);
+                entries.addLast(entry);
+                queuedBytes += size;
+                if (conflatingEntries != null && key != null) {
+                    conflatingEntries.put(key, entry);
+                }
+            }
+        }
+        if (evict) {
+            doEvict();
+            return false;
+        }
+        doDrain();
+        return true;
+    }
+
+    private boolean isOverflow(int extraMessages, long extraBytes) {
+        return entries.size() + extraMessages > maxMessages || isBytesOverflow(extraBytes);
+    }
+
+    private boolean isBytesOverflow(long extraBytes) {
+        return maxBytes > 0 && queuedBytes + extraBytes > maxBytes;
+    }
+
+    /**
+     * @return 若已替换相同键的消息则返回true; 若替换后将超出字节上限则移除该消息并返回false
+     */
+    private boolean doReplace(String key, Object frame, long size) {
+        Iterator<Entry> iterator = entries.descendingIterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (key.equals(entry.key)) {
+                droppedCount++;
+                if (isBytesOverflow(size - entry.size)) {
+                    iterator.remove();
+                    queuedBytes -= entry.size;
+                    if (conflatingEntries != null) {
+                        conflatingEntries.remove(key, entry);
+                    }
+                    return false;
+                }
+                doReplace(entry, frame, size);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void doRemove(Entry entry) {
+        if (entries.remove(entry)) {
+            queuedBytes -= entry.size;
+            conflatingEntries.remove(entry.key, entry);
+        }
+    }
+
+    private void doReplace(Entry entry, Object frame, long size) {
+        queuedBytes += size - entry.size;
+        entry.frame = frame;
+        entry.size = size;
+    }
+
+    private Entry doPollFirst() {
+        Entry entry = entries.pollFirst();
+        if (entry != null) {
+            queuedBytes -= entry.size;
+            if (conflatingEntries != null && entry.key != null) {
+                conflatingEntries.remove(entry.key, entry);
+            }
+        }
+        return entry;
+    }
+
+    private void doDropOldest(long size) {
+        while (!entries.isEmpty() && isOverflow(1, size)) {
+            doPollFirst();
+            droppedCount++;
+        }
+    }
+
+    private void doEvict() {
+        clear();
+        if (LOG.isWarnEnabled()) {
+            LOG.warn(String.format("Closing slow consumer session %s", session.getId()));
+        }
+        if (evictionCallback != null) {
+            try {
+                evictionCallback.accept(session);
+            } catch (Throwable e) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn(String.format("Unhandled error in slow consumer callback for %s", session), e);
+                }
+            }
+        }
+        if (session.isOpen()) {
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "SLOW_CONSUMER"));
+            } catch (Throwable ignore) {
+            }
+        }
+    }
+
+    private void doDrain() {
+        while (true) {
+            Entry entry;
+            synchronized (entries) {
+                if (sending || closed || exclusiveWaiters > 0) {
+                    return;
+                }
+                entry = doPollFirst();
+                if (entry == null) {
+                    return;
+                }
+                sending = true;
+                sendInProgress = true;
+                completedInline = false;
+            }
+            try {
+                doSend(entry.frame);
+            } catch (Throwable e) {
+                onResult(new SendResult(e));
+            }
+            synchronized (entries) {
+                sendInProgress = false;
+                // 若发送已在当前调用中完成(如容器同步回调), 则由本循环继续驱动后续发送以避免递归
+                if (!completedInline) {
+                    return;
+                }
+            }
+        }
+    }
+
+    protected void doSend(Object frame) {
+        long size = sizeOf(frame);
+        WSWriteBatcher batcher = writeBatcher;
+        if (batcher != null) {
+            batcher.beforeWrite();
+        }
+        if (frame instanceof String) {
+            session.getAsyncRemote().sendText((String) frame, this);
+        } else {
+            session.getAsyncRemote().sendBinary((ByteBuffer) frame, this);
+        }
+        if (batcher != null) {
+            batcher.onWrite(size);
+        }
+        metrics.messageSent(metricsPath, size);
+        WSPerMessageDeflate deflate = perMessageDeflate;
+        if (deflate != null) {
+            deflate.onSend(frame);
+        }
+    }
+
+    public void setWriteBatcher(WSWriteBatcher writeBatcher) {
+        this.writeBatcher = writeBatcher;
+    }
+
+    public void setPerMessageDeflate(WSPerMessageDeflate perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+    }
+
+    /**
+     * 设置监控指标采集器
+     *
+     * @param metrics 监控指标采集器
+     * @param path    端点路径或客户端URI
+     */
+    public void setMetrics(IWSMetrics metrics, String path) {
+        this.metrics = metrics != null ? metrics : NoOpWSMetrics.INSTANCE;
+        this.metricsPath = path;
+    }
+
+    @Override
+    public void onResult(SendResult result) {
+        boolean drive;
+        synchronized (entries) {
+            sending = false;
+            if (exclusiveWaiters > 0) {
+                entries.notifyAll();
+            }
+            if (!result.isOK()) {
+                failedCount++;
+            }
+            drive = !sendInProgress;
+            if (sendInProgress) {
+                completedInline = true;
+            }
+        }
+        if (!result.isOK() && LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Failed to send message to %s", session), result.getException());
+        }
+        if (drive) {
+            doDrain();
+        }
+    }
+
+    /**
+     * 等待正在进行的异步发送完成并占用发送权, 期间队列不会启动新的异步发送, 用于同步流式发送等无法经由队列的写出;
+     * 须与releaseExclusive成对调用
+     *
+     * @param timeout 最大等待时间, 单位: 毫秒
+     * @throws IOException 队列已关闭、等待超时或线程被中断时将产生此异常
+     */
+    void acquireExclusive(long timeout) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (entries) {
+            exclusiveWaiters++;
+            try {
+                while (sending && !closed) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new IOException(String.format("Timed out waiting for pending send on session %s", session.getId()));
+                    }
+                    entries.wait(remaining);
+                }
+                if (closed) {
+                    throw new IOException(String.format("Outbound queue of session %s has been closed", session.getId()));
+                }
+                sending = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            } finally {
+                exclusiveWaiters--;
+            }
+        }
+    }
+
+    /**
+     * 释放发送权并继续发送积压消息
+     */
+    void releaseExclusive() {
+        synchronized (entries) {
+            sending = false;
+            if (exclusiveWaiters > 0) {
+                entries.notifyAll();
+            }
+        }
+        doDrain();
+    }
+
+    /**
+     * 关闭队列并丢弃全部积压消息
+     */
+    public void clear() {
+        synchronized (entries) {
+            closed = true;
+            entries.notifyAll();
+            entries.clear();
+            queuedBytes = 0;
+            if (conflatingEntries != null) {
+                conflatingEntries.clear();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getQueuedBytes() {
+        synchronized (entries) {
+            return queuedBytes;
+        }
+    }
+
+    public long getDroppedCount() {
+        synchronized (entries) {
+            return droppedCount;
+        }
+    }
+
+    public long getFailedCount() {
+        synchronized (entries) {
+            return failedCount;
+        }
+    }
+
+    /**
+     * @return 返回合并模式下被相同键的新消息替换的消息数量
+     */
+    public long getConflatedCount() {
+        synchronized (entries) {
+            return conflatedCount;
+        }
+    }
+
+    public boolean isConflating() {
+        return conflatingEntries != null;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @param frame 消息内容(String或ByteBuffer)
+     * @return 返回消息写出的字节数, 文本消息按UTF-8编码后的长度计算
+     */
+    static long sizeOf(Object frame) {
+        if (frame instanceof String) {
+            return utf8Length((String) frame);
+        }
+        return ((ByteBuffer) frame).remaining();
+    }
+
+    /**
+     * @param text 文本
+     * @return 返回文本按UTF-8编码后的字节数(不合法的代理项按编码器替换后的3字节计算)
+     */
+    static long utf8Length(String text) {
+        int length = text.length();
+        long bytes = length;
+        for (int idx = 0; idx < length; idx++) {
+            char c = text.charAt(idx);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isHighSurrogate(c) && idx + 1 < length && Character.isLowSurrogate(text.charAt(idx + 1))) {
+                    // 代理对共2个字符, 编码为4字节
+                    bytes += 2;
+                    idx++;
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWebSocketConfig;
+import net.ymate.module.websocket.WSExtension;
+
+import javax.websocket.Extension;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * permessage-deflate(RFC 7692)扩展参数协商及压缩开销采样:
+ * 服务端选出首个参数合法的客户端压缩请求交由容器完成最终协商(应答参数由容器按其实际采用的设置生成), 实际的帧压缩亦由容器完成,
+ * 配置的窗口大小及上下文重置参数仅在容器已安装的扩展声明支持对应参数时才会附加到请求中, 避免应答容器并未实际采用的参数;
+ * 出站消息按采样频率以配置的压缩级别进行试压缩, 统计压缩率及CPU耗时, 用于按端点权衡带宽与CPU开销
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/16 上午10:20
+ * @since 2.0.0
+ */
+public class WSPerMessageDeflate {
+
+    public static final String EXTENSION_NAME = "permessage-deflate";
+
+    public static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+    public static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+
+    public static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+
+    public static final String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+
+    private static final int MAX_WINDOW_BITS = 15;
+
+    private static final int MIN_WINDOW_BITS = 8;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private final int level;
+
+    private final int serverMaxWindowBits;
+
+    private final boolean serverNoContextTakeover;
+
+    private final boolean clientNoContextTakeover;
+
+    private final int minSize;
+
+    private final int sampleRate;
+
+    private final ThreadLocal<Deflater> deflater;
+
+    private final LongAdder sampledMessages = new LongAdder();
+
+    private final LongAdder skippedMessages = new LongAdder();
+
+    private final LongAdder originalBytes = new LongAdder();
+
+    private final LongAdder compressedBytes = new LongAdder();
+
+    private final LongAdder compressNanos = new LongAdder();
+
+    public WSPerMessageDeflate(IWebSocketConfig config) {
+        this(config.getDeflateLevel(), config.getDeflateServerMaxWindowBits(), config.isDeflateServerNoContextTakeover(), config.isDeflateClientNoContextTakeover(), config.getDeflateMinSize(), config.getDeflateSampleRate());
+    }
+
+    public WSPerMessageDeflate(int level, int serverMaxWindowBits, boolean serverNoContextTakeover, boolean clientNoContextTakeover, int minSize, int sampleRate) {
+        this.level = level;
+        this.serverMaxWindowBits = Math.max(MIN_WINDOW_BITS, Math.min(MAX_WINDOW_BITS, serverMaxWindowBits));
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        this.clientNoContextTakeover = clientNoContextTakeover;
+        this.minSize = minSize;
+        this.sampleRate = sampleRate;
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    /**
+     * 服务端扩展协商: 接受首个参数合法的permessage-deflate请求交由容器协商, 其它扩展仅在容器已安装时接受
+     *
+     * @param installed 容器已安装的扩展
+     * @param requested 客户端请求的扩展(按优先顺序)
+     * @return 返回协商结果
+     */
+    public List<Extension> negotiate(List<Extension> installed, List<Extension> requested) {
+        List<Extension> result = new ArrayList<>();
+        Extension deflateInstalled = null;
+        for (Extension extension : installed) {
+            if (EXTENSION_NAME.equals(extension.getName())) {
+                deflateInstalled = extension;
+                break;
+            }
+        }
+        boolean accepted = false;
+        for (Extension extension : requested) {
+            if (EXTENSION_NAME.equals(extension.getName())) {
+                if (deflateInstalled != null && !accepted) {
+                    Extension response = doAccept(extension, deflateInstalled);
+                    if (response != null) {
+                        result.add(response);
+                        accepted = true;
+                    }
+                }
+            } else if (doContains(installed, extension.getName())) {
+                result.add(extension);
+            }
+        }
+        return result;
+    }
+
+    private static boolean doContains(List<Extension> extensions, String name) {
+        for (Extension extension : extensions) {
+            if (extension.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 校验客户端的压缩请求, 保留其原有参数交由容器协商, 仅追加容器已安装扩展声明支持的配置参数
+     *
+     * @param offer     客户端的压缩请求
+     * @param installed 容器已安装的permessage-deflate扩展
+     * @return 若请求参数不合法则返回null
+     */
+    private Extension doAccept(Extension offer, Extension installed) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (Extension.Parameter parameter : offer.getParameters()) {
+            String name = parameter.getName();
+            String value = parameter.getValue();
+            if (SERVER_NO_CONTEXT_TAKEOVER.equals(name) || CLIENT_NO_CONTEXT_TAKEOVER.equals(name)) {
+                if (value != null && !value.isEmpty()) {
+                    return null;
+                }
+            } else if (SERVER_MAX_WINDOW_BITS.equals(name)) {
+                if (doParseWindowBits(value) < 0) {
+                    return null;
+                }
+            } else if (CLIENT_MAX_WINDOW_BITS.equals(name)) {
+                if (value != null && !value.isEmpty() && doParseWindowBits(value) < 0) {
+                    return null;
+                }
+            } else {
+                // 未知参数, 拒绝该请求
+                return null;
+            }
+            if (parameters.containsKey(name)) {
+                // 重复参数, 拒绝该请求
+                return null;
+            }
+            parameters.put(name, value != null ? value : "");
+        }
+        if (serverNoContextTakeover && doSupports(installed, SERVER_NO_CONTEXT_TAKEOVER)) {
+            parameters.putIfAbsent(SERVER_NO_CONTEXT_TAKEOVER, "");
+        }
+        if (clientNoContextTakeover && doSupports(installed, CLIENT_NO_CONTEXT_TAKEOVER)) {
+            parameters.putIfAbsent(CLIENT_NO_CONTEXT_TAKEOVER, "");
+        }
+        if (serverMaxWindowBits < MAX_WINDOW_BITS && doSupports(installed, SERVER_MAX_WINDOW_BITS)) {
+            String requestedBits = parameters.get(SERVER_MAX_WINDOW_BITS);
+            int bits = requestedBits != null ? Math.min(serverMaxWindowBits, doParseWindowBits(requestedBits)) : serverMaxWindowBits;
+            parameters.put(SERVER_MAX_WINDOW_BITS, String.valueOf(bits));
+        }
+        return new WSExtension(EXTENSION_NAME, parameters).toExtension();
+    }
+
+    /**
+     * @param installed 容器已安装的扩展
+     * @param name      参数名称
+     * @return 返回容器已安装的扩展是否声明支持指定参数
+     */
+    private static boolean doSupports(Extension installed, String name) {
+        for (Extension.Parameter parameter : installed.getParameters()) {
+            if (name.equals(parameter.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int doParseWindowBits(String value) {
+        try {
+            int bits = Integer.parseInt(value);
+            return bits >= MIN_WINDOW_BITS && bits <= MAX_WINDOW_BITS ? bits : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return 返回客户端发起的压缩请求, 用于客户端连接配置
+     */
+    public Extension toOffer() {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (serverNoContextTakeover) {
+            parameters.put(SERVER_NO_CONTEXT_TAKEOVER, "");
+        }
+        if (clientNoContextTakeover) {
+            parameters.put(CLIENT_NO_CONTEXT_TAKEOVER, "");
+        }
+        if (serverMaxWindowBits < MAX_WINDOW_BITS) {
+            parameters.put(SERVER_MAX_WINDOW_BITS, String.valueOf(serverMaxWindowBits));
+        }
+        return new WSExtension(EXTENSION_NAME, parameters).toExtension();
+    }
+
+    /**
+     * 出站消息采样, 命中采样时以配置的压缩级别进行试压缩并记录压缩率及耗时
+     *
+     * @param frame 消息内容(String或ByteBuffer)
+     */
+    public void onSend(Object frame) {
+        if (sampleRate <= 0 || sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        byte[] input;
+        if (frame instanceof String) {
+            input = ((String) frame).getBytes(StandardCharsets.UTF_8);
+        } else if (frame instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) frame).duplicate();
+            input = new byte[buffer.remaining()];
+            buffer.get(input);
+        } else {
+            return;
+        }
+        if (input.length < minSize) {
+            skippedMessages.increment();
+            return;
+        }
+        Deflater current = deflater.get();
+        byte[] output = SCRATCH.get();
+        long start = System.nanoTime();
+        long compressed = 0;
+        current.setInput(input);
+        current.finish();
+        while (!current.finished()) {
+            compressed += current.deflate(output);
+        }
+        current.reset();
+        compressNanos.add(System.nanoTime() - start);
+        sampledMessages.increment();
+        originalBytes.add(input.length);
+        compressedBytes.add(compressed);
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getServerMaxWindowBits() {
+        return serverMaxWindowBits;
+    }
+
+    public boolean isServerNoContextTakeover() {
+        return serverNoContextTakeover;
+    }
+
+    public boolean isClientNoContextTakeover() {
+        return clientNoContextTakeover;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return 返回已采样并试压缩的消息数量
+     */
+    public long getSampledMessages() {
+        return sampledMessages.sum();
+    }
+
+    /**
+     * @return 返回命中采样但因小于最小压缩大小而跳过的消息数量
+     */
+    public long getSkippedMessages() {
+        return skippedMessages.sum();
+    }
+
+    public long getOriginalBytes() {
+        return originalBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * @return 返回压缩率(压缩后字节数/原始字节数), 无采样数据时返回1.0
+     */
+    public double getCompressionRatio() {
+        long original = originalBytes.sum();
+        return original > 0 ? (double) compressedBytes.sum() / original : 1.0D;
+    }
+
+    /**
+     * @return 返回平均每KB原始数据的压缩耗时, 单位: 纳秒
+     */
+    public double getNanosPerKilobyte() {
+        long original = originalBytes.sum();
+        return original > 0 ? compressNanos.sum() * 1024.0D / original : 0.0D;
+    }
+
+    /**
+     * @return 返回采样压缩的累计耗时, 单位: 纳秒
+     */
+    public long getCompressNanos() {
+        return compressNanos.sum();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 客户端重连策略: 采用带完全抖动(Full Jitter)的指数退避算法计算重连延迟,
+ * 连续失败次数达到上限后进入熔断(OPEN)状态, 熔断时间结束后进入半开(HALF_OPEN)状态并进行一次试探连接;
+ * 连接成功后仅当其保持时间达到最短稳定时间才会重置失败次数及熔断状态, 避免连接后立即断开的对端使退避失效
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/13 上午10:18
+ * @since 2.0.0
+ */
+public class WSReconnectPolicy {
+
+    /**
+     * 默认的最短稳定时间, 单位: 毫秒
+     */
+    public static final long DEFAULT_MIN_STABLE_TIME = 10000;
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+
+        /**
+         * 正常重连
+         */
+        CLOSED,
+
+        /**
+         * 熔断中, 暂停重连
+         */
+        OPEN,
+
+        /**
+         * 熔断结束, 等待试探连接结果
+         */
+        HALF_OPEN
+    }
+
+    private final long initialDelay;
+
+    private final long maxDelay;
+
+    private final int maxAttempts;
+
+    private final long circuitOpenTime;
+
+    private final long minStableTime;
+
+    private int attempts;
+
+    private long connectedTime;
+
+    private boolean circuitOpened;
+
+    private long openUntil;
+
+    /**
+     * @param initialDelay    初始重连延迟, 单位: 毫秒
+     * @param maxDelay        最大重连延迟, 单位: 毫秒
+     * @param maxAttempts     熔断前允许的最大连续重连次数, 小于等于0表示不限制
+     * @param circuitOpenTime 熔断持续时间, 单位: 毫秒, 小于等于0表示达到最大重连次数后放弃重连
+     */
+    public WSReconnectPolicy(long initialDelay, long maxDelay, int maxAttempts, long circuitOpenTime) {
+        this(initialDelay, maxDelay, maxAttempts, circuitOpenTime, DEFAULT_MIN_STABLE_TIME);
+    }
+
+    /**
+     * @param initialDelay    初始重连延迟, 单位: 毫秒
+     * @param maxDelay        最大重连延迟, 单位: 毫秒
+     * @param maxAttempts     熔断前允许的最大连续重连次数, 小于等于0表示不限制
+     * @param circuitOpenTime 熔断持续时间, 单位: 毫秒, 小于等于0表示达到最大重连次数后放弃重连
+     * @param minStableTime   连接成功后需保持的最短时间, 达到后断开才会重置失败次数及熔断状态, 单位: 毫秒
+     */
+    public WSReconnectPolicy(long initialDelay, long maxDelay, int maxAttempts, long circuitOpenTime, long minStableTime) {
+        this.initialDelay = Math.max(1, initialDelay);
+        this.maxDelay = Math.max(this.initialDelay, maxDelay);
+        this.maxAttempts = maxAttempts;
+        this.circuitOpenTime = circuitOpenTime;
+        this.minStableTime = Math.max(0, minStableTime);
+    }
+
+    /**
+     * 记录一次连接失败(或连接断开)并计算下一次重连的延迟时间
+     *
+     * @return 返回延迟毫秒值, 若应放弃重连则返回-1
+     */
+    public synchronized long nextDelay() {
+        if (connectedTime > 0) {
+            if (System.currentTimeMillis() - connectedTime >= minStableTime) {
+                doReset();
+            }
+            connectedTime = 0;
+        }
+        attempts++;
+        if (circuitOpened || (maxAttempts > 0 && attempts > maxAttempts)) {
+            if (circuitOpenTime <= 0) {
+                return -1;
+            }
+            // 熔断时间同样加入抖动, 避免大量客户端在熔断结束后同时重连
+            long delay = circuitOpenTime / 2 + ThreadLocalRandom.current().nextLong(circuitOpenTime / 2 + 1);
+            circuitOpened = true;
+            openUntil = System.currentTimeMillis() + delay;
+            return delay;
+        }
+        long ceiling = attempts > 31 ? maxDelay : Math.min(maxDelay, initialDelay << (attempts - 1));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * 记录一次连接成功, 失败计数及熔断状态将在连接保持达到最短稳定时间后断开时重置
+     */
+    public synchronized void onConnected() {
+        connectedTime = System.currentTimeMillis();
+        if (minStableTime == 0) {
+            doReset();
+        }
+    }
+
+    private void doReset() {
+        attempts = 0;
+        circuitOpened = false;
+        openUntil = 0;
+    }
+
+    public synchronized State getState() {
+        if (!circuitOpened) {
+            return State.CLOSED;
+        }
+        return System.currentTimeMillis() < openUntil ? State.OPEN : State.HALF_OPEN;
+    }
+
+    /**
+     * @return 返回当前连续失败次数
+     */
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    public long getInitialDelay() {
+        return initialDelay;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getCircuitOpenTime() {
+        return circuitOpenTime;
+    }
+
+    public long getMinStableTime() {
+        return minStableTime;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 串行执行器: 提交的任务按提交顺序在底层执行器上依次执行, 同一时刻最多只有一个任务在运行,
+ * 用于在并发分发的同时保证单个会话内消息处理的顺序性;
+ * 可限制尚未执行的任务数量, 队列已满时提交线程(通常为容器I/O线程)将等待至多指定时间, 从而对对端形成背压,
+ * 超时仍无空闲位置则拒绝任务
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/12 下午4:05
+ * @since 2.0.0
+ */
+public class WSSerialExecutor implements Executor, Runnable {
+
+    private static final Log LOG = LogFactory.getLog(WSSerialExecutor.class);
+
+    /**
+     * 单次调度最多连续执行的任务数量, 超出后让出线程以保证各会话间的公平性
+     */
+    private static final int MAX_BATCH = 64;
+
+    private final Executor delegate;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final int capacity;
+
+    private final Semaphore permits;
+
+    private final long offerTimeout;
+
+    public WSSerialExecutor(Executor delegate) {
+        this(delegate, 0, 0);
+    }
+
+    /**
+     * @param delegate     底层执行器
+     * @param capacity     尚未执行的任务数量上限, 小于等于0表示不限制
+     * @param offerTimeout 队列已满时提交线程的最大等待时间, 单位: 毫秒
+     */
+    public WSSerialExecutor(Executor delegate, int capacity, long offerTimeout) {
+        this.delegate = delegate;
+        this.capacity = Math.max(0, capacity);
+        this.permits = capacity > 0 ? new Semaphore(capacity) : null;
+        this.offerTimeout = Math.max(0, offerTimeout);
+    }
+
+    /**
+     * 提交任务, 队列已满时等待至多offerTimeout毫秒
+     *
+     * @param command 任务
+     * @throws RejectedExecutionException 等待超时、线程被中断或底层执行器拒绝时将产生此异常
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (permits != null) {
+            try {
+                if (!permits.tryAcquire(offerTimeout, TimeUnit.MILLISECONDS)) {
+                    throw new RejectedExecutionException("Serial task queue is full");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(e);
+            }
+            command = new Bounded(command);
+        }
+        tasks.offer(command);
+        doSchedule();
+    }
+
+    /**
+     * 提交不受队列容量限制的任务(如会话关闭逻辑), 以保证其在已提交任务之后执行
+     *
+     * @param command 任务
+     */
+    public void executeUnbounded(Runnable command) {
+        tasks.offer(command);
+        doSchedule();
+    }
+
+    private void doSchedule() {
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                delegate.execute(this);
+            } catch (RuntimeException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int count = 0; count < MAX_BATCH; count++) {
+                Runnable task = tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                if (task instanceof Bounded) {
+                    permits.release();
+                }
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    if (LOG.isWarnEnabled()) {
+                        LOG.warn("Unhandled error in serial task", e);
+                    }
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            doSchedule();
+        }
+    }
+
+    /**
+     * @return 返回尚未执行的任务数量
+     */
+    public int getPendingCount() {
+        return tasks.size();
+    }
+
+    /**
+     * @return 返回尚未执行的任务数量上限, 0表示不限制
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 丢弃全部尚未执行的任务
+     */
+    public void clear() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            if (task instanceof Bounded) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * 占用队列容量的任务
+     */
+    private static final class Bounded implements Runnable {
+
+        private final Runnable command;
+
+        Bounded(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            command.run();
+        }
+    }
+}
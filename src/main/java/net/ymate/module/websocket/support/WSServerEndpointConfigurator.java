@@ -15,8 +15,10 @@
  */
 package net.ymate.module.websocket.support;
 
+import net.ymate.module.websocket.IWSEndpointSettings;
 import net.ymate.module.websocket.IWSHandshakeModifier;
 import net.ymate.module.websocket.IWebSocket;
+import net.ymate.module.websocket.WSHttpSessionSnapshot;
 import net.ymate.module.websocket.WSServerListener;
 import org.apache.commons.lang.NullArgumentException;
 import org.apache.commons.lang3.StringUtils;
@@ -27,16 +29,14 @@ import javax.websocket.Extension;
 import javax.websocket.HandshakeResponse;
 import javax.websocket.server.HandshakeRequest;
 import javax.websocket.server.ServerEndpointConfig;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author 刘镇 (suninformation@163.com) on 2017/7/12 下午5:22
  * @since 1.0
  */
-public class WSServerEndpointConfigurator extends ServerEndpointConfig.Configurator implements ServerEndpointConfig {
+public class WSServerEndpointConfigurator extends ServerEndpointConfig.Configurator implements ServerEndpointConfig, IWSEndpointSettings {
 
     private final IWebSocket owner;
 
@@ -50,12 +50,40 @@ public class WSServerEndpointConfigurator extends ServerEndpointConfig.Configura
 
     private List<String> subprotocols = new ArrayList<>();
 
+    private Set<String> subprotocolSet = Collections.emptySet();
+
+    private WSOriginMatcher originMatcher;
+
+    private int maxSessions;
+
+    private WSEndpointFactory<?> endpointFactory;
+
     private List<Extension> extensions = new ArrayList<>();
 
-    private final Map<String, Object> userProperties = new HashMap<>();
+    private final Map<String, Object> userProperties = new ConcurrentHashMap<>();
 
     private IWSHandshakeModifier handshakeModifier;
 
+    private String[] httpSessionAttributes;
+
+    private boolean batching;
+
+    private boolean conflating;
+
+    private long batchingMaxDelay;
+
+    private long batchingMaxBytes;
+
+    private final WSWriteBatcher.Stats batchingStats = new WSWriteBatcher.Stats();
+
+    private WSDispatcher.Mode dispatchMode = WSDispatcher.Mode.DIRECT;
+
+    private boolean directInstantiation;
+
+    private volatile WSCodecTable codecTable;
+
+    private WSPerMessageDeflate perMessageDeflate;
+
     public WSServerEndpointConfigurator(IWebSocket owner, String path, Class<? extends WSServerListener> endpointClass) {
         if (owner == null) {
             throw new NullArgumentException("owner");
@@ -71,6 +99,11 @@ public class WSServerEndpointConfigurator extends ServerEndpointConfig.Configura
         this.endpointClass = endpointClass;
     }
 
+    @Override
+    public IWebSocket getOwner() {
+        return owner;
+    }
+
     @Override
     public Class<?> getEndpointClass() {
         return endpointClass;
@@ -88,6 +121,34 @@ public class WSServerEndpointConfigurator extends ServerEndpointConfig.Configura
 
     public void setSubprotocols(List<String> subprotocols) {
         this.subprotocols = subprotocols;
+        this.subprotocolSet = subprotocols != null ? new HashSet<>(subprotocols) : Collections.emptySet();
+    }
+
+    public WSEndpointFactory<?> getEndpointFactory() {
+        return endpointFactory;
+    }
+
+    public void setEndpointFactory(WSEndpointFactory<?> endpointFactory) {
+        this.endpointFactory = endpointFactory;
+    }
+
+    /**
+     * @return 返回当前端点允许的最大并发会话数量, 小于等于0表示不限制
+     */
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    public WSOriginMatcher getOriginMatcher() {
+        return originMatcher;
+    }
+
+    public void setOriginMatcher(WSOriginMatcher originMatcher) {
+        this.originMatcher = originMatcher;
     }
 
     @Override
@@ -140,13 +201,113 @@ public class WSServerEndpointConfigurator extends ServerEndpointConfig.Configura
         this.handshakeModifier = handshakeModifier;
     }
 
+    public String[] getHttpSessionAttributes() {
+        return httpSessionAttributes;
+    }
+
+    public void setHttpSessionAttributes(String[] httpSessionAttributes) {
+        this.httpSessionAttributes = httpSessionAttributes;
+    }
+
+    @Override
+    public boolean isBatching() {
+        return batching;
+    }
+
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    @Override
+    public boolean isConflating() {
+        return conflating;
+    }
+
+    public void setConflating(boolean conflating) {
+        this.conflating = conflating;
+    }
+
+    @Override
+    public long getBatchingMaxDelay() {
+        return batchingMaxDelay;
+    }
+
+    public void setBatchingMaxDelay(long batchingMaxDelay) {
+        this.batchingMaxDelay = batchingMaxDelay;
+    }
+
+    @Override
+    public long getBatchingMaxBytes() {
+        return batchingMaxBytes;
+    }
+
+    public void setBatchingMaxBytes(long batchingMaxBytes) {
+        this.batchingMaxBytes = batchingMaxBytes;
+    }
+
+    @Override
+    public WSWriteBatcher.Stats getBatchingStats() {
+        return batchingStats;
+    }
+
+    @Override
+    public WSDispatcher.Mode getDispatchMode() {
+        return dispatchMode;
+    }
+
+    public void setDispatchMode(WSDispatcher.Mode dispatchMode) {
+        this.dispatchMode = dispatchMode;
+    }
+
+    public boolean isDirectInstantiation() {
+        return directInstantiation;
+    }
+
+    public void setDirectInstantiation(boolean directInstantiation) {
+        this.directInstantiation = directInstantiation;
+    }
+
+    @Override
+    public WSPerMessageDeflate getPerMessageDeflate() {
+        return perMessageDeflate;
+    }
+
+    public void setPerMessageDeflate(WSPerMessageDeflate perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+    }
+
+    @Override
+    public WSCodecTable getCodecTable() {
+        WSCodecTable table = codecTable;
+        if (table == null) {
+            synchronized (this) {
+                table = codecTable;
+                if (table == null) {
+                    codecTable = table = new WSCodecTable(this);
+                }
+            }
+        }
+        return table;
+    }
+
     @Override
     public final <T> T getEndpointInstance(Class<T> clazz) throws InstantiationException {
+        WSEndpointFactory<?> factory = endpointFactory;
+        if (factory != null && factory.getEndpointClass() == clazz) {
+            // 端点类型已在上方比对, 转换是安全的
+            @SuppressWarnings("unchecked")
+            T instance = (T) factory.getInstance();
+            return instance;
+        }
         return (T) owner.getOwner().getBeanFactory().getBean(clazz);
     }
 
     @Override
     public void modifyHandshake(ServerEndpointConfig sec, HandshakeRequest request, HandshakeResponse response) {
+        if (httpSessionAttributes != null && httpSessionAttributes.length > 0) {
+            // 快照以本次握手对应的端点配置对象为键暂存, 会话开启时移入会话属性
+            WSHttpSessionSnapshot.bind(sec, request, httpSessionAttributes);
+        }
         if (handshakeModifier != null) {
             handshakeModifier.modifyHandshake(sec, request, response);
         }
@@ -154,16 +315,34 @@ public class WSServerEndpointConfigurator extends ServerEndpointConfig.Configura
 
     @Override
     public boolean checkOrigin(String originHeaderValue) {
+        if (originMatcher != null) {
+            return originMatcher.matches(originHeaderValue);
+        }
         return super.checkOrigin(originHeaderValue);
     }
 
     @Override
     public String getNegotiatedSubprotocol(List<String> supported, List<String> requested) {
-        return super.getNegotiatedSubprotocol(supported, requested);
+        // 按客户端请求的先后顺序选择首个受支持的子协议, 客户端可借此优先选择更紧凑的消息格式
+        if (requested == null || requested.isEmpty() || supported == null || supported.isEmpty()) {
+            return "";
+        }
+        // 容器传入的通常即为本端点声明的子协议列表, 此时使用预先构建的哈希集合查找
+        Collection<String> candidates = supported == subprotocols ? subprotocolSet : supported;
+        for (int idx = 0; idx < requested.size(); idx++) {
+            String subprotocol = requested.get(idx);
+            if (candidates.contains(subprotocol)) {
+                return subprotocol;
+            }
+        }
+        return "";
     }
 
     @Override
     public List<Extension> getNegotiatedExtensions(List<Extension> installed, List<Extension> requested) {
+        if (perMessageDeflate != null) {
+            return perMessageDeflate.negotiate(installed, requested);
+        }
         return super.getNegotiatedExtensions(installed, requested);
     }
 }
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSEndpointSettings;
+import net.ymate.module.websocket.IWSMessageCodec;
+import net.ymate.module.websocket.IWSMetrics;
+import net.ymate.module.websocket.IWebSocket;
+
+import javax.websocket.EncodeException;
+import javax.websocket.EndpointConfig;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 会话上下文, 记录会话所属端点路径及已绑定的自定义键
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/08 下午3:12
+ * @since 2.0.0
+ */
+public class WSSessionContext {
+
+    private final IWSEndpointSettings endpointSettings;
+
+    private final Session session;
+
+    private final String path;
+
+    private final EndpointConfig endpointConfig;
+
+    private final IWSMetrics metrics;
+
+    private final IWSMessageCodec messageCodec;
+
+    private final AtomicInteger pendingSends = new AtomicInteger();
+
+    private final LongAdder failedSends = new LongAdder();
+
+    private final SendHandler sendHandler = result -> {
+        pendingSends.decrementAndGet();
+        if (!result.isOK()) {
+            failedSends.increment();
+        }
+    };
+
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> topics = ConcurrentHashMap.newKeySet();
+
+    private volatile int shardIndex = -1;
+
+    private volatile WSAttributes attributes;
+
+    private volatile WSOutboundQueue outboundQueue;
+
+    private volatile WSWriteBatcher writeBatcher;
+
+    private volatile WSSerialExecutor inboundExecutor;
+
+    private volatile WSMessageAggregator messageAggregator;
+
+    private volatile int heartbeatSlot = -1;
+
+    private volatile boolean awaitingPong;
+
+    private final AtomicInteger missedPongs = new AtomicInteger();
+
+    private volatile long lastRtt = -1;
+
+    private volatile long smoothedRtt = -1;
+
+    /**
+     * 获取会话上下文对象
+     *
+     * @param session 会话
+     * @return 若会话未被注册则返回null
+     */
+    public static WSSessionContext get(Session session) {
+        return (WSSessionContext) session.getUserProperties().get(WSSessionContext.class.getName());
+    }
+
+    public WSSessionContext(IWSEndpointSettings endpointSettings, Session session, String path, EndpointConfig endpointConfig) {
+        this.endpointSettings = endpointSettings;
+        this.session = session;
+        this.path = path;
+        this.endpointConfig = endpointConfig;
+        this.metrics = endpointSettings.getOwner().getMetrics();
+        this.messageCodec = WSMessageCodecs.get(session.getNegotiatedSubprotocol());
+    }
+
+    public IWebSocket getOwner() {
+        return endpointSettings.getOwner();
+    }
+
+    public IWSEndpointSettings getEndpointSettings() {
+        return endpointSettings;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public String getId() {
+        return session.getId();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public EndpointConfig getEndpointConfig() {
+        return endpointConfig;
+    }
+
+    public IWSMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return 返回与会话已协商子协议对应的消息编解码器, 若未协商或不存在则返回null
+     */
+    public IWSMessageCodec getMessageCodec() {
+        return messageCodec;
+    }
+
+    public WSOutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
+    public void setOutboundQueue(WSOutboundQueue outboundQueue) {
+        this.outboundQueue = outboundQueue;
+    }
+
+    public WSWriteBatcher getWriteBatcher() {
+        return writeBatcher;
+    }
+
+    public void setWriteBatcher(WSWriteBatcher writeBatcher) {
+        this.writeBatcher = writeBatcher;
+    }
+
+    /**
+     * @return 返回会话入站消息串行执行器, 若分发模式为DIRECT则返回null
+     */
+    public WSSerialExecutor getInboundExecutor() {
+        return inboundExecutor;
+    }
+
+    public void setInboundExecutor(WSSerialExecutor inboundExecutor) {
+        this.inboundExecutor = inboundExecutor;
+    }
+
+    /**
+     * @return 返回会话分片消息聚合器, 若未开启聚合则返回null
+     */
+    public WSMessageAggregator getMessageAggregator() {
+        return messageAggregator;
+    }
+
+    public void setMessageAggregator(WSMessageAggregator messageAggregator) {
+        this.messageAggregator = messageAggregator;
+    }
+
+    /**
+     * @return 返回会话属性访问句柄, 若端点未声明属性结构则返回null
+     */
+    public WSAttributes getAttributes() {
+        return attributes;
+    }
+
+    public void setAttributes(WSAttributes attributes) {
+        this.attributes = attributes;
+    }
+
+    /**
+     * 在消息写出之前通知写批处理器开启批量写窗口期
+     */
+    void beforeSend() {
+        WSWriteBatcher batcher = writeBatcher;
+        if (batcher != null) {
+            batcher.beforeWrite();
+        }
+    }
+
+    /**
+     * 通知写批处理器、监控指标采集器及压缩开销采样已有消息写入
+     *
+     * @param frame 消息内容
+     */
+    void afterSend(Object frame) {
+        WSWriteBatcher batcher = writeBatcher;
+        if (batcher != null || metrics.isEnabled()) {
+            long size = WSOutboundQueue.sizeOf(frame);
+            if (batcher != null) {
+                batcher.onWrite(size);
+            }
+            metrics.messageSent(path, size);
+        }
+        WSPerMessageDeflate deflate = endpointSettings.getPerMessageDeflate();
+        if (deflate != null) {
+            deflate.onSend(frame);
+        }
+    }
+
+    /**
+     * 发送消息, 若已启用出站队列则消息将进入队列等待发送
+     *
+     * @param frame 消息内容(String或ByteBuffer)
+     * @return 若消息被丢弃则返回false
+     */
+    public boolean send(Object frame) {
+        return send(null, frame);
+    }
+
+    /**
+     * 发送消息, 若已启用出站队列则消息将进入队列等待发送
+     *
+     * @param key   消息键, 用于出站队列按键合并, 可以为null
+     * @param frame 消息内容(String或ByteBuffer)
+     * @return 若消息被丢弃则返回false
+     */
+    public boolean send(String key, Object frame) {
+        WSOutboundQueue queue = outboundQueue;
+        if (queue != null) {
+            return queue.offer(key, frame);
+        }
+        pendingSends.incrementAndGet();
+        try {
+            beforeSend();
+            if (frame instanceof String) {
+                session.getAsyncRemote().sendText((String) frame, sendHandler);
+            } else {
+                session.getAsyncRemote().sendBinary((ByteBuffer) frame, sendHandler);
+            }
+            afterSend(frame);
+        } catch (RuntimeException e) {
+            sendHandler.onResult(new SendResult(e));
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * 对消息进行编码后发送, 优先使用与会话已协商子协议对应的消息编解码器, 否则使用端点编解码表
+     *
+     * @param payload 消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 若消息被丢弃则返回false
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    public boolean sendObject(Object payload) throws EncodeException, IOException {
+        return sendObject(null, payload);
+    }
+
+    /**
+     * 对消息进行编码后发送, 优先使用与会话已协商子协议对应的消息编解码器, 否则使用端点编解码表
+     *
+     * @param key     消息键, 用于出站队列按键合并, 可以为null
+     * @param payload 消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 若消息被丢弃则返回false
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    public boolean sendObject(String key, Object payload) throws EncodeException, IOException {
+        if (messageCodec != null && !(payload instanceof String || payload instanceof ByteBuffer || payload instanceof byte[])) {
+            return send(key, messageCodec.encode(payload));
+        }
+        return send(key, endpointSettings.getCodecTable().encode(payload));
+    }
+
+    /**
+     * 释放会话上下文所持有的资源
+     */
+    void destroy() {
+        WSOutboundQueue queue = outboundQueue;
+        if (queue != null) {
+            queue.clear();
+        }
+        WSWriteBatcher batcher = writeBatcher;
+        if (batcher != null) {
+            batcher.flush();
+        }
+        WSMessageAggregator aggregator = messageAggregator;
+        if (aggregator != null) {
+            aggregator.release();
+        }
+        WSAttributes currentAttributes = attributes;
+        if (currentAttributes != null) {
+            currentAttributes.release();
+        }
+    }
+
+    /**
+     * @return 返回当前会话尚未完成的异步发送数量
+     */
+    public int getPendingSends() {
+        return pendingSends.get();
+    }
+
+    /**
+     * 尝试占用一个异步发送名额
+     *
+     * @param maxPending 允许的最大未完成异步发送数量
+     * @return 若已达上限则返回false
+     */
+    boolean tryAcquireSend(int maxPending) {
+        int current;
+        do {
+            current = pendingSends.get();
+            if (current >= maxPending) {
+                return false;
+            }
+        } while (!pendingSends.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * @return 返回用于释放异步发送名额的回调处理器(所有发送共享同一实例)
+     */
+    SendHandler getSendHandler() {
+        return sendHandler;
+    }
+
+    /**
+     * @return 返回当前会话异步发送失败的次数
+     */
+    public long getFailedSends() {
+        return failedSends.sum();
+    }
+
+    /**
+     * @return 返回当前会话已绑定的自定义键集合(只读)
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(keys);
+    }
+
+    boolean addKey(String key) {
+        return keys.add(key);
+    }
+
+    boolean removeKey(String key) {
+        return keys.remove(key);
+    }
+
+    /**
+     * @return 返回当前会话已订阅的主题集合(只读)
+     */
+    public Set<String> getTopics() {
+        return Collections.unmodifiableSet(topics);
+    }
+
+    /**
+     * @return 返回会话所分配的分片工作者索引, 未分配时返回-1
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    void setShardIndex(int shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+
+    boolean addTopic(String topic) {
+        return topics.add(topic);
+    }
+
+    boolean removeTopic(String topic) {
+        return topics.remove(topic);
+    }
+
+    int getHeartbeatSlot() {
+        return heartbeatSlot;
+    }
+
+    void setHeartbeatSlot(int heartbeatSlot) {
+        this.heartbeatSlot = heartbeatSlot;
+    }
+
+    boolean isAwaitingPong() {
+        return awaitingPong;
+    }
+
+    void setAwaitingPong(boolean awaitingPong) {
+        this.awaitingPong = awaitingPong;
+    }
+
+    int incrementMissedPongs() {
+        return missedPongs.incrementAndGet();
+    }
+
+    /**
+     * 记录一次心跳往返时延, 并按RFC 6298的方式(权重1/8)更新平滑RTT
+     *
+     * @param rtt 往返时延, 单位: 纳秒
+     */
+    void recordRtt(long rtt) {
+        long srtt = smoothedRtt;
+        smoothedRtt = srtt < 0 ? rtt : srtt + (rtt - srtt) / 8;
+        lastRtt = rtt;
+        missedPongs.set(0);
+        awaitingPong = false;
+    }
+
+    /**
+     * @return 返回最近一次心跳往返时延, 单位: 纳秒, 尚未测量时返回-1
+     */
+    public long getLastRtt() {
+        return lastRtt;
+    }
+
+    /**
+     * @return 返回平滑往返时延, 单位: 纳秒, 尚未测量时返回-1
+     */
+    public long getSmoothedRtt() {
+        return smoothedRtt;
+    }
+
+    /**
+     * @return 返回当前连续未收到Pong响应的次数
+     */
+    public int getMissedPongs() {
+        return missedPongs.get();
+    }
+}
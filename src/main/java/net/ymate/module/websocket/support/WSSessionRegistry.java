@@ -0,0 +1,198 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSEndpointSettings;
+import org.apache.commons.lang.NullArgumentException;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 会话注册表, 支持按会话ID、端点路径及自定义键(如用户ID、租户等)进行O(1)查找,
+ * 全部索引基于ConcurrentHashMap实现, 连接的注册与注销操作之间不存在全局锁竞争
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/08 下午3:12
+ * @since 2.0.0
+ */
+public class WSSessionRegistry {
+
+    private final ConcurrentMap<String, WSSessionContext> sessions = new ConcurrentHashMap<>(1024);
+
+    private final ConcurrentMap<String, Set<Session>> pathIndex = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Set<Session>> keyIndex = new ConcurrentHashMap<>(1024);
+
+    /**
+     * 注册会话
+     *
+     * @param endpointSettings 会话所属端点运行参数
+     * @param path             会话所属端点路径或客户端URI
+     * @param session          会话
+     * @param endpointConfig   端点配置
+     * @return 返回会话上下文对象, 若会话已注册则返回已存在的上下文对象
+     */
+    public WSSessionContext register(IWSEndpointSettings endpointSettings, String path, Session session, EndpointConfig endpointConfig) {
+        if (endpointSettings == null) {
+            throw new NullArgumentException("endpointSettings");
+        }
+        if (StringUtils.isBlank(path)) {
+            throw new NullArgumentException("path");
+        }
+        if (session == null) {
+            throw new NullArgumentException("session");
+        }
+        WSSessionContext sessionContext = new WSSessionContext(endpointSettings, session, path, endpointConfig);
+        WSSessionContext previous = sessions.putIfAbsent(session.getId(), sessionContext);
+        if (previous != null) {
+            return previous;
+        }
+        doAddToIndex(pathIndex, path, session);
+        session.getUserProperties().put(WSSessionContext.class.getName(), sessionContext);
+        return sessionContext;
+    }
+
+    /**
+     * 注销会话并清理其全部索引
+     *
+     * @param session 会话
+     * @return 返回被移除的会话上下文对象, 若会话未注册则返回null
+     */
+    public WSSessionContext unregister(Session session) {
+        WSSessionContext sessionContext = sessions.remove(session.getId());
+        if (sessionContext != null) {
+            doRemoveFromIndex(pathIndex, sessionContext.getPath(), session);
+            for (String key : sessionContext.getKeys()) {
+                doRemoveFromIndex(keyIndex, key, session);
+            }
+            // 会话上下文仍保留在会话属性中, 以便后续的关闭回调能够获取所属端点信息
+            sessionContext.destroy();
+        }
+        return sessionContext;
+    }
+
+    /**
+     * 在compute中完成添加, 避免与doRemoveFromIndex移除空集合之间产生竞争而丢失刚加入的会话
+     */
+    private void doAddToIndex(ConcurrentMap<String, Set<Session>> index, String key, Session session) {
+        index.compute(key, (k, values) -> {
+            if (values == null) {
+                values = ConcurrentHashMap.newKeySet();
+            }
+            values.add(session);
+            return values;
+        });
+    }
+
+    private void doRemoveFromIndex(ConcurrentMap<String, Set<Session>> index, String key, Session session) {
+        index.computeIfPresent(key, (k, values) -> {
+            values.remove(session);
+            return values.isEmpty() ? null : values;
+        });
+    }
+
+    /**
+     * 将会话与自定义键绑定(一个会话可绑定多个键, 一个键亦可对应多个会话)
+     *
+     * @param session 会话
+     * @param key     自定义键
+     * @return 若会话未注册或已绑定该键则返回false
+     */
+    public boolean bind(Session session, String key) {
+        if (StringUtils.isBlank(key)) {
+            throw new NullArgumentException("key");
+        }
+        WSSessionContext sessionContext = sessions.get(session.getId());
+        if (sessionContext != null && sessionContext.addKey(key)) {
+            doAddToIndex(keyIndex, key, session);
+            // 防止绑定过程中会话已被注销而残留索引
+            if (!sessions.containsKey(session.getId())) {
+                doRemoveFromIndex(keyIndex, key, session);
+                return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 解除会话与自定义键的绑定
+     *
+     * @param session 会话
+     * @param key     自定义键
+     * @return 若会话未绑定该键则返回false
+     */
+    public boolean unbind(Session session, String key) {
+        WSSessionContext sessionContext = sessions.get(session.getId());
+        if (sessionContext != null && sessionContext.removeKey(key)) {
+            doRemoveFromIndex(keyIndex, key, session);
+            return true;
+        }
+        return false;
+    }
+
+    public WSSessionContext getSessionContext(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    public Session getSession(String sessionId) {
+        WSSessionContext sessionContext = sessions.get(sessionId);
+        return sessionContext != null ? sessionContext.getSession() : null;
+    }
+
+    /**
+     * @param path 端点路径或客户端URI
+     * @return 返回指定端点路径下的全部会话(只读)
+     */
+    public Set<Session> getSessions(String path) {
+        Set<Session> values = pathIndex.get(path);
+        return values != null ? Collections.unmodifiableSet(values) : Collections.emptySet();
+    }
+
+    /**
+     * @param key 自定义键
+     * @return 返回与指定键绑定的全部会话(只读)
+     */
+    public Set<Session> getSessionsByKey(String key) {
+        Set<Session> values = keyIndex.get(key);
+        return values != null ? Collections.unmodifiableSet(values) : Collections.emptySet();
+    }
+
+    public Collection<WSSessionContext> getSessionContexts() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public int size(String path) {
+        Set<Session> values = pathIndex.get(path);
+        return values != null ? values.size() : 0;
+    }
+
+    public void clear() {
+        sessions.clear();
+        pathIndex.clear();
+        keyIndex.clear();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSMetrics;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.websocket.Session;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 会话分片执行组: 由N个单线程工作者组成, 会话在开启时按分片键(会话ID或指定的用户键)的哈希值固定分配至其中之一,
+ * 该会话的全部回调以及通过相同分片键提交的跨会话操作均在同一线程中按提交顺序(FIFO)执行, 分片内共享的用户状态无需加锁;
+ * 队列已满时任务将被拒绝(RejectedExecutionException)而不会越过队列中已有的任务执行, 由调用方自行处理背压
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 上午10:15
+ * @since 2.0.0
+ */
+public class WSShardGroup {
+
+    /**
+     * 默认的队列已满时提交线程的最大等待时间, 单位: 毫秒
+     */
+    public static final long DEFAULT_OFFER_TIMEOUT = 1000;
+
+    /**
+     * 当前线程所属的工作者, 非工作者线程为null
+     */
+    private static final ThreadLocal<Shard> CURRENT = new ThreadLocal<>();
+
+    private final Shard[] shards;
+
+    private final IWSMetrics metrics;
+
+    /**
+     * @param shardCount    工作者数量
+     * @param queueCapacity 每个工作者的任务队列容量, 小于等于0表示不限制
+     * @param metrics       监控指标采集器
+     */
+    public WSShardGroup(int shardCount, int queueCapacity, IWSMetrics metrics) {
+        this(shardCount, queueCapacity, DEFAULT_OFFER_TIMEOUT, metrics);
+    }
+
+    /**
+     * @param shardCount    工作者数量
+     * @param queueCapacity 每个工作者的任务队列容量, 小于等于0表示不限制
+     * @param offerTimeout  队列已满时非工作者线程的最大等待时间, 单位: 毫秒
+     * @param metrics       监控指标采集器
+     */
+    public WSShardGroup(int shardCount, int queueCapacity, long offerTimeout, IWSMetrics metrics) {
+        this.shards = new Shard[Math.max(1, shardCount)];
+        this.metrics = metrics;
+        for (int idx = 0; idx < shards.length; idx++) {
+            shards[idx] = new Shard(idx, queueCapacity, offerTimeout, metrics);
+        }
+    }
+
+    /**
+     * 解析会话的分片键: 优先使用指定名称的路径参数, 其次为请求参数, 均不存在时使用会话ID
+     *
+     * @param session  会话
+     * @param keyParam 分片键参数名称, 可以为空
+     * @return 返回分片键
+     */
+    public static String resolveKey(Session session, String keyParam) {
+        if (StringUtils.isNotBlank(keyParam)) {
+            String key = session.getPathParameters() != null ? session.getPathParameters().get(keyParam) : null;
+            if (StringUtils.isBlank(key) && session.getRequestParameterMap() != null) {
+                List<String> values = session.getRequestParameterMap().get(keyParam);
+                key = values != null && !values.isEmpty() ? values.get(0) : null;
+            }
+            if (StringUtils.isNotBlank(key)) {
+                return key;
+            }
+        }
+        return session.getId();
+    }
+
+    /**
+     * @param key 分片键
+     * @return 返回分片键对应的工作者索引
+     */
+    public int indexOf(String key) {
+        int hash = key.hashCode();
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % shards.length;
+    }
+
+    public Shard getShard(int index) {
+        return shards[index];
+    }
+
+    public Shard getShard(String key) {
+        return shards[indexOf(key)];
+    }
+
+    /**
+     * 将会话固定分配至分片键对应的工作者
+     *
+     * @param sessionContext 会话上下文
+     * @param key            分片键
+     * @return 返回工作者对象
+     */
+    public Shard assign(WSSessionContext sessionContext, String key) {
+        Shard shard = getShard(key);
+        sessionContext.setShardIndex(shard.index);
+        shard.sessions.incrementAndGet();
+        metrics.shardSessionOpened(shard.index);
+        return shard;
+    }
+
+    /**
+     * 解除会话与工作者的绑定
+     *
+     * @param sessionContext 会话上下文
+     */
+    public void release(WSSessionContext sessionContext) {
+        int index = sessionContext.getShardIndex();
+        if (index >= 0 && index < shards.length) {
+            sessionContext.setShardIndex(-1);
+            shards[index].sessions.decrementAndGet();
+            metrics.shardSessionClosed(index);
+        }
+    }
+
+    /**
+     * 在分片键对应的工作者中执行任务, 用于对同一分片内的会话或共享状态进行无锁操作
+     *
+     * @param key  分片键
+     * @param task 任务
+     * @throws RejectedExecutionException 队列已满且无法等待(工作者线程提交)或等待超时、已关闭时将产生此异常
+     */
+    public void execute(String key, Runnable task) {
+        getShard(key).execute(task);
+    }
+
+    /**
+     * 在会话所属的工作者中执行任务, 若会话未被分配则按会话ID计算
+     *
+     * @param session 会话
+     * @param task    任务
+     * @throws RejectedExecutionException 队列已满且无法等待(工作者线程提交)或等待超时、已关闭时将产生此异常
+     */
+    public void execute(Session session, Runnable task) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        int index = sessionContext != null ? sessionContext.getShardIndex() : -1;
+        (index >= 0 && index < shards.length ? shards[index] : getShard(session.getId())).execute(task);
+    }
+
+    public int size() {
+        return shards.length;
+    }
+
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+    }
+
+    /**
+     * 单线程工作者
+     */
+    public static final class Shard implements Executor {
+
+        /**
+         * 非工作者线程等待队列空闲时重新检查关闭状态的间隔, 单位: 纳秒
+         */
+        private static final long OFFER_CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+        private final int index;
+
+        private final IWSMetrics metrics;
+
+        private final ThreadPoolExecutor executor;
+
+        private final AtomicInteger sessions = new AtomicInteger();
+
+        private final LongAdder executedCount = new LongAdder();
+
+        Shard(int index, int queueCapacity, long offerTimeout, IWSMetrics metrics) {
+            this.index = index;
+            this.metrics = metrics;
+            BlockingQueue<Runnable> workQueue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new LinkedBlockingQueue<>();
+            ThreadFactory threadFactory = WSDispatcher.newThreadFactory("ws-shard-" + index + "-");
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, workQueue, runnable -> threadFactory.newThread(() -> {
+                CURRENT.set(this);
+                runnable.run();
+            }), (runnable, pool) -> doReject(runnable, pool, Math.max(0, offerTimeout)));
+        }
+
+        /**
+         * 队列已满时: 任意工作者线程(包括该工作者自身)提交的任务直接拒绝, 自身等待将永远无法被唤醒, 工作者之间相互等待则会造成死锁,
+         * 而在当前线程中直接执行又会越过队列中已有的任务, 破坏分片内的执行顺序;
+         * 非工作者线程在超时时间内分段等待队列空闲(形成背压), 每次等待后重新检查是否已关闭, 超时后拒绝; 均不会破坏线程亲和性
+         */
+        private void doReject(Runnable runnable, ThreadPoolExecutor pool, long offerTimeout) {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Shard " + index + " has been shut down");
+            }
+            Shard current = CURRENT.get();
+            if (current == this) {
+                throw new RejectedExecutionException("Shard " + index + " is full, rejecting task from its own worker");
+            } else if (current != null) {
+                throw new RejectedExecutionException("Shard " + index + " is full, rejecting task from shard " + current.index);
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeout);
+            try {
+                while (true) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new RejectedExecutionException("Shard " + index + " is full");
+                    }
+                    if (pool.getQueue().offer(runnable, Math.min(remaining, OFFER_CHECK_INTERVAL), TimeUnit.NANOSECONDS)) {
+                        if (pool.isShutdown() && pool.getQueue().remove(runnable)) {
+                            throw new RejectedExecutionException("Shard " + index + " has been shut down");
+                        }
+                        return;
+                    }
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("Shard " + index + " has been shut down");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(e);
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (metrics.isEnabled()) {
+                long submitted = System.nanoTime();
+                executor.execute(() -> {
+                    metrics.shardTaskExecuted(index, System.nanoTime() - submitted);
+                    executedCount.increment();
+                    command.run();
+                });
+            } else {
+                executor.execute(() -> {
+                    executedCount.increment();
+                    command.run();
+                });
+            }
+        }
+
+        /**
+         * @return 返回当前线程是否为该工作者线程
+         */
+        public boolean isCurrentThread() {
+            return CURRENT.get() == this;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return 返回当前分配至该工作者的会话数量
+         */
+        public int getSessionCount() {
+            return sessions.get();
+        }
+
+        /**
+         * @return 返回等待执行的任务数量
+         */
+        public int getPendingCount() {
+            return executor.getQueue().size();
+        }
+
+        public long getExecutedCount() {
+            return executedCount.sum();
+        }
+    }
+}
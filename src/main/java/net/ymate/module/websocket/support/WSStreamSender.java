@@ -0,0 +1,186 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import javax.websocket.Session;
+import java.io.*;
+
+/**
+ * 流式消息发送工具, 基于同步发送端点的getSendStream/getSendWriter以固定大小的缓冲区分片写出,
+ * 内存占用与消息大小无关; 若会话启用了出站队列, 发送前将等待队列中正在进行的异步发送完成并暂停队列直至流式发送结束,
+ * 否则将等待会话已发起的异步发送完成; 注意: 未启用出站队列时, 流式发送期间不得在同一会话上发起其它发送
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/16 下午3:40
+ * @since 2.0.0
+ */
+public final class WSStreamSender {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * 等待会话正在进行的异步发送完成的最大时间, 单位: 毫秒
+     */
+    public static final long DEFAULT_ACQUIRE_TIMEOUT = 30000;
+
+    private WSStreamSender() {
+    }
+
+    /**
+     * 将输入流内容作为一条二进制消息发送
+     *
+     * @param session 会话
+     * @param source  输入流(不会被关闭)
+     * @return 返回已发送的字节数
+     * @throws IOException 读取或发送时可能产生的异常
+     */
+    public static long sendBinary(Session session, InputStream source) throws IOException {
+        return sendBinary(session, source, DEFAULT_BUFFER_SIZE);
+    }
+
+    public static long sendBinary(Session session, InputStream source, int bufferSize) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE];
+        WSSessionContext sessionContext = doAcquire(session);
+        try {
+            try (OutputStream output = session.getBasicRemote().getSendStream()) {
+                int length;
+                while ((length = source.read(buffer)) != -1) {
+                    output.write(buffer, 0, length);
+                    total += length;
+                }
+            }
+            doAfterSend(sessionContext, total);
+        } finally {
+            doRelease(sessionContext);
+        }
+        return total;
+    }
+
+    /**
+     * 将字符流内容作为一条文字消息发送
+     *
+     * @param session 会话
+     * @param source  字符流(不会被关闭)
+     * @return 返回已发送的字符数
+     * @throws IOException 读取或发送时可能产生的异常
+     */
+    public static long sendText(Session session, Reader source) throws IOException {
+        return sendText(session, source, DEFAULT_BUFFER_SIZE);
+    }
+
+    public static long sendText(Session session, Reader source, int bufferSize) throws IOException {
+        long total = 0;
+        char[] buffer = new char[bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE];
+        WSSessionContext sessionContext = doAcquire(session);
+        try {
+            try (Writer writer = session.getBasicRemote().getSendWriter()) {
+                int length;
+                while ((length = source.read(buffer)) != -1) {
+                    writer.write(buffer, 0, length);
+                    total += length;
+                }
+            }
+            doAfterSend(sessionContext, total);
+        } finally {
+            doRelease(sessionContext);
+        }
+        return total;
+    }
+
+    /**
+     * 发送文件内容
+     *
+     * @param session 会话
+     * @param file    文件
+     * @return 返回已发送的字节数
+     * @throws IOException 读取或发送时可能产生的异常
+     */
+    public static long sendFile(Session session, File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            return sendBinary(session, input);
+        }
+    }
+
+    /**
+     * 将接收到的流式消息写入文件, 适用于handleBinaryStream中直接落盘
+     *
+     * @param source 输入流(不会被关闭)
+     * @param file   目标文件, 已存在时将被覆盖
+     * @return 返回已写入的字节数
+     * @throws IOException 读取或写入时可能产生的异常
+     */
+    public static long transferTo(InputStream source, File file) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+        try (OutputStream output = new FileOutputStream(file)) {
+            int length;
+            while ((length = source.read(buffer)) != -1) {
+                output.write(buffer, 0, length);
+                total += length;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 占用会话的发送权: 启用出站队列时独占队列, 否则等待已发起的异步发送全部完成, 随后通知写批处理器开启批量写窗口期
+     *
+     * @param session 会话
+     * @return 返回会话上下文对象, 若会话未注册则返回null
+     * @throws IOException 等待超时、队列已关闭或线程被中断时将产生此异常
+     */
+    private static WSSessionContext doAcquire(Session session) throws IOException {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        if (sessionContext == null) {
+            return null;
+        }
+        WSOutboundQueue queue = sessionContext.getOutboundQueue();
+        if (queue != null) {
+            queue.acquireExclusive(DEFAULT_ACQUIRE_TIMEOUT);
+        } else {
+            long deadline = System.currentTimeMillis() + DEFAULT_ACQUIRE_TIMEOUT;
+            while (sessionContext.getPendingSends() > 0) {
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new IOException(String.format("Timed out waiting for pending sends on session %s", session.getId()));
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(e.getMessage());
+                }
+            }
+        }
+        sessionContext.beforeSend();
+        return sessionContext;
+    }
+
+    private static void doRelease(WSSessionContext sessionContext) {
+        if (sessionContext != null && sessionContext.getOutboundQueue() != null) {
+            sessionContext.getOutboundQueue().releaseExclusive();
+        }
+    }
+
+    private static void doAfterSend(WSSessionContext sessionContext, long size) {
+        if (sessionContext != null) {
+            WSWriteBatcher batcher = sessionContext.getWriteBatcher();
+            if (batcher != null) {
+                batcher.onWrite(size);
+            }
+            sessionContext.getMetrics().messageSent(sessionContext.getPath(), size);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import org.apache.commons.lang.NullArgumentException;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.websocket.EncodeException;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 主题订阅注册表, 主题以'/'分隔层级, 订阅时支持'+'(匹配单个层级)及'#'(匹配其后任意层级, 仅可作为最后一级)通配符:
+ * 精确主题直接由ConcurrentHashMap索引; 通配主题的订阅会话同样由ConcurrentHashMap索引,
+ * 另由其主题模式构建不可变前缀树, 仅当通配主题模式集合发生变化时以路径复制方式生成新的根节点并替换,
+ * 其开销仅与变化的主题模式层级数量成正比, 发布过程全程无锁, 其开销与匹配的主题模式及订阅会话数量成正比
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/17 下午4:20
+ * @since 2.0.0
+ */
+public class WSTopicRegistry {
+
+    public static final String SEPARATOR = "/";
+
+    public static final String SINGLE_LEVEL = "+";
+
+    public static final String MULTI_LEVEL = "#";
+
+    private final WSSessionRegistry sessionRegistry;
+
+    private final WSBroadcaster broadcaster;
+
+    private final ConcurrentMap<String, Set<Session>> exactIndex = new ConcurrentHashMap<>(1024);
+
+    private final ConcurrentMap<String, Set<Session>> wildcardIndex = new ConcurrentHashMap<>();
+
+    private final Object trieLocker = new Object();
+
+    private volatile Node wildcardTrie;
+
+    public WSTopicRegistry(WSSessionRegistry sessionRegistry, WSBroadcaster broadcaster) {
+        this.sessionRegistry = sessionRegistry;
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * 订阅主题
+     *
+     * @param session 会话
+     * @param topic   主题, 可包含通配符
+     * @return 若会话未注册或已订阅该主题则返回false
+     */
+    public boolean subscribe(Session session, String topic) {
+        boolean wildcard = doCheckTopic(topic, true);
+        WSSessionContext sessionContext = sessionRegistry.getSessionContext(session.getId());
+        if (sessionContext == null || !sessionContext.addTopic(topic)) {
+            return false;
+        }
+        // 在compute中完成添加, 避免与doRemove移除空集合之间产生竞争而丢失刚加入的订阅
+        boolean created = doAdd(wildcard ? wildcardIndex : exactIndex, topic, session);
+        if (wildcard && created) {
+            doUpdateTrie(topic);
+        }
+        // 防止订阅过程中会话已被注销而残留索引
+        if (sessionRegistry.getSessionContext(session.getId()) != sessionContext) {
+            doRemove(topic, wildcard, session);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 取消订阅主题
+     *
+     * @param session 会话
+     * @param topic   订阅时使用的主题
+     * @return 若会话未订阅该主题则返回false
+     */
+    public boolean unsubscribe(Session session, String topic) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        if (sessionContext != null && sessionContext.removeTopic(topic)) {
+            doRemove(topic, isWildcard(topic), session);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 取消会话的全部订阅
+     *
+     * @param session 会话
+     */
+    public void unsubscribeAll(Session session) {
+        WSSessionContext sessionContext = WSSessionContext.get(session);
+        if (sessionContext != null) {
+            for (String topic : sessionContext.getTopics()) {
+                unsubscribe(session, topic);
+            }
+        }
+    }
+
+    /**
+     * @return 若主题对应的订阅集合为本次新建则返回true
+     */
+    private boolean doAdd(ConcurrentMap<String, Set<Session>> index, String topic, Session session) {
+        boolean[] created = new boolean[1];
+        index.compute(topic, (k, values) -> {
+            if (values == null) {
+                values = ConcurrentHashMap.newKeySet();
+                created[0] = true;
+            }
+            values.add(session);
+            return values;
+        });
+        return created[0];
+    }
+
+    private void doRemove(String topic, boolean wildcard, Session session) {
+        ConcurrentMap<String, Set<Session>> index = wildcard ? wildcardIndex : exactIndex;
+        boolean[] removed = new boolean[1];
+        index.computeIfPresent(topic, (k, values) -> {
+            values.remove(session);
+            if (values.isEmpty()) {
+                removed[0] = true;
+                return null;
+            }
+            return values;
+        });
+        if (wildcard && removed[0]) {
+            doUpdateTrie(topic);
+        }
+    }
+
+    /**
+     * 按通配主题模式当前是否存在订阅同步前缀树: 以索引的最终状态为准, 避免同一模式并发添加与移除时前缀树与索引不一致
+     *
+     * @param pattern 通配主题模式
+     */
+    private void doUpdateTrie(String pattern) {
+        String[] levels = StringUtils.splitPreserveAllTokens(pattern, SEPARATOR);
+        synchronized (trieLocker) {
+            if (wildcardIndex.containsKey(pattern)) {
+                wildcardTrie = doInsert(wildcardTrie, levels, 0, pattern);
+            } else {
+                wildcardTrie = doDelete(wildcardTrie, levels, 0);
+            }
+        }
+    }
+
+    /**
+     * 复制自根节点至目标节点的路径并设置主题模式, 其余节点与原前缀树共享
+     */
+    private static Node doInsert(Node node, String[] levels, int index, String pattern) {
+        Node copied = node != null ? new Node(node) : new Node();
+        if (index == levels.length) {
+            copied.pattern = pattern;
+        } else {
+            copied.children.put(levels[index], doInsert(node != null ? node.children.get(levels[index]) : null, levels, index + 1, pattern));
+        }
+        return copied;
+    }
+
+    /**
+     * 复制自根节点至目标节点的路径并清除主题模式, 同时剪除不再包含任何主题模式的分支
+     *
+     * @return 返回新的节点, 若该节点已无任何主题模式则返回null
+     */
+    private static Node doDelete(Node node, String[] levels, int index) {
+        if (node == null) {
+            return null;
+        }
+        Node copied = new Node(node);
+        if (index == levels.length) {
+            copied.pattern = null;
+        } else {
+            Node child = doDelete(node.children.get(levels[index]), levels, index + 1);
+            if (child != null) {
+                copied.children.put(levels[index], child);
+            } else {
+                copied.children.remove(levels[index]);
+            }
+        }
+        return copied.pattern == null && copied.children.isEmpty() ? null : copied;
+    }
+
+    /**
+     * 获取与指定主题匹配的全部订阅会话, 同时匹配多个订阅的会话仅出现一次
+     *
+     * @param topic 主题, 不可包含通配符
+     * @return 返回订阅会话集合(只读)
+     */
+    public Collection<Session> getSubscribers(String topic) {
+        doCheckTopic(topic, false);
+        Set<Session> exact = exactIndex.get(topic);
+        Node root = wildcardTrie;
+        if (root == null) {
+            return exact != null ? Collections.unmodifiableSet(exact) : Collections.emptySet();
+        }
+        List<String> patterns = new ArrayList<>();
+        doMatch(root, StringUtils.splitPreserveAllTokens(topic, SEPARATOR), 0, patterns);
+        if (patterns.isEmpty()) {
+            return exact != null ? Collections.unmodifiableSet(exact) : Collections.emptySet();
+        }
+        Set<Session> subscribers = exact != null ? new HashSet<>(exact) : new HashSet<>();
+        for (String pattern : patterns) {
+            Set<Session> values = wildcardIndex.get(pattern);
+            if (values != null) {
+                subscribers.addAll(values);
+            }
+        }
+        return subscribers;
+    }
+
+    private void doMatch(Node node, String[] levels, int index, List<String> patterns) {
+        Node multiLevel = node.children.get(MULTI_LEVEL);
+        if (multiLevel != null && multiLevel.pattern != null) {
+            // 'a/#'同时匹配'a'本身
+            patterns.add(multiLevel.pattern);
+        }
+        if (index == levels.length) {
+            if (node.pattern != null) {
+                patterns.add(node.pattern);
+            }
+            return;
+        }
+        Node singleLevel = node.children.get(SINGLE_LEVEL);
+        if (singleLevel != null) {
+            doMatch(singleLevel, levels, index + 1, patterns);
+        }
+        Node child = node.children.get(levels[index]);
+        if (child != null) {
+            doMatch(child, levels, index + 1, patterns);
+        }
+    }
+
+    /**
+     * 向订阅指定主题的全部会话广播消息, 消息仅被编码一次, 主题同时作为出站队列按键合并的消息键
+     *
+     * @param topic   主题, 不可包含通配符
+     * @param payload 消息内容(String、ByteBuffer、byte[]或可被端点已配置编码器处理的对象)
+     * @return 返回本次广播的目标会话数量
+     * @throws EncodeException 消息编码时可能产生的异常
+     * @throws IOException     消息编码时可能产生的异常
+     */
+    public int publish(String topic, Object payload) throws EncodeException, IOException {
+        Collection<Session> subscribers = getSubscribers(topic);
+        if (subscribers.isEmpty()) {
+            return 0;
+        }
+        return broadcaster.broadcast(subscribers, topic, payload);
+    }
+
+    /**
+     * @return 返回当前存在订阅的主题(含通配主题)数量
+     */
+    public int size() {
+        return exactIndex.size() + wildcardIndex.size();
+    }
+
+    public void clear() {
+        exactIndex.clear();
+        synchronized (trieLocker) {
+            wildcardIndex.clear();
+            wildcardTrie = null;
+        }
+    }
+
+    public static boolean isWildcard(String topic) {
+        return topic != null && (topic.contains(SINGLE_LEVEL) || topic.contains(MULTI_LEVEL));
+    }
+
+    private static boolean doCheckTopic(String topic, boolean allowWildcard) {
+        if (StringUtils.isBlank(topic)) {
+            throw new NullArgumentException("topic");
+        }
+        if (!isWildcard(topic)) {
+            return false;
+        }
+        if (!allowWildcard) {
+            throw new IllegalArgumentException(String.format("Wildcards are not allowed in published topic: %s", topic));
+        }
+        String[] levels = StringUtils.splitPreserveAllTokens(topic, SEPARATOR);
+        for (int idx = 0; idx < levels.length; idx++) {
+            String level = levels[idx];
+            boolean valid = SINGLE_LEVEL.equals(level) || (MULTI_LEVEL.equals(level) && idx == levels.length - 1) || !isWildcard(level);
+            if (!valid) {
+                throw new IllegalArgumentException(String.format("Invalid topic filter: %s", topic));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 前缀树节点, 发布后不再修改
+     */
+    private static final class Node {
+
+        private final Map<String, Node> children;
+
+        private String pattern;
+
+        Node() {
+            this.children = new HashMap<>();
+        }
+
+        Node(Node node) {
+            this.children = new HashMap<>(node.children);
+            this.pattern = node.pattern;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.websocket.Session;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 会话写批处理器: 基于RemoteEndpoint.setBatchingAllowed开启批量写, 出站消息在累计达到最大字节数
+ * 或等待超过最大延迟时间后一次性写出;
+ * 批量写仅在模块发送路径已安排刷新的窗口期内开启, 刷新时即关闭(同时写出缓冲区), 因此窗口期之外直接通过容器发送端点
+ * 或WSStreamSender写出的消息不会滞留在批处理缓冲区中, 窗口期之内的消息最迟在最大延迟时间后随本次刷新写出;
+ * 刷新操作可能阻塞, 由调度线程池触发后交给独立的线程池执行
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/11 上午9:52
+ * @since 2.0.0
+ */
+public class WSWriteBatcher {
+
+    private static final Log LOG = LogFactory.getLog(WSWriteBatcher.class);
+
+    /**
+     * 批量写统计(按端点汇总), 记录每次刷新时合并的消息数量
+     */
+    public static class Stats {
+
+        /**
+         * 直方图桶数量, 第N个桶统计合并数量处于[2^(N-1), 2^N)区间内的刷新次数
+         */
+        public static final int BUCKETS = 16;
+
+        private final LongAdder flushCount = new LongAdder();
+
+        private final LongAdder messageCount = new LongAdder();
+
+        private final LongAccumulator maxMessagesPerFlush = new LongAccumulator(Math::max, 0);
+
+        private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+        public Stats() {
+            for (int idx = 0; idx < BUCKETS; idx++) {
+                histogram[idx] = new LongAdder();
+            }
+        }
+
+        void record(int messages) {
+            flushCount.increment();
+            messageCount.add(messages);
+            maxMessagesPerFlush.accumulate(messages);
+            histogram[Math.min(BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(messages))].increment();
+        }
+
+        public long getFlushCount() {
+            return flushCount.sum();
+        }
+
+        public long getMessageCount() {
+            return messageCount.sum();
+        }
+
+        public long getMaxMessagesPerFlush() {
+            return maxMessagesPerFlush.get();
+        }
+
+        public double getAverageMessagesPerFlush() {
+            long flushes = flushCount.sum();
+            return flushes > 0 ? (double) messageCount.sum() / flushes : 0;
+        }
+
+        /**
+         * @return 返回每次刷新合并消息数量的直方图快照
+         */
+        public long[] getHistogram() {
+            long[] values = new long[BUCKETS];
+            for (int idx = 0; idx < BUCKETS; idx++) {
+                values[idx] = histogram[idx].sum();
+            }
+            return values;
+        }
+    }
+
+    private final Session session;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Executor flushExecutor;
+
+    private final long maxDelay;
+
+    private final long maxBytes;
+
+    private final Stats stats;
+
+    private final AtomicInteger pendingMessages = new AtomicInteger();
+
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final Runnable flushTask = this::flush;
+
+    private final Runnable scheduledFlushTask = this::doScheduleFlush;
+
+    /**
+     * @param session       会话
+     * @param scheduler     调度线程池
+     * @param flushExecutor 执行刷新操作的线程池
+     * @param maxDelay      最大延迟时间, 单位: 微秒
+     * @param maxBytes      最大累计字节数
+     * @param stats         批量写统计对象, 可以为null
+     */
+    public WSWriteBatcher(Session session, ScheduledExecutorService scheduler, Executor flushExecutor, long maxDelay, long maxBytes, Stats stats) {
+        this.session = session;
+        this.scheduler = scheduler;
+        this.flushExecutor = flushExecutor;
+        this.maxDelay = maxDelay;
+        this.maxBytes = maxBytes;
+        this.stats = stats;
+    }
+
+    /**
+     * 在模块发送路径写出消息之前调用: 若当前未处于批量写窗口期, 则开启批量写并安排刷新
+     */
+    public void beforeWrite() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                session.getAsyncRemote().setBatchingAllowed(true);
+            } catch (Throwable e) {
+                // 无法开启批量写时消息将直接写出, 已安排的刷新无副作用
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Failed to enable batching for %s", session), e);
+                }
+            }
+            scheduler.schedule(scheduledFlushTask, maxDelay, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    /**
+     * 记录一条已写入批处理缓冲区的消息
+     *
+     * @param bytes 消息字节数
+     */
+    public void onWrite(long bytes) {
+        pendingMessages.incrementAndGet();
+        if (pendingBytes.addAndGet(bytes) >= maxBytes) {
+            pendingBytes.set(0);
+            doScheduleFlush();
+        }
+    }
+
+    private void doScheduleFlush() {
+        try {
+            flushExecutor.execute(flushTask);
+        } catch (Throwable e) {
+            // 线程池已关闭或拒绝时在当前线程刷新, 确保缓冲区不会滞留
+            flush();
+        }
+    }
+
+    /**
+     * 立即刷新批处理缓冲区并关闭批量写, 直至下一次模块发送时重新开启
+     */
+    public void flush() {
+        boolean armed = flushScheduled.getAndSet(false);
+        int messages = pendingMessages.getAndSet(0);
+        pendingBytes.set(0);
+        // 未处于窗口期且无待刷新消息时批量写已处于关闭状态
+        if ((armed || messages > 0) && session.isOpen()) {
+            try {
+                // 关闭批量写的同时将写出缓冲区中的全部消息
+                session.getAsyncRemote().setBatchingAllowed(false);
+                if (messages > 0 && stats != null) {
+                    stats.record(messages);
+                }
+            } catch (Throwable e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(String.format("Failed to flush batch for %s", session), e);
+                }
+            }
+        }
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSEndpointSettings;
+import net.ymate.module.websocket.IWebSocketConfig;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author 刘镇 (suninformation@163.com) on 2021/10/22 上午10:10
+ * @since 2.0.0
+ */
+public class WSAdmissionControllerTest {
+
+    private static final String PATH = "/ws/test";
+
+    private static final int MAX_SESSIONS = 5;
+
+    private WSSessionRegistry registry;
+
+    private WSAdmissionController admissionController;
+
+    @Before
+    public void setUp() {
+        registry = new WSSessionRegistry();
+        IWebSocketConfig config = WSTestSupport.proxy(IWebSocketConfig.class, (name, args) -> "isAdmissionTrustForwarded".equals(name) ? (Object) false : (Object) 0);
+        admissionController = new WSAdmissionController(config, registry);
+    }
+
+    /**
+     * 并发握手在会话注册前均已通过准入时, 预留名额必须保证准入数量不超过端点上限
+     */
+    @Test
+    public void testConcurrentAdmitsDoNotExceedMaxSessions() throws Exception {
+        int threads = 16;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch doneLatch = new CountDownLatch(threads);
+        AtomicInteger admitted = new AtomicInteger();
+        try {
+            for (int i = 0; i < threads; i++) {
+                executorService.execute(() -> {
+                    try {
+                        startLatch.await();
+                        if (admissionController.admit(PATH, MAX_SESSIONS, null) == WSAdmissionController.ADMITTED) {
+                            admitted.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                });
+            }
+            startLatch.countDown();
+            Assert.assertTrue(doneLatch.await(10, TimeUnit.SECONDS));
+        } finally {
+            executorService.shutdownNow();
+        }
+        Assert.assertEquals(MAX_SESSIONS, admitted.get());
+        Assert.assertEquals(MAX_SESSIONS, admissionController.getReservedCount(PATH));
+        Assert.assertEquals(threads - MAX_SESSIONS, admissionController.getCapacityLimitedCount());
+    }
+
+    @Test
+    public void testReservationMovesToRegistryOnOpen() {
+        IWSEndpointSettings endpointSettings = WSTestSupport.newEndpointSettings();
+        for (int i = 0; i < MAX_SESSIONS; i++) {
+            Assert.assertEquals(WSAdmissionController.ADMITTED, admissionController.admit(PATH, MAX_SESSIONS, null));
+            registry.register(endpointSettings, PATH, WSTestSupport.newSession("s" + i), null);
+            admissionController.release(PATH);
+        }
+        Assert.assertEquals(0, admissionController.getReservedCount(PATH));
+        Assert.assertEquals(WSAdmissionController.SERVICE_UNAVAILABLE, admissionController.admit(PATH, MAX_SESSIONS, null));
+        //
+        registry.unregister(registry.getSession("s0"));
+        Assert.assertEquals(WSAdmissionController.ADMITTED, admissionController.admit(PATH, MAX_SESSIONS, null));
+    }
+
+    @Test
+    public void testReleaseAfterFailedUpgradeFreesSlot() {
+        Assert.assertEquals(WSAdmissionController.ADMITTED, admissionController.admit(PATH, 1, null));
+        Assert.assertEquals(WSAdmissionController.SERVICE_UNAVAILABLE, admissionController.admit(PATH, 1, null));
+        admissionController.release(PATH);
+        admissionController.release(PATH);
+        Assert.assertEquals(0, admissionController.getReservedCount(PATH));
+        Assert.assertEquals(WSAdmissionController.ADMITTED, admissionController.admit(PATH, 1, null));
+    }
+}
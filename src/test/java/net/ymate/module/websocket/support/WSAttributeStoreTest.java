@@ -0,0 +1,140 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 下午2:20
+ * @since 2.0.0
+ */
+public class WSAttributeStoreTest {
+
+    private WSAttributeSchema schema;
+
+    private WSAttributeSchema.Attribute online;
+
+    private WSAttributeSchema.Attribute score;
+
+    private WSAttributeSchema.Attribute lastSeen;
+
+    private WSAttributeSchema.Attribute ratio;
+
+    private WSAttributeStore store;
+
+    @Before
+    public void setUp() {
+        schema = WSAttributeSchema.builder()
+                .add("online", WSAttributeSchema.Type.BOOLEAN)
+                .add("score", WSAttributeSchema.Type.INT)
+                .add("lastSeen", WSAttributeSchema.Type.LONG)
+                .add("ratio", WSAttributeSchema.Type.DOUBLE)
+                .build();
+        online = schema.getAttribute("online");
+        score = schema.getAttribute("score");
+        lastSeen = schema.getAttribute("lastSeen");
+        ratio = schema.getAttribute("ratio");
+        store = new WSAttributeStore(schema, true);
+    }
+
+    @Test
+    public void testReadWriteIsolatedPerRecord() {
+        WSAttributes first = store.allocate();
+        WSAttributes second = store.allocate();
+        first.setBoolean(online, true);
+        first.setInt(score, 5);
+        Assert.assertEquals(8, first.addInt(score, 3));
+        first.setLong(lastSeen, 99L);
+        second.setDouble(ratio, 1.5);
+        //
+        Assert.assertTrue(first.getBoolean(online));
+        Assert.assertEquals(8, first.getInt(score));
+        Assert.assertEquals(99L, first.getLong(lastSeen));
+        Assert.assertEquals(0.0, first.getDouble(ratio), 0.0);
+        Assert.assertFalse(second.getBoolean(online));
+        Assert.assertEquals(0, second.getInt(score));
+        Assert.assertEquals(1.5, second.getDouble(ratio), 0.0);
+        Assert.assertEquals(2, store.getAllocatedCount());
+    }
+
+    @Test
+    public void testReleaseClearsAndRecyclesRecord() {
+        WSAttributes attributes = store.allocate();
+        attributes.setInt(score, 42);
+        attributes.setLong(lastSeen, -1L);
+        long reservedBytes = store.getReservedBytes();
+        attributes.release();
+        attributes.release();
+        Assert.assertTrue(attributes.isReleased());
+        Assert.assertEquals(0, store.getAllocatedCount());
+        //
+        WSAttributes recycled = store.allocate();
+        Assert.assertEquals(0, recycled.getInt(score));
+        Assert.assertEquals(0L, recycled.getLong(lastSeen));
+        Assert.assertEquals(reservedBytes, store.getReservedBytes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAccessAfterRelease() {
+        WSAttributes attributes = store.allocate();
+        attributes.release();
+        attributes.getInt(score);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeMismatch() {
+        store.allocate().getLong(score);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForeignSchemaAttribute() {
+        WSAttributeSchema other = WSAttributeSchema.builder().add("score", WSAttributeSchema.Type.INT).build();
+        store.allocate().getInt(other.getAttribute("score"));
+    }
+
+    /**
+     * 释放与并发写入竞争时, 释放须等待进行中的写入结束, 回收后的记录不能再被旧句柄写入
+     */
+    @Test
+    public void testReleaseWaitsForInFlightAccess() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            WSAttributes attributes = store.allocate();
+            CountDownLatch startedLatch = new CountDownLatch(1);
+            Thread writer = new Thread(() -> {
+                startedLatch.countDown();
+                try {
+                    while (true) {
+                        attributes.setLong(lastSeen, -1L);
+                    }
+                } catch (IllegalStateException ignored) {
+                }
+            });
+            writer.start();
+            Assert.assertTrue(startedLatch.await(5, TimeUnit.SECONDS));
+            attributes.release();
+            WSAttributes recycled = store.allocate();
+            writer.join(5000);
+            Assert.assertFalse(writer.isAlive());
+            Assert.assertEquals(0L, recycled.getLong(lastSeen));
+            recycled.release();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSMessageCodec;
+import net.ymate.module.websocket.IWebSocket;
+import net.ymate.module.websocket.impl.LoopbackWSClusterTransport;
+import net.ymate.module.websocket.impl.NoOpWSMetrics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+/**
+ * 同一回环通道上的两个集群节点: 批次序列化往返、本节点即时投递及本节点发布不被重复投递
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/22 上午11:00
+ * @since 2.0.0
+ */
+public class WSClusterBridgeTest {
+
+    private static final String PATH = "/ws/test";
+
+    private static final String OTHER_PATH = "/ws/other";
+
+    private static final String SUBPROTOCOL = "test.cluster.v1";
+
+    private Node nodeA;
+
+    private Node nodeB;
+
+    @Before
+    public void setUp() throws Exception {
+        WSMessageCodecs.register(WSTestSupport.proxy(IWSMessageCodec.class, (name, args) -> "getSubprotocol".equals(name) ? SUBPROTOCOL : null));
+        // 每个用例使用独立通道, 避免回环传输的进程级通道表在用例间共享订阅者
+        String channel = "test-" + UUID.randomUUID();
+        nodeA = new Node(channel);
+        nodeB = new Node(channel);
+    }
+
+    @After
+    public void tearDown() {
+        nodeA.bridge.stop();
+        nodeB.bridge.stop();
+    }
+
+    @Test
+    public void testBatchRoundTripsToRemoteNode() {
+        List<Object> pathFrames = new CopyOnWriteArrayList<>();
+        List<Object> groupFrames = new CopyOnWriteArrayList<>();
+        List<Object> topicFrames = new CopyOnWriteArrayList<>();
+        List<Object> codecFrames = new CopyOnWriteArrayList<>();
+        nodeB.newSession("b1", PATH, null, pathFrames);
+        Session groupSession = nodeB.newSession("b2", OTHER_PATH, null, groupFrames);
+        nodeB.sessionRegistry.bind(groupSession, "user-1");
+        Session topicSession = nodeB.newSession("b3", OTHER_PATH, null, topicFrames);
+        nodeB.topicRegistry.subscribe(topicSession, "news.sports");
+        Session codecSession = nodeB.newSession("b4", OTHER_PATH, SUBPROTOCOL, codecFrames);
+        nodeB.topicRegistry.subscribe(codecSession, "news.sports");
+        //
+        byte[] bytes = {0, 1, 2, (byte) 0xff};
+        Assert.assertEquals(0, nodeA.bridge.publish(WSClusterBridge.TargetType.PATH, PATH, "héllo, 世界"));
+        Assert.assertEquals(0, nodeA.bridge.publish(WSClusterBridge.TargetType.GROUP, "user-1", ByteBuffer.wrap(bytes)));
+        Assert.assertEquals(0, nodeA.bridge.publish(WSClusterBridge.TargetType.TOPIC, "news.sports", "plain", Collections.singletonMap(SUBPROTOCOL, "encoded")));
+        Assert.assertTrue(pathFrames.isEmpty());
+        nodeA.bridge.flush();
+        //
+        Assert.assertEquals(1, nodeA.bridge.getPublishedBatches());
+        Assert.assertEquals(3, nodeA.bridge.getPublishedMessages());
+        Assert.assertEquals(1, nodeB.bridge.getReceivedBatches());
+        Assert.assertEquals(3, nodeB.bridge.getReceivedMessages());
+        Assert.assertEquals(0, nodeB.bridge.getFailedBatches());
+        // 未协商编解码器的会话收到默认帧, 已协商的会话收到对应线格式的帧
+        Assert.assertEquals(Collections.singletonList("héllo, 世界"), pathFrames);
+        Assert.assertEquals(1, groupFrames.size());
+        ByteBuffer binary = (ByteBuffer) groupFrames.get(0);
+        byte[] received = new byte[binary.remaining()];
+        binary.get(received);
+        Assert.assertArrayEquals(bytes, received);
+        Assert.assertEquals(Collections.singletonList("plain"), topicFrames);
+        Assert.assertEquals(Collections.singletonList("encoded"), codecFrames);
+    }
+
+    @Test
+    public void testNodeLocalDeliveryIsImmediate() {
+        List<Object> localFrames = new CopyOnWriteArrayList<>();
+        List<Object> remoteFrames = new CopyOnWriteArrayList<>();
+        nodeA.newSession("a1", PATH, null, localFrames);
+        nodeB.newSession("b1", PATH, null, remoteFrames);
+        //
+        Assert.assertEquals(1, nodeA.bridge.publish(WSClusterBridge.TargetType.PATH, PATH, "hello"));
+        // 本节点会话在发布时即已投递, 其它节点须待批次发布后才能收到
+        Assert.assertEquals(Collections.singletonList("hello"), localFrames);
+        Assert.assertTrue(remoteFrames.isEmpty());
+        nodeA.bridge.flush();
+        Assert.assertEquals(Collections.singletonList("hello"), remoteFrames);
+    }
+
+    @Test
+    public void testOwnPublishesAreNotRedelivered() {
+        List<Object> localFrames = new CopyOnWriteArrayList<>();
+        List<Object> remoteFrames = new CopyOnWriteArrayList<>();
+        nodeA.newSession("a1", PATH, null, localFrames);
+        nodeB.newSession("b1", PATH, null, remoteFrames);
+        //
+        nodeA.bridge.publish(WSClusterBridge.TargetType.PATH, PATH, "from-a");
+        nodeB.bridge.publish(WSClusterBridge.TargetType.PATH, PATH, "from-b");
+        nodeA.bridge.flush();
+        nodeB.bridge.flush();
+        // 回环传输会将批次同时投递给发布者自身, 节点须忽略自己发出的批次
+        Assert.assertEquals(2, localFrames.size());
+        Assert.assertEquals(1, Collections.frequency(localFrames, "from-a"));
+        Assert.assertEquals(1, Collections.frequency(localFrames, "from-b"));
+        Assert.assertEquals(2, remoteFrames.size());
+        Assert.assertEquals(1, Collections.frequency(remoteFrames, "from-a"));
+        Assert.assertEquals(1, Collections.frequency(remoteFrames, "from-b"));
+        Assert.assertEquals(1, nodeA.bridge.getReceivedBatches());
+        Assert.assertEquals(1, nodeB.bridge.getReceivedBatches());
+    }
+
+    @Test
+    public void testCorruptBatchIsCountedAsFailed() {
+        nodeA.bridge.onReceive("not a batch".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(1, nodeA.bridge.getFailedBatches());
+        Assert.assertEquals(0, nodeA.bridge.getReceivedBatches());
+    }
+
+    /**
+     * 集群节点, 拥有独立的会话注册表、广播器及主题注册表
+     */
+    private static final class Node {
+
+        private final WSSessionRegistry sessionRegistry = new WSSessionRegistry();
+
+        private final WSBroadcaster broadcaster = new WSBroadcaster(Executors.newSingleThreadExecutor(), 512, 1024);
+
+        private final WSTopicRegistry topicRegistry = new WSTopicRegistry(sessionRegistry, broadcaster);
+
+        private final WSClusterBridge bridge;
+
+        Node(String channel) throws Exception {
+            IWebSocket owner = WSTestSupport.proxy(IWebSocket.class, (name, args) -> {
+                switch (name) {
+                    case "getSessionRegistry":
+                        return sessionRegistry;
+                    case "getBroadcaster":
+                        return broadcaster;
+                    case "getTopicRegistry":
+                        return topicRegistry;
+                    case "getMetrics":
+                        return NoOpWSMetrics.INSTANCE;
+                    default:
+                        return null;
+                }
+            });
+            // 批量发布延迟足够长, 由用例显式调用flush控制批次边界
+            bridge = new WSClusterBridge(owner, new LoopbackWSClusterTransport(), Executors.newSingleThreadScheduledExecutor(), 60000, Integer.MAX_VALUE);
+            bridge.start(channel);
+        }
+
+        /**
+         * 创建并注册会话, 异步发送的帧按顺序记录在received中且立即回调发送完成
+         */
+        Session newSession(String id, String path, String subprotocol, List<Object> received) {
+            RemoteEndpoint.Async asyncRemote = WSTestSupport.proxy(RemoteEndpoint.Async.class, (name, args) -> {
+                if ("sendText".equals(name) || "sendBinary".equals(name)) {
+                    received.add(args[0]);
+                    ((SendHandler) args[1]).onResult(new SendResult());
+                }
+                return null;
+            });
+            Map<String, Object> userProperties = new ConcurrentHashMap<>();
+            Session session = WSTestSupport.proxy(Session.class, (name, args) -> {
+                switch (name) {
+                    case "getId":
+                        return id;
+                    case "getUserProperties":
+                        return userProperties;
+                    case "getNegotiatedSubprotocol":
+                        return subprotocol;
+                    case "getAsyncRemote":
+                        return asyncRemote;
+                    case "isOpen":
+                        return true;
+                    default:
+                        return null;
+                }
+            });
+            sessionRegistry.register(WSTestSupport.newEndpointSettings(), path, session, null);
+            return session;
+        }
+    }
+}
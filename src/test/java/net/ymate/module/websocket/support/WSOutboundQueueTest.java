@@ -0,0 +1,251 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 上午10:50
+ * @since 2.0.0
+ */
+public class WSOutboundQueueTest {
+
+    /**
+     * 记录已发送的消息且不自动完成发送, 以便在首条消息发送中时积压后续消息
+     */
+    private static final class RecordingQueue extends WSOutboundQueue {
+
+        final List<Object> sent = new ArrayList<>();
+
+        RecordingQueue(Session session, int maxMessages, long maxBytes, OverflowPolicy overflowPolicy, boolean conflating) {
+            super(session, maxMessages, maxBytes, overflowPolicy, null, conflating);
+        }
+
+        @Override
+        protected void doSend(Object frame) {
+            sent.add(frame);
+        }
+
+        void completeAll() {
+            int count;
+            do {
+                count = sent.size();
+                onResult(new SendResult());
+            } while (sent.size() > count);
+        }
+    }
+
+    private static RecordingQueue newQueue(int maxMessages, WSOutboundQueue.OverflowPolicy overflowPolicy) {
+        return new RecordingQueue(WSTestSupport.newSession("s1"), maxMessages, 0, overflowPolicy, false);
+    }
+
+    @Test
+    public void testDropOldest() {
+        RecordingQueue queue = newQueue(2, WSOutboundQueue.OverflowPolicy.DROP_OLDEST);
+        for (String frame : new String[]{"a", "b", "c", "d"}) {
+            Assert.assertTrue(queue.offer(frame));
+        }
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(1, queue.getDroppedCount());
+        queue.completeAll();
+        Assert.assertEquals(Arrays.asList("a", "c", "d"), queue.sent);
+    }
+
+    @Test
+    public void testDropNewest() {
+        RecordingQueue queue = newQueue(2, WSOutboundQueue.OverflowPolicy.DROP_NEWEST);
+        Assert.assertTrue(queue.offer("a"));
+        Assert.assertTrue(queue.offer("b"));
+        Assert.assertTrue(queue.offer("c"));
+        Assert.assertFalse(queue.offer("d"));
+        Assert.assertEquals(1, queue.getDroppedCount());
+        queue.completeAll();
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), queue.sent);
+    }
+
+    @Test
+    public void testCoalesceByKey() {
+        RecordingQueue queue = newQueue(2, WSOutboundQueue.OverflowPolicy.COALESCE_BY_KEY);
+        queue.offer("k1", "a");
+        queue.offer("k1", "b");
+        queue.offer("k2", "c");
+        // 队列已满, 替换相同键的积压消息且保持其原有位置
+        Assert.assertTrue(queue.offer("k1", "d"));
+        Assert.assertEquals(2, queue.size());
+        // 无相同键时丢弃最早的消息
+        Assert.assertTrue(queue.offer("k3", "e"));
+        Assert.assertEquals(2, queue.getDroppedCount());
+        queue.completeAll();
+        Assert.assertEquals(Arrays.asList("a", "c", "e"), queue.sent);
+    }
+
+    @Test
+    public void testCloseEvictsSession() {
+        AtomicReference<CloseReason> closeReason = new AtomicReference<>();
+        Session session = WSTestSupport.proxy(Session.class, (name, args) -> {
+            switch (name) {
+                case "getId":
+                    return "s1";
+                case "isOpen":
+                    return closeReason.get() == null;
+                case "close":
+                    closeReason.set((CloseReason) args[0]);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        List<Session> evicted = new ArrayList<>();
+        WSOutboundQueue queue = new WSOutboundQueue(session, 1, 0, WSOutboundQueue.OverflowPolicy.CLOSE, evicted::add) {
+            @Override
+            protected void doSend(Object frame) {
+            }
+        };
+        Assert.assertTrue(queue.offer("a"));
+        Assert.assertTrue(queue.offer("b"));
+        Assert.assertFalse(queue.offer("c"));
+        Assert.assertEquals(Arrays.asList(session), evicted);
+        Assert.assertEquals(CloseReason.CloseCodes.VIOLATED_POLICY, closeReason.get().getCloseCode());
+        Assert.assertEquals(0, queue.size());
+        Assert.assertFalse(queue.offer("d"));
+    }
+
+    @Test
+    public void testMaxBytes() {
+        RecordingQueue queue = new RecordingQueue(WSTestSupport.newSession("s1"), 100, 8, WSOutboundQueue.OverflowPolicy.DROP_OLDEST, false);
+        queue.offer(ByteBuffer.allocate(4));
+        queue.offer(ByteBuffer.allocate(4));
+        queue.offer(ByteBuffer.allocate(4));
+        Assert.assertEquals(8, queue.getQueuedBytes());
+        // 超出字节上限时丢弃最早的积压消息
+        queue.offer(ByteBuffer.allocate(6));
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(6, queue.getQueuedBytes());
+        Assert.assertEquals(2, queue.getDroppedCount());
+    }
+
+    @Test
+    public void testFrameLargerThanMaxBytesIsRejected() {
+        RecordingQueue queue = new RecordingQueue(WSTestSupport.newSession("s1"), 100, 8, WSOutboundQueue.OverflowPolicy.DROP_OLDEST, false);
+        queue.offer(ByteBuffer.allocate(4));
+        queue.offer(ByteBuffer.allocate(4));
+        Assert.assertFalse(queue.offer(ByteBuffer.allocate(9)));
+        // 积压消息不因无法容纳的消息而被丢弃
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(4, queue.getQueuedBytes());
+        Assert.assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void testFrameLargerThanMaxBytesEvictsUnderClosePolicy() {
+        List<Session> evicted = new ArrayList<>();
+        WSOutboundQueue queue = new WSOutboundQueue(WSTestSupport.newSession("s1"), 100, 8, WSOutboundQueue.OverflowPolicy.CLOSE, evicted::add) {
+            @Override
+            protected void doSend(Object frame) {
+            }
+        };
+        Assert.assertFalse(queue.offer(ByteBuffer.allocate(9)));
+        Assert.assertEquals(1, evicted.size());
+    }
+
+    @Test
+    public void testTextSizeCountsUtf8Bytes() {
+        Assert.assertEquals(3, WSOutboundQueue.sizeOf("abc"));
+        Assert.assertEquals(2, WSOutboundQueue.sizeOf("\u00e9"));
+        Assert.assertEquals(6, WSOutboundQueue.sizeOf("\u4e2d\u6587"));
+        Assert.assertEquals(4, WSOutboundQueue.sizeOf(new String(Character.toChars(0x1F600))));
+        // 文本消息按编码后的字节数计入积压上限
+        RecordingQueue queue = new RecordingQueue(WSTestSupport.newSession("s1"), 100, 8, WSOutboundQueue.OverflowPolicy.DROP_NEWEST, false);
+        queue.offer("a");
+        Assert.assertTrue(queue.offer("\u4e2d\u6587"));
+        Assert.assertFalse(queue.offer("\u4e2d\u6587"));
+        Assert.assertEquals(6, queue.getQueuedBytes());
+    }
+
+    @Test
+    public void testConflatingReplacementRespectsMaxBytes() {
+        RecordingQueue queue = new RecordingQueue(WSTestSupport.newSession("s1"), 100, 8, WSOutboundQueue.OverflowPolicy.DROP_OLDEST, true);
+        queue.offer("k0", "a");
+        queue.offer("k1", "bb");
+        queue.offer("k2", "ccc");
+        // 替换后将超出上限: 移除被替换的消息并丢弃最早的消息以容纳新消息
+        Assert.assertTrue(queue.offer("k1", "dddddd"));
+        Assert.assertTrue(queue.getQueuedBytes() <= 8);
+        queue.completeAll();
+        Assert.assertEquals(Arrays.asList("a", "dddddd"), queue.sent);
+    }
+
+    @Test
+    public void testConflating() {
+        RecordingQueue queue = new RecordingQueue(WSTestSupport.newSession("s1"), 10, 0, WSOutboundQueue.OverflowPolicy.DROP_OLDEST, true);
+        queue.offer("k1", "a");
+        queue.offer("k1", "b");
+        queue.offer("k2", "c");
+        queue.offer("k1", "d");
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(1, queue.getConflatedCount());
+        queue.completeAll();
+        Assert.assertEquals(Arrays.asList("a", "d", "c"), queue.sent);
+    }
+
+    /**
+     * 独占发送(如流式发送)须等待正在进行的异步发送完成, 期间队列暂停发送积压消息, 释放后继续发送
+     */
+    @Test
+    public void testExclusiveWaitsForInFlightSend() throws Exception {
+        RecordingQueue queue = newQueue(10, WSOutboundQueue.OverflowPolicy.DROP_OLDEST);
+        queue.offer("a");
+        CountDownLatch acquiredLatch = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread streamer = new Thread(() -> {
+            try {
+                queue.acquireExclusive(5000);
+                acquiredLatch.countDown();
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        streamer.start();
+        Assert.assertFalse(acquiredLatch.await(100, TimeUnit.MILLISECONDS));
+        queue.offer("b");
+        queue.onResult(new SendResult());
+        Assert.assertTrue(acquiredLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertNull(error.get());
+        Assert.assertEquals(Arrays.asList("a"), queue.sent);
+        queue.releaseExclusive();
+        Assert.assertEquals(Arrays.asList("a", "b"), queue.sent);
+    }
+
+    @Test(expected = IOException.class)
+    public void testExclusiveFailsWhenClosed() throws Exception {
+        RecordingQueue queue = newQueue(10, WSOutboundQueue.OverflowPolicy.DROP_OLDEST);
+        queue.clear();
+        queue.acquireExclusive(100);
+    }
+}
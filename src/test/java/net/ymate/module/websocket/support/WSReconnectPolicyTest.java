@@ -0,0 +1,83 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 上午11:30
+ * @since 2.0.0
+ */
+public class WSReconnectPolicyTest {
+
+    @Test
+    public void testBackoffIsBoundedByExponentialCeiling() {
+        WSReconnectPolicy policy = new WSReconnectPolicy(100, 1000, 0, 0);
+        for (int attempt = 1; attempt <= 40; attempt++) {
+            long ceiling = Math.min(1000, 100L << Math.min(attempt - 1, 30));
+            long delay = policy.nextDelay();
+            Assert.assertTrue("attempt " + attempt + " delay " + delay, delay >= 0 && delay <= ceiling);
+            Assert.assertEquals(attempt, policy.getAttempts());
+        }
+        Assert.assertEquals(WSReconnectPolicy.State.CLOSED, policy.getState());
+    }
+
+    @Test
+    public void testGiveUpWithoutCircuitOpenTime() {
+        WSReconnectPolicy policy = new WSReconnectPolicy(10, 100, 2, 0);
+        Assert.assertTrue(policy.nextDelay() >= 0);
+        Assert.assertTrue(policy.nextDelay() >= 0);
+        Assert.assertEquals(-1, policy.nextDelay());
+    }
+
+    @Test
+    public void testCircuitTransitions() throws Exception {
+        WSReconnectPolicy policy = new WSReconnectPolicy(1, 10, 2, 100, 0);
+        policy.nextDelay();
+        policy.nextDelay();
+        Assert.assertEquals(WSReconnectPolicy.State.CLOSED, policy.getState());
+        // 超出最大连续重连次数后熔断, 延迟时间为熔断时间加抖动
+        long delay = policy.nextDelay();
+        Assert.assertTrue("delay " + delay, delay >= 50 && delay <= 100);
+        Assert.assertEquals(WSReconnectPolicy.State.OPEN, policy.getState());
+        Thread.sleep(delay + 20);
+        Assert.assertEquals(WSReconnectPolicy.State.HALF_OPEN, policy.getState());
+        // 试探连接失败时再次熔断
+        policy.nextDelay();
+        Assert.assertEquals(WSReconnectPolicy.State.OPEN, policy.getState());
+        // 试探连接成功时立即恢复(最短稳定时间为0)
+        policy.onConnected();
+        Assert.assertEquals(WSReconnectPolicy.State.CLOSED, policy.getState());
+        Assert.assertEquals(0, policy.getAttempts());
+    }
+
+    @Test
+    public void testResetOnlyAfterStableConnection() throws Exception {
+        WSReconnectPolicy policy = new WSReconnectPolicy(1, 10, 0, 0, 50);
+        policy.nextDelay();
+        policy.nextDelay();
+        // 连接后立即断开, 不重置失败次数
+        policy.onConnected();
+        policy.nextDelay();
+        Assert.assertEquals(3, policy.getAttempts());
+        // 连接保持达到最短稳定时间后断开, 重新开始计数
+        policy.onConnected();
+        Thread.sleep(70);
+        policy.nextDelay();
+        Assert.assertEquals(1, policy.getAttempts());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 上午11:10
+ * @since 2.0.0
+ */
+public class WSSerialExecutorTest {
+
+    private ExecutorService delegate;
+
+    @Before
+    public void setUp() {
+        delegate = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        delegate.shutdownNow();
+    }
+
+    /**
+     * 多个会话共享底层线程池时, 每个会话内的任务仍按提交顺序依次执行且不会并发执行
+     */
+    @Test
+    public void testPerSessionOrdering() throws Exception {
+        int sessions = 8;
+        int tasks = 500;
+        CountDownLatch doneLatch = new CountDownLatch(sessions * tasks);
+        AtomicBoolean overlapped = new AtomicBoolean();
+        List<List<Integer>> results = new ArrayList<>();
+        List<WSSerialExecutor> executors = new ArrayList<>();
+        List<AtomicInteger> running = new ArrayList<>();
+        for (int idx = 0; idx < sessions; idx++) {
+            results.add(Collections.synchronizedList(new ArrayList<>()));
+            executors.add(new WSSerialExecutor(delegate));
+            running.add(new AtomicInteger());
+        }
+        for (int seq = 0; seq < tasks; seq++) {
+            for (int idx = 0; idx < sessions; idx++) {
+                int value = seq;
+                List<Integer> result = results.get(idx);
+                AtomicInteger counter = running.get(idx);
+                executors.get(idx).execute(() -> {
+                    if (counter.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    result.add(value);
+                    counter.decrementAndGet();
+                    doneLatch.countDown();
+                });
+            }
+        }
+        Assert.assertTrue(doneLatch.await(30, TimeUnit.SECONDS));
+        Assert.assertFalse(overlapped.get());
+        for (List<Integer> result : results) {
+            Assert.assertEquals(tasks, result.size());
+            for (int seq = 0; seq < tasks; seq++) {
+                Assert.assertEquals(seq, result.get(seq).intValue());
+            }
+        }
+    }
+
+    @Test
+    public void testCapacityRejectsWhenFull() throws Exception {
+        CountDownLatch blockLatch = new CountDownLatch(1);
+        CountDownLatch startedLatch = new CountDownLatch(1);
+        WSSerialExecutor executor = new WSSerialExecutor(delegate, 2, 10);
+        executor.execute(() -> {
+            startedLatch.countDown();
+            try {
+                blockLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(startedLatch.await(5, TimeUnit.SECONDS));
+        // 正在执行的任务不占用队列容量
+        executor.execute(() -> {
+        });
+        executor.execute(() -> {
+        });
+        try {
+            executor.execute(() -> {
+            });
+            Assert.fail("Expected RejectedExecutionException");
+        } catch (RejectedExecutionException ignored) {
+        }
+        // 不受容量限制的任务(如关闭逻辑)始终可以提交
+        CountDownLatch unboundedLatch = new CountDownLatch(1);
+        executor.executeUnbounded(unboundedLatch::countDown);
+        Assert.assertEquals(3, executor.getPendingCount());
+        blockLatch.countDown();
+        Assert.assertTrue(unboundedLatch.await(5, TimeUnit.SECONDS));
+        // 执行完毕后容量得以恢复
+        executor.execute(() -> {
+        });
+    }
+
+    @Test
+    public void testClearReleasesCapacity() throws Exception {
+        CountDownLatch blockLatch = new CountDownLatch(1);
+        CountDownLatch startedLatch = new CountDownLatch(1);
+        WSSerialExecutor executor = new WSSerialExecutor(delegate, 1, 0);
+        executor.execute(() -> {
+            startedLatch.countDown();
+            try {
+                blockLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(startedLatch.await(5, TimeUnit.SECONDS));
+        AtomicBoolean executed = new AtomicBoolean();
+        executor.execute(() -> executed.set(true));
+        executor.clear();
+        Assert.assertEquals(0, executor.getPendingCount());
+        executor.execute(() -> {
+        });
+        blockLatch.countDown();
+        delegate.shutdown();
+        Assert.assertTrue(delegate.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertFalse(executed.get());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSEndpointSettings;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 上午10:30
+ * @since 2.0.0
+ */
+public class WSSessionRegistryTest {
+
+    private static final String PATH = "/ws/test";
+
+    private WSSessionRegistry registry;
+
+    private IWSEndpointSettings endpointSettings;
+
+    @Before
+    public void setUp() {
+        registry = new WSSessionRegistry();
+        endpointSettings = WSTestSupport.newEndpointSettings();
+    }
+
+    @Test
+    public void testRegisterAndUnregister() {
+        Session session = WSTestSupport.newSession("s1");
+        WSSessionContext sessionContext = registry.register(endpointSettings, PATH, session, null);
+        Assert.assertSame(sessionContext, registry.register(endpointSettings, PATH, session, null));
+        Assert.assertSame(session, registry.getSession("s1"));
+        Assert.assertEquals(1, registry.size(PATH));
+        Assert.assertTrue(registry.bind(session, "user-1"));
+        Assert.assertFalse(registry.bind(session, "user-1"));
+        Assert.assertTrue(registry.getSessionsByKey("user-1").contains(session));
+        //
+        Assert.assertSame(sessionContext, registry.unregister(session));
+        Assert.assertNull(registry.unregister(session));
+        Assert.assertEquals(0, registry.size());
+        Assert.assertEquals(0, registry.size(PATH));
+        Assert.assertTrue(registry.getSessionsByKey("user-1").isEmpty());
+        Assert.assertFalse(registry.bind(session, "user-1"));
+    }
+
+    @Test
+    public void testUnbind() {
+        Session session = WSTestSupport.newSession("s1");
+        registry.register(endpointSettings, PATH, session, null);
+        registry.bind(session, "user-1");
+        Assert.assertTrue(registry.unbind(session, "user-1"));
+        Assert.assertFalse(registry.unbind(session, "user-1"));
+        Assert.assertTrue(registry.getSessionsByKey("user-1").isEmpty());
+    }
+
+    /**
+     * 同一路径及键下反复注册与注销, 最终存活的会话必须全部保留在索引中, 不能因移除空集合的竞争而丢失
+     */
+    @Test
+    public void testConcurrentRegisterAndUnregisterKeepsIndex() throws Exception {
+        int threads = 8;
+        int rounds = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<Session>> futures = new ArrayList<>();
+        try {
+            for (int idx = 0; idx < threads; idx++) {
+                String prefix = "t" + idx + "-";
+                futures.add(executor.submit(() -> {
+                    startLatch.await();
+                    Session last = null;
+                    for (int round = 0; round < rounds; round++) {
+                        // 先注销再注册, 使索引集合频繁变为空集合并被移除
+                        if (last != null) {
+                            registry.unregister(last);
+                        }
+                        last = WSTestSupport.newSession(prefix + round);
+                        registry.register(endpointSettings, PATH, last, null);
+                        registry.bind(last, "shared");
+                    }
+                    return last;
+                }));
+            }
+            startLatch.countDown();
+            List<Session> survivors = new ArrayList<>();
+            for (Future<Session> future : futures) {
+                survivors.add(future.get(30, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(threads, registry.size());
+            Assert.assertEquals(threads, registry.size(PATH));
+            Assert.assertEquals(threads, registry.getSessionsByKey("shared").size());
+            for (Session session : survivors) {
+                Assert.assertTrue(registry.getSessions(PATH).contains(session));
+                Assert.assertTrue(registry.getSessionsByKey("shared").contains(session));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
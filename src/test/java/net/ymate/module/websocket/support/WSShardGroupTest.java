@@ -0,0 +1,192 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.impl.NoOpWSMetrics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 下午2:00
+ * @since 2.0.0
+ */
+public class WSShardGroupTest {
+
+    private WSShardGroup shardGroup;
+
+    @After
+    public void tearDown() {
+        if (shardGroup != null) {
+            shardGroup.shutdown();
+        }
+    }
+
+    /**
+     * 阻塞工作者并填满其任务队列
+     */
+    private static CountDownLatch doBlockAndFill(WSShardGroup.Shard shard, int queueCapacity) throws InterruptedException {
+        CountDownLatch blockLatch = new CountDownLatch(1);
+        CountDownLatch startedLatch = new CountDownLatch(1);
+        shard.execute(() -> {
+            startedLatch.countDown();
+            try {
+                blockLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(startedLatch.await(5, TimeUnit.SECONDS));
+        for (int idx = 0; idx < queueCapacity; idx++) {
+            shard.execute(() -> {
+            });
+        }
+        return blockLatch;
+    }
+
+    @Test
+    public void testSameKeyRunsInOrderOnOneThread() throws Exception {
+        shardGroup = new WSShardGroup(4, 0, NoOpWSMetrics.INSTANCE);
+        Assert.assertEquals(shardGroup.indexOf("user-1"), shardGroup.indexOf("user-1"));
+        int tasks = 1000;
+        CountDownLatch doneLatch = new CountDownLatch(tasks);
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+        WSShardGroup.Shard shard = shardGroup.getShard("user-1");
+        for (int idx = 0; idx < tasks; idx++) {
+            int value = idx;
+            shardGroup.execute("user-1", () -> {
+                Assert.assertTrue(shard.isCurrentThread());
+                threads.add(Thread.currentThread());
+                results.add(value);
+                doneLatch.countDown();
+            });
+        }
+        Assert.assertTrue(doneLatch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, threads.size());
+        for (int idx = 0; idx < tasks; idx++) {
+            Assert.assertEquals(idx, results.get(idx).intValue());
+        }
+        Assert.assertFalse(shard.isCurrentThread());
+    }
+
+    /**
+     * 工作者自身提交任务时队列已满, 应直接拒绝而不是越过队列中已有的任务在当前线程中执行
+     */
+    @Test
+    public void testOwnWorkerRejectsWhenFull() throws Exception {
+        shardGroup = new WSShardGroup(2, 1, 50, NoOpWSMetrics.INSTANCE);
+        WSShardGroup.Shard shard = shardGroup.getShard(0);
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch doneLatch = new CountDownLatch(1);
+        CountDownLatch queuedLatch = new CountDownLatch(1);
+        shard.execute(() -> {
+            shard.execute(() -> {
+                executed.add(1);
+                queuedLatch.countDown();
+            });
+            try {
+                shard.execute(() -> executed.add(2));
+            } catch (Throwable e) {
+                error.set(e);
+            }
+            executed.add(0);
+            doneLatch.countDown();
+        });
+        Assert.assertTrue(doneLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(queuedLatch.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(error.get() instanceof RejectedExecutionException);
+        Assert.assertEquals(Arrays.asList(0, 1), executed);
+    }
+
+    /**
+     * 两个工作者在队列已满时互相提交任务, 应直接拒绝而不是相互阻塞等待
+     */
+    @Test
+    public void testCrossShardSubmitRejectsInsteadOfDeadlock() throws Exception {
+        shardGroup = new WSShardGroup(2, 1, 5000, NoOpWSMetrics.INSTANCE);
+        WSShardGroup.Shard first = shardGroup.getShard(0);
+        WSShardGroup.Shard second = shardGroup.getShard(1);
+        CountDownLatch blockLatch = doBlockAndFill(second, 1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch doneLatch = new CountDownLatch(1);
+        first.execute(() -> {
+            try {
+                second.execute(() -> {
+                });
+            } catch (Throwable e) {
+                error.set(e);
+            }
+            doneLatch.countDown();
+        });
+        Assert.assertTrue(doneLatch.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(error.get() instanceof RejectedExecutionException);
+        blockLatch.countDown();
+    }
+
+    @Test
+    public void testExternalSubmitTimesOutWhenFull() throws Exception {
+        shardGroup = new WSShardGroup(1, 1, 100, NoOpWSMetrics.INSTANCE);
+        WSShardGroup.Shard shard = shardGroup.getShard(0);
+        CountDownLatch blockLatch = doBlockAndFill(shard, 1);
+        long start = System.nanoTime();
+        try {
+            shard.execute(() -> {
+            });
+            Assert.fail("Expected RejectedExecutionException");
+        } catch (RejectedExecutionException ignored) {
+        }
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        blockLatch.countDown();
+    }
+
+    @Test
+    public void testExternalSubmitWaitsForSpace() throws Exception {
+        shardGroup = new WSShardGroup(1, 1, 5000, NoOpWSMetrics.INSTANCE);
+        WSShardGroup.Shard shard = shardGroup.getShard(0);
+        CountDownLatch blockLatch = doBlockAndFill(shard, 1);
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            blockLatch.countDown();
+        }).start();
+        CountDownLatch doneLatch = new CountDownLatch(1);
+        shard.execute(doneLatch::countDown);
+        Assert.assertTrue(doneLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectsAfterShutdown() {
+        shardGroup = new WSShardGroup(1, 1, NoOpWSMetrics.INSTANCE);
+        shardGroup.shutdown();
+        shardGroup.getShard(0).execute(() -> {
+        });
+    }
+}
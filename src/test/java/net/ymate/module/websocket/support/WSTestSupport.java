@@ -0,0 +1,101 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSEndpointSettings;
+import net.ymate.module.websocket.IWebSocket;
+import net.ymate.module.websocket.impl.NoOpWSMetrics;
+
+import javax.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单元测试辅助工具, 以动态代理方式构建会话及端点运行参数等对象
+ *
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 上午10:20
+ * @since 2.0.0
+ */
+final class WSTestSupport {
+
+    private WSTestSupport() {
+    }
+
+    static IWebSocket newWebSocket() {
+        return proxy(IWebSocket.class, (name, args) -> "getMetrics".equals(name) ? NoOpWSMetrics.INSTANCE : null);
+    }
+
+    static IWSEndpointSettings newEndpointSettings() {
+        IWebSocket owner = newWebSocket();
+        return proxy(IWSEndpointSettings.class, (name, args) -> {
+            switch (name) {
+                case "getOwner":
+                    return owner;
+                case "getDispatchMode":
+                    return WSDispatcher.Mode.DIRECT;
+                case "isBatching":
+                case "isConflating":
+                    return false;
+                case "getBatchingMaxDelay":
+                case "getBatchingMaxBytes":
+                    return 0L;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    static Session newSession(String id) {
+        Map<String, Object> userProperties = new ConcurrentHashMap<>();
+        return proxy(Session.class, (name, args) -> {
+            switch (name) {
+                case "getId":
+                    return id;
+                case "getUserProperties":
+                    return userProperties;
+                case "isOpen":
+                    return true;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * 创建接口代理对象, equals、hashCode及toString按对象标识处理
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(WSTestSupport.class.getClassLoader(), new Class<?>[]{type}, (target, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return target == args[0];
+                case "hashCode":
+                    return System.identityHashCode(target);
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(target));
+                default:
+                    return handler.invoke(method.getName(), args);
+            }
+        });
+    }
+
+    interface Handler {
+
+        Object invoke(String name, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2007-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ymate.module.websocket.support;
+
+import net.ymate.module.websocket.IWSEndpointSettings;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.websocket.Session;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author 刘镇 (suninformation@163.com) on 2021/10/18 上午11:45
+ * @since 2.0.0
+ */
+public class WSTopicRegistryTest {
+
+    private WSSessionRegistry sessionRegistry;
+
+    private WSTopicRegistry topicRegistry;
+
+    private IWSEndpointSettings endpointSettings;
+
+    @Before
+    public void setUp() {
+        sessionRegistry = new WSSessionRegistry();
+        topicRegistry = new WSTopicRegistry(sessionRegistry, null);
+        endpointSettings = WSTestSupport.newEndpointSettings();
+    }
+
+    private Session newSession(String id) {
+        Session session = WSTestSupport.newSession(id);
+        sessionRegistry.register(endpointSettings, "/ws/test", session, null);
+        return session;
+    }
+
+    private static void assertSubscribers(Collection<Session> actual, Session... expected) {
+        Assert.assertEquals(expected.length, actual.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(actual));
+    }
+
+    @Test
+    public void testExactMatch() {
+        Session session = newSession("s1");
+        Assert.assertTrue(topicRegistry.subscribe(session, "sport/tennis"));
+        Assert.assertFalse(topicRegistry.subscribe(session, "sport/tennis"));
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis"), session);
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis/player1"));
+        assertSubscribers(topicRegistry.getSubscribers("sport"));
+    }
+
+    @Test
+    public void testSingleLevelWildcard() {
+        Session session = newSession("s1");
+        topicRegistry.subscribe(session, "sport/+/player1");
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis/player1"), session);
+        assertSubscribers(topicRegistry.getSubscribers("sport/golf/player1"), session);
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis/player2"));
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis/x/player1"));
+        assertSubscribers(topicRegistry.getSubscribers("sport/player1"));
+    }
+
+    @Test
+    public void testMultiLevelWildcard() {
+        Session session = newSession("s1");
+        topicRegistry.subscribe(session, "sport/#");
+        // 'sport/#'同时匹配'sport'本身
+        assertSubscribers(topicRegistry.getSubscribers("sport"), session);
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis"), session);
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis/player1"), session);
+        assertSubscribers(topicRegistry.getSubscribers("news/sport"));
+        //
+        Session other = newSession("s2");
+        topicRegistry.subscribe(other, "#");
+        assertSubscribers(topicRegistry.getSubscribers("news/sport"), other);
+    }
+
+    @Test
+    public void testOverlappingSubscriptionsAreDeduplicated() {
+        Session session = newSession("s1");
+        Session other = newSession("s2");
+        topicRegistry.subscribe(session, "sport/tennis");
+        topicRegistry.subscribe(session, "sport/+");
+        topicRegistry.subscribe(session, "sport/#");
+        topicRegistry.subscribe(other, "+/tennis");
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis"), session, other);
+        Assert.assertEquals(4, topicRegistry.size());
+    }
+
+    @Test
+    public void testWildcardPatternsAddedAndRemovedIndependently() {
+        Session first = newSession("s1");
+        Session second = newSession("s2");
+        topicRegistry.subscribe(first, "sport/+/player1");
+        topicRegistry.subscribe(second, "sport/+/player1/#");
+        topicRegistry.subscribe(second, "sport/+");
+        // 移除较短的模式不影响共享前缀的其它模式
+        topicRegistry.unsubscribe(second, "sport/+");
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis"));
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis/player1"), first, second);
+        topicRegistry.unsubscribe(first, "sport/+/player1");
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis/player1"), second);
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis/player1/score"), second);
+        topicRegistry.unsubscribe(second, "sport/+/player1/#");
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis/player1"));
+        // 再次订阅已被剪除的分支
+        topicRegistry.subscribe(first, "sport/+");
+        assertSubscribers(topicRegistry.getSubscribers("sport/golf"), first);
+    }
+
+    @Test
+    public void testUnsubscribe() {
+        Session session = newSession("s1");
+        topicRegistry.subscribe(session, "sport/+");
+        topicRegistry.subscribe(session, "news");
+        Assert.assertTrue(topicRegistry.unsubscribe(session, "sport/+"));
+        Assert.assertFalse(topicRegistry.unsubscribe(session, "sport/+"));
+        assertSubscribers(topicRegistry.getSubscribers("sport/tennis"));
+        topicRegistry.unsubscribeAll(session);
+        assertSubscribers(topicRegistry.getSubscribers("news"));
+        Assert.assertEquals(0, topicRegistry.size());
+    }
+
+    /**
+     * 订阅与会话注销(先注销会话再取消全部订阅)并发执行时, 无论执行顺序如何, 已注销的会话都不能残留在订阅索引中
+     */
+    @Test
+    public void testConcurrentSubscribeAndUnregister() throws Exception {
+        for (int round = 0; round < 500; round++) {
+            Session session = newSession("s" + round);
+            String topic = round % 2 == 0 ? "sport/tennis" : "sport/+";
+            CountDownLatch startLatch = new CountDownLatch(1);
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            Thread subscriber = new Thread(() -> {
+                try {
+                    startLatch.await();
+                    topicRegistry.subscribe(session, topic);
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            });
+            subscriber.start();
+            startLatch.countDown();
+            sessionRegistry.unregister(session);
+            topicRegistry.unsubscribeAll(session);
+            subscriber.join(5000);
+            Assert.assertNull(error.get());
+            assertSubscribers(topicRegistry.getSubscribers("sport/tennis"));
+        }
+        Assert.assertEquals(0, topicRegistry.size());
+    }
+
+    @Test
+    public void testSubscribeRequiresRegisteredSession() {
+        Assert.assertFalse(topicRegistry.subscribe(WSTestSupport.newSession("unknown"), "sport"));
+        Assert.assertEquals(Collections.emptySet(), topicRegistry.getSubscribers("sport"));
+    }
+
+    @Test
+    public void testInvalidTopicFilters() {
+        Session session = newSession("s1");
+        for (String topic : new String[]{"sport/#/player1", "sport/ten+", "sport#"}) {
+            try {
+                topicRegistry.subscribe(session, topic);
+                Assert.fail("Expected IllegalArgumentException: " + topic);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWildcardNotAllowedWhenMatching() {
+        topicRegistry.getSubscribers("sport/+");
+    }
+}